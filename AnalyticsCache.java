@@ -0,0 +1,268 @@
+package se.kth.graph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A memo of analysis results for one graph. A result is stored under its
+ * analysis, its parameters and the version of the graph when it was
+ * computed; it is returned as long as the graph has the same version. After
+ * a mutation the stale results are dropped, except for the results of an
+ * IncrementalAnalysis, which may be revalidated instead of recomputed.
+ *
+ * At most maxEntries results are kept, and the least recently used one is
+ * evicted first. Results are shared between callers and must not be
+ * modified. The cache is thread safe, but the graph must not be changed
+ * while a result is computed.
+ */
+public final class AnalyticsCache {
+    /**
+     * A computation on a graph.
+     *
+     * @param <P>
+     *            the type of the parameters; must have equals and hashCode
+     * @param <R>
+     *            the type of the result
+     */
+    public interface Analysis<P, R> {
+        /**
+         * Computes the result for g.
+         *
+         * @param g
+         *            a graph
+         * @param parameters
+         *            the parameters, possibly null
+         * @return the result
+         */
+        R compute(Graph g, P parameters);
+    }
+
+    /**
+     * An analysis that can check whether an earlier result still holds after
+     * the graph has changed, which is often cheaper than computing it again.
+     */
+    public interface IncrementalAnalysis<P, R> extends Analysis<P, R> {
+        /**
+         * Returns a result for g computed from a stale result, or null if the
+         * result must be computed again.
+         *
+         * @param g
+         *            a graph
+         * @param parameters
+         *            the parameters, possibly null
+         * @param stale
+         *            the result for an earlier version of g
+         * @return the result for g, or null
+         */
+        R revalidate(Graph g, P parameters, R stale);
+    }
+
+    /** The components of an undirected graph, as in componentIds. */
+    public final static Analysis<Void, int[]> COMPONENTS = new Analysis<Void, int[]>() {
+        @Override
+        public int[] compute(Graph g, Void parameters) {
+            return GraphAlgorithms.componentIds(g);
+        }
+    };
+
+    /** The number of components of an undirected graph. */
+    public final static Analysis<Void, Integer> COMPONENT_COUNT = new Analysis<Void, Integer>() {
+        @Override
+        public Integer compute(Graph g, Void parameters) {
+            return GraphAlgorithms.countComponents(GraphAlgorithms.componentIds(g));
+        }
+    };
+
+    /** The degree statistics. */
+    public final static Analysis<Void, DegreeStatistics> DEGREE_STATISTICS = new Analysis<Void, DegreeStatistics>() {
+        @Override
+        public DegreeStatistics compute(Graph g, Void parameters) {
+            return DegreeStatistics.of(g);
+        }
+    };
+
+    /**
+     * The shortest path tree of a source vertex. A stale tree is kept if the
+     * changes did not shorten or break any of its paths, which is checked in
+     * linear time without a priority queue.
+     */
+    public final static IncrementalAnalysis<Integer, ShortestPathTree> SHORTEST_PATH_TREE =
+            new IncrementalAnalysis<Integer, ShortestPathTree>() {
+        @Override
+        public ShortestPathTree compute(Graph g, Integer source) {
+            return ShortestPathTree.compute(g, source);
+        }
+
+        @Override
+        public ShortestPathTree revalidate(Graph g, Integer source, ShortestPathTree stale) {
+            return stale.isValidFor(g) ? stale : null;
+        }
+    };
+
+    private final Graph graph;
+    private final Versioned versioned;
+    private final Map<Key, Entry> entries;
+
+    /** The graph version seen by the last call to get. */
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long revalidations;
+
+    /**
+     * Constructs a cache for g.
+     *
+     * @param g
+     *            a graph that implements Versioned
+     * @param maxEntries
+     *            the maximum number of stored results
+     * @throws IllegalArgumentException
+     *             if g does not implement Versioned or maxEntries < 1
+     */
+    public AnalyticsCache(Graph g, final int maxEntries) {
+        if (!(g instanceof Versioned))
+            throw new IllegalArgumentException("Not a versioned graph: " + g.getClass().getName() + ".");
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Illegal size: maxEntries = " + maxEntries + ".");
+        graph = g;
+        versioned = (Versioned) g;
+        version = versioned.version();
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the result of the analysis for the current version of the
+     * graph, computing it only if there is no valid stored result.
+     *
+     * @param analysis
+     *            the analysis
+     * @param parameters
+     *            the parameters, possibly null
+     * @return the result of the analysis
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <P, R> R get(Analysis<P, R> analysis, P parameters) {
+        long current = versioned.version();
+        if (current != version) {
+            dropStale();
+            version = current;
+        }
+
+        Key key = new Key(analysis, parameters);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == current) {
+            hits++;
+            return (R) entry.result;
+        }
+        R result = null;
+        if (entry != null) {
+            // Only the results of an IncrementalAnalysis survive dropStale.
+            result = ((IncrementalAnalysis<P, R>) analysis).revalidate(graph, parameters, (R) entry.result);
+            if (result != null)
+                revalidations++;
+        }
+        if (result == null) {
+            misses++;
+            result = analysis.compute(graph, parameters);
+        }
+        entries.put(key, new Entry(current, result));
+        return result;
+    }
+
+    /**
+     * Removes the results that are stale and cannot be revalidated.
+     */
+    private void dropStale() {
+        for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            if (!(it.next().getKey().analysis instanceof IncrementalAnalysis))
+                it.remove();
+        }
+    }
+
+    /**
+     * Removes all stored results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of stored results.
+     *
+     * @return the number of stored results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of calls to get answered with a stored result.
+     *
+     * @return the number of hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of calls to get that computed a new result.
+     *
+     * @return the number of misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of stale results that were revalidated instead of
+     * computed again.
+     *
+     * @return the number of revalidations
+     */
+    public synchronized long revalidations() {
+        return revalidations;
+    }
+
+    private static final class Key {
+        final Analysis<?, ?> analysis;
+        final Object parameters;
+
+        Key(Analysis<?, ?> analysis, Object parameters) {
+            this.analysis = analysis;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return analysis == k.analysis
+                    && (parameters == null ? k.parameters == null : parameters.equals(k.parameters));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(analysis) + (parameters == null ? 0 : parameters.hashCode());
+        }
+    }
+
+    private static final class Entry {
+        final long version;
+        final Object result;
+
+        Entry(long version, Object result) {
+            this.version = version;
+            this.result = result;
+        }
+    }
+}
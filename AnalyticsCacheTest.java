@@ -0,0 +1,86 @@
+package se.kth.graph;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that AnalyticsCache returns stored results until the graph
+ * changes, drops them afterwards, revalidates shortest path trees and
+ * evicts the least recently used result.
+ */
+public class AnalyticsCacheTest {
+    @Test
+    public void resultIsStoredUntilTheGraphChanges() {
+        Graph g = new HashGraph(4);
+        g.addBi(0, 1);
+        AnalyticsCache cache = new AnalyticsCache(g, 4);
+        int[] ids = cache.get(AnalyticsCache.COMPONENTS, null);
+        assertSame(ids, cache.get(AnalyticsCache.COMPONENTS, null));
+        assertEquals(Integer.valueOf(3), cache.get(AnalyticsCache.COMPONENT_COUNT, null));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+
+        g.addBi(0, 1); // no change
+        assertSame(ids, cache.get(AnalyticsCache.COMPONENTS, null));
+
+        g.addBi(2, 3);
+        assertEquals(Integer.valueOf(2), cache.get(AnalyticsCache.COMPONENT_COUNT, null));
+        assertEquals(1, cache.size());
+        assertNotEquals(ids, cache.get(AnalyticsCache.COMPONENTS, null));
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void shortestPathTreeIsRevalidated() {
+        Graph g = new MatrixGraph(4);
+        g.add(0, 1, 2);
+        g.add(1, 2, 2);
+        g.add(0, 3, 5);
+        AnalyticsCache cache = new AnalyticsCache(g, 4);
+        ShortestPathTree t = cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 0);
+
+        // A longer detour does not change the tree.
+        g.add(3, 2, 5);
+        ShortestPathTree t2 = cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 0);
+        assertEquals(1, cache.revalidations());
+        assertEquals(4, t2.numVertices());
+        assertTrue(t2.isReachable(3));
+        assertEquals(4, t2.distance(2));
+
+        // A shortcut does.
+        g.add(0, 2, 1);
+        ShortestPathTree t3 = cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 0);
+        assertEquals(1, t3.distance(2));
+        assertEquals(1, cache.revalidations());
+        assertNotEquals(t, t3);
+    }
+
+    @Test
+    public void leastRecentlyUsedResultIsEvicted() {
+        Graph g = new HashGraph(5);
+        g.addBi(0, 1);
+        AnalyticsCache cache = new AnalyticsCache(g, 2);
+        ShortestPathTree t0 = cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 0);
+        cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 1);
+        assertSame(t0, cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 0));
+        cache.get(AnalyticsCache.DEGREE_STATISTICS, null);
+        assertEquals(2, cache.size());
+        long misses = cache.misses();
+        assertSame(t0, cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 0));
+        cache.get(AnalyticsCache.SHORTEST_PATH_TREE, 1);
+        assertEquals(misses + 1, cache.misses());
+    }
+
+    @Test
+    public void clearRemovesAllResults() {
+        AnalyticsCache cache = new AnalyticsCache(new HashGraph(2), 2);
+        cache.get(AnalyticsCache.DEGREE_STATISTICS, null);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void graphMustBeVersioned() {
+        new AnalyticsCache(new ConnectivityGraph(new HashGraph(2)), 2);
+    }
+}
@@ -0,0 +1,277 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Betweenness centrality computed with Brandes' algorithm. Unweighted graphs
+ * are searched with breadth first search; if any edge has a cost the graph is
+ * searched with Dijkstra's algorithm, where an edge with NO_COST counts as
+ * cost 1. Edge costs should be positive, zero cost edges may cause shortest
+ * paths to be miscounted.
+ *
+ * The source vertices are divided among worker threads. Every worker has its
+ * own search state and its own centrality array; the arrays are summed when
+ * all workers are done. Paths are counted in the direction of the edges, so
+ * for a graph built with addBi every unordered pair of vertices contributes
+ * twice.
+ */
+public final class BetweennessCentrality {
+    /** Number of sources a worker claims at a time. */
+    private final static int CHUNK_SIZE = 16;
+
+    private BetweennessCentrality() {
+    }
+
+    /**
+     * Returns the exact betweenness centrality of every vertex in g, using one
+     * thread per available processor. Time complexity: O(n m) for unweighted
+     * and O(n m log n) for weighted graphs.
+     *
+     * @param g
+     *            a graph
+     * @return c, where c[v] is the betweenness centrality of v
+     */
+    public static double[] exact(Graph g) {
+        return exact(g, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the exact betweenness centrality of every vertex in g.
+     *
+     * @param g
+     *            a graph
+     * @param threads
+     *            number of worker threads
+     * @return c, where c[v] is the betweenness centrality of v
+     * @throws IllegalArgumentException
+     *             if threads < 1
+     */
+    public static double[] exact(Graph g, int threads) {
+        Workers.checkThreads(threads);
+
+        int n = g.numVertices();
+        int[] sources = new int[n];
+        for (int v = 0; v < n; v++)
+            sources[v] = v;
+        return run(CsrGraph.of(g), sources, threads, 1.0);
+    }
+
+    /**
+     * Returns an estimate of the betweenness centrality of every vertex in g,
+     * computed from k source vertices sampled uniformly without replacement.
+     * The partial sums are scaled by n / k so that the estimate is unbiased.
+     * Time complexity: O(k m) for unweighted and O(k m log n) for weighted
+     * graphs.
+     *
+     * @param g
+     *            a graph
+     * @param k
+     *            number of sampled sources, 0 < k <= n
+     * @param seed
+     *            seed of the sampling; equal seeds give equal estimates
+     * @param threads
+     *            number of worker threads
+     * @return c, where c[v] is the estimated betweenness centrality of v
+     * @throws IllegalArgumentException
+     *             if k or threads is out of range
+     */
+    public static double[] approximate(Graph g, int k, long seed, int threads) {
+        Workers.checkThreads(threads);
+        int n = g.numVertices();
+        if (k < 1 || k > n)
+            throw new IllegalArgumentException("Illegal sample size: k = " + k + ".");
+
+        // Partial Fisher-Yates shuffle; the first k entries are the sample.
+        int[] perm = new int[n];
+        for (int v = 0; v < n; v++)
+            perm[v] = v;
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int t = perm[i];
+            perm[i] = perm[j];
+            perm[j] = t;
+        }
+        int[] sources = new int[k];
+        System.arraycopy(perm, 0, sources, 0, k);
+        return run(CsrGraph.of(g), sources, threads, (double) n / k);
+    }
+
+    /**
+     * Runs one Brandes search per source and returns the summed dependencies
+     * multiplied by scale.
+     */
+    private static double[] run(CsrGraph g, int[] sources, int threads, double scale) {
+        AtomicInteger nextSource = new AtomicInteger();
+        int numWorkers = Math.max(1, Math.min(threads, (sources.length + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        Worker[] workers = new Worker[numWorkers];
+        for (int i = 0; i < numWorkers; i++)
+            workers[i] = new Worker(g, sources, nextSource);
+
+        Workers.runAll("betweenness", workers);
+
+        double[] centrality = workers[0].centrality;
+        for (int i = 1; i < numWorkers; i++) {
+            double[] c = workers[i].centrality;
+            for (int v = centrality.length - 1; v >= 0; v--)
+                centrality[v] += c[v];
+        }
+        if (scale != 1.0) {
+            for (int v = centrality.length - 1; v >= 0; v--)
+                centrality[v] *= scale;
+        }
+        return centrality;
+    }
+
+    /**
+     * The per-thread state of Brandes' algorithm. All arrays are allocated
+     * once and reset only at the vertices reached by the previous search.
+     */
+    private static final class Worker implements Runnable {
+        private final CsrGraph g;
+        private final int[] sources;
+        private final AtomicInteger nextSource;
+
+        final double[] centrality;
+        private final double[] sigma;
+        private final double[] delta;
+        private final long[] dist;
+
+        /** Vertices in the order they were settled. */
+        private final int[] order;
+
+        /** Heap used by Dijkstra; BFS uses order[] as its queue. */
+        private final MinHeap heap;
+
+        Worker(CsrGraph g, int[] sources, AtomicInteger nextSource) {
+            this.g = g;
+            this.sources = sources;
+            this.nextSource = nextSource;
+            int n = g.numVertices();
+            centrality = new double[n];
+            sigma = new double[n];
+            delta = new double[n];
+            dist = new long[n];
+            Arrays.fill(dist, -1);
+            order = new int[n];
+            // A vertex may be pushed once per incoming edge.
+            heap = g.costs == null ? null : new MinHeap(g.numEdges() + 1);
+        }
+
+        @Override
+        public void run() {
+            int s;
+            while ((s = nextSource.getAndAdd(CHUNK_SIZE)) < sources.length) {
+                int end = Math.min(sources.length, s + CHUNK_SIZE);
+                for (int i = s; i < end; i++) {
+                    int reached = g.costs == null ? bfs(sources[i]) : dijkstra(sources[i]);
+                    accumulate(sources[i], reached);
+                }
+            }
+        }
+
+        /**
+         * Breadth first search from s. Returns the number of reached vertices;
+         * they are stored in settling order in order[].
+         */
+        private int bfs(int s) {
+            int[] off = g.offsets;
+            int[] adj = g.targets;
+            int head = 0;
+            int tail = 0;
+            dist[s] = 0;
+            sigma[s] = 1;
+            order[tail++] = s;
+            while (head < tail) {
+                int v = order[head++];
+                long dw = dist[v] + 1;
+                double sv = sigma[v];
+                for (int i = off[v], end = off[v + 1]; i < end; i++) {
+                    int w = adj[i];
+                    if (dist[w] < 0) {
+                        dist[w] = dw;
+                        order[tail++] = w;
+                    }
+                    if (dist[w] == dw)
+                        sigma[w] += sv;
+                }
+            }
+            return tail;
+        }
+
+        /**
+         * Dijkstra's algorithm from s with a lazy binary heap. Returns the
+         * number of reached vertices; they are stored in settling order in
+         * order[].
+         */
+        private int dijkstra(int s) {
+            int[] off = g.offsets;
+            int[] adj = g.targets;
+            int[] cost = g.costs;
+            int settled = 0;
+            dist[s] = 0;
+            sigma[s] = 1;
+            heap.push(0, s);
+            while (!heap.isEmpty()) {
+                int v = heap.minVertex();
+                long dv = heap.minKey();
+                heap.pop();
+                if (dv != dist[v] || delta[v] != 0)
+                    continue; // stale entry
+                delta[v] = -1; // mark as settled until accumulation
+                order[settled++] = v;
+                double sv = sigma[v];
+                for (int i = off[v], end = off[v + 1]; i < end; i++) {
+                    int w = adj[i];
+                    long dw = dv + edgeCost(cost[i]);
+                    if (dist[w] < 0 || dw < dist[w]) {
+                        dist[w] = dw;
+                        sigma[w] = sv;
+                        heap.push(dw, w);
+                    } else if (dw == dist[w]) {
+                        sigma[w] += sv;
+                    }
+                }
+            }
+            for (int i = 0; i < settled; i++)
+                delta[order[i]] = 0;
+            return settled;
+        }
+
+        /**
+         * Adds the dependencies of source s to the centrality array and resets
+         * the state of the reached vertices.
+         */
+        private void accumulate(int s, int reached) {
+            int[] off = g.offsets;
+            int[] adj = g.targets;
+            int[] cost = g.costs;
+            for (int j = reached - 1; j >= 0; j--) {
+                int v = order[j];
+                long dv = dist[v];
+                double sum = 0;
+                for (int i = off[v], end = off[v + 1]; i < end; i++) {
+                    int w = adj[i];
+                    long dw = dv + (cost == null ? 1 : edgeCost(cost[i]));
+                    if (dist[w] == dw && w != v)
+                        sum += (1 + delta[w]) / sigma[w];
+                }
+                delta[v] = sigma[v] * sum;
+                if (v != s)
+                    centrality[v] += delta[v];
+            }
+            for (int j = 0; j < reached; j++) {
+                int v = order[j];
+                dist[v] = -1;
+                sigma[v] = 0;
+                delta[v] = 0;
+            }
+        }
+
+        private static long edgeCost(int c) {
+            return c == Graph.NO_COST ? 1 : c;
+        }
+    }
+}
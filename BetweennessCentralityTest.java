@@ -0,0 +1,156 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares BetweennessCentrality with closed forms for paths, stars and
+ * cycles, and with a brute force count of all shortest paths on small random
+ * graphs.
+ */
+public class BetweennessCentralityTest {
+    private final static double EPSILON = 1e-9;
+
+    @Test
+    public void pathCountsBothDirections() {
+        int n = 7;
+        Graph g = new HashGraph(n);
+        for (int v = 0; v + 1 < n; v++)
+            g.addBi(v, v + 1);
+        double[] c = BetweennessCentrality.exact(g, 2);
+        for (int v = 0; v < n; v++)
+            assertEquals(2.0 * v * (n - 1 - v), c[v], EPSILON);
+    }
+
+    @Test
+    public void starCenterIsOnEveryPath() {
+        int n = 9;
+        Graph g = new HashGraph(n);
+        for (int v = 1; v < n; v++)
+            g.addBi(0, v);
+        double[] c = BetweennessCentrality.exact(g, 3);
+        assertEquals((n - 1) * (n - 2), c[0], EPSILON);
+        for (int v = 1; v < n; v++)
+            assertEquals(0.0, c[v], EPSILON);
+    }
+
+    @Test
+    public void evenCycleSplitsOppositePairs() {
+        int n = 8;
+        Graph g = new MatrixGraph(n);
+        for (int v = 0; v < n; v++)
+            g.addBi(v, (v + 1) % n);
+        double[] c = BetweennessCentrality.exact(g, 1);
+        assertArrayEquals(bruteForce(g), c, EPSILON);
+        for (int v = 1; v < n; v++)
+            assertEquals(c[0], c[v], EPSILON);
+    }
+
+    @Test
+    public void matchesBruteForceOnRandomGraphs() {
+        Random random = new Random(26);
+        for (int round = 0; round < 100; round++) {
+            int n = 1 + random.nextInt(8);
+            boolean weighted = round % 3 == 0;
+            Graph g = new HashGraph(n);
+            for (int i = 0; i < 2 * n; i++) {
+                int v = random.nextInt(n);
+                int w = random.nextInt(n);
+                if (weighted)
+                    g.add(v, w, 1 + random.nextInt(3));
+                else if (random.nextBoolean())
+                    g.addBi(v, w);
+                else
+                    g.add(v, w);
+            }
+            double[] expected = bruteForce(g);
+            assertArrayEquals(expected, BetweennessCentrality.exact(g, 1 + round % 4), EPSILON);
+            assertArrayEquals(expected, BetweennessCentrality.approximate(g, n, round, 2), EPSILON);
+        }
+    }
+
+    @Test
+    public void approximateIsReproducible() {
+        Graph g = RandomGraphs.gnm(200, 600, 5, 1).toCsrGraph(true);
+        assertArrayEquals(BetweennessCentrality.approximate(g, 20, 7, 1),
+                BetweennessCentrality.approximate(g, 20, 7, 3), EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void approximateRejectsEmptySample() {
+        BetweennessCentrality.approximate(new HashGraph(3), 0, 1, 1);
+    }
+
+    /**
+     * Enumerates every simple path from every s to every t, keeps the
+     * shortest ones, and credits each inner vertex with its share of them.
+     */
+    private static double[] bruteForce(Graph g) {
+        int n = g.numVertices();
+        double[] c = new double[n];
+        for (int s = 0; s < n; s++) {
+            for (int t = 0; t < n; t++) {
+                if (s == t)
+                    continue;
+                Paths paths = new Paths(g, t);
+                paths.search(s, 0);
+                if (paths.count == 0)
+                    continue;
+                for (int v = 0; v < n; v++)
+                    if (v != s && v != t)
+                        c[v] += paths.through[v] / paths.count;
+            }
+        }
+        return c;
+    }
+
+    /** All shortest simple paths to a target, found by depth first search. */
+    private static final class Paths {
+        final Graph g;
+        final int target;
+        final boolean[] onPath;
+        final int[] path;
+        int depth;
+        long best = Long.MAX_VALUE;
+        double count;
+        final double[] through;
+
+        Paths(Graph g, int target) {
+            this.g = g;
+            this.target = target;
+            this.onPath = new boolean[g.numVertices()];
+            this.path = new int[g.numVertices()];
+            this.through = new double[g.numVertices()];
+        }
+
+        void search(int v, long length) {
+            if (length > best)
+                return;
+            if (v == target) {
+                if (length < best) {
+                    best = length;
+                    count = 0;
+                    Arrays.fill(through, 0);
+                }
+                count++;
+                for (int i = 1; i < depth; i++)
+                    through[path[i]]++;
+                return;
+            }
+            onPath[v] = true;
+            path[depth++] = v;
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                if (!onPath[w]) {
+                    int cost = g.cost(v, w);
+                    search(w, length + (cost == Graph.NO_COST ? 1 : cost));
+                }
+            }
+            depth--;
+            onPath[v] = false;
+        }
+    }
+}
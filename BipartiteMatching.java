@@ -0,0 +1,275 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+
+/**
+ * Maximum cardinality matching in a bipartite graph with the Hopcroft-Karp
+ * algorithm. The left side is the vertices 0 ... k-1 and the right side the
+ * vertices k ... n-1. Only edges from a left vertex to a right vertex are
+ * used, so a graph built with addBi works as well as a directed one; edges
+ * within one side are ignored.
+ *
+ * Both the breadth first layering and the augmenting depth first search are
+ * iterative and work on int arrays only. A BipartiteMatching object keeps its
+ * buffers between calls and only grows them when a larger instance comes
+ * along, so solving many instances with the same object allocates little
+ * more than the result. A BipartiteMatching object is not thread safe.
+ */
+public final class BipartiteMatching {
+    /** The mate of an unmatched vertex. */
+    public final static int UNMATCHED = -1;
+
+    private final static int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * A maximum matching.
+     */
+    public static final class Result {
+        private final int size;
+        private final int[] mate;
+
+        Result(int size, int[] mate) {
+            this.size = size;
+            this.mate = mate;
+        }
+
+        /**
+         * Returns the number of edges in the matching.
+         *
+         * @return the number of edges in the matching
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the vertex matched to v, or UNMATCHED.
+         *
+         * @param v
+         *            vertex
+         * @return the mate of v, or UNMATCHED
+         * @throws IllegalArgumentException
+         *             if v is out of range
+         */
+        public int mate(int v) {
+            if (v < 0 || v >= mate.length)
+                throw new IllegalArgumentException("Out of range: v = " + v + ".");
+            return mate[v];
+        }
+
+        /**
+         * Returns a copy of the matching: element v is the vertex matched to v,
+         * or UNMATCHED.
+         *
+         * @return the mate of every vertex
+         */
+        public int[] mates() {
+            return mate.clone();
+        }
+    }
+
+    /* Left-to-right adjacency: the neighbors of u are adj[first[u]] ... */
+    private int[] first = new int[1];
+    private int[] adj = new int[0];
+
+    /* Per-vertex scratch space, indexed by left vertex. */
+    private int[] dist = new int[0];
+    private int[] current = new int[0];
+    private int[] queue = new int[0];
+    private int[] via = new int[0];
+
+    /** The layer of the left vertices adjacent to a free right vertex. */
+    private int limit;
+
+    /**
+     * Returns a maximum matching of g, starting from an empty matching.
+     * Time complexity: O(m &radic;n).
+     *
+     * @param g
+     *            a bipartite graph
+     * @param k
+     *            number of left vertices
+     * @return a maximum matching
+     * @throws IllegalArgumentException
+     *             if k < 0 or k > n
+     */
+    public Result maximumMatching(Graph g, int k) {
+        return maximumMatching(g, k, false);
+    }
+
+    /**
+     * Returns a maximum matching of g. If greedyStart is true, each left vertex
+     * is first matched to its first free neighbor, which usually leaves only a
+     * few phases for Hopcroft-Karp. Time complexity: O(m &radic;n).
+     *
+     * @param g
+     *            a bipartite graph
+     * @param k
+     *            number of left vertices
+     * @param greedyStart
+     *            start from a greedy matching instead of an empty one
+     * @return a maximum matching
+     * @throws IllegalArgumentException
+     *             if k < 0 or k > n
+     */
+    public Result maximumMatching(Graph g, int k, boolean greedyStart) {
+        int n = g.numVertices();
+        if (k < 0 || k > n)
+            throw new IllegalArgumentException("Illegal left side size: k = " + k + ".");
+
+        build(g, k);
+        int[] mate = new int[n];
+        Arrays.fill(mate, UNMATCHED);
+        int size = greedyStart ? greedy(k, mate) : 0;
+        while (layers(k, mate)) {
+            System.arraycopy(first, 0, current, 0, k);
+            for (int u = 0; u < k; u++) {
+                if (mate[u] == UNMATCHED && augment(u, mate))
+                    size++;
+            }
+        }
+        return new Result(size, mate);
+    }
+
+    /**
+     * Copies the left-to-right edges of g into first and adj.
+     */
+    private void build(Graph g, int k) {
+        if (first.length < k + 1) {
+            int size = Math.max(k, 2 * dist.length);
+            first = new int[size + 1];
+            dist = new int[size];
+            current = new int[size];
+            queue = new int[size];
+            via = new int[size];
+        }
+
+        if (g instanceof CsrGraph) {
+            CsrGraph c = (CsrGraph) g;
+            ensureAdjCapacity(c.offsets[k]);
+            int m = 0;
+            for (int u = 0; u < k; u++) {
+                first[u] = m;
+                for (int i = c.offsets[u]; i < c.offsets[u + 1]; i++) {
+                    if (c.targets[i] >= k)
+                        adj[m++] = c.targets[i];
+                }
+            }
+            first[k] = m;
+            return;
+        }
+
+        int m = 0;
+        for (int u = 0; u < k; u++) {
+            first[u] = m;
+            ensureAdjCapacity(m + g.degree(u));
+            for (VertexIterator it = g.neighbors(u); it.hasNext();) {
+                int v = it.next();
+                if (v >= k)
+                    adj[m++] = v;
+            }
+        }
+        first[k] = m;
+    }
+
+    private void ensureAdjCapacity(int m) {
+        if (adj.length < m)
+            adj = Arrays.copyOf(adj, Math.max(m, 2 * adj.length));
+    }
+
+    /**
+     * Matches every left vertex to its first free neighbor. Returns the size
+     * of the matching.
+     */
+    private int greedy(int k, int[] mate) {
+        int size = 0;
+        for (int u = 0; u < k; u++) {
+            for (int i = first[u], end = first[u + 1]; i < end; i++) {
+                int v = adj[i];
+                if (mate[v] == UNMATCHED) {
+                    mate[u] = v;
+                    mate[v] = u;
+                    size++;
+                    break;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Breadth first search from the free left vertices over alternating
+     * paths. Sets dist[u] to the layer of left vertex u, and stops at the
+     * first layer where a free right vertex is found. Returns true if an
+     * augmenting path exists.
+     */
+    private boolean layers(int k, int[] mate) {
+        int qHead = 0;
+        int qTail = 0;
+        for (int u = 0; u < k; u++) {
+            if (mate[u] == UNMATCHED) {
+                dist[u] = 0;
+                queue[qTail++] = u;
+            } else {
+                dist[u] = INFINITY;
+            }
+        }
+
+        int limit = INFINITY;
+        while (qHead < qTail) {
+            int u = queue[qHead++];
+            int du = dist[u];
+            if (du >= limit)
+                break;
+            for (int i = first[u], end = first[u + 1]; i < end; i++) {
+                int w = mate[adj[i]];
+                if (w == UNMATCHED) {
+                    limit = du;
+                } else if (dist[w] == INFINITY) {
+                    dist[w] = du + 1;
+                    queue[qTail++] = w;
+                }
+            }
+        }
+        this.limit = limit;
+        return limit != INFINITY;
+    }
+
+    /**
+     * Searches for an augmenting path from the free left vertex u along the
+     * layers, and flips it if one is found. The left vertices of the path are
+     * kept on a stack in queue[], and via[d] is the right vertex used to leave
+     * queue[d]. Vertices that lead nowhere get dist INFINITY so that they are
+     * not searched again in this phase.
+     */
+    private boolean augment(int u, int[] mate) {
+        int[] stack = queue;
+        int depth = 0;
+        stack[0] = u;
+        while (depth >= 0) {
+            int x = stack[depth];
+            if (current[x] == first[x + 1]) {
+                dist[x] = INFINITY;
+                depth--;
+                continue;
+            }
+            int v = adj[current[x]++];
+            int y = mate[v];
+            if (y == UNMATCHED) {
+                if (dist[x] != limit)
+                    continue;
+                via[depth] = v;
+                for (int d = 0; d <= depth; d++) {
+                    mate[stack[d]] = via[d];
+                    mate[via[d]] = stack[d];
+                }
+                return true;
+            }
+            if (dist[y] == dist[x] + 1) {
+                via[depth] = v;
+                stack[++depth] = y;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the size of the Hopcroft-Karp matching with a simple augmenting
+ * path reference on small random bipartite graphs, and checks that the
+ * matching only uses edges from the left to the right side.
+ */
+public class BipartiteMatchingTest {
+    @Test
+    public void matchesAugmentingPathReference() {
+        Random random = new Random(28);
+        BipartiteMatching matching = new BipartiteMatching();
+        for (int round = 0; round < 300; round++) {
+            int n = 1 + random.nextInt(14);
+            int k = random.nextInt(n + 1);
+            Graph g = new HashGraph(n);
+            int edges = random.nextInt(3 * n);
+            for (int i = 0; i < edges; i++) {
+                int v = random.nextInt(n);
+                int w = random.nextInt(n);
+                if (random.nextBoolean())
+                    g.addBi(v, w);
+                else
+                    g.add(v, w);
+            }
+            int expected = reference(g, k);
+            for (boolean greedy : new boolean[] { false, true }) {
+                BipartiteMatching.Result r = matching.maximumMatching(g, k, greedy);
+                assertEquals(expected, r.size());
+                assertValidMatching(g, k, r);
+            }
+        }
+    }
+
+    @Test
+    public void completeBipartiteGraphIsPerfect() {
+        int k = 5;
+        Graph g = new MatrixGraph(2 * k);
+        for (int u = 0; u < k; u++)
+            for (int v = k; v < 2 * k; v++)
+                g.addBi(u, v);
+        BipartiteMatching.Result r = new BipartiteMatching().maximumMatching(g, k);
+        assertEquals(k, r.size());
+        for (int v = 0; v < 2 * k; v++)
+            assertNotEquals(BipartiteMatching.UNMATCHED, r.mate(v));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void leftSideMustFit() {
+        new BipartiteMatching().maximumMatching(new HashGraph(3), 4);
+    }
+
+    private static void assertValidMatching(Graph g, int k, BipartiteMatching.Result r) {
+        int[] mate = r.mates();
+        int matched = 0;
+        for (int u = 0; u < k; u++) {
+            int v = mate[u];
+            if (v == BipartiteMatching.UNMATCHED)
+                continue;
+            matched++;
+            assertTrue(v >= k);
+            assertTrue(g.hasEdge(u, v));
+            assertEquals(u, mate[v]);
+        }
+        assertEquals(r.size(), matched);
+    }
+
+    /** Kuhn's algorithm: one augmenting path search per left vertex. */
+    private static int reference(Graph g, int k) {
+        int[] mate = new int[g.numVertices()];
+        Arrays.fill(mate, -1);
+        int size = 0;
+        for (int u = 0; u < k; u++)
+            if (augment(g, k, u, mate, new boolean[g.numVertices()]))
+                size++;
+        return size;
+    }
+
+    private static boolean augment(Graph g, int k, int u, int[] mate, boolean[] seen) {
+        for (VertexIterator it = g.neighbors(u); it.hasNext();) {
+            int v = it.next();
+            if (v < k || seen[v])
+                continue;
+            seen[v] = true;
+            if (mate[v] < 0 || augment(g, k, mate[v], mate, seen)) {
+                mate[v] = u;
+                return true;
+            }
+        }
+        return false;
+    }
+}
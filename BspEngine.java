@@ -0,0 +1,521 @@
+package se.kth.graph;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a VertexProgram in bulk-synchronous supersteps. The vertices are
+ * divided into parts, and every part is owned by a worker that computes its
+ * vertices and collects their outgoing messages in one batch per
+ * destination part. Between supersteps the batches are exchanged, and the
+ * aggregates of all workers are combined. A good partition, such as one
+ * from GraphPartition, keeps most messages within a part.
+ *
+ * The workers are either threads in this JVM or separate worker JVMs on
+ * this machine. A worker JVM gets the out-edges of its own part, either
+ * streamed from a Graph in this JVM or read from a graph file, which every
+ * worker filters while reading. The worker JVMs exchange their message
+ * batches directly with each other over loopback sockets, and only the
+ * counts and aggregates of every superstep pass through this JVM. Apart
+ * from the part array and the final values, this JVM thus holds O(k)
+ * state, and with a graph file it never holds the graph. A worker holds
+ * the values, messages and edges of its own part, plus the owner and local
+ * number of every vertex, and a message slot for every vertex if the
+ * program has a combiner: O(n) ints in addition to its part.
+ */
+public final class BspEngine {
+    /** Milliseconds to wait for the worker processes to connect. */
+    private final static int CONNECT_TIMEOUT = 60_000;
+
+    /** Seconds to wait for a worker process to exit after it finished. */
+    private final static int EXIT_TIMEOUT = 10;
+
+    private BspEngine() {
+    }
+
+    /**
+     * The values computed by a program.
+     */
+    public static final class Result {
+        private final long[] values;
+        private final int supersteps;
+        private final long messages;
+        private final long[] aggregated;
+
+        Result(long[] values, int supersteps, long messages, long[] aggregated) {
+            this.values = values;
+            this.supersteps = supersteps;
+            this.messages = messages;
+            this.aggregated = aggregated;
+        }
+
+        /**
+         * Returns the final value of vertex v.
+         *
+         * @param v
+         *            vertex
+         * @return the value of v
+         * @throws IllegalArgumentException
+         *             if v is out of range
+         */
+        public long value(int v) {
+            if (v < 0 || v >= values.length)
+                throw new IllegalArgumentException("Out of range: v = " + v + ".");
+            return values[v];
+        }
+
+        /**
+         * Returns a copy of the final values.
+         *
+         * @return the values, indexed by vertex
+         */
+        public long[] values() {
+            return values.clone();
+        }
+
+        /**
+         * Returns the number of supersteps that were run.
+         *
+         * @return the number of supersteps
+         */
+        public int supersteps() {
+            return supersteps;
+        }
+
+        /**
+         * Returns the total number of messages sent, after combining.
+         *
+         * @return the number of messages
+         */
+        public long messages() {
+            return messages;
+        }
+
+        /**
+         * Returns the value of aggregator a in the last superstep.
+         *
+         * @param a
+         *            aggregator index
+         * @return the aggregated value
+         * @throws IllegalArgumentException
+         *             if a is out of range
+         */
+        public long aggregated(int a) {
+            if (a < 0 || a >= aggregated.length)
+                throw new IllegalArgumentException("Out of range: a = " + a + ".");
+            return aggregated[a];
+        }
+    }
+
+    /**
+     * Runs program on g with one thread per part, until every vertex has
+     * halted and no messages are sent, or for at most maxSupersteps
+     * supersteps.
+     *
+     * @param g
+     *            a graph
+     * @param program
+     *            the vertex program
+     * @param part
+     *            part[v] is the part of v; the parts are 0 ... k-1
+     * @param maxSupersteps
+     *            maximum number of supersteps
+     * @return the final values
+     * @throws IllegalArgumentException
+     *             if part is not a partition of g or maxSupersteps < 0
+     */
+    public static Result runThreads(Graph g, VertexProgram program, int[] part, int maxSupersteps) {
+        final int k = checkParameters(g.numVertices(), part, maxSupersteps);
+        CsrGraph c = CsrGraph.of(g);
+        int n = c.numVertices();
+        int[] owner = part.clone();
+        int[] localId = BspWorker.localIds(owner, k);
+        int[][] members = members(owner, k);
+
+        final BspWorker[] workers = new BspWorker[k];
+        for (int p = 0; p < k; p++) {
+            Rows rows = new Rows(c, members[p]);
+            workers[p] = new BspWorker(program, k, p, owner, localId, members[p], rows.off, rows.targets, rows.costs);
+        }
+
+        VertexProgram.Aggregator[] aggregators = program.aggregators();
+        long[] aggregated = identities(aggregators);
+        long messages = 0;
+        int s = 0;
+        Runnable[] compute = new Runnable[k];
+        Runnable[] exchange = new Runnable[k];
+        final long[][] current = new long[1][];
+        final int[] step = new int[1];
+        for (int i = 0; i < k; i++) {
+            final int p = i;
+            compute[p] = new Runnable() {
+                @Override
+                public void run() {
+                    workers[p].superstep(step[0], current[0]);
+                }
+            };
+            exchange[p] = new Runnable() {
+                @Override
+                public void run() {
+                    BspWorker.MessageBuffer[] batches = new BspWorker.MessageBuffer[k];
+                    for (int j = 0; j < k; j++)
+                        batches[j] = workers[j].outbox(p);
+                    workers[p].receive(batches);
+                }
+            };
+        }
+        while (s < maxSupersteps) {
+            GraphEvents.AlgorithmPhase phase = new GraphEvents.AlgorithmPhase("bsp", "superstep", g);
+            phase.begin();
+            step[0] = s;
+            current[0] = aggregated;
+            Workers.runAll("bsp", compute);
+            long active = 0;
+            long sent = 0;
+            long[] next = identities(aggregators);
+            for (BspWorker w : workers) {
+                active += w.active();
+                sent += w.sent();
+                combine(aggregators, next, w.aggregates());
+            }
+            Workers.runAll("bsp", exchange);
+            aggregated = next;
+            messages += sent;
+            s++;
+            phase.commit();
+            if (active == 0 && sent == 0)
+                break;
+        }
+
+        long[] values = new long[n];
+        for (BspWorker w : workers) {
+            long[] local = w.values();
+            int[] vertices = w.vertices();
+            for (int i = 0; i < vertices.length; i++)
+                values[vertices[i]] = local[i];
+        }
+        return new Result(values, s, messages, aggregated);
+    }
+
+    /**
+     * Runs program on g with one worker process per part. The workers are
+     * started with the java command and class path of this JVM, followed
+     * by the given JVM options, for example a maximum heap size. The
+     * program is sent to the workers with Java serialization, so its class
+     * must be on that class path. The out-edges of every part are streamed
+     * from g to its worker, without a copy of the graph in this JVM.
+     *
+     * @param g
+     *            a graph
+     * @param program
+     *            the vertex program
+     * @param part
+     *            part[v] is the part of v; the parts are 0 ... k-1
+     * @param maxSupersteps
+     *            maximum number of supersteps
+     * @param jvmOptions
+     *            options for the worker JVMs
+     * @return the final values
+     * @throws IllegalArgumentException
+     *             if part is not a partition of g or maxSupersteps < 0
+     * @throws IOException
+     *             if a worker cannot be started or fails
+     */
+    public static Result runProcesses(final Graph g, VertexProgram program, final int[] part, int maxSupersteps,
+            String... jvmOptions) throws IOException {
+        int k = checkParameters(g.numVertices(), part, maxSupersteps);
+        PartSource rows = new PartSource() {
+            @Override
+            public void send(BspWorker.Connection conn, int p) throws IOException {
+                long edges = 0;
+                for (int v = 0; v < part.length; v++) {
+                    if (part[v] == p)
+                        edges += g.degree(v);
+                }
+                if (edges > Integer.MAX_VALUE - 8)
+                    throw new IllegalArgumentException("Too many edges in part " + p + ": " + edges + ".");
+                conn.out.writeByte(BspWorker.ROWS);
+                conn.out.writeInt((int) edges);
+                for (int v = 0; v < part.length; v++) {
+                    if (part[v] != p)
+                        continue;
+                    conn.out.writeInt(g.degree(v));
+                    for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                        int w = it.next();
+                        conn.out.writeInt(w);
+                        conn.out.writeInt(g.cost(v, w));
+                    }
+                }
+            }
+        };
+        return runProcesses(rows, g.numEdges(), program, part, k, maxSupersteps, jvmOptions);
+    }
+
+    /**
+     * Runs program on a graph in the BINARY format of GraphWriter with one
+     * worker process per part, as runProcesses above. Every worker reads
+     * the file and keeps only the out-edges of its own part, so the graph
+     * is never held by a single JVM.
+     *
+     * @param graph
+     *            a graph file written by GraphWriter in the BINARY format
+     * @param program
+     *            the vertex program
+     * @param part
+     *            part[v] is the part of v; the parts are 0 ... k-1
+     * @param maxSupersteps
+     *            maximum number of supersteps
+     * @param jvmOptions
+     *            options for the worker JVMs
+     * @return the final values
+     * @throws IllegalArgumentException
+     *             if part is not a partition of the graph or
+     *             maxSupersteps < 0
+     * @throws IOException
+     *             if the file cannot be read, or a worker cannot be started
+     *             or fails
+     */
+    public static Result runProcesses(Path graph, VertexProgram program, int[] part, int maxSupersteps,
+            String... jvmOptions) throws IOException {
+        int n;
+        int m;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graph)))) {
+            if (in.readInt() != GraphWriter.MAGIC)
+                throw new IOException("Not a binary graph.");
+            n = in.readInt();
+            m = in.readInt();
+        }
+        int k = checkParameters(n, part, maxSupersteps);
+        final String path = graph.toAbsolutePath().toString();
+        PartSource file = new PartSource() {
+            @Override
+            public void send(BspWorker.Connection conn, int p) throws IOException {
+                conn.out.writeByte(BspWorker.FILE);
+                conn.out.writeUTF(path);
+            }
+        };
+        return runProcesses(file, m, program, part, k, maxSupersteps, jvmOptions);
+    }
+
+    /**
+     * Sends the out-edges of part p to its worker.
+     */
+    private interface PartSource {
+        void send(BspWorker.Connection conn, int p) throws IOException;
+    }
+
+    /**
+     * Starts the workers, sends them their parts and the addresses of each
+     * other, and drives the supersteps. Apart from part, this JVM only
+     * holds O(k) state while the workers run: the workers exchange their
+     * message batches directly with each other, and only their counts and
+     * aggregates pass through here.
+     */
+    private static Result runProcesses(PartSource source, int m, VertexProgram program, int[] part, int k,
+            int maxSupersteps, String... jvmOptions) throws IOException {
+        int n = part.length;
+        byte[] serialized = serialize(program);
+
+        List<Process> processes = new ArrayList<>();
+        BspWorker.Connection[] connections = new BspWorker.Connection[k];
+        try (ServerSocket server = new ServerSocket(0, k, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT);
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(Arrays.asList(jvmOptions));
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(BspWorker.class.getName());
+            command.add(server.getInetAddress().getHostAddress());
+            command.add(Integer.toString(server.getLocalPort()));
+            for (int p = 0; p < k; p++)
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+
+            // The workers get their parts in the order they connect.
+            for (int p = 0; p < k; p++) {
+                connections[p] = new BspWorker.Connection(server.accept());
+                BspWorker.Connection conn = connections[p];
+                conn.out.writeInt(k);
+                conn.out.writeInt(p);
+                conn.out.writeInt(n);
+                conn.out.writeInt(serialized.length);
+                conn.out.write(serialized);
+                conn.writeInts(part, n);
+                source.send(conn, p);
+                conn.out.flush();
+            }
+
+            // Every worker answers with the port it accepts its peers on.
+            int[] ports = new int[k];
+            for (int p = 0; p < k; p++)
+                ports[p] = connections[p].in.readInt();
+            for (BspWorker.Connection conn : connections) {
+                conn.writeInts(ports, k);
+                conn.out.flush();
+            }
+            return supersteps(connections, program, part, m, maxSupersteps);
+        } finally {
+            for (BspWorker.Connection conn : connections) {
+                if (conn != null)
+                    conn.close();
+            }
+            for (Process process : processes)
+                stop(process);
+        }
+    }
+
+    /**
+     * Drives the connected workers. Every superstep sends each worker the
+     * superstep and the aggregated values, and then reads the replies in
+     * order. A worker replies after it has computed its vertices and
+     * exchanged its batches with the other workers.
+     */
+    private static Result supersteps(BspWorker.Connection[] connections, VertexProgram program, int[] part, int m,
+            int maxSupersteps) throws IOException {
+        int k = connections.length;
+        VertexProgram.Aggregator[] aggregators = program.aggregators();
+        long[] aggregated = identities(aggregators);
+        long messages = 0;
+        int s = 0;
+        while (s < maxSupersteps) {
+            GraphEvents.AlgorithmPhase phase = new GraphEvents.AlgorithmPhase("bsp", "superstep", part.length, m);
+            phase.begin();
+            for (BspWorker.Connection conn : connections) {
+                conn.out.writeByte(BspWorker.SUPERSTEP);
+                conn.out.writeInt(s);
+                conn.writeLongs(aggregated, aggregated.length);
+                conn.out.flush();
+            }
+
+            long active = 0;
+            long sent = 0;
+            long[] next = identities(aggregators);
+            for (BspWorker.Connection conn : connections) {
+                active += conn.in.readLong();
+                sent += conn.in.readLong();
+                combine(aggregators, next, conn.readLongs(aggregators.length));
+            }
+            aggregated = next;
+            messages += sent;
+            s++;
+            phase.commit();
+            if (active == 0 && sent == 0)
+                break;
+        }
+
+        for (BspWorker.Connection conn : connections) {
+            conn.out.writeByte(BspWorker.FINISH);
+            conn.out.flush();
+        }
+        // Every worker sends the values of its vertices in increasing order.
+        long[] values = new long[part.length];
+        for (int p = 0; p < k; p++) {
+            DataInputStream in = connections[p].in;
+            for (int v = 0; v < part.length; v++) {
+                if (part[v] == p)
+                    values[v] = in.readLong();
+            }
+        }
+        return new Result(values, s, messages, aggregated);
+    }
+
+    private static void stop(Process process) {
+        try {
+            if (!process.waitFor(EXIT_TIMEOUT, TimeUnit.SECONDS))
+                process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] serialize(VertexProgram program) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(program);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The out-edges of some vertices of a CsrGraph, with the original end
+     * vertices.
+     */
+    private static final class Rows {
+        final int[] off;
+        final int[] targets;
+        final int[] costs;
+
+        Rows(CsrGraph c, int[] vertices) {
+            off = new int[vertices.length + 1];
+            for (int i = 0; i < vertices.length; i++)
+                off[i + 1] = off[i] + c.offsets[vertices[i] + 1] - c.offsets[vertices[i]];
+            targets = new int[off[vertices.length]];
+            costs = c.costs == null ? null : new int[off[vertices.length]];
+            for (int i = 0; i < vertices.length; i++) {
+                int start = c.offsets[vertices[i]];
+                int length = off[i + 1] - off[i];
+                System.arraycopy(c.targets, start, targets, off[i], length);
+                if (costs != null)
+                    System.arraycopy(c.costs, start, costs, off[i], length);
+            }
+        }
+    }
+
+    private static int[][] members(int[] part, int k) {
+        int[] size = new int[k];
+        for (int q : part)
+            size[q]++;
+        int[][] members = new int[k][];
+        for (int q = 0; q < k; q++)
+            members[q] = new int[size[q]];
+        Arrays.fill(size, 0);
+        for (int v = 0; v < part.length; v++)
+            members[part[v]][size[part[v]]++] = v;
+        return members;
+    }
+
+    private static long[] identities(VertexProgram.Aggregator[] aggregators) {
+        long[] values = new long[aggregators.length];
+        for (int a = 0; a < values.length; a++)
+            values[a] = aggregators[a].identity();
+        return values;
+    }
+
+    private static void combine(VertexProgram.Aggregator[] aggregators, long[] target, long[] source) {
+        for (int a = 0; a < target.length; a++)
+            target[a] = aggregators[a].combine(target[a], source[a]);
+    }
+
+    /**
+     * Checks the parameters of a run and returns the number of parts.
+     *
+     * @throws IllegalArgumentException
+     *             if part does not have n entries or maxSupersteps < 0
+     */
+    private static int checkParameters(int n, int[] part, int maxSupersteps) {
+        if (part.length != n)
+            throw new IllegalArgumentException("Wrong number of vertices: " + part.length + ".");
+        if (maxSupersteps < 0)
+            throw new IllegalArgumentException("Illegal superstep count: " + maxSupersteps + ".");
+        int k = 1;
+        for (int v = 0; v < part.length; v++) {
+            if (part[v] < 0)
+                throw new IllegalArgumentException("Illegal part: part[" + v + "] = " + part[v] + ".");
+            k = Math.max(k, part[v] + 1);
+        }
+        return k;
+    }
+}
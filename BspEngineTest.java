@@ -0,0 +1,237 @@
+package se.kth.graph;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs vertex programs with threads and with worker processes on this
+ * machine, and compares the values with sequential algorithms.
+ */
+public class BspEngineTest {
+    @Test
+    public void threadsComputeShortestPaths() {
+        Random random = new Random(41);
+        for (int round = 0; round < 30; round++) {
+            Graph g = ImmutableGraphTest.randomGraph(random, 1 + random.nextInt(200));
+            int s = random.nextInt(g.numVertices());
+            for (int k : new int[] { 1, 3 }) {
+                int[] part = GraphPartition.compute(g, k).parts();
+                for (boolean combine : new boolean[] { false, true }) {
+                    BspEngine.Result result = BspEngine.runThreads(g, new ShortestPaths(s, combine), part, 1000);
+                    assertArrayEquals(ShortestPathTreeTest.bellmanFord(g, s), distances(result));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void combinerSendsFewerMessages() {
+        Graph g = new HashGraph(300);
+        RandomGraphs.gnm(300, 3000, 2, 1).addBiTo(g);
+        int[] part = GraphPartition.compute(g, 4).parts();
+        BspEngine.Result plain = BspEngine.runThreads(g, new Components(false), part, 1000);
+        BspEngine.Result combined = BspEngine.runThreads(g, new Components(true), part, 1000);
+        assertArrayEquals(plain.values(), combined.values());
+        assertArrayEquals(componentMinima(g), plain.values());
+        assertTrue(combined.messages() < plain.messages());
+        // Nothing changes in the last superstep, and every vertex is
+        // computed in the first.
+        assertEquals(0, plain.aggregated(0));
+        assertEquals(g.numVertices(), BspEngine.runThreads(g, new Components(false), part, 1).aggregated(1));
+    }
+
+    @Test
+    public void processesMatchThreads() throws IOException {
+        Random random = new Random(41);
+        Graph g = ImmutableGraphTest.randomGraph(random, 500);
+        int[] part = GraphPartition.compute(g, 3).parts();
+        for (boolean combine : new boolean[] { false, true }) {
+            VertexProgram program = new ShortestPaths(7, combine);
+            BspEngine.Result threads = BspEngine.runThreads(g, program, part, 1000);
+            BspEngine.Result processes = BspEngine.runProcesses(g, program, part, 1000, "-Xmx64m");
+            assertArrayEquals(ShortestPathTreeTest.bellmanFord(g, 7), distances(processes));
+            assertEquals(threads.supersteps(), processes.supersteps());
+            assertEquals(threads.messages(), processes.messages());
+        }
+        BspEngine.Result components = BspEngine.runProcesses(g, new Components(true), part, 1000);
+        assertArrayEquals(BspEngine.runThreads(g, new Components(true), part, 1000).values(), components.values());
+    }
+
+    @Test
+    public void processesReadTheirPartsFromAFile() throws IOException {
+        Random random = new Random(41);
+        Graph g = ImmutableGraphTest.randomGraph(random, 800);
+        int[] part = GraphPartition.compute(g, 4).parts();
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                GraphWriter.write(g, GraphWriter.Format.BINARY, out);
+            }
+            VertexProgram program = new ShortestPaths(3, true);
+            BspEngine.Result threads = BspEngine.runThreads(g, program, part, 1000);
+            BspEngine.Result processes = BspEngine.runProcesses(file, program, part, 1000, "-Xmx64m");
+            assertArrayEquals(ShortestPathTreeTest.bellmanFord(g, 3), distances(processes));
+            assertEquals(threads.supersteps(), processes.supersteps());
+            assertEquals(threads.messages(), processes.messages());
+            try {
+                BspEngine.runProcesses(file, program, new int[799], 1000);
+                fail("Expected IllegalArgumentException on a part array of the wrong length");
+            } catch (IllegalArgumentException e) {
+                // pass
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void processesRejectAFileThatIsNotAGraph() throws IOException {
+        Path file = Files.createTempFile("graph", ".txt");
+        try {
+            Files.write(file, "0 1\n".getBytes("US-ASCII"));
+            BspEngine.runProcesses(file, new ShortestPaths(0, false), new int[2], 10);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void stopsAfterMaxSupersteps() {
+        Graph g = new HashGraph(10);
+        for (int v = 0; v + 1 < 10; v++)
+            g.add(v, v + 1);
+        BspEngine.Result result = BspEngine.runThreads(g, new ShortestPaths(0, true), new int[10], 3);
+        assertEquals(3, result.supersteps());
+        assertEquals(2, result.value(2));
+        assertEquals(Long.MAX_VALUE, result.value(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void runRejectsPartOfWrongLength() {
+        BspEngine.runThreads(new HashGraph(3), new ShortestPaths(0, false), new int[2], 10);
+    }
+
+    /** Returns the values of ShortestPaths, with UNREACHABLE for unreached vertices. */
+    private static long[] distances(BspEngine.Result result) {
+        long[] dist = result.values();
+        for (int v = 0; v < dist.length; v++)
+            if (dist[v] == Long.MAX_VALUE)
+                dist[v] = ShortestPathTree.UNREACHABLE;
+        return dist;
+    }
+
+    /** Returns the smallest vertex in the component of every vertex. */
+    private static long[] componentMinima(Graph g) {
+        int[] ids = GraphAlgorithms.componentIds(g);
+        long[] min = new long[g.numVertices()];
+        Arrays.fill(min, Long.MAX_VALUE);
+        for (int v = 0; v < ids.length; v++)
+            min[ids[v]] = Math.min(min[ids[v]], v);
+        long[] result = new long[ids.length];
+        for (int v = 0; v < ids.length; v++)
+            result[v] = min[ids[v]];
+        return result;
+    }
+
+    private final static VertexProgram.Combiner MIN = new VertexProgram.Combiner() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public long combine(long a, long b) {
+            return Math.min(a, b);
+        }
+    };
+
+    /**
+     * Distances from s, where an edge with NO_COST has length 1.
+     */
+    private static final class ShortestPaths implements VertexProgram {
+        private static final long serialVersionUID = 1L;
+
+        private final int s;
+        private final boolean combine;
+
+        ShortestPaths(int s, boolean combine) {
+            this.s = s;
+            this.combine = combine;
+        }
+
+        @Override
+        public long initialValue(int v, int numVertices) {
+            return v == s ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public void compute(Context ctx) {
+            long min = ctx.value();
+            for (int i = 0; i < ctx.numMessages(); i++)
+                min = Math.min(min, ctx.message(i));
+            if (min < ctx.value() || (ctx.superstep() == 0 && ctx.vertex() == s)) {
+                ctx.setValue(min);
+                for (int e = 0; e < ctx.degree(); e++) {
+                    int c = ctx.cost(e);
+                    ctx.send(ctx.target(e), min + (c == Graph.NO_COST ? 1 : c));
+                }
+            }
+            ctx.voteToHalt();
+        }
+
+        @Override
+        public Combiner combiner() {
+            return combine ? MIN : null;
+        }
+    }
+
+    /**
+     * The smallest vertex reachable along edges in both directions, on a
+     * graph whose edges are all added with addBi. Aggregator 0 counts the
+     * vertices that changed, and aggregator 1 the computed vertices.
+     */
+    private static final class Components implements VertexProgram {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean combine;
+
+        Components(boolean combine) {
+            this.combine = combine;
+        }
+
+        @Override
+        public long initialValue(int v, int numVertices) {
+            return v;
+        }
+
+        @Override
+        public void compute(Context ctx) {
+            long min = ctx.value();
+            for (int i = 0; i < ctx.numMessages(); i++)
+                min = Math.min(min, ctx.message(i));
+            ctx.aggregate(1, 1);
+            if (min < ctx.value() || ctx.superstep() == 0) {
+                if (min < ctx.value())
+                    ctx.aggregate(0, 1);
+                ctx.setValue(min);
+                ctx.sendToNeighbors(min);
+            }
+            ctx.voteToHalt();
+        }
+
+        @Override
+        public Combiner combiner() {
+            return combine ? MIN : null;
+        }
+
+        @Override
+        public Aggregator[] aggregators() {
+            return new Aggregator[] { Aggregator.SUM, Aggregator.SUM };
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package se.kth.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * One part of a BspEngine computation: the vertices of one part, their
+ * out-edges, values and messages. In a threaded run every worker is an
+ * object driven by the engine, and in a multi-process run every worker is
+ * a JVM started with main, which connects to the engine and is driven over
+ * a socket, and exchanges its message batches with the other workers over
+ * sockets of their own.
+ */
+final class BspWorker {
+    /** Commands sent by the engine to a worker process. */
+    final static byte SUPERSTEP = 1;
+    final static byte FINISH = 2;
+
+    /** How a worker process gets its out-edges. */
+    final static byte ROWS = 3;
+    final static byte FILE = 4;
+
+    /** Milliseconds to wait for the other workers to connect. */
+    private final static int PEER_TIMEOUT = 60_000;
+
+    private final VertexProgram program;
+    private final VertexProgram.Combiner combiner;
+    private final VertexProgram.Aggregator[] aggregators;
+    private final int p;
+    private final int[] owner;
+    private final int[] localId;
+    private final int[] vertices;
+    private final int[] off;
+    private final int[] targets;
+    private final int[] costs;
+
+    private final long[] values;
+    private final boolean[] halted;
+    private int[] msgOff;
+    private long[] msgs = new long[0];
+
+    private final MessageBuffer[] outbox;
+
+    /**
+     * With a combiner, slot[w] - 1 is the index of the message to w in its
+     * outbox, or -1 if there is none yet in this superstep.
+     */
+    private final int[] slot;
+
+    private int superstep;
+    private long[] aggregated;
+    private final long[] aggregates;
+    private long active;
+    private long sent;
+
+    /**
+     * Constructs worker p of k for the vertices v with owner[v] == p, whose
+     * out-edges are given in rows off, targets and costs (null if
+     * unweighted). localId[v] is the index of v within its part.
+     */
+    BspWorker(VertexProgram program, int k, int p, int[] owner, int[] localId, int[] vertices, int[] off,
+            int[] targets, int[] costs) {
+        this.program = program;
+        this.combiner = program.combiner();
+        this.aggregators = program.aggregators();
+        this.p = p;
+        this.owner = owner;
+        this.localId = localId;
+        this.vertices = vertices;
+        this.off = off;
+        this.targets = targets;
+        this.costs = costs;
+
+        int size = vertices.length;
+        values = new long[size];
+        for (int i = 0; i < size; i++)
+            values[i] = program.initialValue(vertices[i], owner.length);
+        halted = new boolean[size];
+        msgOff = new int[size + 1];
+        outbox = new MessageBuffer[k];
+        for (int j = 0; j < k; j++)
+            outbox[j] = new MessageBuffer();
+        slot = combiner != null ? new int[owner.length] : null;
+        aggregates = new long[aggregators.length];
+    }
+
+    /**
+     * Returns localId for the given owners: the vertices of each part are
+     * numbered 0, 1, 2, ... in increasing order.
+     */
+    static int[] localIds(int[] owner, int k) {
+        int[] next = new int[k];
+        int[] localId = new int[owner.length];
+        for (int v = 0; v < owner.length; v++)
+            localId[v] = next[owner[v]]++;
+        return localId;
+    }
+
+    /**
+     * Computes superstep s for every vertex that is active or has messages.
+     * The outgoing messages are left in the outboxes.
+     */
+    void superstep(int s, long[] aggregated) {
+        superstep = s;
+        this.aggregated = aggregated;
+        for (int a = 0; a < aggregates.length; a++)
+            aggregates[a] = aggregators[a].identity();
+        sent = 0;
+        active = 0;
+
+        Context ctx = new Context();
+        for (int i = 0; i < vertices.length; i++) {
+            if (halted[i] && msgOff[i + 1] == msgOff[i])
+                continue;
+            halted[i] = false;
+            ctx.i = i;
+            program.compute(ctx);
+            if (!halted[i])
+                active++;
+        }
+        for (MessageBuffer b : outbox) {
+            sent += b.size;
+            if (slot != null) {
+                for (int j = 0; j < b.size; j++)
+                    slot[b.targets[j]] = 0;
+            }
+        }
+    }
+
+    /**
+     * Makes the messages in batches the input of the next superstep, and
+     * clears the batches.
+     */
+    void receive(MessageBuffer[] batches) {
+        int size = vertices.length;
+        Arrays.fill(msgOff, 0);
+        long total = 0;
+        for (MessageBuffer b : batches) {
+            for (int i = 0; i < b.size; i++)
+                msgOff[localId[b.targets[i]] + 1]++;
+            total += b.size;
+        }
+        if (total > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Too many messages: " + total + ".");
+        for (int i = 0; i < size; i++)
+            msgOff[i + 1] += msgOff[i];
+        if (msgs.length < total || msgs.length > 4 * total + 1024)
+            msgs = new long[(int) total];
+        int[] pos = Arrays.copyOf(msgOff, size);
+        for (MessageBuffer b : batches) {
+            for (int i = 0; i < b.size; i++)
+                msgs[pos[localId[b.targets[i]]]++] = b.values[i];
+            b.size = 0;
+        }
+    }
+
+    /** Returns the outbox for the vertices of part j. */
+    MessageBuffer outbox(int j) {
+        return outbox[j];
+    }
+
+    /** Returns the vertices that did not halt in the last superstep. */
+    long active() {
+        return active;
+    }
+
+    /** Returns the number of messages sent in the last superstep. */
+    long sent() {
+        return sent;
+    }
+
+    /** Returns the values given to the aggregators in the last superstep. */
+    long[] aggregates() {
+        return aggregates;
+    }
+
+    /** Returns the values of the vertices, in local order. */
+    long[] values() {
+        return values;
+    }
+
+    /** Returns the vertices, in local order. */
+    int[] vertices() {
+        return vertices;
+    }
+
+    private final class Context implements VertexProgram.Context {
+        int i;
+
+        @Override
+        public int superstep() {
+            return superstep;
+        }
+
+        @Override
+        public int numVertices() {
+            return owner.length;
+        }
+
+        @Override
+        public int vertex() {
+            return vertices[i];
+        }
+
+        @Override
+        public long value() {
+            return values[i];
+        }
+
+        @Override
+        public void setValue(long value) {
+            values[i] = value;
+        }
+
+        @Override
+        public int degree() {
+            return off[i + 1] - off[i];
+        }
+
+        @Override
+        public int target(int e) {
+            return targets[off[i] + e];
+        }
+
+        @Override
+        public int cost(int e) {
+            return costs == null ? Graph.NO_COST : costs[off[i] + e];
+        }
+
+        @Override
+        public int numMessages() {
+            return msgOff[i + 1] - msgOff[i];
+        }
+
+        @Override
+        public long message(int e) {
+            return msgs[msgOff[i] + e];
+        }
+
+        @Override
+        public void send(int w, long message) {
+            if (w < 0 || w >= owner.length)
+                throw new IllegalArgumentException("Out of range: v = " + vertices[i] + ", w = " + w + ".");
+            post(w, message);
+        }
+
+        @Override
+        public void sendToNeighbors(long message) {
+            for (int e = off[i]; e < off[i + 1]; e++)
+                post(targets[e], message);
+        }
+
+        private void post(int w, long message) {
+            int j = owner[w];
+            MessageBuffer b = outbox[j];
+            if (slot == null) {
+                b.add(w, message);
+                return;
+            }
+            int s = slot[w] - 1;
+            if (s < 0) {
+                slot[w] = b.size + 1;
+                b.add(w, message);
+            } else {
+                b.values[s] = combiner.combine(b.values[s], message);
+            }
+        }
+
+        @Override
+        public void voteToHalt() {
+            halted[i] = true;
+        }
+
+        @Override
+        public void aggregate(int a, long value) {
+            aggregates[a] = aggregators[a].combine(aggregates[a], value);
+        }
+
+        @Override
+        public long aggregated(int a) {
+            return aggregated[a];
+        }
+    }
+
+    /**
+     * A growing list of messages, message i is values[i] to vertex
+     * targets[i].
+     */
+    static final class MessageBuffer {
+        int[] targets = new int[16];
+        long[] values = new long[16];
+        int size;
+
+        void add(int w, long value) {
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            targets[size] = w;
+            values[size++] = value;
+        }
+
+        void writeTo(Connection c) throws IOException {
+            c.out.writeInt(size);
+            c.writeInts(targets, size);
+            c.writeLongs(values, size);
+        }
+
+        static MessageBuffer readFrom(Connection c) throws IOException {
+            MessageBuffer b = new MessageBuffer();
+            b.size = c.in.readInt();
+            b.targets = c.readInts(b.size);
+            b.values = c.readLongs(b.size);
+            return b;
+        }
+    }
+
+    /**
+     * The two streams of a socket, with bulk transfer of int and long
+     * arrays through a reused buffer per direction, so that one thread can
+     * read while another writes.
+     */
+    static final class Connection implements AutoCloseable {
+        private final static int BUFFER_SIZE = 1 << 16;
+
+        private final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        private final byte[] readScratch = new byte[BUFFER_SIZE];
+        private final ByteBuffer readBuffer = ByteBuffer.wrap(readScratch);
+        private final byte[] writeScratch = new byte[BUFFER_SIZE];
+        private final ByteBuffer writeBuffer = ByteBuffer.wrap(writeScratch);
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+        }
+
+        void writeInts(int[] a, int length) throws IOException {
+            for (int i = 0; i < length;) {
+                int count = Math.min(length - i, BUFFER_SIZE / 4);
+                writeBuffer.clear();
+                writeBuffer.asIntBuffer().put(a, i, count);
+                out.write(writeScratch, 0, 4 * count);
+                i += count;
+            }
+        }
+
+        int[] readInts(int length) throws IOException {
+            int[] a = new int[length];
+            for (int i = 0; i < length;) {
+                int count = Math.min(length - i, BUFFER_SIZE / 4);
+                in.readFully(readScratch, 0, 4 * count);
+                readBuffer.clear();
+                readBuffer.asIntBuffer().get(a, i, count);
+                i += count;
+            }
+            return a;
+        }
+
+        void writeLongs(long[] a, int length) throws IOException {
+            for (int i = 0; i < length;) {
+                int count = Math.min(length - i, BUFFER_SIZE / 8);
+                writeBuffer.clear();
+                writeBuffer.asLongBuffer().put(a, i, count);
+                out.write(writeScratch, 0, 8 * count);
+                i += count;
+            }
+        }
+
+        long[] readLongs(int length) throws IOException {
+            long[] a = new long[length];
+            for (int i = 0; i < length;) {
+                int count = Math.min(length - i, BUFFER_SIZE / 8);
+                in.readFully(readScratch, 0, 8 * count);
+                readBuffer.clear();
+                readBuffer.asLongBuffer().get(a, i, count);
+                i += count;
+            }
+            return a;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Runs a worker process: connects to the engine at host:port, receives
+     * its part of the graph, connects to the other workers and then runs
+     * supersteps until told to finish.
+     *
+     * @param args
+     *            host and port of the engine
+     * @throws Exception
+     *             if the connection fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: java se.kth.graph.BspWorker host port");
+            System.exit(2);
+        }
+        try (Connection c = new Connection(new Socket(args[0], Integer.parseInt(args[1])))) {
+            serve(c);
+        } catch (EOFException e) {
+            // The engine or another worker has gone away; nothing left to do.
+        }
+    }
+
+    /**
+     * Reads the setup message and then serves commands. The setup is the
+     * number of parts k, this part p, the number of vertices n, the
+     * serialized program, the owner of every vertex and the out-edges of
+     * the vertices of p: ROWS followed by the number of edges and, for
+     * every vertex of p in increasing order, its degree and its targets
+     * with their costs, or FILE followed by the path of a binary graph.
+     * The worker then sends the port it accepts the other workers on and
+     * reads the ports of all workers.
+     *
+     * A SUPERSTEP command carries the superstep and the aggregated values.
+     * The worker computes its vertices, exchanges message batches with the
+     * other workers, and replies with the number of active vertices, the
+     * number of sent messages and the aggregates. FINISH is answered with
+     * the values.
+     */
+    private static void serve(Connection c) throws IOException, ClassNotFoundException {
+        int k = c.in.readInt();
+        int p = c.in.readInt();
+        int n = c.in.readInt();
+        byte[] bytes = new byte[c.in.readInt()];
+        c.in.readFully(bytes);
+        VertexProgram program;
+        try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            program = (VertexProgram) objects.readObject();
+        }
+        int[] owner = c.readInts(n);
+        int[] localId = localIds(owner, k);
+        int size = 0;
+        for (int q : owner) {
+            if (q == p)
+                size++;
+        }
+        int[] vertices = new int[size];
+        for (int v = 0; v < n; v++) {
+            if (owner[v] == p)
+                vertices[localId[v]] = v;
+        }
+        int[] off = new int[size + 1];
+        int[] targets;
+        int[] costs;
+        byte source = c.in.readByte();
+        if (source == ROWS) {
+            int m = c.in.readInt();
+            targets = new int[m];
+            costs = new int[m];
+            boolean weighted = false;
+            for (int i = 0; i < size; i++) {
+                off[i + 1] = off[i] + c.in.readInt();
+                for (int e = off[i]; e < off[i + 1]; e++) {
+                    targets[e] = c.in.readInt();
+                    costs[e] = c.in.readInt();
+                    weighted |= costs[e] != Graph.NO_COST;
+                }
+            }
+            if (!weighted)
+                costs = null;
+        } else if (source == FILE) {
+            EdgeList edges;
+            try (FileChannel in = FileChannel.open(Paths.get(c.in.readUTF()))) {
+                edges = GraphWriter.readBinary(in, owner, p);
+            }
+            for (int e = 0; e < edges.size; e++)
+                off[localId[edges.from[e]] + 1]++;
+            for (int i = 0; i < size; i++)
+                off[i + 1] += off[i];
+            targets = new int[edges.size];
+            costs = edges.cost == null ? null : new int[edges.size];
+            int[] pos = Arrays.copyOf(off, size);
+            for (int e = 0; e < edges.size; e++) {
+                int j = pos[localId[edges.from[e]]]++;
+                targets[j] = edges.to[e];
+                if (costs != null)
+                    costs[j] = edges.cost[e];
+            }
+        } else {
+            throw new IOException("Unknown source: " + source + ".");
+        }
+        BspWorker worker = new BspWorker(program, k, p, owner, localId, vertices, off, targets, costs);
+        int numAggregators = program.aggregators().length;
+
+        Connection[] peers = connectPeers(c, k, p);
+        try {
+            for (;;) {
+                byte command = c.in.readByte();
+                if (command == FINISH) {
+                    c.writeLongs(worker.values(), size);
+                    c.out.flush();
+                    return;
+                }
+                if (command != SUPERSTEP)
+                    throw new IOException("Unknown command: " + command + ".");
+
+                int s = c.in.readInt();
+                long[] aggregated = c.readLongs(numAggregators);
+                worker.superstep(s, aggregated);
+                exchange(worker, peers, p);
+                c.out.writeLong(worker.active());
+                c.out.writeLong(worker.sent());
+                c.writeLongs(worker.aggregates(), numAggregators);
+                c.out.flush();
+            }
+        } finally {
+            for (Connection peer : peers) {
+                if (peer != null)
+                    peer.close();
+            }
+        }
+    }
+
+    /**
+     * Sends the engine the port this worker accepts the other workers on,
+     * reads the ports of all workers, and returns a connection to every
+     * other worker. Worker p connects to the workers before it and accepts
+     * the workers after it, which first send their part.
+     */
+    private static Connection[] connectPeers(Connection engine, int k, int p) throws IOException {
+        Connection[] peers = new Connection[k];
+        try (ServerSocket server = new ServerSocket(0, k, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(PEER_TIMEOUT);
+            engine.out.writeInt(server.getLocalPort());
+            engine.out.flush();
+            int[] ports = engine.readInts(k);
+            for (int j = 0; j < p; j++) {
+                peers[j] = new Connection(new Socket(InetAddress.getLoopbackAddress(), ports[j]));
+                peers[j].out.writeInt(p);
+                peers[j].out.flush();
+            }
+            for (int i = p + 1; i < k; i++) {
+                Connection conn = new Connection(server.accept());
+                int j = conn.in.readInt();
+                if (j <= p || j >= k || peers[j] != null) {
+                    conn.close();
+                    throw new IOException("Unexpected worker: " + j + ".");
+                }
+                peers[j] = conn;
+            }
+        }
+        return peers;
+    }
+
+    /**
+     * Sends the outbox of every other part to its worker and receives the
+     * batches for this part, and makes them the input of the next
+     * superstep. Sending runs on its own thread, so that two workers that
+     * send each other large batches do not wait for each other. Both
+     * directions visit the workers in increasing order, which the workers
+     * on the other ends follow too.
+     */
+    private static void exchange(final BspWorker worker, final Connection[] peers, final int p) throws IOException {
+        final int k = peers.length;
+        final MessageBuffer[] batches = new MessageBuffer[k];
+        if (k > 1) {
+            Runnable send = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < k; j++) {
+                            if (j != p) {
+                                worker.outbox(j).writeTo(peers[j]);
+                                peers[j].out.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            Runnable receive = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < k; j++) {
+                            if (j != p)
+                                batches[j] = MessageBuffer.readFrom(peers[j]);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            try {
+                Workers.runAll("bsp-exchange", send, receive);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (int j = 0; j < k; j++) {
+                if (j != p)
+                    worker.outbox(j).size = 0;
+            }
+        }
+        batches[p] = worker.outbox(p);
+        worker.receive(batches);
+    }
+}
@@ -0,0 +1,72 @@
+package se.kth.graph;
+
+/**
+ * A graph that can insert many edges in one call. The whole batch is checked
+ * before any edge is inserted, and the graph may use the batch to size its
+ * storage once instead of growing it edge by edge.
+ *
+ * Edge i of a batch goes from from[i] to to[i]. If cost is not null,
+ * cost[i] is the cost of edge i, or NO_COST for an edge without cost. The
+ * edges are inserted in order, so the result is the same as calling add (or
+ * addBi) once per edge.
+ */
+public interface BulkInsertion {
+    /**
+     * Inserts the directed edges (from[i], to[i]) for 0 <= i < size.
+     *
+     * @param from
+     *            start vertices
+     * @param to
+     *            end vertices
+     * @param cost
+     *            edge costs, or null if no edge has a cost
+     * @param size
+     *            number of edges
+     * @throws IllegalArgumentException
+     *             if an array is shorter than size, a vertex is out of range
+     *             or a cost is negative and not NO_COST; no edge is inserted
+     */
+    void addAll(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException;
+
+    /**
+     * Inserts edges in both directions between from[i] and to[i] for
+     * 0 <= i < size.
+     *
+     * @param from
+     *            vertices
+     * @param to
+     *            vertices
+     * @param cost
+     *            edge costs, or null if no edge has a cost
+     * @param size
+     *            number of edge pairs
+     * @throws IllegalArgumentException
+     *             if an array is shorter than size, a vertex is out of range
+     *             or a cost is negative and not NO_COST; no edge is inserted
+     */
+    void addAllBi(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException;
+
+    /**
+     * Inserts every edge of the list as a directed edge.
+     *
+     * @param edges
+     *            the edges to insert
+     * @throws IllegalArgumentException
+     *             if a vertex is out of range
+     */
+    default void addAll(EdgeList edges) throws IllegalArgumentException {
+        addAll(edges.from, edges.to, edges.cost, edges.size);
+    }
+
+    /**
+     * Inserts every edge of the list in both directions.
+     *
+     * @param edges
+     *            the edges to insert
+     * @throws IllegalArgumentException
+     *             if a vertex is out of range
+     */
+    default void addAllBi(EdgeList edges) throws IllegalArgumentException {
+        addAllBi(edges.from, edges.to, edges.cost, edges.size);
+    }
+}
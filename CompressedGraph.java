@@ -0,0 +1,679 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable graph whose neighbor lists are compressed into one byte
+ * array, in the style of WebGraph. Each sorted list is stored as gaps
+ * between consecutive neighbors, written as variable-length integers of
+ * 7 bits per byte, so that a graph whose vertex ids are local (see
+ * VertexOrdering) takes a few bytes per edge instead of the 4 of a
+ * CsrGraph or the 80 or so of a HashGraph.
+ *
+ * A list may also be written relative to one of the previous window lists:
+ * the neighbors it shares with that reference list are given as alternating
+ * runs of copied and skipped entries of the reference, and only the rest
+ * are written as gaps. A reference list may itself have a reference, up to
+ * a chain of maxRefChain lists, which bounds the cost of decoding.
+ *
+ * The list of v has this layout, starting at offsets[v]:
+ *
+ * <pre>
+ * degree
+ * reference r, 0 for none            (only if window &gt; 0)
+ * number of runs k, runs             (only if r &gt; 0)
+ * first extra neighbor - v, zigzag   (if there are extra neighbors)
+ * gap - 1 to each following extra neighbor
+ * </pre>
+ *
+ * The first run counts copied entries and may be 0, every following run is
+ * at least 1 and is stored minus 1. The entries after the last run are
+ * copied if k is even and skipped if k is odd. Costs, if any, are stored
+ * the same way in a second array, one value plus 1 per neighbor in list
+ * order.
+ *
+ * neighbors decodes a list without a reference on the fly; a list with a
+ * reference is decoded into an array first. hasEdge and cost decode at most
+ * one list and its references.
+ */
+public final class CompressedGraph implements Graph, Versioned {
+    /** Default number of previous lists that are tried as a reference. */
+    public final static int DEFAULT_WINDOW = 7;
+
+    /** Default maximum length of a chain of references. */
+    public final static int DEFAULT_MAX_REF_CHAIN = 3;
+
+    private final int n;
+    private final int m;
+    private final boolean referencing;
+    private final byte[] data;
+    private final int[] offsets;
+
+    /** The costs plus 1, one per neighbor in list order; null if unweighted. */
+    private final byte[] costData;
+    private final int[] costOffsets;
+
+    private CompressedGraph(int n, int m, boolean referencing, byte[] data, int[] offsets, byte[] costData,
+            int[] costOffsets) {
+        this.n = n;
+        this.m = m;
+        this.referencing = referencing;
+        this.data = data;
+        this.offsets = offsets;
+        this.costData = costData;
+        this.costOffsets = costOffsets;
+    }
+
+    /**
+     * Returns a CompressedGraph with the same vertices, edges and edge costs
+     * as g, using reference compression with the default window and chain
+     * length.
+     *
+     * @param g
+     *            a graph
+     * @return an immutable compressed copy of g
+     */
+    public static CompressedGraph copyOf(Graph g) {
+        return copyOf(g, DEFAULT_WINDOW, DEFAULT_MAX_REF_CHAIN);
+    }
+
+    /**
+     * Returns a CompressedGraph with the same vertices, edges and edge costs
+     * as g. Every list is written in the shortest of the encodings without a
+     * reference and with a reference to one of the window previous lists
+     * whose chain is shorter than maxRefChain. Time complexity: O(n + m w),
+     * where w is the window, plus the cost of CsrGraph.copyOf if g is not a
+     * CsrGraph.
+     *
+     * @param g
+     *            a graph
+     * @param window
+     *            number of previous lists to try as a reference, 0 for none
+     * @param maxRefChain
+     *            maximum length of a chain of references
+     * @return an immutable compressed copy of g
+     * @throws IllegalArgumentException
+     *             if window < 0 or maxRefChain < 0, or if the graph does not
+     *             fit in a byte array
+     */
+    public static CompressedGraph copyOf(Graph g, int window, int maxRefChain) {
+        if (window < 0 || maxRefChain < 0)
+            throw new IllegalArgumentException("Illegal window: window = " + window + ", maxRefChain = "
+                    + maxRefChain + ".");
+        GraphEvents.GraphBuild build = new GraphEvents.GraphBuild();
+        build.begin();
+        CsrGraph csr = CsrGraph.of(g);
+        int n = csr.numVertices();
+        int[] off = csr.offsets;
+        int[] tgt = csr.targets;
+        boolean referencing = window > 0 && maxRefChain > 0;
+
+        ByteSink out = new ByteSink(Math.max(16, tgt.length + n));
+        ByteSink scratch = new ByteSink(16);
+        ByteSink best = new ByteSink(16);
+        int[] offsets = new int[n + 1];
+        int[] chain = new int[n];
+        boolean[] copied = new boolean[0];
+        for (int v = 0; v < n; v++) {
+            offsets[v] = out.size;
+            int start = off[v];
+            int d = off[v + 1] - start;
+            out.writeInt(d);
+            if (d == 0)
+                continue;
+            if (!referencing) {
+                writeGaps(out, v, tgt, start, d, null, 0, 0);
+                continue;
+            }
+
+            // Without a reference.
+            best.size = 0;
+            best.writeInt(0);
+            writeGaps(best, v, tgt, start, d, null, 0, 0);
+            int bestRef = 0;
+
+            for (int r = 1; r <= window && r <= v; r++) {
+                int u = v - r;
+                int refStart = off[u];
+                int refDegree = off[u + 1] - refStart;
+                if (chain[u] >= maxRefChain || refDegree == 0)
+                    continue;
+                if (copied.length < Math.max(d, refDegree))
+                    copied = new boolean[Math.max(Math.max(d, refDegree), 2 * copied.length)];
+                // copied[j] tells if entry j of the reference is in the list
+                // of v.
+                int shared = 0;
+                for (int i = start, j = refStart, end = start + d, refEnd = refStart + refDegree; j < refEnd; j++) {
+                    while (i < end && tgt[i] < tgt[j])
+                        i++;
+                    copied[j - refStart] = i < end && tgt[i] == tgt[j];
+                    if (copied[j - refStart])
+                        shared++;
+                }
+                if (shared == 0)
+                    continue;
+                scratch.size = 0;
+                scratch.writeInt(r);
+                writeRuns(scratch, copied, refDegree);
+                writeGaps(scratch, v, tgt, start, d, tgt, refStart, refDegree);
+                if (scratch.size < best.size) {
+                    ByteSink t = best;
+                    best = scratch;
+                    scratch = t;
+                    bestRef = r;
+                }
+            }
+            out.write(best);
+            if (bestRef > 0)
+                chain[v] = chain[v - bestRef] + 1;
+        }
+        offsets[n] = out.size;
+
+        byte[] costData = null;
+        int[] costOffsets = null;
+        if (csr.costs != null) {
+            ByteSink costs = new ByteSink(Math.max(16, tgt.length));
+            costOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                costOffsets[v] = costs.size;
+                for (int i = off[v]; i < off[v + 1]; i++)
+                    costs.writeInt(csr.costs[i] + 1);
+            }
+            costOffsets[n] = costs.size;
+            costData = costs.toArray();
+        }
+
+        CompressedGraph c = new CompressedGraph(n, tgt.length, referencing, out.toArray(), offsets, costData,
+                costOffsets);
+        if (build.shouldCommit()) {
+            build.set(c, g.getClass().getSimpleName());
+            build.commit();
+        }
+        return c;
+    }
+
+    /**
+     * Writes the runs of copied and skipped entries of a reference list with
+     * refDegree entries. The last run is left out.
+     */
+    private static void writeRuns(ByteSink out, boolean[] copied, int refDegree) {
+        // Count the runs first, so that k can be written before them.
+        int runs = 1;
+        boolean copying = true;
+        for (int j = 0; j < refDegree; j++) {
+            if (copied[j] != copying) {
+                copying = !copying;
+                runs++;
+            }
+        }
+        out.writeInt(runs - 1);
+        copying = true;
+        int length = 0;
+        int written = 0;
+        for (int j = 0; j < refDegree && written < runs - 1; j++) {
+            if (copied[j] != copying) {
+                out.writeInt(written == 0 ? length : length - 1);
+                written++;
+                copying = !copying;
+                length = 0;
+            }
+            length++;
+        }
+    }
+
+    /**
+     * Writes the d neighbors tgt[start] ... of v as gaps, leaving out those
+     * found among the refDegree entries of ref that start at refStart. ref
+     * is null for a list without a reference.
+     */
+    private static void writeGaps(ByteSink out, int v, int[] tgt, int start, int d, int[] ref, int refStart,
+            int refDegree) {
+        int prev = 0;
+        boolean first = true;
+        for (int i = start, j = refStart, end = start + d, refEnd = refStart + refDegree; i < end; i++) {
+            int w = tgt[i];
+            if (ref != null) {
+                while (j < refEnd && ref[j] < w)
+                    j++;
+                if (j < refEnd && ref[j] == w)
+                    continue;
+            }
+            if (first) {
+                int gap = w - v;
+                out.writeInt((gap << 1) ^ (gap >> 31));
+                first = false;
+            } else {
+                out.writeInt(w - prev - 1);
+            }
+            prev = w;
+        }
+    }
+
+    /** A growable byte array. */
+    private static final class ByteSink {
+        byte[] buf;
+        int size;
+
+        ByteSink(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        /** Writes x, taken as unsigned, 7 bits per byte, low bits first. */
+        void writeInt(int x) {
+            if (buf.length - size < 5)
+                grow(5);
+            while ((x & ~0x7f) != 0) {
+                buf[size++] = (byte) ((x & 0x7f) | 0x80);
+                x >>>= 7;
+            }
+            buf[size++] = (byte) x;
+        }
+
+        void write(ByteSink other) {
+            if (buf.length - size < other.size)
+                grow(other.size);
+            System.arraycopy(other.buf, 0, buf, size, other.size);
+            size += other.size;
+        }
+
+        private void grow(int extra) {
+            long capacity = Math.max(2L * buf.length, (long) size + extra);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                if ((long) size + extra > Integer.MAX_VALUE - 8)
+                    throw new IllegalArgumentException("Too many bytes: " + ((long) size + extra) + ".");
+                capacity = Integer.MAX_VALUE - 8;
+            }
+            buf = Arrays.copyOf(buf, (int) capacity);
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+
+    /** Reads variable-length integers from a byte array. */
+    private static final class ByteReader {
+        final byte[] data;
+        int pos;
+
+        ByteReader(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        int readInt() {
+            int b = data[pos++];
+            int x = b & 0x7f;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = data[pos++];
+                x |= (b & 0x7f) << shift;
+            }
+            return x;
+        }
+    }
+
+    /**
+     * Decodes the list of v into list, which must hold at least the degree
+     * of v, and returns the degree.
+     */
+    int decode(int v, int[] list) {
+        ByteReader in = new ByteReader(data, offsets[v]);
+        int d = in.readInt();
+        if (d == 0)
+            return 0;
+        int r = referencing ? in.readInt() : 0;
+        int k = 0;
+        if (r > 0) {
+            int u = v - r;
+            int[] ref = new int[degree(u)];
+            int refDegree = decode(u, ref);
+            int runs = in.readInt();
+            int j = 0;
+            for (int b = 0; b < runs; b++) {
+                int length = b == 0 ? in.readInt() : in.readInt() + 1;
+                if ((b & 1) == 0) {
+                    System.arraycopy(ref, j, list, k, length);
+                    k += length;
+                }
+                j += length;
+            }
+            if ((runs & 1) == 0) {
+                System.arraycopy(ref, j, list, k, refDegree - j);
+                k += refDegree - j;
+            }
+        }
+        int copied = k;
+        int extra = d - copied;
+        if (extra == 0)
+            return d;
+
+        // Merge the extra neighbors into the copied ones from the back.
+        int[] extras = r > 0 ? new int[extra] : list;
+        int z = in.readInt();
+        int w = v + ((z >>> 1) ^ -(z & 1));
+        extras[0] = w;
+        for (int i = 1; i < extra; i++) {
+            w += in.readInt() + 1;
+            extras[i] = w;
+        }
+        if (r > 0) {
+            int a = copied - 1;
+            int b = extra - 1;
+            for (int i = d - 1; b >= 0; i--)
+                list[i] = a >= 0 && list[a] > extras[b] ? list[a--] : extras[b--];
+        }
+        return d;
+    }
+
+    /**
+     * Returns the number of bytes of the compressed lists, the costs and the
+     * offsets. Time complexity: O(1).
+     *
+     * @return the size of the compressed graph in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = data.length + 4L * offsets.length;
+        if (costData != null)
+            bytes += costData.length + 4L * costOffsets.length;
+        return bytes;
+    }
+
+    /**
+     * Returns the average number of bytes per edge of the compressed lists,
+     * not counting costs and offsets. Time complexity: O(1).
+     *
+     * @return bytes per edge, or 0 if there are no edges
+     */
+    public double bytesPerEdge() {
+        return m == 0 ? 0 : (double) data.length / m;
+    }
+
+    /**
+     * Decodes the costs of the edges of v, in the order of its neighbors,
+     * into costs, which must hold at least the degree of v. Fills it with
+     * NO_COST if no edge has a cost. Time complexity: O(d).
+     */
+    void decodeCosts(int v, int[] costs) {
+        int d = degree(v);
+        if (costData == null) {
+            Arrays.fill(costs, 0, d, NO_COST);
+            return;
+        }
+        ByteReader in = new ByteReader(costData, costOffsets[v]);
+        for (int i = 0; i < d; i++)
+            costs[i] = in.readInt() - 1;
+    }
+
+    /**
+     * Returns true if at least one edge in this graph has a cost.
+     * Time complexity: O(1).
+     *
+     * @return true if at least one edge has a cost
+     */
+    public boolean hasCosts() {
+        return costData != null;
+    }
+
+    /**
+     * {@inheritDoc Versioned} A CompressedGraph never changes, so the version
+     * is always 0. Time complexity: O(1).
+     */
+    @Override
+    public long version() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int numVertices() {
+        return n;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int numEdges() {
+        return m;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int degree(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        return new ByteReader(data, offsets[v]).readInt();
+    }
+
+    /**
+     * {@inheritDoc Graph} The neighbors are returned in ascending order.
+     * Time complexity: O(1) for a list without a reference, O(d) otherwise,
+     * where d is the degree of v and its references.
+     */
+    @Override
+    public VertexIterator neighbors(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        ByteReader in = new ByteReader(data, offsets[v]);
+        int d = in.readInt();
+        if (d > 0 && referencing && in.readInt() > 0) {
+            int[] list = new int[d];
+            decode(v, list);
+            return new ArrayIterator(list);
+        }
+        return new GapIterator(in, v, d);
+    }
+
+    /** Decodes a list without a reference one neighbor at a time. */
+    private static final class GapIterator implements VertexIterator {
+        private final ByteReader in;
+        private final int v;
+        private final int d;
+        private int i;
+        private int prev;
+
+        GapIterator(ByteReader in, int v, int d) {
+            this.in = in;
+            this.v = v;
+            this.d = d;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return i < d;
+        }
+
+        @Override
+        public int next() {
+            if (i >= d)
+                throw new NoSuchElementException("This iterator has no more elements.");
+            if (i++ == 0) {
+                int z = in.readInt();
+                prev = v + ((z >>> 1) ^ -(z & 1));
+            } else {
+                prev += in.readInt() + 1;
+            }
+            return prev;
+        }
+    }
+
+    private static final class ArrayIterator implements VertexIterator {
+        private final int[] list;
+        private int i;
+
+        ArrayIterator(int[] list) {
+            this.list = list;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return i < list.length;
+        }
+
+        @Override
+        public int next() {
+            if (i < list.length)
+                return list[i++];
+            throw new NoSuchElementException("This iterator has no more elements.");
+        }
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the degree of
+     * from and its references.
+     */
+    @Override
+    public boolean hasEdge(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        return indexOf(from, to) >= 0;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the degree of
+     * from and its references.
+     */
+    @Override
+    public int cost(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        int i = indexOf(from, to);
+        if (i < 0 || costData == null)
+            return NO_COST;
+        ByteReader in = new ByteReader(costData, costOffsets[from]);
+        for (; i > 0; i--)
+            in.readInt();
+        return in.readInt() - 1;
+    }
+
+    /**
+     * Returns the position of to in the list of from, or -1 if there is no
+     * such edge. A list without a reference is scanned until a neighbor
+     * greater than to is found.
+     */
+    private int indexOf(int from, int to) {
+        ByteReader in = new ByteReader(data, offsets[from]);
+        int d = in.readInt();
+        if (d == 0)
+            return -1;
+        if (referencing && in.readInt() > 0) {
+            int[] list = new int[d];
+            decode(from, list);
+            int i = Arrays.binarySearch(list, to);
+            return i >= 0 ? i : -1;
+        }
+        int z = in.readInt();
+        int w = from + ((z >>> 1) ^ -(z & 1));
+        for (int i = 0;; i++) {
+            if (w >= to)
+                return w == to ? i : -1;
+            if (i + 1 == d)
+                return -1;
+            w += in.readInt() + 1;
+        }
+    }
+
+    /**
+     * Not supported, a CompressedGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void add(int from, int to) {
+        throw new UnsupportedOperationException("CompressedGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CompressedGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void add(int from, int to, int c) {
+        throw new UnsupportedOperationException("CompressedGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CompressedGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void addBi(int v, int w) {
+        throw new UnsupportedOperationException("CompressedGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CompressedGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void addBi(int v, int w, int c) {
+        throw new UnsupportedOperationException("CompressedGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CompressedGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void remove(int from, int to) {
+        throw new UnsupportedOperationException("CompressedGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CompressedGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void removeBi(int v, int w) {
+        throw new UnsupportedOperationException("CompressedGraph is immutable.");
+    }
+
+    /**
+     * Returns a string representation of this graph in the same format as
+     * HashGraph and MatrixGraph. Time complexity: O(n + m).
+     *
+     * @return a String representation of this graph
+     */
+    @Override
+    public String toString() {
+        return GraphWriter.toString(this);
+    }
+
+    /**
+     * Checks a single vertex parameter v.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= n)
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= n || w < 0 || w >= n)
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+}
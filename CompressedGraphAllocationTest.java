@@ -0,0 +1,46 @@
+package se.kth.graph;
+
+public class CompressedGraphAllocationTest extends GraphAllocationTest {
+    /** A ByteReader over an array, if it is not removed by the JIT. */
+    private static final long READER = 24;
+
+    /** A list of about DEGREE neighbors decoded into an int array. */
+    private static final long DECODED = 16 + 4 * DEGREE;
+
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return CompressedGraph.copyOf(new HashGraph(numVertices));
+    }
+
+    @Override
+    protected Graph getGraph(EdgeList edges) {
+        return CompressedGraph.copyOf(edges.toCsrGraph(true));
+    }
+
+    /** A reader over the list, and the decoded list if it has a reference. */
+    @Override
+    protected long hasEdgeBudget() {
+        return READER + DECODED;
+    }
+
+    /** As hasEdge, and a second reader over the costs. */
+    @Override
+    protected long costBudget() {
+        return 2 * READER + DECODED;
+    }
+
+    /** The degree is the first number of the list. */
+    @Override
+    protected long degreeBudget() {
+        return READER;
+    }
+
+    /**
+     * A reader and the iterator over the gaps, or the decoded list and its
+     * iterator if the list has a reference.
+     */
+    @Override
+    protected long neighborsBudget() {
+        return READER + 32 + DECODED;
+    }
+}
@@ -0,0 +1,44 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompressedGraphTest extends ImmutableGraphTest {
+    @Override
+    protected Graph copyOf(Graph g) {
+        return CompressedGraph.copyOf(g);
+    }
+
+    @Test
+    public void everyWindowAndChainGivesTheSameGraph() {
+        Random random = new Random(44);
+        for (int round = 0; round < 20; round++) {
+            Graph g = randomGraph(random, random.nextInt(300));
+            for (int window : new int[] { 0, 1, 3, 16 }) {
+                for (int chain : new int[] { 0, 1, 3, 100 })
+                    assertSameGraph(g, CompressedGraph.copyOf(g, window, chain));
+            }
+        }
+    }
+
+    @Test
+    public void localGraphTakesFewBytesPerEdge() {
+        // A ring where every vertex links to its 16 nearest vertices.
+        int n = 2000;
+        Graph g = new HashGraph(n);
+        for (int v = 0; v < n; v++)
+            for (int i = 1; i <= 8; i++)
+                g.addBi(v, (v + i) % n);
+        CompressedGraph c = CompressedGraph.copyOf(g);
+        assertSameGraph(g, c);
+        assertFalse(c.hasCosts());
+        assertTrue(c.bytesPerEdge() < 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void copyOfRejectsNegativeWindow() {
+        CompressedGraph.copyOf(new HashGraph(3), -1, 3);
+    }
+}
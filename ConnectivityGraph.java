@@ -0,0 +1,200 @@
+package se.kth.graph;
+
+/**
+ * A Graph that forwards every call to another graph and keeps a
+ * DynamicConnectivity of it up to date, so that connected and
+ * numComponents are answered without searching the graph. The direction
+ * of edges is ignored: two vertices are connected if there is a path
+ * between them when every edge is taken as undirected, as in
+ * GraphAlgorithms.componentIds.
+ *
+ * All updates must go through the wrapper. The wrapper is not thread-safe.
+ */
+public final class ConnectivityGraph implements Graph {
+    private final Graph graph;
+    private final DynamicConnectivity connectivity;
+
+    /**
+     * Constructs a wrapper around g. The edges already in g are inserted
+     * into the connectivity structure.
+     *
+     * @param g
+     *            the graph to forward to
+     */
+    public ConnectivityGraph(Graph g) {
+        if (g == null)
+            throw new NullPointerException();
+        this.graph = g;
+        this.connectivity = new DynamicConnectivity(g.numVertices());
+        for (int v = 0; v < g.numVertices(); v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();)
+                connectivity.insert(v, it.next());
+        }
+    }
+
+    /**
+     * Returns the wrapped graph.
+     *
+     * @return the wrapped graph
+     */
+    public Graph delegate() {
+        return graph;
+    }
+
+    /**
+     * Returns true if there is a path between u and v, ignoring the
+     * direction of edges. Time complexity: O(log n).
+     *
+     * @param u
+     *            vertex
+     * @param v
+     *            vertex
+     * @return true if u and v are connected
+     * @throws IllegalArgumentException
+     *             if u or v is out of range
+     */
+    public boolean connected(int u, int v) {
+        return connectivity.connected(u, v);
+    }
+
+    /**
+     * Returns the number of connected components, ignoring the direction of
+     * edges. Time complexity: O(1).
+     *
+     * @return the number of connected components
+     */
+    public int numComponents() {
+        return connectivity.numComponents();
+    }
+
+    /**
+     * Returns the number of vertices connected to v, including v. Time
+     * complexity: O(log n).
+     *
+     * @param v
+     *            vertex
+     * @return the size of the component of v
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public int componentSize(int v) {
+        return connectivity.componentSize(v);
+    }
+
+    /** Returns the highest level of an edge in the connectivity structure. */
+    int maxLevel() {
+        return connectivity.maxLevel();
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numVertices() {
+        return graph.numVertices();
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numEdges() {
+        return graph.numEdges();
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int degree(int v) throws IllegalArgumentException {
+        return graph.degree(v);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public VertexIterator neighbors(int v) throws IllegalArgumentException {
+        return graph.neighbors(v);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public boolean hasEdge(int from, int to) throws IllegalArgumentException {
+        return graph.hasEdge(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int cost(int from, int to) throws IllegalArgumentException {
+        return graph.cost(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void add(int from, int to) throws IllegalArgumentException {
+        graph.add(from, to);
+        connectivity.insert(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void add(int from, int to, int c) throws IllegalArgumentException {
+        graph.add(from, to, c);
+        connectivity.insert(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void addBi(int v, int w) throws IllegalArgumentException {
+        graph.addBi(v, w);
+        connectivity.insert(v, w);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void addBi(int v, int w, int c) throws IllegalArgumentException {
+        graph.addBi(v, w, c);
+        connectivity.insert(v, w);
+    }
+
+    /**
+     * {@inheritDoc Graph} The vertices stay connected by the edge in the
+     * other direction, if there is one.
+     */
+    @Override
+    public void remove(int from, int to) throws IllegalArgumentException {
+        graph.remove(from, to);
+        if (!graph.hasEdge(to, from))
+            connectivity.delete(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void removeBi(int v, int w) throws IllegalArgumentException {
+        graph.removeBi(v, w);
+        connectivity.delete(v, w);
+    }
+
+    /**
+     * Returns the string representation of the wrapped graph.
+     */
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectivityGraphTest extends GraphTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new ConnectivityGraph(new HashGraph(numVertices));
+    }
+
+    @Test
+    public void removeFindsReplacementEdge() {
+        ConnectivityGraph g = (ConnectivityGraph) getEmptyGraph(5);
+        g.addBi(0, 1);
+        g.addBi(1, 2);
+        g.addBi(2, 0);
+        g.addBi(3, 4);
+        assertThat(g.numComponents(), equalTo(2));
+        assertThat(g.connected(0, 2), is(true));
+        assertThat(g.connected(0, 3), is(false));
+        assertThat(g.componentSize(1), equalTo(3));
+
+        g.removeBi(0, 1);
+        assertThat(g.connected(0, 1), is(true));
+        g.removeBi(1, 2);
+        assertThat(g.connected(0, 1), is(false));
+        assertThat(g.connected(0, 2), is(true));
+        assertThat(g.numComponents(), equalTo(3));
+    }
+
+    @Test
+    public void directedEdgesConnectBothWays() {
+        ConnectivityGraph g = (ConnectivityGraph) getEmptyGraph(3);
+        g.add(0, 1);
+        g.add(1, 0);
+        g.remove(0, 1);
+        assertThat(g.connected(0, 1), is(true));
+        g.remove(1, 0);
+        assertThat(g.connected(0, 1), is(false));
+        assertThat(g.numComponents(), equalTo(3));
+    }
+
+    @Test
+    public void randomUpdatesMatchComponentIds() {
+        Random random = new Random(43);
+        int maxLevel = 0;
+        for (int round = 0; round < 6; round++) {
+            int n = 20 + random.nextInt(60);
+            ConnectivityGraph g = new ConnectivityGraph(ImmutableGraphTest.randomGraph(random, n));
+            assertComponents(g, random);
+            for (int op = 0; op < 1500; op++) {
+                // Phases of mostly inserts and mostly deletes, so that tree
+                // edges are deleted both from dense components, where they
+                // have replacements, and from sparse ones, where they split.
+                boolean grow = op / 250 % 2 == 0;
+                if (g.numEdges() == 0 || random.nextInt(4) < (grow ? 3 : 1))
+                    insert(g, random);
+                else
+                    delete(g, random);
+                assertComponents(g, random);
+                maxLevel = Math.max(maxLevel, g.maxLevel());
+            }
+        }
+        // Failed replacement searches have promoted edges, and later
+        // searches started above level 0.
+        assertTrue(maxLevel >= 2);
+    }
+
+    private static void insert(ConnectivityGraph g, Random random) {
+        int n = g.numVertices();
+        int v = random.nextInt(n);
+        // Mostly nearby vertices, which makes cycles.
+        int w = random.nextInt(4) == 0 ? random.nextInt(n) : Math.floorMod(v + random.nextInt(11) - 5, n);
+        switch (random.nextInt(4)) {
+        case 0:
+            g.add(v, w);
+            break;
+        case 1:
+            g.add(v, w, random.nextInt(10));
+            break;
+        case 2:
+            g.addBi(v, w);
+            break;
+        default:
+            g.addBi(v, w, random.nextInt(10));
+            break;
+        }
+    }
+
+    private static void delete(ConnectivityGraph g, Random random) {
+        int n = g.numVertices();
+        int v = random.nextInt(n);
+        while (g.degree(v) == 0)
+            v = random.nextInt(n);
+        VertexIterator it = g.neighbors(v);
+        int w = it.next();
+        for (int i = random.nextInt(g.degree(v)); i > 0; i--)
+            w = it.next();
+        if (random.nextBoolean())
+            g.remove(v, w);
+        else
+            g.removeBi(v, w);
+    }
+
+    /**
+     * Compares connected, numComponents and componentSize of g with
+     * GraphAlgorithms.componentIds of g with every edge taken in both
+     * directions.
+     */
+    private static void assertComponents(ConnectivityGraph g, Random random) {
+        int n = g.numVertices();
+        Graph undirected = new HashGraph(n);
+        for (int v = 0; v < n; v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();)
+                undirected.addBi(v, it.next());
+        }
+        int[] ids = GraphAlgorithms.componentIds(undirected);
+        int[] size = new int[n];
+        int components = 0;
+        for (int id : ids) {
+            size[id]++;
+            components = Math.max(components, id + 1);
+        }
+        assertEquals(components, g.numComponents());
+        for (int v = 0; v < n; v++)
+            assertEquals(size[ids[v]], g.componentSize(v));
+        for (int i = 0; i < 4 * n; i++) {
+            int u = random.nextInt(n);
+            int v = random.nextInt(n);
+            assertEquals(ids[u] == ids[v], g.connected(u, v));
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable graph stored in compressed sparse row (CSR) form. The
+ * neighbors of v are targets[offsets[v]] ... targets[offsets[v + 1] - 1],
+ * sorted in ascending order. Space complexity is &Theta;(n + m) where n is
+ * the number of vertices and m the number of edges.
+ *
+ * The flat arrays are package-private so that algorithms in this package can
+ * scan them directly instead of going through a VertexIterator.
+ */
+public final class CsrGraph implements Graph, Versioned {
+    /** Number of rows a worker sorts at a time in fromEdges. */
+    private final static int ROWS_PER_CHUNK = 4096;
+
+    /** offsets[v] is the position of the first neighbor of v in targets. */
+    final int[] offsets;
+
+    /** The neighbors of all vertices, row by row. */
+    final int[] targets;
+
+    /**
+     * costs[i] is the cost of the edge to targets[i], or NO_COST. The array is
+     * null if no edge in the graph has a cost.
+     */
+    final int[] costs;
+
+    /**
+     * Constructs a CsrGraph from already sorted rows. The arrays are not
+     * copied.
+     */
+    CsrGraph(int[] offsets, int[] targets, int[] costs) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.costs = costs;
+    }
+
+    /**
+     * Returns a CsrGraph with the same vertices, edges and edge costs as g.
+     * Time complexity: O(n + m log m) for graphs with O(1) degree, plus the
+     * cost of one call to g.degree(v) and one traversal of g.neighbors(v) per
+     * vertex.
+     *
+     * @param g
+     *            a graph
+     * @return an immutable copy of g
+     */
+    public static CsrGraph copyOf(Graph g) {
+        GraphEvents.GraphBuild build = new GraphEvents.GraphBuild();
+        build.begin();
+        int n = g.numVertices();
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++)
+            offsets[v + 1] = offsets[v] + g.degree(v);
+
+        int m = offsets[n];
+        int[] targets = new int[m];
+        int[] costs = new int[m];
+        boolean weighted = false;
+        long[] row = new long[0];
+        for (int v = 0; v < n; v++) {
+            int start = offsets[v];
+            int d = offsets[v + 1] - start;
+            if (d == 0)
+                continue;
+            if (row.length < d)
+                row = new long[Math.max(d, 2 * row.length)];
+
+            // Pack (target, cost) so that sorting the longs sorts by target.
+            int i = 0;
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                int c = g.cost(v, w);
+                if (c != NO_COST)
+                    weighted = true;
+                row[i++] = ((long) w << 32) | (c & 0xffffffffL);
+            }
+            Arrays.sort(row, 0, d);
+            for (i = 0; i < d; i++) {
+                targets[start + i] = (int) (row[i] >>> 32);
+                costs[start + i] = (int) row[i];
+            }
+        }
+        return built(build, new CsrGraph(offsets, targets, weighted ? costs : null), g.getClass().getSimpleName());
+    }
+
+    /**
+     * Commits a build event for c and returns c.
+     */
+    private static CsrGraph built(GraphEvents.GraphBuild build, CsrGraph c, String source) {
+        if (build.shouldCommit()) {
+            build.set(c, source);
+            build.commit();
+        }
+        return c;
+    }
+
+    /**
+     * Returns a CsrGraph with n vertices and the edges (from[i], to[i]) for
+     * 0 <= i < count. If cost is not null, cost[i] is the cost of edge i, or
+     * NO_COST. If bidirectional is true every edge is also added in the
+     * opposite direction, as with addBi. Duplicate edges are stored once,
+     * with the cost of the last occurrence, so the result is the same as
+     * adding the edges to an empty graph one at a time. The parameters are
+     * not checked. Time complexity: O(n + m log d), where d is the maximum
+     * degree; the rows are sorted by the given number of threads.
+     */
+    static CsrGraph fromEdges(int n, int[] from, int[] to, int[] cost, int count,
+            boolean bidirectional, int threads) {
+        GraphEvents.GraphBuild build = new GraphEvents.GraphBuild();
+        build.begin();
+
+        // Counting sort by source. Within a row the edges keep their input
+        // order, which is what makes "last occurrence wins" possible below.
+        int[] offsets = new int[n + 1];
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[from[i] + 1]++;
+            if (bidirectional && from[i] != to[i]) {
+                offsets[to[i] + 1]++;
+                total++;
+            }
+        }
+        if (total + count > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many edges: " + (total + count) + ".");
+        for (int v = 0; v < n; v++)
+            offsets[v + 1] += offsets[v];
+        int m = offsets[n];
+        int[] targets = new int[m];
+        int[] costs = cost == null ? null : new int[m];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < count; i++) {
+            int v = from[i];
+            int w = to[i];
+            int a = next[v]++;
+            targets[a] = w;
+            if (costs != null)
+                costs[a] = cost[i];
+            if (bidirectional && v != w) {
+                int b = next[w]++;
+                targets[b] = v;
+                if (costs != null)
+                    costs[b] = cost[i];
+            }
+        }
+
+        // Sort and deduplicate each row in place; next[v] becomes the new
+        // degree of v.
+        final int[] off = offsets;
+        final int[] tgt = targets;
+        final int[] cst = costs;
+        final int[] degree = next;
+        final AtomicInteger nextRow = new AtomicInteger();
+        int numWorkers = Math.max(1, Math.min(threads, n / ROWS_PER_CHUNK));
+        Runnable[] workers = new Runnable[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new Runnable() {
+                @Override
+                public void run() {
+                    long[] row = new long[0];
+                    int[] rowCosts = new int[0];
+                    int start;
+                    while ((start = nextRow.getAndAdd(ROWS_PER_CHUNK)) < n) {
+                        int end = Math.min(n, start + ROWS_PER_CHUNK);
+                        for (int v = start; v < end; v++) {
+                            int d = off[v + 1] - off[v];
+                            if (row.length < d) {
+                                row = new long[Math.max(d, 2 * row.length)];
+                                rowCosts = new int[cst == null ? 0 : row.length];
+                            }
+                            degree[v] = sortRow(off[v], d, tgt, cst, row, rowCosts);
+                        }
+                    }
+                }
+            };
+        }
+        Workers.runAll("csr", workers);
+
+        boolean weighted = false;
+        if (costs != null) {
+            for (int v = 0; v < n && !weighted; v++) {
+                for (int i = off[v], end = off[v] + degree[v]; i < end; i++) {
+                    if (costs[i] != NO_COST) {
+                        weighted = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        int unique = 0;
+        for (int v = 0; v < n; v++)
+            unique += degree[v];
+        if (unique == m)
+            return built(build, new CsrGraph(offsets, targets, weighted ? costs : null), "edges");
+
+        // Some edges were duplicates; compact the rows.
+        int[] compactOffsets = new int[n + 1];
+        int[] compactTargets = new int[unique];
+        int[] compactCosts = weighted ? new int[unique] : null;
+        for (int v = 0; v < n; v++) {
+            int d = degree[v];
+            compactOffsets[v + 1] = compactOffsets[v] + d;
+            System.arraycopy(targets, offsets[v], compactTargets, compactOffsets[v], d);
+            if (weighted)
+                System.arraycopy(costs, offsets[v], compactCosts, compactOffsets[v], d);
+        }
+        return built(build, new CsrGraph(compactOffsets, compactTargets, compactCosts), "edges");
+    }
+
+    /**
+     * Sorts the d entries of targets (and costs, if not null) that start at
+     * position start, and removes duplicate targets, keeping the entry that
+     * came last. Returns the number of remaining entries. The buffers must
+     * hold at least d elements; rowCosts is not used if costs is null.
+     */
+    private static int sortRow(int start, int d, int[] targets, int[] costs, long[] row, int[] rowCosts) {
+        if (d == 0)
+            return 0;
+        // Pack (target, position) so that sorting orders equal targets by
+        // their position in the row.
+        for (int i = 0; i < d; i++)
+            row[i] = ((long) targets[start + i] << 32) | i;
+        Arrays.sort(row, 0, d);
+
+        if (costs != null)
+            System.arraycopy(costs, start, rowCosts, 0, d);
+        int k = 0;
+        for (int i = 0; i < d; i++) {
+            int w = (int) (row[i] >>> 32);
+            if (i + 1 < d && (int) (row[i + 1] >>> 32) == w)
+                continue; // a later occurrence of w follows
+            targets[start + k] = w;
+            if (costs != null)
+                costs[start + k] = rowCosts[(int) row[i]];
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Returns g if it already is a CsrGraph, a copy of g otherwise.
+     */
+    static CsrGraph of(Graph g) {
+        if (g instanceof CsrGraph)
+            return (CsrGraph) g;
+        return copyOf(g);
+    }
+
+    /**
+     * Returns true if at least one edge in this graph has a cost.
+     * Time complexity: O(1).
+     *
+     * @return true if at least one edge has a cost
+     */
+    public boolean hasCosts() {
+        return costs != null;
+    }
+
+    /**
+     * {@inheritDoc Versioned} A CsrGraph never changes, so the version is
+     * always 0. Time complexity: O(1).
+     */
+    @Override
+    public long version() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int numVertices() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int numEdges() {
+        return targets.length;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int degree(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * {@inheritDoc Graph} The neighbors are returned in ascending order.
+     * Time complexity: O(1).
+     */
+    @Override
+    public VertexIterator neighbors(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        return new NeighborIterator(offsets[v], offsets[v + 1]);
+    }
+
+    private class NeighborIterator implements VertexIterator {
+        int nextPos;
+        final int end;
+
+        NeighborIterator(int start, int end) {
+            nextPos = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextPos < end;
+        }
+
+        @Override
+        public int next() {
+            if (nextPos < end)
+                return targets[nextPos++];
+            throw new NoSuchElementException("This iterator has no more elements.");
+        }
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(log d), where d is the degree of
+     * from.
+     */
+    @Override
+    public boolean hasEdge(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        return indexOf(from, to) >= 0;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(log d), where d is the degree of
+     * from.
+     */
+    @Override
+    public int cost(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        int i = indexOf(from, to);
+        if (i < 0 || costs == null)
+            return NO_COST;
+        return costs[i];
+    }
+
+    /**
+     * Not supported, a CsrGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void add(int from, int to) {
+        throw new UnsupportedOperationException("CsrGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CsrGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void add(int from, int to, int c) {
+        throw new UnsupportedOperationException("CsrGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CsrGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void addBi(int v, int w) {
+        throw new UnsupportedOperationException("CsrGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CsrGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void addBi(int v, int w, int c) {
+        throw new UnsupportedOperationException("CsrGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CsrGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void remove(int from, int to) {
+        throw new UnsupportedOperationException("CsrGraph is immutable.");
+    }
+
+    /**
+     * Not supported, a CsrGraph is immutable.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void removeBi(int v, int w) {
+        throw new UnsupportedOperationException("CsrGraph is immutable.");
+    }
+
+    /**
+     * Returns a string representation of this graph in the same format as
+     * HashGraph and MatrixGraph, built by GraphWriter. Time complexity:
+     * O(n + m).
+     *
+     * @return a String representation of this graph
+     */
+    @Override
+    public String toString() {
+        return GraphWriter.toString(this);
+    }
+
+    /**
+     * Returns the position of to in the row of from, or a negative value if
+     * there is no such edge.
+     */
+    private int indexOf(int from, int to) {
+        int i = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+        return i >= offsets[from] ? i : -1;
+    }
+
+    /**
+     * Checks a single vertex parameter v.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= numVertices())
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= numVertices() || w < 0 || w >= numVertices())
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+}
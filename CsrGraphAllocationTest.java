@@ -0,0 +1,13 @@
+package se.kth.graph;
+
+public class CsrGraphAllocationTest extends GraphAllocationTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return CsrGraph.copyOf(new HashGraph(numVertices));
+    }
+
+    @Override
+    protected Graph getGraph(EdgeList edges) {
+        return edges.toCsrGraph(true);
+    }
+}
@@ -0,0 +1,38 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CsrGraphTest extends ImmutableGraphTest {
+    @Override
+    protected Graph copyOf(Graph g) {
+        return CsrGraph.copyOf(g);
+    }
+
+    @Test
+    public void edgeListGivesTheSameGraph() {
+        Random random = new Random(44);
+        for (int round = 0; round < 20; round++) {
+            int n = 1 + random.nextInt(500);
+            EdgeList edges = RandomGraphs.uniformEdges(n, random.nextInt(4 * n), round, 2);
+            for (boolean bidirectional : new boolean[] { false, true }) {
+                Graph g = new HashGraph(n);
+                if (bidirectional)
+                    edges.addBiTo(g);
+                else
+                    edges.addTo(g);
+                assertSameGraph(g, edges.toCsrGraph(bidirectional));
+            }
+        }
+    }
+
+    @Test
+    public void copyOfCsrGraphIsEqual() {
+        Graph g = randomGraph(new Random(44), 200);
+        CsrGraph copy = CsrGraph.copyOf(g);
+        assertSameGraph(g, CsrGraph.copyOf(copy));
+        assertSame(copy, CsrGraph.of(copy));
+    }
+}
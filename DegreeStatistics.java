@@ -0,0 +1,105 @@
+package se.kth.graph;
+
+/**
+ * Summary statistics of the vertex degrees of a graph.
+ */
+public final class DegreeStatistics {
+    private final int numVertices;
+    private final long numEdges;
+    private final int minDegree;
+    private final int maxDegree;
+    private final int numIsolated;
+
+    private DegreeStatistics(int numVertices, long numEdges, int minDegree, int maxDegree, int numIsolated) {
+        this.numVertices = numVertices;
+        this.numEdges = numEdges;
+        this.minDegree = minDegree;
+        this.maxDegree = maxDegree;
+        this.numIsolated = numIsolated;
+    }
+
+    /**
+     * Computes the degree statistics of g. Time complexity: O(n) calls to
+     * degree.
+     *
+     * @param g
+     *            a graph
+     * @return the degree statistics of g
+     */
+    public static DegreeStatistics of(Graph g) {
+        int n = g.numVertices();
+        long sum = 0;
+        int min = n == 0 ? 0 : Integer.MAX_VALUE;
+        int max = 0;
+        int isolated = 0;
+        for (int v = 0; v < n; v++) {
+            int d = g.degree(v);
+            sum += d;
+            min = Math.min(min, d);
+            max = Math.max(max, d);
+            if (d == 0)
+                isolated++;
+        }
+        return new DegreeStatistics(n, sum, min, max, isolated);
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return the number of vertices
+     */
+    public int numVertices() {
+        return numVertices;
+    }
+
+    /**
+     * Returns the sum of all degrees, which is the number of directed edges.
+     *
+     * @return the sum of all degrees
+     */
+    public long degreeSum() {
+        return numEdges;
+    }
+
+    /**
+     * Returns the smallest degree, or 0 if there are no vertices.
+     *
+     * @return the smallest degree
+     */
+    public int minDegree() {
+        return minDegree;
+    }
+
+    /**
+     * Returns the largest degree, or 0 if there are no vertices.
+     *
+     * @return the largest degree
+     */
+    public int maxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * Returns the average degree, or 0 if there are no vertices.
+     *
+     * @return the average degree
+     */
+    public double meanDegree() {
+        return numVertices == 0 ? 0 : (double) numEdges / numVertices;
+    }
+
+    /**
+     * Returns the number of vertices with degree 0.
+     *
+     * @return the number of isolated vertices
+     */
+    public int numIsolated() {
+        return numIsolated;
+    }
+
+    @Override
+    public String toString() {
+        return "{n=" + numVertices + ", min=" + minDegree + ", max=" + maxDegree + ", mean=" + meanDegree()
+                + ", isolated=" + numIsolated + "}";
+    }
+}
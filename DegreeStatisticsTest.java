@@ -0,0 +1,43 @@
+package se.kth.graph;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DegreeStatisticsTest {
+    @Test
+    public void starStatistics() {
+        Graph g = new HashGraph(6);
+        for (int v = 1; v < 5; v++)
+            g.addBi(0, v);
+        DegreeStatistics s = DegreeStatistics.of(g);
+        assertEquals(6, s.numVertices());
+        assertEquals(8, s.degreeSum());
+        assertEquals(0, s.minDegree());
+        assertEquals(4, s.maxDegree());
+        assertEquals(8.0 / 6, s.meanDegree(), 1e-12);
+        assertEquals(1, s.numIsolated());
+    }
+
+    @Test
+    public void emptyGraphStatistics() {
+        DegreeStatistics s = DegreeStatistics.of(new HashGraph(0));
+        assertEquals(0, s.numVertices());
+        assertEquals(0, s.degreeSum());
+        assertEquals(0, s.minDegree());
+        assertEquals(0, s.maxDegree());
+        assertEquals(0, s.numIsolated());
+    }
+
+    @Test
+    public void directedEdgesCountAtTheirStart() {
+        Graph g = new MatrixGraph(3);
+        g.add(0, 1);
+        g.add(0, 2);
+        g.add(1, 1);
+        DegreeStatistics s = DegreeStatistics.of(g);
+        assertEquals(3, s.degreeSum());
+        assertEquals(0, s.minDegree());
+        assertEquals(2, s.maxDegree());
+        assertEquals(1, s.numIsolated());
+    }
+}
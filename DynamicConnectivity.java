@@ -0,0 +1,581 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connectivity of an undirected graph under edge insertions and deletions,
+ * with the algorithm of Holm, de Lichtenberg and Thorup. A query takes
+ * O(log n) time and an update O(log<sup>2</sup> n) amortized time, so
+ * whether two vertices are still connected after a deletion is known
+ * without a new search of the graph.
+ *
+ * Every edge has a level between 0 and log n. For every level i there is
+ * a spanning forest F<sub>i</sub> of the edges with level at least i,
+ * where F<sub>0</sub> spans the whole graph, and a tree of F<sub>i</sub>
+ * has at most n / 2<sup>i</sup> vertices. When a tree edge is deleted, the
+ * smaller of the two halves is searched for a replacement edge level by
+ * level, from the level of the edge down. Every edge that is examined and
+ * fails is moved up one level, which pays for the search.
+ *
+ * Each forest is kept as Euler tours in treaps, one node per vertex and
+ * one per direction of every tree edge. Every node knows whether its
+ * subtree holds a vertex with non-tree edges on the level, or a tree edge
+ * of exactly that level, so that both kinds can be found in O(log n).
+ * Vertices without edges on a level get no node there.
+ */
+public final class DynamicConnectivity {
+    private final int n;
+    private final Node[][] vertexNodes;
+    private final Incidence[][] incidence;
+    private final Map<Long, Edge> edges = new HashMap<>();
+    private int numComponents;
+    private int random = 0x9e3779b9;
+
+    /** Results of split. */
+    private Node lo;
+    private Node hi;
+
+    /**
+     * Constructs a structure for n vertices and no edges.
+     *
+     * @param n
+     *            number of vertices
+     * @throws IllegalArgumentException
+     *             if n < 0
+     */
+    public DynamicConnectivity(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n = " + n);
+        this.n = n;
+        int levels = 32 - Integer.numberOfLeadingZeros(Math.max(1, n)) + 1;
+        vertexNodes = new Node[levels][];
+        incidence = new Incidence[n][];
+        numComponents = n;
+    }
+
+    /**
+     * A node of an Euler tour: a vertex if edge is null, and otherwise one
+     * direction of a tree edge. size counts the nodes and vertices the
+     * vertex nodes of the subtree.
+     */
+    private static final class Node {
+        Node left;
+        Node right;
+        Node parent;
+        final int priority;
+        final int vertex;
+        final Edge edge;
+        int size = 1;
+        int vertices;
+        boolean nonTree;
+        boolean treeEdge;
+        boolean anyNonTree;
+        boolean anyTreeEdge;
+
+        Node(int priority, int vertex, Edge edge) {
+            this.priority = priority;
+            this.vertex = vertex;
+            this.edge = edge;
+            this.vertices = edge == null ? 1 : 0;
+        }
+    }
+
+    /**
+     * An edge {u, v} with u < v. A tree edge of level l has arcs[2i] and
+     * arcs[2i + 1], the directions u to v and v to u, in the tours of the
+     * levels i <= l. A non-tree edge is at posU in the list of u and at
+     * posV in the list of v on its level.
+     */
+    private static final class Edge {
+        final int u;
+        final int v;
+        int level;
+        Node[] arcs;
+        int posU;
+        int posV;
+
+        Edge(int u, int v) {
+            this.u = u;
+            this.v = v;
+        }
+
+        int other(int x) {
+            return x == u ? v : u;
+        }
+    }
+
+    /** The non-tree edges of one vertex on one level. */
+    private static final class Incidence {
+        Edge[] edges = new Edge[4];
+        int size;
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return the number of vertices
+     */
+    public int numVertices() {
+        return n;
+    }
+
+    /**
+     * Returns the number of edges.
+     *
+     * @return the number of edges
+     */
+    public int numEdges() {
+        return edges.size();
+    }
+
+    /**
+     * Returns the number of connected components. Time complexity: O(1).
+     *
+     * @return the number of connected components
+     */
+    public int numComponents() {
+        return numComponents;
+    }
+
+    /**
+     * Returns true if there is a path between u and v. Time complexity:
+     * O(log n).
+     *
+     * @param u
+     *            vertex
+     * @param v
+     *            vertex
+     * @return true if u and v are connected
+     * @throws IllegalArgumentException
+     *             if u or v is out of range
+     */
+    public boolean connected(int u, int v) {
+        checkVertexParameters(u, v);
+        if (u == v)
+            return true;
+        Node[] nodes = vertexNodes[0];
+        if (nodes == null || nodes[u] == null || nodes[v] == null)
+            return false;
+        return root(nodes[u]) == root(nodes[v]);
+    }
+
+    /**
+     * Returns the number of vertices connected to v, including v. Time
+     * complexity: O(log n).
+     *
+     * @param v
+     *            vertex
+     * @return the size of the component of v
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public int componentSize(int v) {
+        checkVertexParameters(v, v);
+        Node[] nodes = vertexNodes[0];
+        if (nodes == null || nodes[v] == null)
+            return 1;
+        return root(nodes[v]).vertices;
+    }
+
+    /**
+     * Returns true if there is an edge between u and v.
+     *
+     * @param u
+     *            vertex
+     * @param v
+     *            vertex
+     * @return true if the edge {u, v} is present
+     * @throws IllegalArgumentException
+     *             if u or v is out of range
+     */
+    public boolean hasEdge(int u, int v) {
+        checkVertexParameters(u, v);
+        return edges.containsKey(key(u, v));
+    }
+
+    /**
+     * Returns the highest level of an edge, or -1 if there are no edges.
+     * Time complexity: O(m).
+     */
+    int maxLevel() {
+        int max = -1;
+        for (Edge e : edges.values())
+            max = Math.max(max, e.level);
+        return max;
+    }
+
+    /**
+     * Inserts the edge {u, v}. Self loops and edges that are already
+     * present are ignored. Time complexity: O(log n).
+     *
+     * @param u
+     *            vertex
+     * @param v
+     *            vertex
+     * @return true if the edge was inserted
+     * @throws IllegalArgumentException
+     *             if u or v is out of range
+     */
+    public boolean insert(int u, int v) {
+        checkVertexParameters(u, v);
+        if (u == v)
+            return false;
+        Long key = key(u, v);
+        if (edges.containsKey(key))
+            return false;
+        Edge e = new Edge(Math.min(u, v), Math.max(u, v));
+        edges.put(key, e);
+        if (connected(u, v)) {
+            addNonTree(e, 0);
+        } else {
+            e.arcs = new Node[2];
+            link(0, e);
+            numComponents--;
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the edge {u, v}, if it is present. If it was a tree edge, a
+     * replacement is searched for in the smaller of the two trees it
+     * leaves. Time complexity: O(log<sup>2</sup> n) amortized.
+     *
+     * @param u
+     *            vertex
+     * @param v
+     *            vertex
+     * @return true if the edge was deleted
+     * @throws IllegalArgumentException
+     *             if u or v is out of range
+     */
+    public boolean delete(int u, int v) {
+        checkVertexParameters(u, v);
+        Edge e = edges.remove(key(u, v));
+        if (e == null)
+            return false;
+        if (e.arcs == null) {
+            removeNonTree(e);
+            return true;
+        }
+        for (int i = 0; i <= e.level; i++)
+            cut(i, e);
+        for (int i = e.level; i >= 0; i--) {
+            if (replace(e.u, e.v, i))
+                return true;
+        }
+        numComponents++;
+        return true;
+    }
+
+    /**
+     * Looks for a replacement of a deleted tree edge {u, v} of level at
+     * least i among the level i edges of the smaller tree. The level i tree
+     * edges of the smaller tree are first moved to level i + 1, which keeps
+     * the trees of level i + 1 below half the size.
+     */
+    private boolean replace(int u, int v, int i) {
+        Node ru = root(vertexNode(i, u));
+        Node rv = root(vertexNode(i, v));
+        if (ru.vertices > rv.vertices) {
+            Node t = ru;
+            ru = rv;
+            rv = t;
+        }
+
+        Node a;
+        while ((a = findTreeEdge(ru)) != null) {
+            Edge t = a.edge;
+            a.treeEdge = false;
+            updateToRoot(a);
+            t.level = i + 1;
+            t.arcs = Arrays.copyOf(t.arcs, 2 * (i + 2));
+            link(i + 1, t);
+        }
+
+        Node x;
+        while ((x = findNonTree(ru)) != null) {
+            Incidence list = incidence[x.vertex][i];
+            while (list.size > 0) {
+                Edge f = list.edges[list.size - 1];
+                removeNonTree(f);
+                int w = f.other(x.vertex);
+                if (root(vertexNode(i, w)) == ru) {
+                    addNonTree(f, i + 1);
+                } else {
+                    f.arcs = new Node[2 * (i + 1)];
+                    for (int j = 0; j <= i; j++)
+                        link(j, f);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Long key(int u, int v) {
+        return ((long) Math.min(u, v) << 32) | Math.max(u, v);
+    }
+
+    // Non-tree edges
+
+    private void addNonTree(Edge e, int level) {
+        e.level = level;
+        e.posU = append(e.u, level, e);
+        e.posV = append(e.v, level, e);
+    }
+
+    private int append(int x, int level, Edge e) {
+        Incidence[] lists = incidence[x];
+        if (lists == null || lists.length <= level) {
+            lists = lists == null ? new Incidence[level + 1] : Arrays.copyOf(lists, level + 1);
+            incidence[x] = lists;
+        }
+        Incidence list = lists[level];
+        if (list == null)
+            list = lists[level] = new Incidence();
+        if (list.size == list.edges.length)
+            list.edges = Arrays.copyOf(list.edges, 2 * list.size);
+        list.edges[list.size] = e;
+        if (list.size++ == 0)
+            setNonTree(vertexNode(level, x), true);
+        return list.size - 1;
+    }
+
+    private void removeNonTree(Edge e) {
+        detach(e.u, e.level, e.posU);
+        detach(e.v, e.level, e.posV);
+    }
+
+    /** Removes the edge at pos from a list by moving the last edge there. */
+    private void detach(int x, int level, int pos) {
+        Incidence list = incidence[x][level];
+        Edge last = list.edges[--list.size];
+        list.edges[pos] = last;
+        list.edges[list.size] = null;
+        if (last.u == x)
+            last.posU = pos;
+        else
+            last.posV = pos;
+        if (list.size == 0)
+            setNonTree(vertexNodes[level][x], false);
+    }
+
+    // Euler tour trees
+
+    private Node vertexNode(int level, int x) {
+        Node[] nodes = vertexNodes[level];
+        if (nodes == null)
+            nodes = vertexNodes[level] = new Node[n];
+        Node node = nodes[x];
+        if (node == null) {
+            node = nodes[x] = new Node(nextPriority(), x, null);
+        }
+        return node;
+    }
+
+    /** Joins the trees of e.u and e.v on a level with the arcs of e. */
+    private void link(int level, Edge e) {
+        Node tu = reroot(vertexNode(level, e.u));
+        Node tv = reroot(vertexNode(level, e.v));
+        Node a = new Node(nextPriority(), -1, e);
+        Node b = new Node(nextPriority(), -1, e);
+        a.treeEdge = e.level == level;
+        update(a);
+        e.arcs[2 * level] = a;
+        e.arcs[2 * level + 1] = b;
+        merge(merge(merge(tu, a), tv), b);
+    }
+
+    /** Splits the tree of e on a level in two by removing the arcs of e. */
+    private void cut(int level, Edge e) {
+        Node a = e.arcs[2 * level];
+        Node b = e.arcs[2 * level + 1];
+        e.arcs[2 * level] = null;
+        e.arcs[2 * level + 1] = null;
+        int ra = rank(a);
+        int rb = rank(b);
+        if (ra > rb) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        // The tour is A, arc, B, arc, C; B is one tree and A C the other.
+        split(root(a), ra);
+        Node left = lo;
+        split(hi, 1);
+        split(hi, rb - ra - 1);
+        Node middle = lo;
+        split(hi, 1);
+        Node right = hi;
+        if (middle != null)
+            middle.parent = null;
+        merge(left, right);
+    }
+
+    /** Rotates the tour of x so that it starts at x, and returns its root. */
+    private Node reroot(Node x) {
+        split(root(x), rank(x));
+        Node before = lo;
+        return merge(hi, before);
+    }
+
+    private static Node root(Node x) {
+        while (x.parent != null)
+            x = x.parent;
+        return x;
+    }
+
+    /** Returns the position of x in its tour. */
+    private static int rank(Node x) {
+        int r = size(x.left);
+        for (; x.parent != null; x = x.parent) {
+            if (x.parent.right == x)
+                r += size(x.parent.left) + 1;
+        }
+        return r;
+    }
+
+    private static int size(Node x) {
+        return x == null ? 0 : x.size;
+    }
+
+    private static void update(Node x) {
+        Node l = x.left;
+        Node r = x.right;
+        x.size = 1;
+        x.vertices = x.edge == null ? 1 : 0;
+        x.anyNonTree = x.nonTree;
+        x.anyTreeEdge = x.treeEdge;
+        if (l != null) {
+            x.size += l.size;
+            x.vertices += l.vertices;
+            x.anyNonTree |= l.anyNonTree;
+            x.anyTreeEdge |= l.anyTreeEdge;
+        }
+        if (r != null) {
+            x.size += r.size;
+            x.vertices += r.vertices;
+            x.anyNonTree |= r.anyNonTree;
+            x.anyTreeEdge |= r.anyTreeEdge;
+        }
+    }
+
+    private static void updateToRoot(Node x) {
+        for (; x != null; x = x.parent)
+            update(x);
+    }
+
+    private static void setNonTree(Node x, boolean value) {
+        x.nonTree = value;
+        updateToRoot(x);
+    }
+
+    /** Joins two tours, a before b, and returns the root. */
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            if (b != null)
+                b.parent = null;
+            return b;
+        }
+        if (b == null) {
+            a.parent = null;
+            return a;
+        }
+        Node root;
+        if (a.priority > b.priority) {
+            Node r = merge(a.right, b);
+            a.right = r;
+            r.parent = a;
+            root = a;
+        } else {
+            Node l = merge(a, b.left);
+            b.left = l;
+            l.parent = b;
+            root = b;
+        }
+        update(root);
+        root.parent = null;
+        return root;
+    }
+
+    /** Splits the tour t into its first k nodes, lo, and the rest, hi. */
+    private void split(Node t, int k) {
+        splitRecursive(t, k);
+        if (lo != null)
+            lo.parent = null;
+        if (hi != null)
+            hi.parent = null;
+    }
+
+    private void splitRecursive(Node t, int k) {
+        if (t == null) {
+            lo = null;
+            hi = null;
+            return;
+        }
+        if (size(t.left) >= k) {
+            splitRecursive(t.left, k);
+            t.left = hi;
+            if (hi != null)
+                hi.parent = t;
+            update(t);
+            hi = t;
+        } else {
+            splitRecursive(t.right, k - size(t.left) - 1);
+            t.right = lo;
+            if (lo != null)
+                lo.parent = t;
+            update(t);
+            lo = t;
+        }
+    }
+
+    private static Node findNonTree(Node x) {
+        if (x == null || !x.anyNonTree)
+            return null;
+        for (;;) {
+            if (x.left != null && x.left.anyNonTree)
+                x = x.left;
+            else if (x.nonTree)
+                return x;
+            else
+                x = x.right;
+        }
+    }
+
+    private static Node findTreeEdge(Node x) {
+        if (x == null || !x.anyTreeEdge)
+            return null;
+        for (;;) {
+            if (x.left != null && x.left.anyTreeEdge)
+                x = x.left;
+            else if (x.treeEdge)
+                return x;
+            else
+                x = x.right;
+        }
+    }
+
+    /** Returns the next priority from a xorshift generator. */
+    private int nextPriority() {
+        int x = random;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        random = x;
+        return x;
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= n || w < 0 || w >= n)
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+}
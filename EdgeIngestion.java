@@ -0,0 +1,759 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A pipeline that applies a stream of edge insertions and removals to a
+ * graph in batches. Producers put updates into bounded lock-free queues and
+ * return at once; one or more applier threads take them out, keep only the
+ * last update of every edge, and write the rest to the graph in one batch,
+ * in order of start vertex. An add followed by a remove of the same edge
+ * in one batch is therefore a single remove, and repeated adds of the same
+ * edge are a single add. A batch is written when it has flushSize updates,
+ * or when the queue is empty and the oldest update has waited maxLatency.
+ *
+ * The updates are divided among the appliers by start vertex, so the
+ * updates of one directed edge are applied in the order they were queued.
+ * An addBi or removeBi is two directed updates, which may be applied in
+ * different batches. The appliers hold the monitor of the graph while they
+ * write a batch; other threads that read the graph while the pipeline is
+ * open should synchronize on it as well.
+ *
+ * Producers are slowed down by the size of the queues: the update methods
+ * wait while the queue is full, offer returns false, and a Flow subscriber
+ * only requests more updates from its publisher when there is room.
+ */
+public final class EdgeIngestion implements AutoCloseable {
+    /** Default capacity of each queue. */
+    public final static int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+
+    /** Default maximum number of updates in a batch. */
+    public final static int DEFAULT_FLUSH_SIZE = 1 << 12;
+
+    /** Default maximum delay of an update, in milliseconds. */
+    public final static long DEFAULT_MAX_LATENCY_MILLIS = 1;
+
+    /** The kind of an update, stored in the high half of a queue value. */
+    private final static long ADD = 1L << 32;
+    private final static long REMOVE = 2L << 32;
+
+    /** Number of times a full queue is retried before the producer parks. */
+    private final static int SPINS = 64;
+
+    /** Nanoseconds a producer waiting for room, or for a flush, parks. */
+    private final static long WAIT_NANOS = 20_000;
+
+    /** Nanoseconds an idle applier parks before it looks again. */
+    private final static long IDLE_NANOS = 1_000_000;
+
+    /**
+     * An edge update, used with offer and with Flow publishers.
+     */
+    public static final class Update {
+        private final boolean add;
+        private final boolean bidirectional;
+        private final int from;
+        private final int to;
+        private final int cost;
+
+        private Update(boolean add, boolean bidirectional, int from, int to, int cost) {
+            this.add = add;
+            this.bidirectional = bidirectional;
+            this.from = from;
+            this.to = to;
+            this.cost = cost;
+        }
+
+        /**
+         * Returns an update that inserts a directed edge without cost.
+         *
+         * @param from
+         *            vertex
+         * @param to
+         *            vertex
+         * @return the update
+         */
+        public static Update add(int from, int to) {
+            return new Update(true, false, from, to, Graph.NO_COST);
+        }
+
+        /**
+         * Returns an update that inserts a directed edge with cost c.
+         *
+         * @param from
+         *            vertex
+         * @param to
+         *            vertex
+         * @param c
+         *            edge cost, c >= 0
+         * @return the update
+         */
+        public static Update add(int from, int to, int c) {
+            return new Update(true, false, from, to, c);
+        }
+
+        /**
+         * Returns an update that inserts two edges between v and w.
+         *
+         * @param v
+         *            vertex
+         * @param w
+         *            vertex
+         * @return the update
+         */
+        public static Update addBi(int v, int w) {
+            return new Update(true, true, v, w, Graph.NO_COST);
+        }
+
+        /**
+         * Returns an update that inserts edges with cost c between v and w.
+         *
+         * @param v
+         *            vertex
+         * @param w
+         *            vertex
+         * @param c
+         *            edge cost, c >= 0
+         * @return the update
+         */
+        public static Update addBi(int v, int w, int c) {
+            return new Update(true, true, v, w, c);
+        }
+
+        /**
+         * Returns an update that removes a directed edge.
+         *
+         * @param from
+         *            vertex
+         * @param to
+         *            vertex
+         * @return the update
+         */
+        public static Update remove(int from, int to) {
+            return new Update(false, false, from, to, Graph.NO_COST);
+        }
+
+        /**
+         * Returns an update that removes the edges between v and w.
+         *
+         * @param v
+         *            vertex
+         * @param w
+         *            vertex
+         * @return the update
+         */
+        public static Update removeBi(int v, int w) {
+            return new Update(false, true, v, w, Graph.NO_COST);
+        }
+    }
+
+    private final Graph graph;
+    private final int n;
+    private final int flushSize;
+    private final long maxLatency;
+    private final Applier[] appliers;
+    private final List<UpdateSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger flushWaiters = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    /**
+     * Constructs a pipeline in front of g with one applier and the default
+     * settings.
+     *
+     * @param g
+     *            the graph to update
+     */
+    public EdgeIngestion(Graph g) {
+        this(g, 1, DEFAULT_QUEUE_CAPACITY, DEFAULT_FLUSH_SIZE, DEFAULT_MAX_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructs a pipeline in front of g and starts its applier threads.
+     *
+     * @param g
+     *            the graph to update
+     * @param appliers
+     *            number of applier threads, each with its own queue
+     * @param queueCapacity
+     *            capacity of each queue, a power of two
+     * @param flushSize
+     *            maximum number of updates in a batch, flushSize >= 1
+     * @param maxLatency
+     *            how long an update may wait for its batch to fill up
+     * @param unit
+     *            the unit of maxLatency
+     * @throws IllegalArgumentException
+     *             if a parameter is out of range
+     */
+    public EdgeIngestion(Graph g, int appliers, int queueCapacity, int flushSize, long maxLatency, TimeUnit unit) {
+        Workers.checkThreads(appliers);
+        if (flushSize < 1)
+            throw new IllegalArgumentException("Illegal flush size: " + flushSize + ".");
+        if (maxLatency < 0)
+            throw new IllegalArgumentException("Illegal latency: " + maxLatency + ".");
+        this.graph = g;
+        this.n = g.numVertices();
+        this.flushSize = flushSize;
+        this.maxLatency = unit.toNanos(maxLatency);
+        this.appliers = new Applier[appliers];
+        for (int i = 0; i < appliers; i++)
+            this.appliers[i] = new Applier(new EdgeQueue(queueCapacity), i);
+        for (Applier a : this.appliers)
+            a.thread.start();
+    }
+
+    /**
+     * Queues the insertion of a directed edge without cost, waiting while
+     * the queue is full.
+     *
+     * @param from
+     *            vertex
+     * @param to
+     *            vertex
+     * @throws IllegalArgumentException
+     *             if from or to are out of range
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public void add(int from, int to) {
+        checkVertexParameters(from, to);
+        put(from, to, ADD | (Graph.NO_COST & 0xffffffffL));
+    }
+
+    /**
+     * Queues the insertion of a directed edge with cost c, waiting while the
+     * queue is full.
+     *
+     * @param from
+     *            vertex
+     * @param to
+     *            vertex
+     * @param c
+     *            edge cost, c >= 0
+     * @throws IllegalArgumentException
+     *             if from or to are out of range or c < 0
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public void add(int from, int to, int c) {
+        checkVertexParameters(from, to);
+        checkNonNegativeCost(c);
+        put(from, to, ADD | c);
+    }
+
+    /**
+     * Queues the insertion of two edges between v and w, waiting while the
+     * queue is full.
+     *
+     * @param v
+     *            vertex
+     * @param w
+     *            vertex
+     * @throws IllegalArgumentException
+     *             if v or w are out of range
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public void addBi(int v, int w) {
+        checkVertexParameters(v, w);
+        long value = ADD | (Graph.NO_COST & 0xffffffffL);
+        put(v, w, value);
+        if (v != w)
+            put(w, v, value);
+    }
+
+    /**
+     * Queues the insertion of edges with cost c between v and w, waiting
+     * while the queue is full.
+     *
+     * @param v
+     *            vertex
+     * @param w
+     *            vertex
+     * @param c
+     *            edge cost, c >= 0
+     * @throws IllegalArgumentException
+     *             if v or w are out of range or c < 0
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public void addBi(int v, int w, int c) {
+        checkVertexParameters(v, w);
+        checkNonNegativeCost(c);
+        put(v, w, ADD | c);
+        if (v != w)
+            put(w, v, ADD | c);
+    }
+
+    /**
+     * Queues the removal of a directed edge, waiting while the queue is
+     * full.
+     *
+     * @param from
+     *            vertex
+     * @param to
+     *            vertex
+     * @throws IllegalArgumentException
+     *             if from or to are out of range
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public void remove(int from, int to) {
+        checkVertexParameters(from, to);
+        put(from, to, REMOVE);
+    }
+
+    /**
+     * Queues the removal of the edges between v and w, waiting while the
+     * queue is full.
+     *
+     * @param v
+     *            vertex
+     * @param w
+     *            vertex
+     * @throws IllegalArgumentException
+     *             if v or w are out of range
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public void removeBi(int v, int w) {
+        checkVertexParameters(v, w);
+        put(v, w, REMOVE);
+        if (v != w)
+            put(w, v, REMOVE);
+    }
+
+    /**
+     * Queues an update if there is room, without waiting. If the second
+     * half of a bidirectional update does not fit, the call waits for room
+     * for it, so that an update is never half queued.
+     *
+     * @param u
+     *            the update
+     * @return false if the queue was full and nothing was queued
+     * @throws IllegalArgumentException
+     *             if a vertex is out of range or the cost is negative and
+     *             not NO_COST
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public boolean offer(Update u) {
+        return enqueue(u, false);
+    }
+
+    private boolean enqueue(Update u, boolean wait) {
+        checkVertexParameters(u.from, u.to);
+        if (u.cost != Graph.NO_COST)
+            checkNonNegativeCost(u.cost);
+        long value = u.add ? ADD | (u.cost & 0xffffffffL) : REMOVE;
+        if (wait)
+            put(u.from, u.to, value);
+        else if (!offer(u.from, u.to, value))
+            return false;
+        if (u.bidirectional && u.from != u.to)
+            put(u.to, u.from, value);
+        return true;
+    }
+
+    private boolean offer(int from, int to, long value) {
+        checkOpen();
+        Applier a = appliers[from % appliers.length];
+        if (!a.queue.offer(((long) from << 32) | to, value))
+            return false;
+        if (a.sleeping)
+            LockSupport.unpark(a.thread);
+        return true;
+    }
+
+    private void put(int from, int to, long value) {
+        int spins = 0;
+        while (!offer(from, to, value)) {
+            if (++spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Applier a = appliers[from % appliers.length];
+                LockSupport.unpark(a.thread);
+                LockSupport.parkNanos(this, WAIT_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Returns a subscriber that queues the updates of one Flow publisher.
+     * It requests updates from its publisher a window at a time, and only
+     * requests a new window when the queues have room for it, so a fast
+     * publisher is held back instead of filling memory.
+     *
+     * @return a new subscriber
+     */
+    public Flow.Subscriber<Update> subscriber() {
+        return new UpdateSubscriber();
+    }
+
+    /**
+     * Waits until every update queued before this call has been written to
+     * the graph.
+     *
+     * @throws IllegalStateException
+     *             if the pipeline is closed or has failed
+     */
+    public void flush() {
+        checkOpen();
+        flushWaiters.incrementAndGet();
+        try {
+            for (Applier a : appliers) {
+                long target = a.queue.claimed();
+                while (a.applied < target) {
+                    checkFailure();
+                    LockSupport.unpark(a.thread);
+                    LockSupport.parkNanos(this, WAIT_NANOS);
+                }
+            }
+        } finally {
+            flushWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the remaining updates to the graph and stops the appliers.
+     * Updates queued by other threads during the call may be lost.
+     *
+     * @throws IllegalStateException
+     *             if an applier has failed
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        boolean interrupted = false;
+        for (Applier a : appliers) {
+            LockSupport.unpark(a.thread);
+            while (true) {
+                try {
+                    a.thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        checkFailure();
+    }
+
+    /**
+     * Returns the number of updates written to the graph, including those
+     * made redundant by a later update of the same edge.
+     *
+     * @return the number of applied updates
+     */
+    public long updates() {
+        long sum = 0;
+        for (Applier a : appliers)
+            sum += a.updates;
+        return sum;
+    }
+
+    /**
+     * Returns the number of updates dropped because a later update of the
+     * same edge was in the same batch.
+     *
+     * @return the number of coalesced updates
+     */
+    public long coalesced() {
+        long sum = 0;
+        for (Applier a : appliers)
+            sum += a.coalesced;
+        return sum;
+    }
+
+    /**
+     * Returns the number of batches written to the graph.
+     *
+     * @return the number of batches
+     */
+    public long batches() {
+        long sum = 0;
+        for (Applier a : appliers)
+            sum += a.batches;
+        return sum;
+    }
+
+    /**
+     * Takes the updates out of one queue and writes them in batches. The
+     * batch is an open addressing table from edge to its last update, with
+     * the entries in insertion order so that the table can be cleared in
+     * time proportional to the batch.
+     */
+    private final class Applier implements Runnable {
+        final EdgeQueue queue;
+        final Thread thread;
+        volatile boolean sleeping;
+
+        /** Every update the queue has handed out below this has been applied. */
+        volatile long applied;
+
+        volatile long updates;
+        volatile long coalesced;
+        volatile long batches;
+
+        private final int tableMask;
+        private final int[] table;
+        private final long[] entryKey;
+        private final long[] entryValue;
+        private final int[] entrySlot;
+        private int size;
+        private int raw;
+        private long firstNanos;
+
+        private final long[] sorted;
+        private final int[] from;
+        private final int[] to;
+        private final int[] cost;
+
+        Applier(EdgeQueue queue, int index) {
+            this.queue = queue;
+            int capacity = Integer.highestOneBit(Math.max(2, 2 * flushSize - 1)) << 1;
+            tableMask = capacity - 1;
+            table = new int[capacity];
+            Arrays.fill(table, -1);
+            entryKey = new long[flushSize];
+            entryValue = new long[flushSize];
+            entrySlot = new int[flushSize];
+            sorted = new long[flushSize];
+            from = new int[flushSize];
+            to = new int[flushSize];
+            cost = new int[flushSize];
+            thread = new Thread(this, "ingestion-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    int drained = 0;
+                    while (raw < flushSize && queue.isReady()) {
+                        coalesce(queue.peekKey(), queue.peekValue());
+                        queue.remove();
+                        drained++;
+                    }
+                    if (drained > 0)
+                        replenish();
+                    boolean idle = !queue.isReady();
+                    long now = System.nanoTime();
+                    if (raw > 0 && (raw >= flushSize || (idle
+                            && (now - firstNanos >= maxLatency || flushWaiters.get() > 0 || closed))))
+                        apply();
+                    if (raw == 0)
+                        applied = queue.consumed();
+                    if (!idle)
+                        continue;
+                    if (closed && raw == 0 && queue.claimed() == queue.consumed())
+                        return;
+
+                    replenish();
+                    sleeping = true;
+                    if (!queue.isReady()) {
+                        long wait = raw > 0 ? maxLatency - (now - firstNanos) : IDLE_NANOS;
+                        if (flushWaiters.get() > 0 || closed)
+                            wait = Math.min(wait, WAIT_NANOS);
+                        if (wait > 0)
+                            LockSupport.parkNanos(this, wait);
+                    }
+                    sleeping = false;
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        private void coalesce(long key, long value) {
+            if (raw++ == 0)
+                firstNanos = System.nanoTime();
+            int slot = (int) mix(key) & tableMask;
+            int e;
+            while ((e = table[slot]) >= 0) {
+                if (entryKey[e] == key) {
+                    entryValue[e] = value;
+                    return;
+                }
+                slot = (slot + 1) & tableMask;
+            }
+            table[slot] = size;
+            entryKey[size] = key;
+            entryValue[size] = value;
+            entrySlot[size] = slot;
+            size++;
+        }
+
+        private int find(long key) {
+            int slot = (int) mix(key) & tableMask;
+            while (entryKey[table[slot]] != key)
+                slot = (slot + 1) & tableMask;
+            return table[slot];
+        }
+
+        /**
+         * Writes the batch: first the removals, then the insertions with a
+         * single addAll if the graph supports BulkInsertion.
+         */
+        private void apply() {
+            System.arraycopy(entryKey, 0, sorted, 0, size);
+            Arrays.sort(sorted, 0, size);
+            int numAdds = 0;
+            boolean weighted = false;
+            synchronized (graph) {
+                for (int i = 0; i < size; i++) {
+                    long key = sorted[i];
+                    long value = entryValue[find(key)];
+                    int v = (int) (key >>> 32);
+                    int w = (int) key;
+                    if ((value & REMOVE) != 0) {
+                        graph.remove(v, w);
+                    } else {
+                        from[numAdds] = v;
+                        to[numAdds] = w;
+                        cost[numAdds] = (int) value;
+                        weighted |= (int) value != Graph.NO_COST;
+                        numAdds++;
+                    }
+                }
+                if (graph instanceof BulkInsertion) {
+                    ((BulkInsertion) graph).addAll(from, to, weighted ? cost : null, numAdds);
+                } else {
+                    for (int i = 0; i < numAdds; i++) {
+                        if (cost[i] == Graph.NO_COST)
+                            graph.add(from[i], to[i]);
+                        else
+                            graph.add(from[i], to[i], cost[i]);
+                    }
+                }
+            }
+
+            for (int i = 0; i < size; i++)
+                table[entrySlot[i]] = -1;
+            updates += raw;
+            coalesced += raw - size;
+            batches++;
+            size = 0;
+            raw = 0;
+        }
+    }
+
+    private void replenish() {
+        for (UpdateSubscriber s : subscribers)
+            s.replenish();
+    }
+
+    /** The finalizer of MurmurHash3, which spreads the bits of a key. */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Queues the updates of a publisher. The updates received but not yet
+     * requested again are owed to the publisher, and are requested when
+     * they are at least half a window and every queue has room for a
+     * window.
+     */
+    private final class UpdateSubscriber implements Flow.Subscriber<Update> {
+        private final int window = Math.max(1, appliers[0].queue.capacity() / 4);
+        private final AtomicLong owed = new AtomicLong();
+        private final AtomicBoolean requesting = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            if (subscription != null || closed) {
+                s.cancel();
+                return;
+            }
+            subscription = s;
+            subscribers.add(this);
+            s.request(window);
+        }
+
+        @Override
+        public void onNext(Update u) {
+            enqueue(u, true);
+            owed.incrementAndGet();
+            replenish();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onComplete() {
+            subscribers.remove(this);
+        }
+
+        /** Called by the subscriber and the appliers; requests are serial. */
+        void replenish() {
+            if (owed.get() < (window + 1) / 2 || !requesting.compareAndSet(false, true))
+                return;
+            try {
+                for (Applier a : appliers) {
+                    if (a.queue.size() > a.queue.capacity() - window)
+                        return;
+                }
+                long count = owed.getAndSet(0);
+                if (count > 0)
+                    subscription.request(count);
+            } finally {
+                requesting.set(false);
+            }
+        }
+    }
+
+    private void checkOpen() {
+        checkFailure();
+        if (closed)
+            throw new IllegalStateException("Closed.");
+    }
+
+    private void checkFailure() {
+        Throwable e = failure;
+        if (e != null)
+            throw new IllegalStateException("Applier failed.", e);
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= n || w < 0 || w >= n)
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+
+    /**
+     * Checks that c is a non-negative edge cost.
+     *
+     * @throws IllegalArgumentException
+     *             if c < 0
+     */
+    private void checkNonNegativeCost(int c) {
+        if (c < 0)
+            throw new IllegalArgumentException("Illegal cost: c = " + c + ".");
+    }
+}
@@ -0,0 +1,194 @@
+package se.kth.graph;
+
+import java.util.Random;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the updates of concurrent producers all reach the graph, that
+ * the last update of every edge wins, and what close does.
+ */
+public class EdgeIngestionTest {
+    @Test
+    public void concurrentProducersReachTheGraph() throws InterruptedException {
+        final int n = 2000;
+        final int producers = 4;
+        final int perProducer = 20000;
+        for (Graph g : new Graph[] { new HashGraph(n), new HybridGraph(n), new MatrixGraph(n) }) {
+            // Small queues, so that the producers have to wait for room.
+            final EdgeIngestion ingestion = new EdgeIngestion(g, 3, 64, 256, 1, TimeUnit.MILLISECONDS);
+            Thread[] threads = new Thread[producers];
+            for (int i = 0; i < producers; i++) {
+                final int p = i;
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Every update of an edge has the same cost, so the
+                        // graph does not depend on the interleaving.
+                        Random random = new Random(p);
+                        for (int j = 0; j < perProducer; j++) {
+                            int v = random.nextInt(n);
+                            int w = random.nextInt(n);
+                            if (j % 2 == 0)
+                                ingestion.add(v, w, v + w);
+                            else
+                                ingestion.addBi(v, w, v + w);
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread t : threads)
+                t.join();
+            ingestion.close();
+
+            Graph expected = new HashGraph(n);
+            for (int p = 0; p < producers; p++) {
+                Random random = new Random(p);
+                for (int j = 0; j < perProducer; j++) {
+                    int v = random.nextInt(n);
+                    int w = random.nextInt(n);
+                    if (j % 2 == 0)
+                        expected.add(v, w, v + w);
+                    else
+                        expected.addBi(v, w, v + w);
+                }
+            }
+            assertSameEdges(expected, g);
+            assertTrue(ingestion.updates() >= expected.numEdges());
+        }
+    }
+
+    @Test
+    public void lastUpdateOfAnEdgeWins() {
+        int n = 30;
+        Random random = new Random(42);
+        Graph g = new HashGraph(n);
+        Graph expected = new HashGraph(n);
+        EdgeIngestion ingestion = new EdgeIngestion(g, 2, 1024, 64, 10, TimeUnit.MILLISECONDS);
+        long queued = 0;
+        try {
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < 500; i++) {
+                    int v = random.nextInt(n);
+                    int w = random.nextInt(n);
+                    queued++;
+                    switch (random.nextInt(4)) {
+                    case 0:
+                        ingestion.add(v, w);
+                        expected.add(v, w);
+                        break;
+                    case 1:
+                        ingestion.add(v, w, i);
+                        expected.add(v, w, i);
+                        break;
+                    case 2:
+                        ingestion.remove(v, w);
+                        expected.remove(v, w);
+                        break;
+                    default:
+                        ingestion.removeBi(v, w);
+                        expected.removeBi(v, w);
+                        if (v != w)
+                            queued++;
+                        break;
+                    }
+                }
+                ingestion.flush();
+                synchronized (g) {
+                    assertSameEdges(expected, g);
+                }
+            }
+            assertEquals(queued, ingestion.updates());
+        } finally {
+            ingestion.close();
+        }
+    }
+
+    @Test
+    public void addThenRemoveInOneBatchIsARemove() {
+        Graph g = new HashGraph(3);
+        g.add(0, 1);
+        // A long latency and a large batch keep all updates in one batch.
+        EdgeIngestion ingestion = new EdgeIngestion(g, 1, 16, 16, 1, TimeUnit.HOURS);
+        ingestion.add(0, 1);
+        ingestion.remove(0, 1);
+        ingestion.add(1, 2);
+        ingestion.add(1, 2, 5);
+        ingestion.flush();
+        assertFalse(g.hasEdge(0, 1));
+        assertEquals(5, g.cost(1, 2));
+        assertEquals(1, ingestion.batches());
+        assertEquals(4, ingestion.updates());
+        assertEquals(2, ingestion.coalesced());
+        ingestion.close();
+    }
+
+    @Test
+    public void subscriberQueuesEveryUpdate() throws InterruptedException {
+        int n = 500;
+        Graph g = new HashGraph(n);
+        EdgeIngestion ingestion = new EdgeIngestion(g, 2, 64, 32, 1, TimeUnit.MILLISECONDS);
+        SubmissionPublisher<EdgeIngestion.Update> publisher = new SubmissionPublisher<EdgeIngestion.Update>();
+        publisher.subscribe(ingestion.subscriber());
+        for (int v = 0; v < n; v++)
+            for (int w = 0; w < 20; w++)
+                publisher.submit(EdgeIngestion.Update.add(v, (v + w + 1) % n));
+        publisher.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (ingestion.updates() < 20L * n && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        ingestion.close();
+        assertEquals(20L * n, g.numEdges());
+    }
+
+    @Test
+    public void closeWritesTheRemainingUpdates() {
+        Graph g = new HashGraph(100);
+        EdgeIngestion ingestion = new EdgeIngestion(g, 2, 1024, 4096, 1, TimeUnit.HOURS);
+        for (int v = 0; v < 100; v++)
+            ingestion.add(v, (v + 1) % 100);
+        ingestion.close();
+        assertEquals(100, g.numEdges());
+        // Closing again does nothing.
+        ingestion.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterCloseFails() {
+        EdgeIngestion ingestion = new EdgeIngestion(new HashGraph(3));
+        ingestion.close();
+        ingestion.add(0, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void flushAfterCloseFails() {
+        EdgeIngestion ingestion = new EdgeIngestion(new HashGraph(3));
+        ingestion.close();
+        ingestion.flush();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addRejectsVertexOutOfRange() {
+        EdgeIngestion ingestion = new EdgeIngestion(new HashGraph(3));
+        try {
+            ingestion.add(0, 3);
+        } finally {
+            ingestion.close();
+        }
+    }
+
+    private static void assertSameEdges(Graph expected, Graph g) {
+        assertEquals(expected.numEdges(), g.numEdges());
+        for (int v = 0; v < expected.numVertices(); v++) {
+            for (VertexIterator it = expected.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                assertTrue(g.hasEdge(v, w));
+                assertEquals(expected.cost(v, w), g.cost(v, w));
+            }
+        }
+    }
+}
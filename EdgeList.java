@@ -0,0 +1,259 @@
+package se.kth.graph;
+
+/**
+ * A list of edges between the vertices 0 ... n-1, stored in primitive
+ * arrays. Edge i goes from from[i] to to[i] and has cost cost[i], or NO_COST
+ * if there is no cost array. An EdgeList may contain self loops and
+ * duplicates; when it is added to a graph a duplicate simply replaces the
+ * earlier edge.
+ */
+public final class EdgeList {
+    private final int numVertices;
+    final int[] from;
+    final int[] to;
+    final int[] cost;
+    final int size;
+
+    /**
+     * Constructs an EdgeList without checking parameters. The arrays are not
+     * copied.
+     */
+    EdgeList(int numVertices, int[] from, int[] to, int[] cost, int size) {
+        this.numVertices = numVertices;
+        this.from = from;
+        this.to = to;
+        this.cost = cost;
+        this.size = size;
+    }
+
+    /**
+     * Returns an EdgeList with the edges (from[i], to[i]) for 0 <= i < size.
+     * The arrays are not copied, so they must not be changed afterwards.
+     * Time complexity: O(size).
+     *
+     * @param numVertices
+     *            number of vertices
+     * @param from
+     *            from[i] is the start vertex of edge i
+     * @param to
+     *            to[i] is the end vertex of edge i
+     * @param cost
+     *            cost[i] is the cost of edge i or NO_COST; may be null if no
+     *            edge has a cost
+     * @param size
+     *            number of edges
+     * @return an EdgeList backed by the arrays
+     * @throws IllegalArgumentException
+     *             if an array is too short, a vertex is out of range or a
+     *             cost is negative and not NO_COST
+     */
+    public static EdgeList of(int numVertices, int[] from, int[] to, int[] cost, int size) {
+        if (numVertices < 0)
+            throw new IllegalArgumentException("n = " + numVertices);
+        checkEdges(numVertices, from, to, cost, size);
+        return new EdgeList(numVertices, from, to, cost, size);
+    }
+
+    /**
+     * Returns the edges of g, in order of their start vertex. The list has a
+     * cost array only if some edge of g has a cost. Time complexity: O(n + m)
+     * for a graph with O(1) neighbor iteration, plus one call to cost per
+     * edge.
+     *
+     * @param g
+     *            a graph
+     * @return the edges of g
+     */
+    public static EdgeList of(Graph g) {
+        int m = g.numEdges();
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] cost = new int[m];
+        boolean weighted = false;
+        int i = 0;
+        for (int v = 0; v < g.numVertices(); v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                int c = g.cost(v, w);
+                from[i] = v;
+                to[i] = w;
+                cost[i] = c;
+                weighted |= c != Graph.NO_COST;
+                i++;
+            }
+        }
+        return new EdgeList(g.numVertices(), from, to, weighted ? cost : null, i);
+    }
+
+    /**
+     * Checks the arrays of an edge batch in one pass. The vertices are
+     * combined with bitwise or, so that the loop has no branches.
+     *
+     * @throws IllegalArgumentException
+     *             if an array is too short, a vertex is out of range or a
+     *             cost is negative and not NO_COST
+     */
+    static void checkEdges(int n, int[] from, int[] to, int[] cost, int size) {
+        if (size < 0 || from.length < size || to.length < size || (cost != null && cost.length < size))
+            throw new IllegalArgumentException("Illegal batch size: size = " + size + ".");
+
+        // x | (n - 1 - x) is negative exactly when x < 0 or x >= n.
+        int bad = 0;
+        int last = n - 1;
+        for (int i = 0; i < size; i++) {
+            int v = from[i];
+            int w = to[i];
+            bad |= v | (last - v) | w | (last - w);
+        }
+        if (bad < 0) {
+            for (int i = 0; i < size; i++) {
+                if (from[i] < 0 || from[i] >= n || to[i] < 0 || to[i] >= n)
+                    throw new IllegalArgumentException("Out of range: v = " + from[i] + ", w = " + to[i] + ".");
+            }
+        }
+        if (cost != null) {
+            int min = 0;
+            for (int i = 0; i < size; i++)
+                min = Math.min(min, cost[i]);
+            if (min < Graph.NO_COST) {
+                for (int i = 0; i < size; i++) {
+                    if (cost[i] < Graph.NO_COST)
+                        throw new IllegalArgumentException("Illegal cost: c = " + cost[i] + ".");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return the number of vertices
+     */
+    public int numVertices() {
+        return numVertices;
+    }
+
+    /**
+     * Returns the number of edges in this list, counting duplicates.
+     *
+     * @return the number of edges in this list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the start vertex of edge i.
+     *
+     * @param i
+     *            edge index
+     * @return the start vertex of edge i
+     * @throws IllegalArgumentException
+     *             if i is out of range
+     */
+    public int from(int i) {
+        checkIndex(i);
+        return from[i];
+    }
+
+    /**
+     * Returns the end vertex of edge i.
+     *
+     * @param i
+     *            edge index
+     * @return the end vertex of edge i
+     * @throws IllegalArgumentException
+     *             if i is out of range
+     */
+    public int to(int i) {
+        checkIndex(i);
+        return to[i];
+    }
+
+    /**
+     * Returns the cost of edge i, or NO_COST.
+     *
+     * @param i
+     *            edge index
+     * @return the cost of edge i, or NO_COST
+     * @throws IllegalArgumentException
+     *             if i is out of range
+     */
+    public int cost(int i) {
+        checkIndex(i);
+        return cost == null ? Graph.NO_COST : cost[i];
+    }
+
+    /**
+     * Adds every edge in this list to g with add, or with a single addAll if
+     * g supports BulkInsertion. Time complexity: O(size) calls to add.
+     *
+     * @param g
+     *            a graph with at least numVertices() vertices
+     * @throws IllegalArgumentException
+     *             if g has too few vertices
+     */
+    public void addTo(Graph g) {
+        checkGraph(g);
+        if (g instanceof BulkInsertion) {
+            ((BulkInsertion) g).addAll(from, to, cost, size);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            int c = cost == null ? Graph.NO_COST : cost[i];
+            if (c == Graph.NO_COST)
+                g.add(from[i], to[i]);
+            else
+                g.add(from[i], to[i], c);
+        }
+    }
+
+    /**
+     * Adds every edge in this list to g with addBi, or with a single addAllBi
+     * if g supports BulkInsertion. Time complexity: O(size) calls to addBi.
+     *
+     * @param g
+     *            a graph with at least numVertices() vertices
+     * @throws IllegalArgumentException
+     *             if g has too few vertices
+     */
+    public void addBiTo(Graph g) {
+        checkGraph(g);
+        if (g instanceof BulkInsertion) {
+            ((BulkInsertion) g).addAllBi(from, to, cost, size);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            int c = cost == null ? Graph.NO_COST : cost[i];
+            if (c == Graph.NO_COST)
+                g.addBi(from[i], to[i]);
+            else
+                g.addBi(from[i], to[i], c);
+        }
+    }
+
+    /**
+     * Returns a CsrGraph with the edges in this list, built with one thread
+     * per available processor. Time complexity: O(n + m log d), where d is
+     * the maximum degree.
+     *
+     * @param bidirectional
+     *            if true every edge is added in both directions, as with
+     *            addBi
+     * @return a CsrGraph with the edges in this list
+     */
+    public CsrGraph toCsrGraph(boolean bidirectional) {
+        return CsrGraph.fromEdges(numVertices, from, to, cost, size, bidirectional,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IllegalArgumentException("Out of range: i = " + i + ".");
+    }
+
+    private void checkGraph(Graph g) {
+        if (g.numVertices() < numVertices)
+            throw new IllegalArgumentException("Too few vertices: " + g.numVertices() + ".");
+    }
+}
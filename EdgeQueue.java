@@ -0,0 +1,123 @@
+package se.kth.graph;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free queue of (key, value) pairs of longs, with any number
+ * of producers and a single consumer. The entries live in a ring of
+ * primitive arrays, so offer and poll allocate nothing.
+ *
+ * This is the bounded queue of Vyukov: every slot has a sequence number
+ * that tells whose turn it is. A producer claims a position with one
+ * compare-and-set on the tail, writes the entry and then publishes it by
+ * advancing the sequence number of the slot; the consumer frees the slot by
+ * advancing it once more, by the capacity.
+ */
+final class EdgeQueue {
+    private final int mask;
+    private final long[] keys;
+    private final long[] values;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Only written by the consumer; read by size. */
+    private final AtomicLong removed = new AtomicLong();
+
+    /** The position of the head entry, a copy of removed for the consumer. */
+    private long head;
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity
+     *            maximum number of entries, a power of two
+     */
+    EdgeQueue(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Illegal capacity: " + capacity + ".");
+        mask = capacity - 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        sequence = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequence.set(i, i);
+    }
+
+    /**
+     * Adds an entry if there is room. May be called by any thread.
+     *
+     * @return false if the queue is full
+     */
+    boolean offer(long key, long value) {
+        long pos = tail.get();
+        for (;;) {
+            long seq = sequence.get((int) pos & mask);
+            long dif = seq - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1))
+                    break;
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        int i = (int) pos & mask;
+        keys[i] = key;
+        values[i] = value;
+        sequence.lazySet(i, pos + 1);
+        return true;
+    }
+
+    /**
+     * Returns true if the head entry has been published. Only called by the
+     * consumer.
+     */
+    boolean isReady() {
+        return sequence.get((int) head & mask) == head + 1;
+    }
+
+    /** Returns the key of the head entry. Only called by the consumer. */
+    long peekKey() {
+        return keys[(int) head & mask];
+    }
+
+    /** Returns the value of the head entry. Only called by the consumer. */
+    long peekValue() {
+        return values[(int) head & mask];
+    }
+
+    /**
+     * Removes the head entry, which must be ready. Only called by the
+     * consumer.
+     */
+    void remove() {
+        sequence.lazySet((int) head & mask, head + mask + 1);
+        removed.lazySet(++head);
+    }
+
+    /**
+     * Returns the number of positions claimed by producers so far. An entry
+     * offered before this call has a position below the result.
+     */
+    long claimed() {
+        return tail.get();
+    }
+
+    /** Returns the number of entries removed so far. Only called by the consumer. */
+    long consumed() {
+        return head;
+    }
+
+    /** Returns the approximate number of entries. */
+    int size() {
+        return (int) Math.max(0, Math.min(mask + 1, tail.get() - removed.get()));
+    }
+
+    /** Returns the capacity. */
+    int capacity() {
+        return mask + 1;
+    }
+}
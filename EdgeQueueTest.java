@@ -0,0 +1,96 @@
+package se.kth.graph;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the queue is first in first out, full at its capacity, and
+ * loses no entries from several producers.
+ */
+public class EdgeQueueTest {
+    @Test
+    public void fullAtCapacityAndFirstInFirstOut() {
+        EdgeQueue queue = new EdgeQueue(8);
+        assertEquals(8, queue.capacity());
+        long next = 0;
+        long expected = 0;
+        // Several rounds, so that the positions wrap around the ring.
+        for (int round = 0; round < 5; round++) {
+            assertFalse(queue.isReady());
+            assertEquals(0, queue.size());
+            long start = next;
+            while (queue.offer(next, -next))
+                next++;
+            assertEquals(8, next - start);
+            assertEquals(8, queue.size());
+            assertEquals(next, queue.claimed());
+            // One slot freed makes room for exactly one more.
+            assertTrue(queue.isReady());
+            assertEquals(expected, queue.peekKey());
+            queue.remove();
+            expected++;
+            assertTrue(queue.offer(next, -next));
+            next++;
+            assertFalse(queue.offer(next, -next));
+            while (queue.isReady()) {
+                assertEquals(expected, queue.peekKey());
+                assertEquals(-expected, queue.peekValue());
+                queue.remove();
+                expected++;
+            }
+            assertEquals(next, expected);
+            assertEquals(expected, queue.consumed());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAPowerOfTwo() {
+        new EdgeQueue(12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAtLeastTwo() {
+        new EdgeQueue(1);
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 50000;
+        final EdgeQueue queue = new EdgeQueue(256);
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            final int p = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perProducer; j++) {
+                        while (!queue.offer(p, j))
+                            Thread.yield();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // The entries of one producer arrive in the order they were offered.
+        long[] next = new long[producers];
+        long received = 0;
+        while (received < (long) producers * perProducer) {
+            if (!queue.isReady()) {
+                Thread.yield();
+                continue;
+            }
+            int p = (int) queue.peekKey();
+            assertEquals(next[p]++, queue.peekValue());
+            queue.remove();
+            received++;
+        }
+        for (Thread t : threads)
+            t.join();
+        for (int p = 0; p < producers; p++)
+            assertEquals(perProducer, next[p]);
+        assertFalse(queue.isReady());
+        assertEquals(queue.claimed(), queue.consumed());
+    }
+}
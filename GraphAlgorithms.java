@@ -35,6 +35,8 @@ public class GraphAlgorithms {
         }
 
         // Assign n random edges to the n vertices.
+        GraphEvents.GraphBuild build = new GraphEvents.GraphBuild();
+        build.begin();
         for(int i = 0; i < size; i++) {
             int randomInt = (int)(Math.random() * size);
             int randomInt2 = (int)(Math.random() * size);
@@ -42,6 +44,10 @@ public class GraphAlgorithms {
                 g.add(randomInt, randomInt2);
             }
         }
+        if (g != null) {
+            build.set(g, "Math.random");
+            build.commit();
+        }
 
         // %s is a command for toString() method on a given vertex "v" in graph "g".
         System.out.printf("A graph: %s%n", g);
@@ -80,16 +86,108 @@ public class GraphAlgorithms {
 
         };
 
+        GraphEvents.ComponentSearch search = new GraphEvents.ComponentSearch();
+        search.begin();
         int n = g.numVertices();
         boolean[] visited = new boolean[n];
+        int components = 0;
 
         for (int v = 0; v < n; v++) {
             if (!visited[v]) {
                 dfs(g, v, visited, printVertex);
                 System.out.println();
+                components++;
+            }
+        }
+
+        if (search.shouldCommit()) {
+            search.graphType = g.getClass().getSimpleName();
+            search.vertices = n;
+            search.edges = g.numEdges();
+            search.components = components;
+            search.commit();
+        }
+
+    }
+
+    /**
+     * Returns the components of the undirected graph g: vertices v and w are
+     * in the same component if and only if ids[v] == ids[w]. The components
+     * are numbered 0, 1, ... in the order of their smallest vertex. The
+     * search uses an explicit stack, so it works for components of any
+     * size. Time complexity: O(n + m) for a graph with O(1) neighbor
+     * iteration.
+     *
+     * @param g
+     *            an undirected graph
+     * @return ids[v] is the component of v
+     */
+    public static int[] componentIds(Graph g) {
+        long start = GraphMetrics.ENABLED ? System.nanoTime() : 0;
+        GraphEvents.ComponentSearch search = new GraphEvents.ComponentSearch();
+        search.begin();
+        boolean componentEvents = new GraphEvents.Component().isEnabled();
+
+        int n = g.numVertices();
+        int[] ids = new int[n];
+        Arrays.fill(ids, -1);
+        int[] stack = new int[n];
+        int numComponents = 0;
+        for (int root = 0; root < n; root++) {
+            if (ids[root] >= 0)
+                continue;
+            GraphEvents.Component component = componentEvents ? new GraphEvents.Component() : null;
+            if (component != null)
+                component.begin();
+            int size = 1;
+            int top = 0;
+            stack[top++] = root;
+            ids[root] = numComponents;
+            while (top > 0) {
+                int v = stack[--top];
+                for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                    int w = it.next();
+                    if (ids[w] < 0) {
+                        ids[w] = numComponents;
+                        stack[top++] = w;
+                        size++;
+                    }
+                }
+            }
+            if (component != null) {
+                component.component = numComponents;
+                component.root = root;
+                component.vertices = size;
+                component.commit();
             }
+            numComponents++;
         }
 
+        if (search.shouldCommit()) {
+            search.graphType = g.getClass().getSimpleName();
+            search.vertices = n;
+            search.edges = g.numEdges();
+            search.components = numComponents;
+            search.commit();
+        }
+        if (GraphMetrics.ENABLED)
+            GraphMetrics.global().record(GraphMetrics.Operation.TRAVERSAL, System.nanoTime() - start);
+        return ids;
+    }
+
+    /**
+     * Returns the number of components in a result of componentIds.
+     * Time complexity: O(n).
+     *
+     * @param ids
+     *            ids[v] is the component of v
+     * @return the number of components
+     */
+    public static int countComponents(int[] ids) {
+        int max = -1;
+        for (int id : ids)
+            max = Math.max(max, id);
+        return max + 1;
     }
 
     /**
@@ -0,0 +1,176 @@
+package se.kth.graph;
+
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Abstract allocation test class for graphs. Every test runs one operation
+ * many times on a random graph and fails if the bytes allocated per call, as
+ * measured by ThreadMXBean.getThreadAllocatedBytes, exceed the budget of the
+ * implementation. Implementing test classes must override getEmptyGraph and
+ * may override the budget methods. By default the lookups may not allocate
+ * at all and neighbors may allocate one small iterator object.
+ *
+ * The graph has NUM_VERTICES vertices and about DEGREE neighbors per vertex,
+ * so budgets for neighbors and the traversal may depend on the degree. Every
+ * operation is run in several rounds and the round that allocated the least
+ * counts, after the JIT compiler has had a chance to remove allocations that
+ * do not escape. The tests are skipped if the JVM does not measure
+ * allocation.
+ */
+public abstract class GraphAllocationTest {
+    /** Number of vertices of the test graph. */
+    protected final static int NUM_VERTICES = 1024;
+
+    /** Average number of neighbors of a vertex of the test graph. */
+    protected final static int DEGREE = 8;
+
+    private final static int CALLS = 1 << 16;
+    private final static int ROUNDS = 10;
+
+    /**
+     * Bytes per round that are not counted, for what reading the allocation
+     * counter allocates itself.
+     */
+    private final static long SLACK = 4096;
+
+    private Graph graph;
+
+    /** Keeps the results of the operations alive. */
+    private long sink;
+
+    /**
+     * @param numVertices The amount of vertices in the graph.
+     * @return A Graph instance with no edges.
+     */
+    protected abstract Graph getEmptyGraph(int numVertices);
+
+    /**
+     * Returns a graph with the edges, added in both directions. Immutable
+     * implementations override this to build the graph directly.
+     *
+     * @param edges The edges of the graph.
+     * @return A Graph instance with the edges.
+     */
+    protected Graph getGraph(EdgeList edges) {
+        Graph g = getEmptyGraph(edges.numVertices());
+        edges.addBiTo(g);
+        return g;
+    }
+
+    /** @return Bytes that one call to hasEdge may allocate. */
+    protected long hasEdgeBudget() {
+        return 0;
+    }
+
+    /** @return Bytes that one call to cost may allocate. */
+    protected long costBudget() {
+        return 0;
+    }
+
+    /** @return Bytes that one call to degree may allocate. */
+    protected long degreeBudget() {
+        return 0;
+    }
+
+    /**
+     * @return Bytes that one call to neighbors and iterating over all
+     *         neighbors may allocate.
+     */
+    protected long neighborsBudget() {
+        return 32;
+    }
+
+    /**
+     * @return Bytes per vertex that a full component search may allocate,
+     *         including the two int arrays of the search itself.
+     */
+    protected long traversalBudget() {
+        return 8 + neighborsBudget();
+    }
+
+    /** An operation on the graph; i is the number of the call. */
+    private interface Operation {
+        long run(Graph g, int i);
+    }
+
+    @Before
+    public void setUp() {
+        assumeTrue(GraphMetrics.allocatedBytes() >= 0);
+        graph = getGraph(RandomGraphs.gnm(NUM_VERTICES, NUM_VERTICES * DEGREE / 2, 1, 1));
+    }
+
+    @Test
+    public void hasEdgeStaysWithinBudget() {
+        assertWithinBudget("hasEdge", hasEdgeBudget(), CALLS, new Operation() {
+            @Override
+            public long run(Graph g, int i) {
+                return g.hasEdge(i % NUM_VERTICES, (i * 31) % NUM_VERTICES) ? 1 : 0;
+            }
+        });
+    }
+
+    @Test
+    public void costStaysWithinBudget() {
+        assertWithinBudget("cost", costBudget(), CALLS, new Operation() {
+            @Override
+            public long run(Graph g, int i) {
+                return g.cost(i % NUM_VERTICES, (i * 31) % NUM_VERTICES);
+            }
+        });
+    }
+
+    @Test
+    public void degreeStaysWithinBudget() {
+        assertWithinBudget("degree", degreeBudget(), CALLS, new Operation() {
+            @Override
+            public long run(Graph g, int i) {
+                return g.degree(i % NUM_VERTICES);
+            }
+        });
+    }
+
+    @Test
+    public void neighborsStaysWithinBudget() {
+        assertWithinBudget("neighbors", neighborsBudget(), CALLS, new Operation() {
+            @Override
+            public long run(Graph g, int i) {
+                long sum = 0;
+                for (VertexIterator it = g.neighbors(i % NUM_VERTICES); it.hasNext();)
+                    sum += it.next();
+                return sum;
+            }
+        });
+    }
+
+    @Test
+    public void componentSearchStaysWithinBudget() {
+        // One call per vertex, so that the budget is per vertex.
+        assertWithinBudget("componentIds", traversalBudget(), NUM_VERTICES, new Operation() {
+            @Override
+            public long run(Graph g, int i) {
+                return i == 0 ? GraphAlgorithms.componentIds(g).length : 0;
+            }
+        });
+    }
+
+    /**
+     * Runs op calls times per round and fails if the round that allocated
+     * the least allocated more than budget bytes per call, plus SLACK.
+     */
+    private void assertWithinBudget(String name, long budget, int calls, Operation op) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = GraphMetrics.allocatedBytes();
+            for (int i = 0; i < calls; i++)
+                sink += op.run(graph, i);
+            long after = GraphMetrics.allocatedBytes();
+            best = Math.min(best, after - before);
+        }
+        double perCall = (double) best / calls;
+        assertTrue(name + " allocated " + perCall + " bytes per call, budget " + budget + ".",
+                best <= budget * calls + SLACK);
+    }
+}
@@ -0,0 +1,290 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vertex coloring of undirected graphs, that is graphs where every edge has
+ * been added with addBi. A coloring assigns each vertex a color 0, 1, 2, ...
+ * so that no two adjacent vertices have the same color; self loops are
+ * ignored. Vertices of one color can be updated in parallel without
+ * conflicts.
+ */
+public final class GraphColoring {
+    /** Number of vertices a worker claims at a time. */
+    private final static int CHUNK_SIZE = 1024;
+
+    private GraphColoring() {
+    }
+
+    /**
+     * Colors g greedily in smallest-last order: the vertices are removed one
+     * at a time, always one of minimum remaining degree, and then colored in
+     * the reverse order of removal. This uses at most d + 1 colors, where d
+     * is the degeneracy of g. Time complexity: O(n + m).
+     *
+     * @param g
+     *            an undirected graph
+     * @return c, where c[v] is the color of v
+     */
+    public static int[] smallestLast(Graph g) {
+        CsrGraph c = CsrGraph.of(g);
+        int n = c.numVertices();
+        int[] off = c.offsets;
+        int[] adj = c.targets;
+
+        int[] degree = new int[n];
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++) {
+            int d = 0;
+            for (int i = off[v]; i < off[v + 1]; i++) {
+                if (adj[i] != v)
+                    d++;
+            }
+            degree[v] = d;
+            maxDegree = Math.max(maxDegree, d);
+        }
+
+        // Batagelj and Zaversnik: vert[] holds the vertices sorted by
+        // remaining degree, bin[d] is where degree d starts and pos[v] is the
+        // position of v. Removing vertices from the front of vert[] removes
+        // them in smallest-last order.
+        int[] bin = new int[maxDegree + 1];
+        for (int v = 0; v < n; v++)
+            bin[degree[v]]++;
+        int start = 0;
+        for (int d = 0; d <= maxDegree; d++) {
+            int count = bin[d];
+            bin[d] = start;
+            start += count;
+        }
+        int[] vert = new int[n];
+        int[] pos = new int[n];
+        for (int v = 0; v < n; v++) {
+            pos[v] = bin[degree[v]]++;
+            vert[pos[v]] = v;
+        }
+        for (int d = maxDegree; d > 0; d--)
+            bin[d] = bin[d - 1];
+        bin[0] = 0;
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            int v = vert[i];
+            order[n - 1 - i] = v;
+            for (int j = off[v]; j < off[v + 1]; j++) {
+                int u = adj[j];
+                int du = degree[u];
+                if (du > degree[v]) {
+                    // Move u to the front of its bin and shrink the bin.
+                    int pu = pos[u];
+                    int pw = bin[du];
+                    int w = vert[pw];
+                    if (u != w) {
+                        pos[u] = pw;
+                        vert[pw] = u;
+                        pos[w] = pu;
+                        vert[pu] = w;
+                    }
+                    bin[du]++;
+                    degree[u]--;
+                }
+            }
+        }
+
+        int[] color = new int[n];
+        Arrays.fill(color, -1);
+        long[] forbidden = new long[(maxDegree >>> 6) + 1];
+        for (int v : order)
+            color[v] = firstFreeColor(v, off, adj, color, forbidden);
+        return color;
+    }
+
+    /**
+     * Colors g in parallel with speculative greedy coloring. In every round
+     * the uncolored vertices are colored optimistically in parallel, each
+     * taking the smallest color not used by a neighbor. Two adjacent
+     * vertices colored at the same time may still pick the same color, so
+     * afterwards every such conflict is found, also in parallel, and the
+     * vertex with the larger number is recolored in the next round. This uses
+     * at most D + 1 colors, where D is the maximum degree. Time complexity:
+     * O(n + m) per round; the number of rounds is small in practice.
+     *
+     * @param g
+     *            an undirected graph
+     * @param threads
+     *            number of worker threads
+     * @return c, where c[v] is the color of v
+     * @throws IllegalArgumentException
+     *             if threads < 1
+     */
+    public static int[] speculative(Graph g, int threads) {
+        Workers.checkThreads(threads);
+
+        CsrGraph c = CsrGraph.of(g);
+        int n = c.numVertices();
+        int maxDegree = 0;
+        for (int v = 0; v < n; v++)
+            maxDegree = Math.max(maxDegree, c.offsets[v + 1] - c.offsets[v]);
+
+        // Colors are read and written by several threads without
+        // synchronization. A stale read can only cause a conflict, which the
+        // detection step finds after the workers have been joined.
+        int[] color = new int[n];
+        Arrays.fill(color, -1);
+        int[] work = new int[n];
+        for (int v = 0; v < n; v++)
+            work[v] = v;
+        int size = n;
+
+        int numWorkers = Math.max(1, Math.min(threads, (n + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        SpeculativeWorker[] workers = new SpeculativeWorker[numWorkers];
+        for (int i = 0; i < numWorkers; i++)
+            workers[i] = new SpeculativeWorker(c, color, maxDegree);
+
+        while (size > 0) {
+            AtomicInteger next = new AtomicInteger();
+            for (SpeculativeWorker w : workers)
+                w.startRound(work, size, next, false);
+            Workers.runAll("coloring", workers);
+
+            next = new AtomicInteger();
+            for (SpeculativeWorker w : workers)
+                w.startRound(work, size, next, true);
+            Workers.runAll("coloring", workers);
+
+            // The conflicting vertices are the work list of the next round.
+            size = 0;
+            for (SpeculativeWorker w : workers) {
+                System.arraycopy(w.conflicts, 0, work, size, w.numConflicts);
+                size += w.numConflicts;
+            }
+        }
+        return color;
+    }
+
+    /**
+     * Returns true if no two adjacent vertices of g have the same color and
+     * every vertex has a color. Time complexity: O(n + m) plus one traversal
+     * of the neighbors of every vertex.
+     *
+     * @param g
+     *            an undirected graph
+     * @param color
+     *            color[v] is the color of v
+     * @return true if color is a proper coloring of g
+     * @throws IllegalArgumentException
+     *             if color.length is not the number of vertices of g
+     */
+    public static boolean isProperColoring(Graph g, int[] color) {
+        int n = g.numVertices();
+        if (color.length != n)
+            throw new IllegalArgumentException("Illegal coloring length: " + color.length + ".");
+        for (int v = 0; v < n; v++) {
+            if (color[v] < 0)
+                return false;
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                if (w != v && color[w] == color[v])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the smallest color not used by a neighbor of v. The forbidden
+     * bitmap must be all zeros; it is cleared again before returning. Every
+     * neighbor color is read once, so a neighbor that is recolored by
+     * another thread meanwhile cannot leave a bit set: the words up to the
+     * highest one set are cleared, not the words of the colors read again.
+     */
+    private static int firstFreeColor(int v, int[] off, int[] adj, int[] color, long[] forbidden) {
+        int limit = forbidden.length << 6;
+        int top = -1;
+        for (int i = off[v], end = off[v + 1]; i < end; i++) {
+            int w = adj[i];
+            int c = color[w];
+            if (c >= 0 && c < limit && w != v) {
+                forbidden[c >>> 6] |= 1L << c;
+                top = Math.max(top, c >>> 6);
+            }
+        }
+        int word = 0;
+        while (forbidden[word] == -1L)
+            word++;
+        int free = (word << 6) + Long.numberOfTrailingZeros(~forbidden[word]);
+        Arrays.fill(forbidden, 0, top + 1, 0L);
+        return free;
+    }
+
+    /**
+     * One worker of the speculative coloring. It colors, or checks for
+     * conflicts, the chunks of the work list that it claims, using its own
+     * forbidden-color bitmap and conflict list.
+     */
+    private static final class SpeculativeWorker implements Runnable {
+        private final CsrGraph g;
+        private final int[] color;
+        private final long[] forbidden;
+
+        private int[] work;
+        private int size;
+        private AtomicInteger next;
+        private boolean detect;
+
+        int[] conflicts = new int[0];
+        int numConflicts;
+
+        SpeculativeWorker(CsrGraph g, int[] color, int maxDegree) {
+            this.g = g;
+            this.color = color;
+            // With at most maxDegree neighbors a free color is always found
+            // among the first maxDegree + 1.
+            forbidden = new long[(maxDegree >>> 6) + 1];
+        }
+
+        void startRound(int[] work, int size, AtomicInteger next, boolean detect) {
+            this.work = work;
+            this.size = size;
+            this.next = next;
+            this.detect = detect;
+            numConflicts = 0;
+        }
+
+        @Override
+        public void run() {
+            int[] off = g.offsets;
+            int[] adj = g.targets;
+            int start;
+            while ((start = next.getAndAdd(CHUNK_SIZE)) < size) {
+                int end = Math.min(size, start + CHUNK_SIZE);
+                for (int i = start; i < end; i++) {
+                    int v = work[i];
+                    if (!detect) {
+                        color[v] = firstFreeColor(v, off, adj, color, forbidden);
+                    } else if (hasConflict(v, off, adj)) {
+                        if (numConflicts == conflicts.length)
+                            conflicts = Arrays.copyOf(conflicts, Math.max(16, 2 * numConflicts));
+                        conflicts[numConflicts++] = v;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns true if v has the same color as a neighbor with a smaller
+         * number. Of two conflicting vertices only the larger one is
+         * recolored, so the smaller one keeps its color.
+         */
+        private boolean hasConflict(int v, int[] off, int[] adj) {
+            int c = color[v];
+            for (int i = off[v], end = off[v + 1]; i < end; i++) {
+                int w = adj[i];
+                if (w < v && color[w] == c)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
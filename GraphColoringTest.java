@@ -0,0 +1,88 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that both colorings are proper and use at most D + 1 colors, where
+ * D is the maximum degree, also when D is larger than one word of the
+ * forbidden-color bitmap.
+ */
+public class GraphColoringTest {
+    @Test
+    public void smallestLastIsProperWithinMaxDegreePlusOne() {
+        Random random = new Random(29);
+        for (int round = 0; round < 50; round++) {
+            int n = 1 + random.nextInt(2000);
+            Graph g = ImmutableGraphTest.randomUndirectedGraph(random, n, random.nextBoolean() ? 200 : 0);
+            int[] color = GraphColoring.smallestLast(g);
+            assertTrue(GraphColoring.isProperColoring(g, color));
+            assertTrue(numColors(color) <= maxDegree(g) + 1);
+        }
+    }
+
+    @Test
+    public void speculativeIsProperWithinMaxDegreePlusOne() {
+        Random random = new Random(29);
+        for (int round = 0; round < 50; round++) {
+            int n = 1 + random.nextInt(2000);
+            Graph g = ImmutableGraphTest.randomUndirectedGraph(random, n, random.nextBoolean() ? 200 : 0);
+            int[] color = GraphColoring.speculative(g, 1 + round % 4);
+            assertTrue(GraphColoring.isProperColoring(g, color));
+            assertTrue(numColors(color) <= maxDegree(g) + 1);
+        }
+    }
+
+    @Test
+    public void speculativeHandlesDenseGraphsWithManyThreads() {
+        // Large cliques make many vertices pick colors beyond the first
+        // word at the same time.
+        int n = 3000;
+        Graph g = new HashGraph(n);
+        for (int base = 0; base < n; base += 150)
+            for (int v = base; v < base + 150; v++)
+                for (int w = v + 1; w < base + 150; w++)
+                    g.addBi(v, w);
+        RandomGraphs.gnm(n, 4 * n, 3, 1).addBiTo(g);
+        int[] color = GraphColoring.speculative(g, 8);
+        assertTrue(GraphColoring.isProperColoring(g, color));
+        assertTrue(numColors(color) <= maxDegree(g) + 1);
+    }
+
+    @Test
+    public void smallestLastColorsTreesWithTwoColors() {
+        int n = 500;
+        Graph g = new HashGraph(n);
+        Random random = new Random(1);
+        for (int v = 1; v < n; v++)
+            g.addBi(v, random.nextInt(v));
+        int[] color = GraphColoring.smallestLast(g);
+        assertTrue(GraphColoring.isProperColoring(g, color));
+        assertEquals(2, numColors(color));
+    }
+
+    @Test
+    public void selfLoopsAreIgnored() {
+        Graph g = new HashGraph(2);
+        g.addBi(0, 0);
+        g.addBi(0, 1);
+        assertTrue(GraphColoring.isProperColoring(g, GraphColoring.smallestLast(g)));
+        assertTrue(GraphColoring.isProperColoring(g, GraphColoring.speculative(g, 2)));
+    }
+
+    private static int maxDegree(Graph g) {
+        int max = 0;
+        for (int v = 0; v < g.numVertices(); v++)
+            max = Math.max(max, g.degree(v));
+        return max;
+    }
+
+    private static int numColors(int[] color) {
+        int max = -1;
+        for (int c : color)
+            max = Math.max(max, c);
+        return max + 1;
+    }
+}
@@ -0,0 +1,147 @@
+package se.kth.graph;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for graph construction and traversal. Every
+ * event is timed by JFR from begin to commit, so a recording shows the
+ * phases of this package next to garbage collections, allocations and
+ * thread states. When no recording is running, begin and commit do
+ * nothing and the JIT compiler removes the unused event objects.
+ *
+ * The events are enabled by default and can be switched off by name in a
+ * recording configuration, for example jdk.jfc with
+ * se.kth.graph.Component#enabled=false when there are millions of small
+ * components.
+ */
+public final class GraphEvents {
+    private final static String CATEGORY = "Graph";
+
+    private GraphEvents() {
+    }
+
+    /** The construction of a graph. */
+    @Name("se.kth.graph.GraphBuild")
+    @Label("Graph Build")
+    @Category(CATEGORY)
+    @Description("Construction of a graph from edges or from another graph")
+    public static final class GraphBuild extends Event {
+        @Label("Graph Type")
+        public String graphType;
+
+        @Label("Source")
+        @Description("Where the edges came from, such as a generator or a copied graph")
+        public String source;
+
+        @Label("Vertices")
+        public int vertices;
+
+        @Label("Edges")
+        public int edges;
+
+        /**
+         * Sets the fields that describe the finished graph.
+         *
+         * @param g
+         *            the graph
+         * @param source
+         *            where the edges came from
+         */
+        public void set(Graph g, String source) {
+            this.graphType = g.getClass().getSimpleName();
+            this.source = source;
+            this.vertices = g.numVertices();
+            this.edges = g.numEdges();
+        }
+    }
+
+    /** A search for the components of a graph. */
+    @Name("se.kth.graph.ComponentSearch")
+    @Label("Component Search")
+    @Category(CATEGORY)
+    public static final class ComponentSearch extends Event {
+        @Label("Graph Type")
+        public String graphType;
+
+        @Label("Vertices")
+        public int vertices;
+
+        @Label("Edges")
+        public int edges;
+
+        @Label("Components")
+        public int components;
+    }
+
+    /** One component found by a component search. */
+    @Name("se.kth.graph.Component")
+    @Label("Component")
+    @Category(CATEGORY)
+    public static final class Component extends Event {
+        @Label("Component")
+        public int component;
+
+        @Label("Root")
+        @Description("The first vertex of the component")
+        public int root;
+
+        @Label("Vertices")
+        public int vertices;
+    }
+
+    /** A phase of a graph algorithm. */
+    @Name("se.kth.graph.AlgorithmPhase")
+    @Label("Algorithm Phase")
+    @Category(CATEGORY)
+    public static final class AlgorithmPhase extends Event {
+        @Label("Algorithm")
+        public String algorithm;
+
+        @Label("Phase")
+        public String phase;
+
+        @Label("Vertices")
+        public int vertices;
+
+        @Label("Edges")
+        public int edges;
+
+        /**
+         * Constructs an event for a phase of an algorithm on a graph.
+         *
+         * @param algorithm
+         *            the name of the algorithm
+         * @param phase
+         *            the name of the phase
+         * @param g
+         *            the graph
+         */
+        public AlgorithmPhase(String algorithm, String phase, Graph g) {
+            this(algorithm, phase, g.numVertices(), g.numEdges());
+        }
+
+        /**
+         * Constructs an event for a phase of an algorithm on a graph that is
+         * not in memory.
+         *
+         * @param algorithm
+         *            the name of the algorithm
+         * @param phase
+         *            the name of the phase
+         * @param vertices
+         *            the number of vertices
+         * @param edges
+         *            the number of edges
+         */
+        public AlgorithmPhase(String algorithm, String phase, int vertices, int edges) {
+            this.algorithm = algorithm;
+            this.phase = phase;
+            this.vertices = vertices;
+            this.edges = edges;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package se.kth.graph;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Records the events of this package while building and searching a small
+ * graph, and checks that they are committed with the right fields.
+ */
+public class GraphEventsTest {
+    @Test
+    public void buildAndSearchEventsAreCommitted() throws IOException {
+        HashGraph g = new HashGraph(6);
+        g.addBi(0, 1);
+        g.addBi(1, 2);
+        g.addBi(4, 5);
+
+        List<RecordedEvent> events;
+        Recording recording = new Recording();
+        try {
+            recording.enable("se.kth.graph.GraphBuild").withoutThreshold();
+            recording.enable("se.kth.graph.ComponentSearch").withoutThreshold();
+            recording.enable("se.kth.graph.Component").withoutThreshold();
+            recording.enable("se.kth.graph.AlgorithmPhase").withoutThreshold();
+            recording.start();
+            CsrGraph.copyOf(g);
+            GraphAlgorithms.componentIds(g);
+            ReachabilityIndex.build(g, 1);
+            recording.stop();
+            events = read(recording);
+        } finally {
+            recording.close();
+        }
+
+        // copyOf, and the copy that ReachabilityIndex searches.
+        List<RecordedEvent> builds = all(events, "se.kth.graph.GraphBuild");
+        assertEquals(2, builds.size());
+        for (RecordedEvent build : builds) {
+            assertEquals("CsrGraph", build.getString("graphType"));
+            assertEquals("HashGraph", build.getString("source"));
+            assertEquals(6, build.getInt("vertices"));
+            assertEquals(6, build.getInt("edges"));
+        }
+
+        RecordedEvent search = only(events, "se.kth.graph.ComponentSearch");
+        assertEquals("HashGraph", search.getString("graphType"));
+        assertEquals(6, search.getInt("vertices"));
+        assertEquals(6, search.getInt("edges"));
+        assertEquals(3, search.getInt("components"));
+
+        List<RecordedEvent> components = all(events, "se.kth.graph.Component");
+        assertEquals(3, components.size());
+        int[] roots = new int[3];
+        int[] sizes = new int[3];
+        for (RecordedEvent e : components) {
+            roots[e.getInt("component")] = e.getInt("root");
+            sizes[e.getInt("component")] = e.getInt("vertices");
+        }
+        assertArrayEquals(new int[] { 0, 3, 4 }, roots);
+        assertArrayEquals(new int[] { 3, 1, 2 }, sizes);
+
+        List<RecordedEvent> phases = all(events, "se.kth.graph.AlgorithmPhase");
+        assertFalse(phases.isEmpty());
+        for (RecordedEvent e : phases) {
+            assertEquals("reachability", e.getString("algorithm"));
+            assertEquals(6, e.getInt("vertices"));
+        }
+    }
+
+    private static List<RecordedEvent> read(Recording recording) throws IOException {
+        Path file = Files.createTempFile("graph-events", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> all(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = new ArrayList<RecordedEvent>();
+        for (RecordedEvent e : events)
+            if (e.getEventType().getName().equals(name))
+                result.add(e);
+        return result;
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = all(events, name);
+        assertEquals(name, 1, result.size());
+        return result.get(0);
+    }
+}
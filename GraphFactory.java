@@ -0,0 +1,507 @@
+package se.kth.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses a graph representation from the expected size and use of a graph.
+ * Every Representation estimates its memory footprint and the cost of one
+ * full traversal, that is of iterating over the neighbors of every vertex.
+ * The factory picks the representation with the lowest traversal cost
+ * among those whose footprint is at most MEMORY_SLACK times the smallest
+ * one, so that a faster representation is not chosen at any price in
+ * memory.
+ *
+ * The estimates assume a 64-bit JVM with compressed references: 12 byte
+ * object headers, 16 byte array headers and objects padded to 8 bytes. They
+ * are meant to rank the representations, not to predict heap usage
+ * exactly.
+ */
+public final class GraphFactory {
+    /**
+     * A representation may use this many times the memory of the smallest
+     * one if it traverses faster.
+     */
+    public final static double MEMORY_SLACK = 4.0;
+
+    /** Bytes of a reference. */
+    private final static int REF = 4;
+
+    /** Bytes of an array header. */
+    private final static int ARRAY = 16;
+
+    private GraphFactory() {
+    }
+
+    /**
+     * The graph implementations that the factory can create. The traversal
+     * costs are in units of one step through a CSR row.
+     */
+    public enum Representation {
+        /** A MatrixGraph: &Theta;(n<sup>2</sup>) memory, O(1) edge lookup. */
+        MATRIX(true) {
+            @Override
+            public long estimateBytes(int n, long m, boolean weighted) {
+                return ARRAY + (long) REF * n + n * align(ARRAY + 4L * n);
+            }
+
+            @Override
+            public double traversalCost(int n, long m) {
+                // Scanning a row touches every cell, but sequentially.
+                return 0.25 * n * n + n;
+            }
+
+            @Override
+            public Graph create(int n) {
+                return new MatrixGraph(n);
+            }
+        },
+
+        /**
+         * A LazyMatrixGraph: a matrix row for every vertex with an outgoing
+         * edge, and a degree per vertex.
+         */
+        LAZY_MATRIX(true) {
+            @Override
+            public long estimateBytes(int n, long m, boolean weighted) {
+                return ARRAY + (long) REF * n + align(ARRAY + 4L * n) + (long) (rows(n, m) * align(ARRAY + 4L * n));
+            }
+
+            @Override
+            public double traversalCost(int n, long m) {
+                // Only allocated rows are scanned, on average up to the
+                // last neighbor.
+                double rows = rows(n, m);
+                double perRow = rows == 0 ? 0 : n * (m / rows) / (m / rows + 1);
+                return 0.25 * rows * perRow + n;
+            }
+
+            @Override
+            public Graph create(int n) {
+                return new LazyMatrixGraph(n);
+            }
+        },
+
+        /** A HashGraph: one HashMap of boxed integers per vertex. */
+        HASH(true) {
+            @Override
+            public long estimateBytes(int n, long m, boolean weighted) {
+                long bytes = ARRAY + (long) REF * n;
+                if (n == 0 || m == 0)
+                    return bytes;
+                // With m random edges, about n (1 - e^(-m/n)) vertices have
+                // a map.
+                double used = n * -Math.expm1(-(double) m / n);
+                double entries = m / used;
+                long capacity = Math.max(4, Long.highestOneBit((long) Math.ceil(entries / 0.75)) << 1);
+                long map = 48 + align(ARRAY + REF * capacity);
+                // A node plus a boxed key; NO_COST and small costs are cached
+                // by Integer.valueOf, larger costs need their own box.
+                double entry = 32 + 16 + (weighted ? 16 : 0);
+                return bytes + (long) (used * map + m * entry);
+            }
+
+            @Override
+            public double traversalCost(int n, long m) {
+                // The iterator copies the boxed keys into an array and
+                // unboxes them, with a cache miss for most entries.
+                return 4.0 * n + 10.0 * m;
+            }
+
+            @Override
+            public Graph create(int n) {
+                return new HashGraph(n);
+            }
+        },
+
+        /**
+         * A HybridGraph: sorted pairs, open addressing or a compressed
+         * bitmap per vertex, depending on its degree.
+         */
+        HYBRID(true) {
+            @Override
+            public long estimateBytes(int n, long m, boolean weighted) {
+                long bytes = 2 * (ARRAY + 4L * n);
+                if (n == 0 || m == 0)
+                    return bytes;
+                double used = n * -Math.expm1(-(double) m / n);
+                double entries = m / used;
+                double container;
+                if (entries <= HybridGraph.SMALL_MAX) {
+                    container = align(ARRAY + 8 * Math.max(2, Long.highestOneBit((long) Math.ceil(entries) * 2 - 1)));
+                } else if (entries < HybridGraph.HUB_MIN) {
+                    // Open addressing at a load factor between 1/3 and 2/3.
+                    container = 40 + (weighted ? 2 : 1) * (ARRAY + 4 * 2.0 * entries);
+                } else {
+                    container = 2 * entries + (weighted ? 8 * entries : 0);
+                }
+                return bytes + (long) (used * container);
+            }
+
+            @Override
+            public double traversalCost(int n, long m) {
+                return 2.0 * n + 1.5 * m;
+            }
+
+            @Override
+            public Graph create(int n) {
+                return new HybridGraph(n);
+            }
+        },
+
+        /** An immutable CsrGraph: two int arrays, three if weighted. */
+        CSR(false) {
+            @Override
+            public long estimateBytes(int n, long m, boolean weighted) {
+                return 24 + align(ARRAY + 4L * (n + 1)) + align(ARRAY + 4 * m) + (weighted ? align(ARRAY + 4 * m) : 0);
+            }
+
+            @Override
+            public double traversalCost(int n, long m) {
+                return n + m;
+            }
+
+            @Override
+            public Graph create(int n) {
+                throw new UnsupportedOperationException("CsrGraph is immutable; use copy.");
+            }
+
+            @Override
+            public Graph copy(Graph g) {
+                return CsrGraph.copyOf(g);
+            }
+        };
+
+        private final boolean mutable;
+
+        private Representation(boolean mutable) {
+            this.mutable = mutable;
+        }
+
+        /**
+         * Returns true if graphs of this representation can be changed.
+         *
+         * @return true if the representation supports add and remove
+         */
+        public boolean isMutable() {
+            return mutable;
+        }
+
+        /**
+         * Returns the estimated number of bytes of a graph with n vertices and
+         * m edges.
+         *
+         * @param n
+         *            number of vertices
+         * @param m
+         *            number of edges
+         * @param weighted
+         *            true if the edges have costs
+         * @return the estimated footprint in bytes
+         */
+        public abstract long estimateBytes(int n, long m, boolean weighted);
+
+        /**
+         * Returns the estimated cost of iterating over the neighbors of every
+         * vertex of a graph with n vertices and m edges.
+         *
+         * @param n
+         *            number of vertices
+         * @param m
+         *            number of edges
+         * @return the estimated traversal cost
+         */
+        public abstract double traversalCost(int n, long m);
+
+        /**
+         * Returns an empty graph of this representation with n vertices.
+         *
+         * @param n
+         *            number of vertices
+         * @return an empty graph
+         * @throws UnsupportedOperationException
+         *             if the representation is immutable
+         */
+        public abstract Graph create(int n);
+
+        /**
+         * Returns a graph of this representation with the same edges and
+         * costs as g.
+         *
+         * @param g
+         *            a graph
+         * @return a copy of g in this representation
+         */
+        public Graph copy(Graph g) {
+            Graph copy = create(g.numVertices());
+            EdgeList.of(g).addTo(copy);
+            return copy;
+        }
+    }
+
+    /**
+     * The estimated cost of one representation for a given graph size.
+     */
+    public static final class Estimate {
+        private final Representation representation;
+        private final long bytes;
+        private final double traversalCost;
+
+        Estimate(Representation representation, int n, long m, boolean weighted) {
+            this.representation = representation;
+            this.bytes = representation.estimateBytes(n, m, weighted);
+            this.traversalCost = representation.traversalCost(n, m);
+        }
+
+        /** Returns the representation. */
+        public Representation representation() {
+            return representation;
+        }
+
+        /** Returns the estimated footprint in bytes. */
+        public long bytes() {
+            return bytes;
+        }
+
+        /** Returns the estimated cost of a full traversal. */
+        public double traversalCost() {
+            return traversalCost;
+        }
+
+        @Override
+        public String toString() {
+            return representation + "{bytes=" + bytes + ", traversal=" + (long) traversalCost + "}";
+        }
+    }
+
+    /**
+     * A suggestion to convert an existing graph to another representation.
+     */
+    public static final class Recommendation {
+        private final Estimate current;
+        private final Estimate best;
+
+        Recommendation(Estimate current, Estimate best) {
+            this.current = current;
+            this.best = best;
+        }
+
+        /**
+         * Returns the estimate for the current representation, or null if
+         * the graph is not one of the representations.
+         */
+        public Estimate current() {
+            return current;
+        }
+
+        /** Returns the estimate for the recommended representation. */
+        public Estimate best() {
+            return best;
+        }
+
+        /** Returns true if the recommended representation differs from the current one. */
+        public boolean shouldConvert() {
+            return current == null || current.representation != best.representation;
+        }
+
+        @Override
+        public String toString() {
+            return "{current=" + current + ", best=" + best + "}";
+        }
+    }
+
+    /**
+     * Returns the estimates of all representations for a graph of the given
+     * size, the recommended one first. The immutable representations are
+     * left out if mutable is true.
+     *
+     * @param n
+     *            expected number of vertices
+     * @param m
+     *            expected number of edges, counting both directions of an
+     *            undirected edge
+     * @param weighted
+     *            true if the edges have costs
+     * @param mutable
+     *            true if the graph will be changed after it is built
+     * @return the estimates, best first
+     * @throws IllegalArgumentException
+     *             if n < 0 or m < 0
+     */
+    public static List<Estimate> estimates(int n, long m, boolean weighted, boolean mutable) {
+        if (n < 0 || m < 0)
+            throw new IllegalArgumentException("Illegal size: n = " + n + ", m = " + m + ".");
+
+        List<Estimate> estimates = new ArrayList<Estimate>();
+        long minBytes = Long.MAX_VALUE;
+        for (Representation r : Representation.values()) {
+            if (mutable && !r.isMutable())
+                continue;
+            Estimate e = new Estimate(r, n, m, weighted);
+            estimates.add(e);
+            minBytes = Math.min(minBytes, e.bytes);
+        }
+
+        // Representations within the memory slack come first, fastest first.
+        final double limit = minBytes * MEMORY_SLACK;
+        Collections.sort(estimates, new Comparator<Estimate>() {
+            @Override
+            public int compare(Estimate a, Estimate b) {
+                boolean aFits = a.bytes <= limit;
+                boolean bFits = b.bytes <= limit;
+                if (aFits != bFits)
+                    return aFits ? -1 : 1;
+                if (aFits)
+                    return Double.compare(a.traversalCost, b.traversalCost);
+                return Long.compare(a.bytes, b.bytes);
+            }
+        });
+        return estimates;
+    }
+
+    /**
+     * Returns the recommended representation for a graph of the given size.
+     *
+     * @param n
+     *            expected number of vertices
+     * @param m
+     *            expected number of edges
+     * @param weighted
+     *            true if the edges have costs
+     * @param mutable
+     *            true if the graph will be changed after it is built
+     * @return the recommended representation
+     * @throws IllegalArgumentException
+     *             if n < 0 or m < 0
+     */
+    public static Representation choose(int n, long m, boolean weighted, boolean mutable) {
+        return estimates(n, m, weighted, mutable).get(0).representation;
+    }
+
+    /**
+     * Returns an empty mutable graph with n vertices in the representation
+     * recommended for m edges.
+     *
+     * @param n
+     *            number of vertices
+     * @param m
+     *            expected number of edges
+     * @param weighted
+     *            true if the edges will have costs
+     * @return an empty graph
+     * @throws IllegalArgumentException
+     *             if n < 0 or m < 0
+     */
+    public static Graph create(int n, long m, boolean weighted) {
+        return choose(n, m, weighted, true).create(n);
+    }
+
+    /**
+     * Returns a graph with the given edges in the recommended representation.
+     *
+     * @param edges
+     *            the edges
+     * @param bidirectional
+     *            if true every edge is added in both directions, as with
+     *            addBiTo
+     * @param mutable
+     *            true if the graph will be changed after it is built
+     * @return a graph with the edges
+     */
+    public static Graph build(EdgeList edges, boolean bidirectional, boolean mutable) {
+        long m = bidirectional ? 2L * edges.size() : edges.size();
+        Representation r = choose(edges.numVertices(), m, edges.cost != null, mutable);
+        if (r == Representation.CSR)
+            return edges.toCsrGraph(bidirectional);
+        Graph g = r.create(edges.numVertices());
+        if (bidirectional)
+            edges.addBiTo(g);
+        else
+            edges.addTo(g);
+        return g;
+    }
+
+    /**
+     * Returns the representation of g, or null if g is not created by this
+     * factory.
+     *
+     * @param g
+     *            a graph
+     * @return the representation of g, or null
+     */
+    public static Representation representationOf(Graph g) {
+        if (g instanceof MatrixGraph)
+            return Representation.MATRIX;
+        if (g instanceof LazyMatrixGraph)
+            return Representation.LAZY_MATRIX;
+        if (g instanceof HashGraph)
+            return Representation.HASH;
+        if (g instanceof CsrGraph)
+            return Representation.CSR;
+        if (g instanceof HybridGraph)
+            return Representation.HYBRID;
+        return null;
+    }
+
+    /**
+     * Compares the representation of g with the recommended one for its
+     * size. Finding out whether g has costs takes one pass over its edges.
+     *
+     * @param g
+     *            a graph
+     * @param mutable
+     *            true if g will be changed after this call
+     * @return the recommendation
+     */
+    public static Recommendation recommend(Graph g, boolean mutable) {
+        int n = g.numVertices();
+        long m = g.numEdges();
+        boolean weighted = hasCosts(g);
+        Representation current = representationOf(g);
+        Estimate best = estimates(n, m, weighted, mutable).get(0);
+        return new Recommendation(current == null ? null : new Estimate(current, n, m, weighted), best);
+    }
+
+    /**
+     * Returns g converted to the recommended representation, or g itself if
+     * it already has that representation.
+     *
+     * @param g
+     *            a graph
+     * @param mutable
+     *            true if g will be changed after this call
+     * @return g or a copy of g in the recommended representation
+     */
+    public static Graph optimize(Graph g, boolean mutable) {
+        Recommendation r = recommend(g, mutable);
+        return r.shouldConvert() ? r.best.representation.copy(g) : g;
+    }
+
+    private static boolean hasCosts(Graph g) {
+        if (g instanceof CsrGraph)
+            return ((CsrGraph) g).hasCosts();
+        for (int v = 0; v < g.numVertices(); v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                if (g.cost(v, it.next()) != Graph.NO_COST)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the expected number of vertices with at least one of m random
+     * edges, n (1 - e<sup>-m/n</sup>).
+     */
+    private static double rows(int n, long m) {
+        if (n == 0 || m == 0)
+            return 0;
+        return n * -Math.expm1(-(double) m / n);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
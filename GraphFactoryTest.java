@@ -0,0 +1,112 @@
+package se.kth.graph;
+
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import se.kth.graph.GraphFactory.Estimate;
+import se.kth.graph.GraphFactory.Recommendation;
+import se.kth.graph.GraphFactory.Representation;
+
+/**
+ * Checks the representations that GraphFactory chooses on both sides of the
+ * density boundaries, the order of the estimates, and the recommendations
+ * for existing graphs.
+ */
+public class GraphFactoryTest {
+    @Test
+    public void sparseGraphsUseAdjacencyLists() {
+        assertEquals(Representation.HYBRID, GraphFactory.choose(1000, 5000, false, true));
+        assertEquals(Representation.HYBRID, GraphFactory.choose(1000, 100000, true, true));
+        assertEquals(Representation.CSR, GraphFactory.choose(1000, 5000, false, false));
+        assertEquals(Representation.CSR, GraphFactory.choose(1000, 200000, false, false));
+    }
+
+    @Test
+    public void denseGraphsUseAMatrix() {
+        assertEquals(Representation.LAZY_MATRIX, GraphFactory.choose(1000, 200000, false, true));
+        assertEquals(Representation.LAZY_MATRIX, GraphFactory.choose(1000, 200000, true, true));
+        assertEquals(Representation.LAZY_MATRIX, GraphFactory.choose(1000, 300000, false, false));
+        assertEquals(Representation.LAZY_MATRIX, GraphFactory.choose(100, 5000, false, true));
+    }
+
+    @Test
+    public void estimatesAreOrderedByTheSlackRule() {
+        int[] sizes = { 0, 1, 10, 100, 1000, 10000 };
+        double[] densities = { 0, 0.5, 2, 10, 100, 1000 };
+        for (int n : sizes) {
+            for (double density : densities) {
+                long m = Math.min((long) (density * n), (long) n * n);
+                for (boolean mutable : new boolean[] { false, true }) {
+                    List<Estimate> estimates = GraphFactory.estimates(n, m, false, mutable);
+                    assertEquals(GraphFactory.choose(n, m, false, mutable), estimates.get(0).representation());
+                    long minBytes = Long.MAX_VALUE;
+                    for (Estimate e : estimates) {
+                        assertTrue(!mutable || e.representation().isMutable());
+                        minBytes = Math.min(minBytes, e.bytes());
+                    }
+                    assertEquals(mutable ? 4 : 5, estimates.size());
+                    Estimate best = estimates.get(0);
+                    assertTrue(best.bytes() <= minBytes * GraphFactory.MEMORY_SLACK);
+                    for (Estimate e : estimates) {
+                        if (e.bytes() <= minBytes * GraphFactory.MEMORY_SLACK)
+                            assertTrue(best.traversalCost() <= e.traversalCost());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void estimatesRejectNegativeSizes() {
+        GraphFactory.estimates(10, -1, false, true);
+    }
+
+    @Test
+    public void representationOfKnownGraphs() {
+        assertEquals(Representation.MATRIX, GraphFactory.representationOf(new MatrixGraph(2)));
+        assertEquals(Representation.LAZY_MATRIX, GraphFactory.representationOf(new LazyMatrixGraph(2)));
+        assertEquals(Representation.HASH, GraphFactory.representationOf(new HashGraph(2)));
+        assertEquals(Representation.HYBRID, GraphFactory.representationOf(new HybridGraph(2)));
+        assertEquals(Representation.CSR, GraphFactory.representationOf(CsrGraph.copyOf(new HashGraph(2))));
+        assertNull(GraphFactory.representationOf(new SortedGraph(2)));
+        for (Representation r : Representation.values()) {
+            if (r.isMutable())
+                assertEquals(r, GraphFactory.representationOf(r.create(3)));
+        }
+    }
+
+    @Test
+    public void recommendConvertsOnlyWhenAnotherRepresentationIsBetter() {
+        Graph sparse = new MatrixGraph(1000);
+        RandomGraphs.gnm(1000, 2000, 1, 1).addBiTo(sparse);
+        Recommendation r = GraphFactory.recommend(sparse, true);
+        assertEquals(Representation.MATRIX, r.current().representation());
+        assertEquals(Representation.HYBRID, r.best().representation());
+        assertTrue(r.shouldConvert());
+
+        Graph optimized = GraphFactory.optimize(sparse, true);
+        assertTrue(optimized instanceof HybridGraph);
+        assertEquals(sparse.numEdges(), optimized.numEdges());
+        assertSame(optimized, GraphFactory.optimize(optimized, true));
+        assertFalse(GraphFactory.recommend(optimized, true).shouldConvert());
+
+        Graph immutable = GraphFactory.optimize(sparse, false);
+        assertTrue(immutable instanceof CsrGraph);
+
+        Recommendation unknown = GraphFactory.recommend(new SortedGraph(10), true);
+        assertNull(unknown.current());
+        assertTrue(unknown.shouldConvert());
+    }
+
+    @Test
+    public void buildKeepsTheEdges() {
+        EdgeList edges = RandomGraphs.gnm(300, 20000, 2, 1);
+        Graph g = GraphFactory.build(edges, true, true);
+        assertEquals(Representation.LAZY_MATRIX, GraphFactory.representationOf(g));
+        assertEquals(40000, g.numEdges());
+        for (int i = 0; i < edges.size(); i++)
+            assertTrue(g.hasEdge(edges.to(i), edges.from(i)));
+    }
+}
@@ -0,0 +1,285 @@
+package se.kth.graph;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Operation counts and latencies for graphs. An InstrumentedGraph records
+ * every call it forwards into its own GraphMetrics. In addition, the graph
+ * implementations and algorithms in this package report map allocations,
+ * map resizes and traversal times to the global instance, but only if the
+ * system property se.kth.graph.metrics is true when this class is loaded.
+ *
+ * ENABLED is a constant, so when it is false the JIT compiler removes the
+ * hooks together with their branches and they cost nothing.
+ *
+ * The counters are LongAdders, which spread concurrent increments over
+ * several cells, and the latencies are LatencyHistograms. Every operation is
+ * counted, but only one call in SAMPLE_INTERVAL is timed, so that the clock
+ * reads do not dominate cheap operations such as hasEdge. A GraphMetrics can
+ * be published as an MXBean with register.
+ */
+public final class GraphMetrics implements GraphMetricsMXBean {
+    /** True if the global hooks are active. */
+    public final static boolean ENABLED = Boolean.getBoolean("se.kth.graph.metrics");
+
+    /** One call in SAMPLE_INTERVAL is timed; a power of two. */
+    public final static int SAMPLE_INTERVAL = 16;
+
+    /** The JMX domain of registered metrics. */
+    public final static String DOMAIN = "se.kth.graph";
+
+    /** Returned by start for a call that is not timed. */
+    private final static long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * The measured operations. TRAVERSAL is a whole search, such as the
+     * component search in GraphAlgorithms.
+     */
+    public enum Operation {
+        ADD, REMOVE, HAS_EDGE, COST, DEGREE, NEIGHBORS, TRAVERSAL
+    }
+
+    private final LongAdder[] counts = new LongAdder[Operation.values().length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder neighborsVisited = new LongAdder();
+    private final LongAdder mapAllocations = new LongAdder();
+    private final LongAdder mapResizes = new LongAdder();
+
+    /**
+     * Constructs metrics with all counts 0.
+     */
+    public GraphMetrics() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns the metrics that the hooks in this package report to. The
+     * first call registers them as an MXBean named
+     * se.kth.graph:type=GraphMetrics,name=global.
+     *
+     * @return the global metrics
+     */
+    public static GraphMetrics global() {
+        return Global.INSTANCE;
+    }
+
+    /** Creates the global metrics on first use. */
+    private static final class Global {
+        final static GraphMetrics INSTANCE = new GraphMetrics();
+
+        static {
+            try {
+                INSTANCE.register("global");
+            } catch (IllegalStateException e) {
+                // Another class loader has registered the name; the metrics
+                // still work but are not published.
+            }
+        }
+    }
+
+    /**
+     * Starts an operation and returns the value to pass to stop.
+     *
+     * @return a start time, or a marker if this call is not timed
+     */
+    public long start() {
+        if ((ThreadLocalRandom.current().nextInt() & (SAMPLE_INTERVAL - 1)) != 0)
+            return NOT_SAMPLED;
+        return System.nanoTime();
+    }
+
+    /**
+     * Counts an operation and records its latency if it was timed.
+     *
+     * @param op
+     *            the operation
+     * @param start
+     *            the value returned by start
+     */
+    public void stop(Operation op, long start) {
+        counts[op.ordinal()].increment();
+        if (start != NOT_SAMPLED)
+            latencies[op.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Counts an operation and records its latency.
+     *
+     * @param op
+     *            the operation
+     * @param nanos
+     *            the duration in nanoseconds
+     */
+    public void record(Operation op, long nanos) {
+        counts[op.ordinal()].increment();
+        latencies[op.ordinal()].record(nanos);
+    }
+
+    /**
+     * Returns the number of times an operation has been counted.
+     *
+     * @param op
+     *            the operation
+     * @return the count
+     */
+    public long count(Operation op) {
+        return counts[op.ordinal()].sum();
+    }
+
+    /**
+     * Returns the latencies of an operation.
+     *
+     * @param op
+     *            the operation
+     * @return the latency histogram of op
+     */
+    public LatencyHistogram latency(Operation op) {
+        return latencies[op.ordinal()];
+    }
+
+    /** Adds to the number of vertices returned by neighbor iterators. */
+    void visited(long vertices) {
+        neighborsVisited.add(vertices);
+    }
+
+    /** Counts an adjacency map allocation. */
+    void mapAllocated() {
+        mapAllocations.increment();
+    }
+
+    /** Counts an adjacency map resize. */
+    void mapResized() {
+        mapResizes.increment();
+    }
+
+    @Override
+    public long getAddCount() {
+        return count(Operation.ADD);
+    }
+
+    @Override
+    public long getRemoveCount() {
+        return count(Operation.REMOVE);
+    }
+
+    @Override
+    public long getHasEdgeCount() {
+        return count(Operation.HAS_EDGE);
+    }
+
+    @Override
+    public long getCostCount() {
+        return count(Operation.COST);
+    }
+
+    @Override
+    public long getDegreeCount() {
+        return count(Operation.DEGREE);
+    }
+
+    @Override
+    public long getNeighborsCount() {
+        return count(Operation.NEIGHBORS);
+    }
+
+    @Override
+    public long getNeighborsVisited() {
+        return neighborsVisited.sum();
+    }
+
+    @Override
+    public long getMapAllocations() {
+        return mapAllocations.sum();
+    }
+
+    @Override
+    public long getMapResizes() {
+        return mapResizes.sum();
+    }
+
+    @Override
+    public long getTraversalCount() {
+        return count(Operation.TRAVERSAL);
+    }
+
+    @Override
+    public long latencyPercentile(String operation, double percentile) {
+        return latency(Operation.valueOf(operation)).percentile(percentile);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i].reset();
+            latencies[i].reset();
+        }
+        neighborsVisited.reset();
+        mapAllocations.reset();
+        mapResizes.reset();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under the name
+     * se.kth.graph:type=GraphMetrics,name=<i>name</i>.
+     *
+     * @param name
+     *            the name property of the MBean
+     * @return the registered name
+     * @throws IllegalStateException
+     *             if the name is illegal or already registered
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Removes the MBean with the given name from the platform MBean server.
+     *
+     * @param name
+     *            the name property of the MBean
+     * @throws IllegalStateException
+     *             if the name is illegal or not registered
+     */
+    public static void unregister(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.unregisterMBean(objectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or
+     * -1 if the JVM does not measure it.
+     */
+    @SuppressWarnings("deprecation") // Thread.threadId is not in Java 11
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+        if (!b.isThreadAllocatedMemorySupported() || !b.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=GraphMetrics,name=" + name);
+    }
+}
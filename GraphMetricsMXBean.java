@@ -0,0 +1,53 @@
+package se.kth.graph;
+
+/**
+ * The management interface of GraphMetrics. The counts are totals since the
+ * metrics were created or last reset.
+ */
+public interface GraphMetricsMXBean {
+    /** Returns the number of calls to add and addBi. */
+    long getAddCount();
+
+    /** Returns the number of calls to remove and removeBi. */
+    long getRemoveCount();
+
+    /** Returns the number of calls to hasEdge. */
+    long getHasEdgeCount();
+
+    /** Returns the number of calls to cost. */
+    long getCostCount();
+
+    /** Returns the number of calls to degree. */
+    long getDegreeCount();
+
+    /** Returns the number of calls to neighbors. */
+    long getNeighborsCount();
+
+    /** Returns the number of vertices returned by neighbor iterators. */
+    long getNeighborsVisited();
+
+    /** Returns the number of adjacency maps allocated by HashGraph. */
+    long getMapAllocations();
+
+    /** Returns the estimated number of adjacency map resizes in HashGraph. */
+    long getMapResizes();
+
+    /** Returns the number of timed traversals. */
+    long getTraversalCount();
+
+    /**
+     * Returns an upper bound for a latency percentile.
+     *
+     * @param operation
+     *            the name of an Operation, such as "HAS_EDGE" or "TRAVERSAL"
+     * @param percentile
+     *            a percentile, 0 <= percentile <= 100
+     * @return the percentile in nanoseconds
+     * @throws IllegalArgumentException
+     *             if operation or percentile is unknown
+     */
+    long latencyPercentile(String operation, double percentile);
+
+    /** Resets all counts and latencies to 0. */
+    void reset();
+}
@@ -0,0 +1,147 @@
+package se.kth.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Reads registered GraphMetrics through the platform MBean server, and
+ * checks the counters of the global hooks in HashGraph and GraphAlgorithms
+ * by loading the package again with se.kth.graph.metrics set to true.
+ */
+public class GraphMetricsTest {
+    @Test
+    public void attributesAreReadThroughJmx() throws JMException {
+        GraphMetrics metrics = new GraphMetrics();
+        InstrumentedGraph g = new InstrumentedGraph(new HashGraph(4), metrics);
+        ObjectName name = metrics.register("GraphMetricsTest");
+        try {
+            assertEquals(new ObjectName("se.kth.graph:type=GraphMetrics,name=GraphMetricsTest"), name);
+            g.add(0, 1);
+            g.addBi(1, 2, 3);
+            g.hasEdge(0, 1);
+            g.hasEdge(2, 3);
+            g.degree(1);
+            for (VertexIterator it = g.neighbors(1); it.hasNext();)
+                it.next();
+            for (int i = 0; i < 1000; i++)
+                metrics.record(GraphMetrics.Operation.TRAVERSAL, 5000);
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(2L, server.getAttribute(name, "AddCount"));
+            assertEquals(2L, server.getAttribute(name, "HasEdgeCount"));
+            assertEquals(1L, server.getAttribute(name, "DegreeCount"));
+            assertEquals(1L, server.getAttribute(name, "NeighborsCount"));
+            assertEquals(1L, server.getAttribute(name, "NeighborsVisited"));
+            assertEquals(0L, server.getAttribute(name, "RemoveCount"));
+            assertEquals(1000L, server.getAttribute(name, "TraversalCount"));
+            Object p99 = server.invoke(name, "latencyPercentile", new Object[] { "TRAVERSAL", 99.0 },
+                    new String[] { String.class.getName(), double.class.getName() });
+            assertEquals(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(5000)), p99);
+
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(name, "AddCount"));
+            assertEquals(0L, server.getAttribute(name, "TraversalCount"));
+            assertEquals(0, metrics.latency(GraphMetrics.Operation.TRAVERSAL).count());
+        } finally {
+            GraphMetrics.unregister("GraphMetricsTest");
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void nameCanOnlyBeRegisteredOnce() {
+        GraphMetrics metrics = new GraphMetrics();
+        metrics.register("GraphMetricsTestTwice");
+        try {
+            new GraphMetrics().register("GraphMetricsTestTwice");
+            fail("Expected IllegalStateException on a second register");
+        } catch (IllegalStateException e) {
+            // pass
+        } finally {
+            GraphMetrics.unregister("GraphMetricsTestTwice");
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unregisterThrowsForUnknownName() {
+        GraphMetrics.unregister("GraphMetricsTestUnknown");
+    }
+
+    @Test
+    public void hooksCountWhenEnabled() throws Exception {
+        long[] counts = runWithMetrics(Hooks.class);
+        assertEquals(1, counts[0]);
+        // Vertex 0: one map, resized at 4, 7, 13, 25, 49 and 97 entries.
+        // Vertex 1: one map from the first batch, resized once for the
+        // second.
+        assertEquals(2, counts[1]);
+        assertEquals(7, counts[2]);
+        assertEquals(1, counts[3]);
+    }
+
+    /**
+     * Runs a Callable in a new class loader for this package, with the
+     * system property se.kth.graph.metrics set to true, so that its
+     * GraphMetrics.ENABLED is true.
+     */
+    private static long[] runWithMetrics(Class<?> task) throws Exception {
+        String[] path = System.getProperty("java.class.path").split(File.pathSeparator);
+        URL[] urls = new URL[path.length];
+        for (int i = 0; i < path.length; i++)
+            urls[i] = Paths.get(path[i]).toUri().toURL();
+        String old = System.setProperty("se.kth.graph.metrics", "true");
+        try (URLClassLoader loader = new URLClassLoader(urls, ClassLoader.getPlatformClassLoader())) {
+            Class<?> c = loader.loadClass(task.getName());
+            assertTrue(c != task);
+            @SuppressWarnings("unchecked")
+            Callable<long[]> call = (Callable<long[]>) c.getDeclaredConstructor().newInstance();
+            return call.call();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            if (old == null)
+                System.clearProperty("se.kth.graph.metrics");
+            else
+                System.setProperty("se.kth.graph.metrics", old);
+        }
+    }
+
+    /**
+     * Returns ENABLED as 0 or 1, and the map allocations, map resizes and
+     * traversals counted by the global metrics.
+     */
+    public static class Hooks implements Callable<long[]> {
+        @Override
+        public long[] call() {
+            GraphMetrics global = GraphMetrics.global();
+            global.reset();
+            HashGraph g = new HashGraph(300);
+            for (int w = 1; w <= 100; w++)
+                g.add(0, w);
+            int[] from = new int[250];
+            int[] to = new int[250];
+            for (int i = 0; i < 250; i++) {
+                from[i] = 1;
+                to[i] = 2 + i;
+            }
+            g.addAll(from, to, null, 50);
+            g.addAll(Arrays.copyOfRange(from, 50, 250), Arrays.copyOfRange(to, 50, 250), null, 200);
+            GraphAlgorithms.componentIds(g);
+            return new long[] { GraphMetrics.ENABLED ? 1 : 0, global.getMapAllocations(), global.getMapResizes(),
+                    global.getTraversalCount() };
+        }
+    }
+}
@@ -0,0 +1,779 @@
+package se.kth.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A partition of the vertices of a graph into k parts of about the same size
+ * with few edges between the parts. Each part comes with its own subgraph,
+ * where the vertices of the part are numbered 0, 1, 2, ... in increasing
+ * order, and with the boundary vertices that have a neighbor in another
+ * part. The number of edges between the parts, and the number of boundary
+ * vertex copies other parts need, is the communication volume of a
+ * parallel algorithm that runs one part per thread or process.
+ *
+ * The partition is computed on the undirected version of the graph, where
+ * the weight of an edge is its cost, or 1 for NO_COST, and the two
+ * directions of an edge added with addBi count twice. Self loops are
+ * ignored.
+ */
+public final class GraphPartition {
+    /** Default allowed imbalance: a part may be 3% above the average. */
+    public final static double DEFAULT_IMBALANCE = 0.03;
+
+    /** Coarsening stops at this many vertices per part. */
+    private final static int COARSEST_PER_PART = 20;
+
+    /** Coarsening stops when a level is not this much smaller. */
+    private final static double MIN_SHRINK = 0.95;
+
+    /** Number of initial partitions tried on the coarsest graph. */
+    private final static int INITIAL_TRIES = 4;
+
+    /** Maximum number of refinement passes per level. */
+    private final static int REFINE_PASSES = 8;
+
+    private final int[] part;
+    private final int[][] members;
+    private final int[] localId;
+    private final int[][] boundary;
+    private final CsrGraph[] subgraphs;
+    private final long cutEdges;
+    private final long volume;
+
+    private GraphPartition(int[] part, int[][] members, int[] localId, int[][] boundary, CsrGraph[] subgraphs,
+            long cutEdges, long volume) {
+        this.part = part;
+        this.members = members;
+        this.localId = localId;
+        this.boundary = boundary;
+        this.subgraphs = subgraphs;
+        this.cutEdges = cutEdges;
+        this.volume = volume;
+    }
+
+    /**
+     * Partitions g into k parts with DEFAULT_IMBALANCE.
+     *
+     * @param g
+     *            a graph
+     * @param k
+     *            number of parts
+     * @return a partition of g
+     * @throws IllegalArgumentException
+     *             if k < 1
+     */
+    public static GraphPartition compute(Graph g, int k) {
+        return compute(g, k, DEFAULT_IMBALANCE, 0);
+    }
+
+    /**
+     * Partitions g into k parts with the multilevel scheme of METIS
+     * (Karypis and Kumar). The graph is coarsened by contracting a heavy
+     * edge matching until it has about 20 k vertices, split into k regions
+     * grown breadth first, and then projected back level by level. On every
+     * level the partition is refined by moving boundary vertices to the
+     * neighboring part they have most edge weight to, as long as the parts
+     * stay balanced. No part has more than (1 + imbalance) n / k vertices,
+     * unless a single coarse vertex is heavier. Time complexity:
+     * O((n + m) log n) in practice.
+     *
+     * @param g
+     *            a graph
+     * @param k
+     *            number of parts
+     * @param imbalance
+     *            allowed fraction above the average part size, imbalance >= 0
+     * @param seed
+     *            random seed for the matching and the initial partition
+     * @return a partition of g
+     * @throws IllegalArgumentException
+     *             if k < 1 or imbalance < 0
+     */
+    public static GraphPartition compute(Graph g, int k, double imbalance, long seed) {
+        if (k < 1)
+            throw new IllegalArgumentException("Illegal number of parts: k = " + k + ".");
+        if (!(imbalance >= 0))
+            throw new IllegalArgumentException("Illegal imbalance: " + imbalance + ".");
+
+        CsrGraph c = CsrGraph.of(g);
+        int n = c.numVertices();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        GraphEvents.AlgorithmPhase coarsen = new GraphEvents.AlgorithmPhase("partition", "coarsen", g);
+        coarsen.begin();
+        List<Level> levels = new ArrayList<>();
+        Level level = Level.of(c);
+        levels.add(level);
+        while (level.n > COARSEST_PER_PART * k) {
+            Level coarser = level.coarsen(k, random);
+            if (coarser.n > MIN_SHRINK * level.n)
+                break;
+            levels.add(coarser);
+            level = coarser;
+        }
+        coarsen.commit();
+
+        GraphEvents.AlgorithmPhase initial = new GraphEvents.AlgorithmPhase("partition", "initial", g);
+        initial.begin();
+        long maxWeight = (long) Math.ceil((1 + imbalance) * n / k);
+        int[] best = null;
+        long bestCut = 0;
+        for (int i = 0; i < INITIAL_TRIES; i++) {
+            int[] p = level.grow(k, random);
+            level.refine(p, k, maxWeight, random);
+            long cut = level.cut(p);
+            if (best == null || cut < bestCut) {
+                best = p;
+                bestCut = cut;
+            }
+        }
+        initial.commit();
+
+        GraphEvents.AlgorithmPhase refine = new GraphEvents.AlgorithmPhase("partition", "refine", g);
+        refine.begin();
+        int[] p = best;
+        for (int i = levels.size() - 2; i >= 0; i--) {
+            Level finer = levels.get(i);
+            int[] q = new int[finer.n];
+            for (int v = 0; v < finer.n; v++)
+                q[v] = p[finer.cmap[v]];
+            finer.refine(q, k, maxWeight, random);
+            p = q;
+        }
+        refine.commit();
+        return of(c, levels.get(0), p, k);
+    }
+
+    /**
+     * Builds the members, boundary table and subgraphs of partition p of c,
+     * whose undirected version is s.
+     */
+    private static GraphPartition of(final CsrGraph c, Level s, final int[] part, int k) {
+        int n = c.numVertices();
+        final int[][] members = new int[k][];
+        int[] size = new int[k];
+        for (int v = 0; v < n; v++)
+            size[part[v]]++;
+        for (int q = 0; q < k; q++)
+            members[q] = new int[size[q]];
+        final int[] localId = new int[n];
+        Arrays.fill(size, 0);
+        for (int v = 0; v < n; v++) {
+            localId[v] = size[part[v]]++;
+            members[part[v]][localId[v]] = v;
+        }
+
+        // A vertex is on the boundary if it has an edge to or from another
+        // part; the volume counts the distinct other parts of every vertex.
+        int[] last = new int[k];
+        Arrays.fill(last, -1);
+        int[] numBoundary = new int[k];
+        boolean[] isBoundary = new boolean[n];
+        long volume = 0;
+        for (int v = 0; v < n; v++) {
+            last[part[v]] = v;
+            for (int i = s.off[v]; i < s.off[v + 1]; i++) {
+                int q = part[s.adj[i]];
+                if (last[q] != v) {
+                    last[q] = v;
+                    volume++;
+                    isBoundary[v] = true;
+                }
+            }
+            if (isBoundary[v])
+                numBoundary[part[v]]++;
+        }
+        int[][] boundary = new int[k][];
+        for (int q = 0; q < k; q++)
+            boundary[q] = new int[numBoundary[q]];
+        Arrays.fill(numBoundary, 0);
+        for (int v = 0; v < n; v++) {
+            if (isBoundary[v])
+                boundary[part[v]][numBoundary[part[v]]++] = v;
+        }
+
+        long cutEdges = 0;
+        for (int v = 0; v < n; v++) {
+            for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                if (part[c.targets[i]] != part[v])
+                    cutEdges++;
+            }
+        }
+
+        final CsrGraph[] subgraphs = new CsrGraph[k];
+        final AtomicInteger next = new AtomicInteger();
+        final int numParts = k;
+        Runnable[] workers = new Runnable[Math.max(1, Math.min(k, Runtime.getRuntime().availableProcessors()))];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Runnable() {
+                @Override
+                public void run() {
+                    int q;
+                    while ((q = next.getAndIncrement()) < numParts)
+                        subgraphs[q] = subgraph(c, part, members[q], localId, q);
+                }
+            };
+        }
+        Workers.runAll("partition", workers);
+        return new GraphPartition(part, members, localId, boundary, subgraphs, cutEdges, volume);
+    }
+
+    /**
+     * Returns the edges of c within part q, numbered with localId.
+     */
+    private static CsrGraph subgraph(CsrGraph c, int[] part, int[] members, int[] localId, int q) {
+        int m = 0;
+        for (int v : members) {
+            for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                if (part[c.targets[i]] == q)
+                    m++;
+            }
+        }
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] cost = c.costs == null ? null : new int[m];
+        int j = 0;
+        for (int v : members) {
+            for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                int w = c.targets[i];
+                if (part[w] == q) {
+                    from[j] = localId[v];
+                    to[j] = localId[w];
+                    if (cost != null)
+                        cost[j] = c.costs[i];
+                    j++;
+                }
+            }
+        }
+        return CsrGraph.fromEdges(members.length, from, to, cost, m, false, 1);
+    }
+
+    /**
+     * An undirected graph with vertex and edge weights, one level of the
+     * multilevel scheme. cmap[v] is the vertex of the next coarser level that
+     * v was contracted into.
+     */
+    private static final class Level {
+        final int n;
+        final int[] off;
+        final int[] adj;
+        final long[] ewt;
+        final int[] vwt;
+        int[] cmap;
+
+        Level(int n, int[] off, int[] adj, long[] ewt, int[] vwt) {
+            this.n = n;
+            this.off = off;
+            this.adj = adj;
+            this.ewt = ewt;
+            this.vwt = vwt;
+        }
+
+        /**
+         * Returns the undirected version of c, with every vertex of weight 1.
+         */
+        static Level of(CsrGraph c) {
+            int n = c.numVertices();
+            int[] off = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                    int w = c.targets[i];
+                    if (w != v) {
+                        off[v + 1]++;
+                        off[w + 1]++;
+                    }
+                }
+            }
+            for (int v = 0; v < n; v++)
+                off[v + 1] += off[v];
+            int[] pos = Arrays.copyOf(off, n);
+            int[] adj = new int[off[n]];
+            long[] ewt = new long[off[n]];
+            for (int v = 0; v < n; v++) {
+                for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                    int w = c.targets[i];
+                    if (w == v)
+                        continue;
+                    int cost = c.costs == null ? Graph.NO_COST : c.costs[i];
+                    long weight = cost == Graph.NO_COST ? 1 : cost;
+                    adj[pos[v]] = w;
+                    ewt[pos[v]++] = weight;
+                    adj[pos[w]] = v;
+                    ewt[pos[w]++] = weight;
+                }
+            }
+
+            // Merge the duplicates of each row in place.
+            int[] where = new int[n];
+            Arrays.fill(where, -1);
+            int[] newOff = new int[n + 1];
+            int j = 0;
+            for (int v = 0; v < n; v++) {
+                int start = j;
+                for (int i = off[v]; i < off[v + 1]; i++) {
+                    int w = adj[i];
+                    if (where[w] >= start) {
+                        ewt[where[w]] += ewt[i];
+                    } else {
+                        where[w] = j;
+                        adj[j] = w;
+                        ewt[j++] = ewt[i];
+                    }
+                }
+                newOff[v + 1] = j;
+            }
+            int[] vwt = new int[n];
+            Arrays.fill(vwt, 1);
+            return new Level(n, newOff, Arrays.copyOf(adj, j), Arrays.copyOf(ewt, j), vwt);
+        }
+
+        /**
+         * Returns the graph where the vertices of a heavy edge matching are
+         * contracted. The vertices are visited in random order and each
+         * unmatched vertex is matched with the unmatched neighbor it has the
+         * heaviest edge to, unless the pair would be too heavy.
+         */
+        Level coarsen(int k, SplittableRandom random) {
+            long total = 0;
+            for (int v = 0; v < n; v++)
+                total += vwt[v];
+            long maxVertexWeight = Math.max(1, 3 * total / (2 * COARSEST_PER_PART * k));
+
+            int[] order = permutation(n, random);
+            int[] match = new int[n];
+            Arrays.fill(match, -1);
+            cmap = new int[n];
+            int cn = 0;
+            for (int v : order) {
+                if (match[v] >= 0)
+                    continue;
+                int best = v;
+                long bestWeight = -1;
+                for (int i = off[v]; i < off[v + 1]; i++) {
+                    int w = adj[i];
+                    if (match[w] < 0 && ewt[i] > bestWeight && vwt[v] + vwt[w] <= maxVertexWeight) {
+                        best = w;
+                        bestWeight = ewt[i];
+                    }
+                }
+                match[v] = best;
+                match[best] = v;
+                cmap[v] = cmap[best] = cn++;
+            }
+
+            int[] cvwt = new int[cn];
+            int[] first = new int[cn];
+            Arrays.fill(first, -1);
+            for (int v = 0; v < n; v++) {
+                cvwt[cmap[v]] += vwt[v];
+                if (first[cmap[v]] < 0)
+                    first[cmap[v]] = v;
+            }
+            int[] coff = new int[cn + 1];
+            int[] cadj = new int[adj.length];
+            long[] cewt = new long[adj.length];
+            int[] where = new int[cn];
+            Arrays.fill(where, -1);
+            int j = 0;
+            for (int u = 0; u < cn; u++) {
+                int start = j;
+                int x = first[u];
+                int y = match[x];
+                for (int member = x;; member = y) {
+                    for (int i = off[member]; i < off[member + 1]; i++) {
+                        int cw = cmap[adj[i]];
+                        if (cw == u)
+                            continue;
+                        if (where[cw] >= start) {
+                            cewt[where[cw]] += ewt[i];
+                        } else {
+                            where[cw] = j;
+                            cadj[j] = cw;
+                            cewt[j++] = ewt[i];
+                        }
+                    }
+                    if (member == y)
+                        break;
+                }
+                coff[u + 1] = j;
+            }
+            return new Level(cn, coff, Arrays.copyOf(cadj, j), Arrays.copyOf(cewt, j), cvwt);
+        }
+
+        /**
+         * Returns a partition where the parts 0 ... k-2 are grown breadth
+         * first from random vertices until each has its share of the weight
+         * that is left, and the remaining vertices form part k-1.
+         */
+        int[] grow(int k, SplittableRandom random) {
+            int[] part = new int[n];
+            Arrays.fill(part, -1);
+            long remaining = 0;
+            for (int v = 0; v < n; v++)
+                remaining += vwt[v];
+            int[] order = permutation(n, random);
+            int cursor = 0;
+            int[] queue = new int[n];
+            for (int p = 0; p < k - 1; p++) {
+                long goal = remaining / (k - p);
+                long weight = 0;
+                int head = 0;
+                int tail = 0;
+                while (weight < goal) {
+                    if (head == tail) {
+                        // Start a new region, possibly in another component.
+                        while (cursor < n && part[order[cursor]] >= 0)
+                            cursor++;
+                        if (cursor == n)
+                            break;
+                        int seed = order[cursor];
+                        part[seed] = p;
+                        weight += vwt[seed];
+                        queue[tail++] = seed;
+                        continue;
+                    }
+                    int v = queue[head++];
+                    for (int i = off[v]; i < off[v + 1] && weight < goal; i++) {
+                        int w = adj[i];
+                        if (part[w] < 0) {
+                            part[w] = p;
+                            weight += vwt[w];
+                            queue[tail++] = w;
+                        }
+                    }
+                }
+                remaining -= weight;
+            }
+            for (int v = 0; v < n; v++) {
+                if (part[v] < 0)
+                    part[v] = k - 1;
+            }
+            return part;
+        }
+
+        /**
+         * Improves partition p: first the parts that are too heavy give away
+         * vertices, then every boundary vertex moves to the neighboring part
+         * with the largest gain in internal edge weight. A move with zero
+         * gain is made only if it evens out the weights. After the first
+         * pass only the neighbors of moved vertices are examined again, and
+         * the passes stop when no vertex moves.
+         */
+        void refine(int[] p, int k, long maxWeight, SplittableRandom random) {
+            long[] weight = new long[k];
+            for (int v = 0; v < n; v++)
+                weight[p[v]] += vwt[v];
+            long[] conn = new long[k];
+            int[] touched = new int[k];
+            boolean[] present = new boolean[k];
+            for (int q = 0; q < k; q++) {
+                if (weight[q] > maxWeight) {
+                    balance(p, k, maxWeight, weight, conn, touched, present, permutation(n, random));
+                    break;
+                }
+            }
+
+            // The boundary vertices, scanned in order and then shuffled.
+            int[] list = new int[n];
+            int size = 0;
+            for (int v = 0; v < n; v++) {
+                for (int i = off[v]; i < off[v + 1]; i++) {
+                    if (p[adj[i]] != p[v]) {
+                        list[size++] = v;
+                        break;
+                    }
+                }
+            }
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = list[i];
+                list[i] = list[j];
+                list[j] = t;
+            }
+
+            int[] next = new int[n];
+            int[] stamp = new int[n];
+            for (int pass = 1; pass <= REFINE_PASSES && size > 0; pass++) {
+                int nextSize = 0;
+                for (int j = 0; j < size; j++) {
+                    int v = list[j];
+                    int from = p[v];
+                    int numTouched = connections(v, p, conn, touched, present);
+                    long internal = conn[from];
+                    boolean over = weight[from] > maxWeight;
+                    int best = from;
+                    long bestGain = over ? Long.MIN_VALUE : 0;
+                    for (int t = 0; t < numTouched; t++) {
+                        int q = touched[t];
+                        if (q == from || weight[q] + vwt[v] > maxWeight)
+                            continue;
+                        long gain = conn[q] - internal;
+                        if (gain > bestGain || (gain == bestGain
+                                && (best == from ? weight[q] + vwt[v] < weight[from] : weight[q] < weight[best]))) {
+                            best = q;
+                            bestGain = gain;
+                        }
+                    }
+                    clear(numTouched, conn, touched, present);
+                    if (best == from)
+                        continue;
+                    p[v] = best;
+                    weight[from] -= vwt[v];
+                    weight[best] += vwt[v];
+                    if (stamp[v] != pass) {
+                        stamp[v] = pass;
+                        next[nextSize++] = v;
+                    }
+                    for (int i = off[v]; i < off[v + 1]; i++) {
+                        int w = adj[i];
+                        if (stamp[w] != pass) {
+                            stamp[w] = pass;
+                            next[nextSize++] = w;
+                        }
+                    }
+                }
+                int[] t = list;
+                list = next;
+                next = t;
+                size = nextSize;
+            }
+        }
+
+        /**
+         * Moves vertices out of the parts that are heavier than maxWeight to
+         * the lightest part, first those without edges into their own part.
+         */
+        private void balance(int[] p, int k, long maxWeight, long[] weight, long[] conn, int[] touched,
+                boolean[] present, int[] order) {
+            for (int round = 0; round < 2; round++) {
+                for (int v : order) {
+                    int from = p[v];
+                    if (weight[from] <= maxWeight)
+                        continue;
+                    int numTouched = connections(v, p, conn, touched, present);
+                    boolean loose = conn[from] == 0;
+                    clear(numTouched, conn, touched, present);
+                    if (round == 0 && !loose)
+                        continue;
+                    int lightest = 0;
+                    for (int q = 1; q < k; q++) {
+                        if (weight[q] < weight[lightest])
+                            lightest = q;
+                    }
+                    if (weight[lightest] + vwt[v] > maxWeight)
+                        continue;
+                    p[v] = lightest;
+                    weight[from] -= vwt[v];
+                    weight[lightest] += vwt[v];
+                }
+            }
+        }
+
+        /**
+         * Sums the edge weight from v to each part into conn and returns the
+         * number of distinct parts, which are stored in touched and marked
+         * in present.
+         */
+        private int connections(int v, int[] p, long[] conn, int[] touched, boolean[] present) {
+            int numTouched = 0;
+            for (int i = off[v]; i < off[v + 1]; i++) {
+                int q = p[adj[i]];
+                if (!present[q]) {
+                    present[q] = true;
+                    touched[numTouched++] = q;
+                }
+                conn[q] += ewt[i];
+            }
+            return numTouched;
+        }
+
+        private static void clear(int numTouched, long[] conn, int[] touched, boolean[] present) {
+            for (int t = 0; t < numTouched; t++) {
+                conn[touched[t]] = 0;
+                present[touched[t]] = false;
+            }
+        }
+
+        /**
+         * Returns the total weight of the edges between different parts.
+         */
+        long cut(int[] p) {
+            long cut = 0;
+            for (int v = 0; v < n; v++) {
+                for (int i = off[v]; i < off[v + 1]; i++) {
+                    if (p[adj[i]] != p[v])
+                        cut += ewt[i];
+                }
+            }
+            return cut / 2;
+        }
+    }
+
+    private static int[] permutation(int n, SplittableRandom random) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    /**
+     * Returns the number of parts.
+     *
+     * @return the number of parts
+     */
+    public int numParts() {
+        return members.length;
+    }
+
+    /**
+     * Returns the part of vertex v.
+     *
+     * @param v
+     *            vertex
+     * @return the part of v
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public int part(int v) {
+        checkVertexParameter(v);
+        return part[v];
+    }
+
+    /**
+     * Returns a copy of the part of every vertex.
+     *
+     * @return p, where p[v] is the part of v
+     */
+    public int[] parts() {
+        return part.clone();
+    }
+
+    /**
+     * Returns the number of vertices in part q.
+     *
+     * @param q
+     *            part
+     * @return the size of part q
+     * @throws IllegalArgumentException
+     *             if q is out of range
+     */
+    public int partSize(int q) {
+        checkPartParameter(q);
+        return members[q].length;
+    }
+
+    /**
+     * Returns the vertices of part q in increasing order. Vertex i of the
+     * subgraph of q is vertex vertices(q)[i] of the graph.
+     *
+     * @param q
+     *            part
+     * @return the vertices of part q
+     * @throws IllegalArgumentException
+     *             if q is out of range
+     */
+    public int[] vertices(int q) {
+        checkPartParameter(q);
+        return members[q].clone();
+    }
+
+    /**
+     * Returns the number of v in the subgraph of its part.
+     *
+     * @param v
+     *            vertex
+     * @return the local number of v
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public int localId(int v) {
+        checkVertexParameter(v);
+        return localId[v];
+    }
+
+    /**
+     * Returns the subgraph of part q: its vertices, numbered as in
+     * vertices(q), and the edges between them with their costs.
+     *
+     * @param q
+     *            part
+     * @return the subgraph of part q
+     * @throws IllegalArgumentException
+     *             if q is out of range
+     */
+    public Graph subgraph(int q) {
+        checkPartParameter(q);
+        return subgraphs[q];
+    }
+
+    /**
+     * Returns the vertices of part q, in increasing order, that have an
+     * edge to or from a vertex in another part.
+     *
+     * @param q
+     *            part
+     * @return the boundary vertices of part q
+     * @throws IllegalArgumentException
+     *             if q is out of range
+     */
+    public int[] boundaryVertices(int q) {
+        checkPartParameter(q);
+        return boundary[q].clone();
+    }
+
+    /**
+     * Returns the number of edges of the graph between different parts.
+     *
+     * @return the number of cut edges
+     */
+    public long cutEdges() {
+        return cutEdges;
+    }
+
+    /**
+     * Returns the communication volume: the sum over all vertices of the
+     * number of other parts that the vertex has an edge to or from. This is
+     * the number of vertex values that must be sent after every round of a
+     * parallel algorithm that keeps each part in its own process.
+     *
+     * @return the communication volume
+     */
+    public long communicationVolume() {
+        return volume;
+    }
+
+    /**
+     * Returns the size of the largest part divided by the average size, 1.0
+     * for a perfectly balanced partition.
+     *
+     * @return the imbalance of the partition
+     */
+    public double imbalance() {
+        if (part.length == 0)
+            return 1.0;
+        int max = 0;
+        for (int[] m : members)
+            max = Math.max(max, m.length);
+        return (double) max * members.length / part.length;
+    }
+
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= part.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+
+    private void checkPartParameter(int q) {
+        if (q < 0 || q >= members.length)
+            throw new IllegalArgumentException("Out of range: q = " + q + ".");
+    }
+}
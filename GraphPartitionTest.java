@@ -0,0 +1,160 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a partition covers every vertex exactly once, keeps the parts
+ * balanced, and reports the cut edges, boundary vertices and subgraphs of
+ * the graph it was computed for.
+ */
+public class GraphPartitionTest {
+    @Test
+    public void partsCoverEveryVertexOnce() {
+        Random random = new Random(40);
+        for (int round = 0; round < 30; round++) {
+            Graph g = ImmutableGraphTest.randomGraph(random, random.nextInt(400));
+            for (int k : new int[] { 1, 2, 3, 8 }) {
+                GraphPartition p = GraphPartition.compute(g, k, 0.1, round);
+                assertPartition(g, p, k);
+            }
+        }
+    }
+
+    @Test
+    public void partsAreBalanced() {
+        Random random = new Random(40);
+        for (int round = 0; round < 20; round++) {
+            int n = 200 + random.nextInt(800);
+            Graph g = new HashGraph(n);
+            RandomGraphs.gnm(n, 3 * n, round, 1).addBiTo(g);
+            for (int k : new int[] { 2, 4, 8 }) {
+                for (double imbalance : new double[] { 0, GraphPartition.DEFAULT_IMBALANCE, 0.2 }) {
+                    GraphPartition p = GraphPartition.compute(g, k, imbalance, round);
+                    long maxSize = (long) Math.ceil((1 + imbalance) * n / k);
+                    for (int q = 0; q < k; q++)
+                        assertTrue(p.partSize(q) <= maxSize);
+                    assertTrue(p.imbalance() <= (double) maxSize * k / n + 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void gridIsCutAlongFewEdges() {
+        // A 40 x 40 grid split in four has a cut of 80 undirected edges;
+        // a random split cuts about three quarters of all 3120.
+        int side = 40;
+        Graph g = new HashGraph(side * side);
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                if (c + 1 < side)
+                    g.addBi(r * side + c, r * side + c + 1);
+                if (r + 1 < side)
+                    g.addBi(r * side + c, (r + 1) * side + c);
+            }
+        }
+        GraphPartition p = GraphPartition.compute(g, 4);
+        assertPartition(g, p, 4);
+        assertTrue(p.cutEdges() <= 2 * 200);
+    }
+
+    @Test
+    public void singlePartHasNoCut() {
+        Graph g = new HashGraph(50);
+        RandomGraphs.gnm(50, 200, 1, 1).addBiTo(g);
+        GraphPartition p = GraphPartition.compute(g, 1);
+        assertEquals(0, p.cutEdges());
+        assertEquals(0, p.communicationVolume());
+        assertEquals(1.0, p.imbalance(), 1e-9);
+        assertEquals(g.numEdges(), p.subgraph(0).numEdges());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void computeRejectsZeroParts() {
+        GraphPartition.compute(new HashGraph(3), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partRejectsVertexOutOfRange() {
+        GraphPartition.compute(new HashGraph(3), 2).part(3);
+    }
+
+    /**
+     * Recounts the parts, cut edges, boundary vertices, communication
+     * volume and subgraphs of p from g.
+     */
+    private static void assertPartition(Graph g, GraphPartition p, int k) {
+        int n = g.numVertices();
+        assertEquals(k, p.numParts());
+        int[] parts = p.parts();
+        assertEquals(n, parts.length);
+
+        int[] seen = new int[n];
+        int total = 0;
+        for (int q = 0; q < k; q++) {
+            int[] vertices = p.vertices(q);
+            assertEquals(vertices.length, p.partSize(q));
+            for (int i = 0; i < vertices.length; i++) {
+                int v = vertices[i];
+                assertTrue(i == 0 || vertices[i - 1] < v);
+                assertEquals(q, p.part(v));
+                assertEquals(q, parts[v]);
+                assertEquals(i, p.localId(v));
+                seen[v]++;
+            }
+            total += vertices.length;
+        }
+        assertEquals(n, total);
+        for (int v = 0; v < n; v++)
+            assertEquals(1, seen[v]);
+
+        long cut = 0;
+        boolean[] boundary = new boolean[n];
+        boolean[][] touches = new boolean[n][k];
+        long[] inside = new long[k];
+        for (int v = 0; v < n; v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                if (parts[v] != parts[w]) {
+                    cut++;
+                    boundary[v] = true;
+                    boundary[w] = true;
+                    touches[v][parts[w]] = true;
+                    touches[w][parts[v]] = true;
+                } else {
+                    inside[parts[v]]++;
+                    Graph sub = p.subgraph(parts[v]);
+                    assertTrue(sub.hasEdge(p.localId(v), p.localId(w)));
+                    assertEquals(g.cost(v, w), sub.cost(p.localId(v), p.localId(w)));
+                }
+            }
+        }
+        assertEquals(cut, p.cutEdges());
+
+        long volume = 0;
+        for (int v = 0; v < n; v++)
+            for (int q = 0; q < k; q++)
+                if (touches[v][q])
+                    volume++;
+        assertEquals(volume, p.communicationVolume());
+
+        for (int q = 0; q < k; q++) {
+            assertEquals(p.partSize(q), p.subgraph(q).numVertices());
+            assertEquals(inside[q], p.subgraph(q).numEdges());
+            int count = 0;
+            for (int v : p.vertices(q))
+                if (boundary[v])
+                    count++;
+            int[] vertices = p.boundaryVertices(q);
+            assertEquals(count, vertices.length);
+            for (int i = 0; i < vertices.length; i++) {
+                assertTrue(boundary[vertices[i]]);
+                assertEquals(q, p.part(vertices[i]));
+                assertTrue(i == 0 || vertices[i - 1] < vertices[i]);
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.stream.IntStream;
 import org.junit.Test;
 import org.junit.Before;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.CoreMatchers.*;
@@ -1128,4 +1129,174 @@ public abstract class GraphTest {
         assertThat(g1Actual, equalTo(g1Expected));
         assertThat(g5Actual, either(equalTo(g5CandidateA)).or(equalTo(g5CandidateB)));
     }
+
+    /**
+     * Tests for addAll and addAllBi
+     */
+
+    /**
+     * Returns graph as a BulkInsertion, skipping the test if the
+     * implementation does not support bulk insertion.
+     */
+    private BulkInsertion bulk(Graph graph) {
+        assumeTrue(graph instanceof BulkInsertion);
+        return (BulkInsertion) graph;
+    }
+
+    @Test
+    public void addAllGivesSameGraphAsAdd() {
+        // Arrange
+        int[] from = {0, 1, 2, 2, 4, 0};
+        int[] to = {1, 2, 3, 3, 4, 1};
+        int[] costs = {5, Graph.NO_COST, 7, 8, 0, 6};
+        Graph expected = getEmptyGraph(numVertices);
+        for (int i = 0; i < from.length; i++) {
+            if (costs[i] == Graph.NO_COST)
+                expected.add(from[i], to[i]);
+            else
+                expected.add(from[i], to[i], costs[i]);
+        }
+
+        // Act
+        bulk(graph).addAll(from, to, costs, from.length);
+
+        // Assert
+        assertThat(graph.numEdges(), equalTo(expected.numEdges()));
+        for (int v = 0; v < numVertices; v++) {
+            for (int w = 0; w < numVertices; w++) {
+                assertThat(graph.hasEdge(v, w), equalTo(expected.hasEdge(v, w)));
+                assertThat(graph.cost(v, w), equalTo(expected.cost(v, w)));
+            }
+        }
+    }
+
+    @Test
+    public void addAllBiInsertsBothDirections() {
+        // Arrange
+        int[] from = {0, 1, 3};
+        int[] to = {1, 2, 3};
+        int expectedNumEdges = 5;
+
+        // Act
+        bulk(graph).addAllBi(from, to, null, from.length);
+
+        // Assert
+        assertThat(graph.numEdges(), equalTo(expectedNumEdges));
+        assertTrue(graph.hasEdge(1, 0));
+        assertTrue(graph.hasEdge(2, 1));
+        assertTrue(graph.hasEdge(3, 3));
+        assertThat(graph.cost(0, 1), equalTo(Graph.NO_COST));
+    }
+
+    @Test
+    public void addAllOnManyEdgesFromOneVertex() {
+        // Arrange
+        int numVertices = 1000;
+        Graph graph = getEmptyGraph(numVertices);
+        graph.add(0, 1, cost);
+        int[] from = new int[numVertices];
+        int[] to = new int[numVertices];
+        for (int i = 0; i < numVertices; i++)
+            to[i] = i;
+
+        // Act
+        bulk(graph).addAll(from, to, null, numVertices);
+
+        // Assert
+        assertThat(graph.numEdges(), equalTo(numVertices));
+        assertThat(graph.degree(0), equalTo(numVertices));
+        assertThat(graph.cost(0, 1), equalTo(Graph.NO_COST));
+    }
+
+    @Test
+    public void addAllExceptionWhenVertexIsOutOfRangeInsertsNothing() {
+        // Arrange
+        BulkInsertion bulk = bulk(graph);
+
+        for (int v : oorVertices) {
+            int[] from = {0, 1, v};
+            int[] to = {1, 2, 3};
+            try {
+                // Act
+                bulk.addAll(from, to, null, from.length);
+                fail("Expected IllegalArgumentException on addAll with vertex out of range!\n"
+                    + "Failed with vertex: " + v);
+            } catch (IllegalArgumentException e) {
+                // Assert
+                assertThat(graph.numEdges(), equalTo(0));
+            }
+        }
+    }
+
+    @Test
+    public void addAllBiExceptionWhenCostIsNegativeInsertsNothing() {
+        // Arrange
+        BulkInsertion bulk = bulk(graph);
+        int[] from = {0, 1};
+        int[] to = {1, 2};
+        int[] costs = {3, -2};
+
+        try {
+            // Act
+            bulk.addAllBi(from, to, costs, from.length);
+            fail("Expected IllegalArgumentException on addAllBi with negative cost!");
+        } catch (IllegalArgumentException e) {
+            // Assert
+            assertThat(graph.numEdges(), equalTo(0));
+        }
+    }
+
+    private Versioned versioned(Graph graph) {
+        assumeTrue(graph instanceof Versioned);
+        return (Versioned) graph;
+    }
+
+    @Test
+    public void versionChangesWhenEdgeIsAddedOrRemoved() {
+        // Arrange
+        Versioned versioned = versioned(graph);
+        long v0 = versioned.version();
+
+        // Act
+        graph.add(0, 1);
+        long v1 = versioned.version();
+        graph.remove(0, 1);
+        long v2 = versioned.version();
+
+        // Assert
+        assertThat(v1, not(equalTo(v0)));
+        assertThat(v2, not(equalTo(v1)));
+    }
+
+    @Test
+    public void versionDoesNotChangeWhenGraphDoesNotChange() {
+        // Arrange
+        Versioned versioned = versioned(graph);
+        graph.add(0, 1, cost);
+        graph.add(1, 2);
+        long before = versioned.version();
+
+        // Act
+        graph.add(0, 1, cost);
+        graph.add(1, 2);
+        graph.remove(2, 3);
+        bulk(graph).addAll(new int[] {0}, new int[] {1}, new int[] {cost}, 1);
+
+        // Assert
+        assertThat(versioned.version(), equalTo(before));
+    }
+
+    @Test
+    public void versionChangesWhenCostChanges() {
+        // Arrange
+        Versioned versioned = versioned(graph);
+        graph.add(0, 1, cost);
+        long before = versioned.version();
+
+        // Act
+        graph.add(0, 1, cost + 1);
+
+        // Assert
+        assertThat(versioned.version(), not(equalTo(before)));
+    }
 }
@@ -0,0 +1,436 @@
+package se.kth.graph;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Writes the edges of a graph to an Appendable, such as a Writer or a
+ * StringBuilder, or to a WritableByteChannel. The output goes through a
+ * buffer of BUFFER_SIZE characters or bytes, and integers are formatted
+ * digit by digit into the buffer, so writing a graph of any size creates no
+ * strings. The edges are written in the order of the neighbor iterators,
+ * and the scan stops as soon as numEdges edges have been written, so that
+ * the empty rows at the end of a MatrixGraph are not scanned.
+ */
+public final class GraphWriter {
+    /** Size of the output buffer, in characters or bytes. */
+    public final static int BUFFER_SIZE = 8192;
+
+    /** The first int of the binary format, "KTHG" in ASCII. */
+    public final static int MAGIC = 0x4b544847;
+
+    private GraphWriter() {
+    }
+
+    /**
+     * The output formats.
+     */
+    public enum Format {
+        /**
+         * The format of HashGraph.toString, such as "{(0,1), (2,3,1)}": one
+         * (from,to) or (from,to,cost) per edge.
+         */
+        BRACES,
+
+        /** One line "from to" or "from to cost" per edge. */
+        EDGE_LIST,
+
+        /**
+         * A Graphviz digraph: one statement per vertex, so that isolated
+         * vertices are drawn, and one per edge, labeled with the cost.
+         */
+        DOT,
+
+        /**
+         * Big-endian ints: MAGIC, the number of vertices and the number of
+         * edges, followed by from, to and cost (or NO_COST) for each edge.
+         * Can only be written to a channel; see readBinary.
+         */
+        BINARY
+    }
+
+    /**
+     * Returns g in the BRACES format. Time complexity: O(n + m) for a graph
+     * with O(1) neighbor iteration and cost lookup.
+     *
+     * @param g
+     *            a graph
+     * @return a String representation of g
+     */
+    public static String toString(Graph g) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(g, Format.BRACES, sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // A StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes g to out in a text format. The output is not flushed or closed.
+     *
+     * @param g
+     *            a graph
+     * @param format
+     *            a text format
+     * @param out
+     *            where to write
+     * @throws IOException
+     *             if out throws
+     * @throws IllegalArgumentException
+     *             if format is BINARY
+     */
+    public static void write(Graph g, Format format, Appendable out) throws IOException {
+        if (format == Format.BINARY)
+            throw new IllegalArgumentException("The binary format needs a channel.");
+        write(g, format, new CharSink(out));
+    }
+
+    /**
+     * Writes g to out; text formats are written in ASCII. The channel is not
+     * closed.
+     *
+     * @param g
+     *            a graph
+     * @param format
+     *            the format
+     * @param out
+     *            where to write
+     * @throws IOException
+     *             if out throws
+     */
+    public static void write(Graph g, Format format, WritableByteChannel out) throws IOException {
+        write(g, format, new ByteSink(out));
+    }
+
+    /**
+     * Reads a graph in the BINARY format. The edges are checked as by
+     * EdgeList.of. The number of edges in the header is checked against the
+     * size of a SeekableByteChannel, and the edge arrays grow as the edges
+     * are read, so a corrupt header cannot make this method allocate more
+     * than the input holds.
+     *
+     * @param in
+     *            where to read
+     * @return the edges, with a cost array if some edge has a cost
+     * @throws IOException
+     *             if in throws, ends too early, does not start with MAGIC or
+     *             is shorter than its header says
+     * @throws IllegalArgumentException
+     *             if an edge is out of range or has an illegal cost
+     */
+    public static EdgeList readBinary(ReadableByteChannel in) throws IOException {
+        return readBinary(in, null, 0);
+    }
+
+    /**
+     * Reads the edges of a graph in the BINARY format that start in a vertex
+     * v with owner[v] == part, or all edges if owner is null. Only the kept
+     * edges are stored, so a BspWorker can read its part of a graph file
+     * that does not fit in its heap.
+     *
+     * @throws IOException
+     *             as readBinary, or if owner does not have one entry per
+     *             vertex
+     */
+    static EdgeList readBinary(ReadableByteChannel in, int[] owner, int part) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        buf.flip();
+        if (readInt(in, buf) != MAGIC)
+            throw new IOException("Not a binary graph.");
+        int n = readInt(in, buf);
+        int m = readInt(in, buf);
+        if (n < 0 || m < 0)
+            throw new IOException("Illegal size: n = " + n + ", m = " + m + ".");
+        if (owner != null && owner.length != n)
+            throw new IOException("Wrong number of vertices: " + n + ", expected " + owner.length + ".");
+        if (in instanceof SeekableByteChannel) {
+            SeekableByteChannel channel = (SeekableByteChannel) in;
+            long available = channel.size() - channel.position() + buf.remaining();
+            if (12L * m > available)
+                throw new IOException("Truncated: m = " + m + ", but only " + available + " bytes left.");
+        }
+        int capacity = Math.min(m, BUFFER_SIZE);
+        int[] from = new int[capacity];
+        int[] to = new int[capacity];
+        int[] cost = new int[capacity];
+        boolean weighted = false;
+        int size = 0;
+        for (int i = 0; i < m; i++) {
+            if (size == capacity) {
+                capacity = (int) Math.min(m, 2L * capacity);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+            }
+            from[size] = readInt(in, buf);
+            to[size] = readInt(in, buf);
+            cost[size] = readInt(in, buf);
+            // An edge out of range is kept, so that EdgeList.of rejects it.
+            if (owner != null && from[size] >= 0 && from[size] < n && owner[from[size]] != part)
+                continue;
+            weighted |= cost[size] != Graph.NO_COST;
+            size++;
+        }
+        return EdgeList.of(n, from, to, weighted ? cost : null, size);
+    }
+
+    private static int readInt(ReadableByteChannel in, ByteBuffer buf) throws IOException {
+        if (buf.remaining() < 4) {
+            buf.compact();
+            while (buf.position() < 4) {
+                if (in.read(buf) < 0)
+                    throw new EOFException();
+            }
+            buf.flip();
+        }
+        return buf.getInt();
+    }
+
+    private static void write(Graph g, Format format, Sink out) throws IOException {
+        int n = g.numVertices();
+        switch (format) {
+            case BRACES:
+                out.put('{');
+                break;
+            case DOT:
+                out.put("digraph {\n");
+                for (int v = 0; v < n; v++) {
+                    out.put("  ");
+                    out.putDecimal(v);
+                    out.put(";\n");
+                }
+                break;
+            case BINARY:
+                out.putBinary(MAGIC);
+                out.putBinary(n);
+                out.putBinary(g.numEdges());
+                break;
+            default:
+                break;
+        }
+
+        long remaining = g.numEdges();
+        boolean first = true;
+        if (g instanceof CsrGraph) {
+            CsrGraph csr = (CsrGraph) g;
+            int[] costs = csr.costs;
+            for (int v = 0; v < n; v++) {
+                for (int i = csr.offsets[v]; i < csr.offsets[v + 1]; i++) {
+                    edge(out, format, v, csr.targets[i], costs == null ? Graph.NO_COST : costs[i], first);
+                    first = false;
+                }
+            }
+        } else if (g instanceof CompressedGraph) {
+            // Each row and its costs are decoded once, instead of a lookup
+            // that scans the row for every cost.
+            CompressedGraph compressed = (CompressedGraph) g;
+            int[] targets = new int[0];
+            int[] costs = new int[0];
+            for (int v = 0; v < n && remaining > 0; v++) {
+                int d = compressed.degree(v);
+                if (targets.length < d) {
+                    targets = new int[Math.max(d, 2 * targets.length)];
+                    costs = new int[targets.length];
+                }
+                compressed.decode(v, targets);
+                compressed.decodeCosts(v, costs);
+                for (int i = 0; i < d; i++) {
+                    edge(out, format, v, targets[i], costs[i], first);
+                    first = false;
+                }
+                remaining -= d;
+            }
+        } else if (g instanceof HashGraph) {
+            // The map entries give each cost without a second lookup.
+            HashGraph hash = (HashGraph) g;
+            for (int v = 0; v < n && remaining > 0; v++) {
+                Map<Integer, Integer> row = hash.adjacency(v);
+                if (row == null)
+                    continue;
+                for (Map.Entry<Integer, Integer> e : row.entrySet()) {
+                    edge(out, format, v, e.getKey(), e.getValue(), first);
+                    first = false;
+                    remaining--;
+                }
+            }
+        } else {
+            for (int v = 0; v < n && remaining > 0; v++) {
+                for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                    int w = it.next();
+                    edge(out, format, v, w, g.cost(v, w), first);
+                    first = false;
+                    remaining--;
+                }
+            }
+        }
+
+        switch (format) {
+            case BRACES:
+                out.put('}');
+                break;
+            case DOT:
+                out.put("}\n");
+                break;
+            default:
+                break;
+        }
+        out.flush();
+    }
+
+    private static void edge(Sink out, Format format, int v, int w, int c, boolean first) throws IOException {
+        switch (format) {
+            case BRACES:
+                if (!first)
+                    out.put(", ");
+                out.put('(');
+                out.putDecimal(v);
+                out.put(',');
+                out.putDecimal(w);
+                if (c != Graph.NO_COST) {
+                    out.put(',');
+                    out.putDecimal(c);
+                }
+                out.put(')');
+                break;
+            case EDGE_LIST:
+                out.putDecimal(v);
+                out.put(' ');
+                out.putDecimal(w);
+                if (c != Graph.NO_COST) {
+                    out.put(' ');
+                    out.putDecimal(c);
+                }
+                out.put('\n');
+                break;
+            case DOT:
+                out.put("  ");
+                out.putDecimal(v);
+                out.put(" -> ");
+                out.putDecimal(w);
+                if (c != Graph.NO_COST) {
+                    out.put(" [label=");
+                    out.putDecimal(c);
+                    out.put(']');
+                }
+                out.put(";\n");
+                break;
+            case BINARY:
+                out.putBinary(v);
+                out.putBinary(w);
+                out.putBinary(c);
+                break;
+        }
+    }
+
+    /** A bounded output buffer. */
+    private static abstract class Sink {
+        private final char[] digits = new char[11];
+
+        abstract void put(char c) throws IOException;
+
+        /** Writes x as four big-endian bytes. */
+        abstract void putBinary(int x) throws IOException;
+
+        /** Writes the buffer to the output. */
+        abstract void flush() throws IOException;
+
+        final void put(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++)
+                put(s.charAt(i));
+        }
+
+        /** Writes x in decimal, without creating a String. */
+        final void putDecimal(int x) throws IOException {
+            if (x < 0) {
+                put('-');
+                if (x == Integer.MIN_VALUE) {
+                    put("2147483648");
+                    return;
+                }
+                x = -x;
+            }
+            int i = digits.length;
+            do {
+                digits[--i] = (char) ('0' + x % 10);
+                x /= 10;
+            } while (x > 0);
+            for (; i < digits.length; i++)
+                put(digits[i]);
+        }
+    }
+
+    private static final class CharSink extends Sink {
+        private final Appendable out;
+        private final char[] buf = new char[BUFFER_SIZE];
+        private int size;
+
+        CharSink(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        void put(char c) throws IOException {
+            if (size == buf.length)
+                flush();
+            buf[size++] = c;
+        }
+
+        @Override
+        void putBinary(int x) {
+            throw new AssertionError();
+        }
+
+        @Override
+        void flush() throws IOException {
+            if (out instanceof StringBuilder)
+                ((StringBuilder) out).append(buf, 0, size);
+            else if (out instanceof Writer)
+                ((Writer) out).write(buf, 0, size);
+            else
+                out.append(CharBuffer.wrap(buf, 0, size));
+            size = 0;
+        }
+    }
+
+    private static final class ByteSink extends Sink {
+        private final WritableByteChannel out;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+        ByteSink(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        void put(char c) throws IOException {
+            if (!buf.hasRemaining())
+                flush();
+            buf.put((byte) c);
+        }
+
+        @Override
+        void putBinary(int x) throws IOException {
+            if (buf.remaining() < 4)
+                flush();
+            buf.putInt(x);
+        }
+
+        @Override
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining())
+                out.write(buf);
+            buf.clear();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package se.kth.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the text formats match the string the graphs built before
+ * GraphWriter, and that a graph written in the binary format reads back
+ * as the same graph.
+ */
+public class GraphWriterTest {
+    @Test
+    public void toStringMatchesTheBaselineFormat() {
+        Random random = new Random(45);
+        for (int round = 0; round < 30; round++) {
+            Graph g = ImmutableGraphTest.randomGraph(random, random.nextInt(200));
+            Graph[] graphs = { g, CsrGraph.copyOf(g), copy(g, new MatrixGraph(g.numVertices())),
+                    copy(g, new LazyMatrixGraph(g.numVertices())) };
+            for (Graph h : graphs) {
+                assertEquals(baselineToString(h), GraphWriter.toString(h));
+                assertEquals(baselineToString(h), h.toString());
+            }
+        }
+        assertEquals("{}", GraphWriter.toString(new HashGraph(3)));
+    }
+
+    @Test
+    public void textFormats() throws IOException {
+        Graph g = new HashGraph(3);
+        g.add(0, 1);
+        g.add(2, 0, 7);
+        StringBuilder edges = new StringBuilder();
+        GraphWriter.write(g, GraphWriter.Format.EDGE_LIST, edges);
+        assertEquals("0 1\n2 0 7\n", edges.toString());
+        StringBuilder dot = new StringBuilder();
+        GraphWriter.write(g, GraphWriter.Format.DOT, dot);
+        assertEquals("digraph {\n  0;\n  1;\n  2;\n  0 -> 1;\n  2 -> 0 [label=7];\n}\n", dot.toString());
+
+        // A string longer than the buffer.
+        Graph big = new HashGraph(5000);
+        for (int v = 0; v + 1 < 5000; v++)
+            big.add(v, v + 1, v);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GraphWriter.write(big, GraphWriter.Format.BRACES, Channels.newChannel(bytes));
+        assertEquals(baselineToString(big), bytes.toString("US-ASCII"));
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        Random random = new Random(45);
+        for (int round = 0; round < 10; round++) {
+            Graph g = ImmutableGraphTest.randomGraph(random, random.nextInt(400));
+            Graph[] graphs = { g, CsrGraph.copyOf(g), CompressedGraph.copyOf(g) };
+            for (Graph h : graphs) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                GraphWriter.write(h, GraphWriter.Format.BINARY, Channels.newChannel(bytes));
+                assertEquals(12 + 12L * h.numEdges(), bytes.size());
+                ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+                EdgeList edges = GraphWriter.readBinary(Channels.newChannel(in));
+                ImmutableGraphTest.assertSameGraph(g, edges.toCsrGraph(false));
+            }
+        }
+    }
+
+    @Test
+    public void binaryRoundTripThroughAFile() throws IOException {
+        Graph g = ImmutableGraphTest.randomGraph(new Random(45), 3000);
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                GraphWriter.write(g, GraphWriter.Format.BINARY, out);
+            }
+            try (FileChannel in = FileChannel.open(file)) {
+                EdgeList edges = GraphWriter.readBinary(in);
+                ImmutableGraphTest.assertSameGraph(g, edges.toCsrGraph(false));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void readBinaryRejectsTooManyEdgesForTheFile() throws IOException {
+        Path file = Files.createTempFile("graph", ".bin");
+        try {
+            Files.write(file, header(10, Integer.MAX_VALUE, 3));
+            try (FileChannel in = FileChannel.open(file)) {
+                GraphWriter.readBinary(in);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void readBinaryStopsAtTheEndOfAStream() throws IOException {
+        // Without a size to check, the arrays only grow with the edges read.
+        byte[] bytes = header(10, Integer.MAX_VALUE, 1000);
+        GraphWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test(expected = IOException.class)
+    public void readBinaryRejectsWrongMagic() throws IOException {
+        byte[] bytes = header(10, 0, 0);
+        bytes[0]++;
+        GraphWriter.readBinary(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryNeedsAChannel() throws IOException {
+        GraphWriter.write(new HashGraph(1), GraphWriter.Format.BINARY, new StringBuilder());
+    }
+
+    private static Graph copy(Graph g, Graph to) {
+        for (int v = 0; v < g.numVertices(); v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                int c = g.cost(v, w);
+                if (c == Graph.NO_COST)
+                    to.add(v, w);
+                else
+                    to.add(v, w, c);
+            }
+        }
+        return to;
+    }
+
+    /** The header of a binary graph followed by edges (0, 1, NO_COST). */
+    private static byte[] header(int n, int m, int edges) {
+        ByteBuffer buf = ByteBuffer.allocate(12 + 12 * edges);
+        buf.putInt(GraphWriter.MAGIC).putInt(n).putInt(m);
+        for (int i = 0; i < edges; i++)
+            buf.putInt(0).putInt(1).putInt(Graph.NO_COST);
+        return buf.array();
+    }
+
+    /**
+     * The string built by HashGraph.toString before GraphWriter, for any
+     * graph.
+     */
+    private static String baselineToString(Graph g) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        for (int from = 0; from < g.numVertices(); from++) {
+            for (VertexIterator it = g.neighbors(from); it.hasNext();) {
+                int to = it.next();
+                int value = g.cost(from, to);
+                if (value == Graph.NO_COST)
+                    sb.append("(" + from + "," + to + "), ");
+                else
+                    sb.append("(" + from + "," + to + "," + value + "), ");
+            }
+        }
+        if (g.numEdges() > 0)
+            sb.setLength(sb.length() - 2); // Remove trailing ", "
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package se.kth.graph;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -12,7 +13,7 @@ import java.util.NoSuchElementException;
  * @author Kristopher Werlinder
  * @version 2019-02-12
  */
-public class HashGraph implements Graph {
+public class HashGraph implements Graph, BulkInsertion, Versioned {
 
 /*
     public static void main(String args[]) {
@@ -37,6 +38,9 @@ public class HashGraph implements Graph {
     /** Number of edges in the graph. */
     private int numEdges;
 
+    /** Number of modifications, see Versioned. */
+    private long version;
+
     /**
      * Constructs a HashGraph with n vertices and no edges. Time complexity:
      * O(n)
@@ -59,10 +63,28 @@ public class HashGraph implements Graph {
      * Time complexity: O(1).
      */
     private void addEdge(int from, int to, int cost) {
-        if (edges[from] == null)
+        if (edges[from] == null) {
             edges[from] = new HashMap<Integer, Integer>(INITIAL_MAP_SIZE);
-        if (edges[from].put(to, cost) == null)
+            if (GraphMetrics.ENABLED)
+                GraphMetrics.global().mapAllocated();
+        }
+        if (putEdge(from, to, cost) && GraphMetrics.ENABLED && isResizePoint(edges[from].size()))
+            GraphMetrics.global().mapResized();
+    }
+
+    /**
+     * Put an edge into the existing map of from and return true if it is a
+     * new edge. Does not estimate resizes, so the bulk insertions, which size
+     * the maps in advance, use it directly.
+     * Time complexity: O(1).
+     */
+    private boolean putEdge(int from, int to, int cost) {
+        Integer old = edges[from].put(to, cost);
+        if (old == null)
             numEdges++;
+        if (old == null || old != cost)
+            version++;
+        return old == null;
     }
 
     /**
@@ -81,6 +103,14 @@ public class HashGraph implements Graph {
         return numEdges;
     }
 
+    /**
+     * {@inheritDoc Versioned} Time complexity: O(1).
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
     /**
      * {@inheritDoc Graph}  Time complexity: O(1).
      */
@@ -95,10 +125,9 @@ public class HashGraph implements Graph {
     }
 
     /**
-     * {@inheritDoc Graph} Time complexity: O(n), where n is the number of vertices.
-     */
-    /**
-     * {@inheritDoc Graph}
+     * {@inheritDoc Graph} The neighbors are copied from the adjacency map
+     * when the iterator is created. Time complexity: O(d), where d is the
+     * degree of v.
      */
     @Override
     public VertexIterator neighbors(int v) {
@@ -249,6 +278,40 @@ public class HashGraph implements Graph {
         removeEdge(w, v);
     }
 
+    /**
+     * {@inheritDoc BulkInsertion} The adjacency maps are sized once for the
+     * whole batch, so inserting the edges does not cause any rehashing.
+     * Time complexity: O(size log size).
+     */
+    @Override
+    public void addAll(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException {
+        EdgeList.checkEdges(numVertices(), from, to, cost, size);
+
+        reserve(from, null, size);
+        for (int i = 0; i < size; i++)
+            putEdge(from[i], to[i], cost == null ? NO_COST : cost[i]);
+    }
+
+    /**
+     * {@inheritDoc BulkInsertion} The adjacency maps are sized once for the
+     * whole batch, so inserting the edges does not cause any rehashing.
+     * Time complexity: O(size log size).
+     */
+    @Override
+    public void addAllBi(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException {
+        EdgeList.checkEdges(numVertices(), from, to, cost, size);
+
+        reserve(from, to, size);
+        for (int i = 0; i < size; i++) {
+            int v = from[i];
+            int w = to[i];
+            int c = cost == null ? NO_COST : cost[i];
+            putEdge(v, w, c);
+            if (v != w)
+                putEdge(w, v, c);
+        }
+    }
+
     /**
      * Returns a string representation of this graph.
      *
@@ -266,40 +329,30 @@ public class HashGraph implements Graph {
      *
      * "{}"
      *
-     * Time complexity: O(n^2).
+     * The string is built by GraphWriter, which can also write the edges to a
+     * Writer or channel without building a string. Time complexity: O(n + m).
      *
      * @return a String representation of this graph
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        for (int from = 0; from < numVertices(); from++) {
-            if(arraySlotIsNotNull(from)) {
-                for(Integer key : edges[from].keySet()) {
-                    int to = key;
-                    int value = edges[from].get(key);
-                    switch (value) {
-                        case NO_COST:
-                            sb.append("(" + from + "," + to + "), ");
-                            break;
-                        default:
-                            sb.append("(" + from + "," + to + "," + value + "), ");
-                    }
-                }
-            }
-
-        }
-        if (numEdges > 0)
-            sb.setLength(sb.length() - 2); // Remove trailing ", "
-        sb.append("}");
-        return sb.toString();
+        return GraphWriter.toString(this);
     }
 
 
 
 /*HELPER METHODS:*/
 
+    /**
+     * Returns the adjacency map of v, or null if v has never had an edge.
+     * GraphWriter reads each edge and its cost from the map entries instead
+     * of calling cost for every neighbor. The map must not be modified.
+     * Time complexity: O(1).
+     */
+    Map<Integer, Integer> adjacency(int v) {
+        return edges[v];
+    }
+
     /**
      * Checks a single vertex parameter v.
      * Time complexity: O(1).
@@ -352,6 +405,80 @@ public class HashGraph implements Graph {
     }
 
 
+    /**
+     * Makes room in the adjacency maps for a batch of edges starting at
+     * from[0 ... size-1], and also at to[0 ... size-1] if to is not null.
+     * The batch is counted per vertex by sorting the start vertices, which
+     * takes time proportional to the batch and not to the graph. A map that
+     * might have to grow is replaced by one with the final capacity. Time
+     * complexity: O(size log size).
+     */
+    private void reserve(int[] from, int[] to, int size) {
+        int total = to == null ? size : 2 * size;
+        int[] starts = Arrays.copyOf(from, total);
+        if (to != null)
+            System.arraycopy(to, 0, starts, size, size);
+        Arrays.sort(starts);
+
+        for (int i = 0; i < total;) {
+            int v = starts[i];
+            int j = i + 1;
+            while (j < total && starts[j] == v)
+                j++;
+            int added = j - i;
+            i = j;
+
+            Map<Integer, Integer> old = edges[v];
+            if (old == null) {
+                edges[v] = new HashMap<Integer, Integer>(capacityFor(Math.max(added, INITIAL_MAP_SIZE)));
+                if (GraphMetrics.ENABLED)
+                    GraphMetrics.global().mapAllocated();
+            } else if (old.size() + added > minThreshold(old.size())) {
+                Map<Integer, Integer> map = new HashMap<Integer, Integer>(capacityFor(old.size() + added));
+                map.putAll(old);
+                edges[v] = map;
+                if (GraphMetrics.ENABLED)
+                    GraphMetrics.global().mapResized();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries that a HashMap with size entries is
+     * certain to hold without rehashing. Its table is at least the smallest
+     * power of two whose threshold, 3/4 of the table, is size or more; it
+     * may be larger if the map has been larger or was created larger.
+     */
+    private static long minThreshold(int size) {
+        long table = 1;
+        while ((long) (table * 0.75f) < size)
+            table <<= 1;
+        return (long) (table * 0.75f);
+    }
+
+    /**
+     * Returns a HashMap capacity that holds the given number of entries
+     * without rehashing.
+     */
+    private static int capacityFor(int entries) {
+        return (int) Math.min((long) (entries / 0.75f) + 1, 1 << 30);
+    }
+
+    /**
+     * Returns true if a map created with INITIAL_MAP_SIZE doubles its table
+     * when its size grows to size. The table starts with room for
+     * INITIAL_MAP_SIZE * 3/4 entries and doubles whenever that is exceeded.
+     * Maps sized by reserve grow at other points, so this is an estimate.
+     */
+    private static boolean isResizePoint(int size) {
+        int threshold = INITIAL_MAP_SIZE * 3 / 4;
+        int k = size - 1;
+        if (k < threshold || k % threshold != 0)
+            return false;
+        int doublings = k / threshold;
+        return (doublings & (doublings - 1)) == 0;
+    }
+
     /**
      * Remove an edge without checking parameters.
      * Time complexity: O(1).
@@ -361,6 +488,7 @@ public class HashGraph implements Graph {
             if(edges[from].containsKey(to)) {
                 edges[from].remove(to);
                 numEdges--;
+                version++;
             }
     }
 
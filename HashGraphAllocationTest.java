@@ -0,0 +1,26 @@
+package se.kth.graph;
+
+public class HashGraphAllocationTest extends GraphAllocationTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new HashGraph(numVertices);
+    }
+
+    /** The target is boxed, unless it is a small Integer. */
+    @Override
+    protected long hasEdgeBudget() {
+        return 16;
+    }
+
+    /** The target is boxed for both map lookups. */
+    @Override
+    protected long costBudget() {
+        return 32;
+    }
+
+    /** The iterator copies the keys into an Integer array. */
+    @Override
+    protected long neighborsBudget() {
+        return 32 + 16 + 8 * DEGREE;
+    }
+}
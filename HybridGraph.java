@@ -0,0 +1,543 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A graph with a fixed number of vertices that stores the neighbors of each
+ * vertex in the cheapest container for its degree. This suits graphs with
+ * a skewed degree distribution, where most vertices have a handful of
+ * neighbors and a few hubs have a large part of all edges.
+ *
+ * <ul>
+ * <li>Up to SMALL_MAX neighbors are kept in one sorted int array of (vertex,
+ * cost) pairs, without any wrapper object. Lookups are binary searches.
+ * <li>Fewer than HUB_MIN neighbors are kept in an IntIntHashMap, an open
+ * addressing map without boxing. Lookups take expected O(1) time.
+ * <li>Larger neighborhoods are kept in a RoaringBitmap, which needs at most
+ * two bytes per neighbor and scans dense regions a word at a time. The
+ * costs of a hub are kept in a separate map that only holds the edges
+ * whose cost is not NO_COST.
+ * </ul>
+ *
+ * A container is replaced by the next larger kind when it overflows, and by
+ * the next smaller kind when it drops to half of the limit. A sorted array
+ * also shrinks when it is a quarter full. The gap between
+ * the two limits keeps a vertex whose degree moves back and forth around a
+ * limit from being converted at every change.
+ */
+public class HybridGraph implements Graph, Versioned {
+    /** Maximum number of neighbors in a sorted array. */
+    final static int SMALL_MAX = 16;
+
+    /** Minimum number of neighbors in a bitmap. */
+    final static int HUB_MIN = 4096;
+
+    /** Number of pairs in a new sorted array. */
+    private final static int INITIAL_PAIRS = 2;
+
+    /**
+     * adj[v] is null if v has no neighbors, otherwise an int[] of sorted
+     * (vertex, cost) pairs, an IntIntHashMap from vertex to cost, or a Hub.
+     */
+    private final Object[] adj;
+
+    /** degree[v] is the number of neighbors of v. */
+    private final int[] degree;
+
+    /** Number of edges in the graph. */
+    private int numEdges;
+
+    /** Number of modifications, see Versioned. */
+    private long version;
+
+    /** The neighbors and costs of a vertex with at least HUB_MIN neighbors. */
+    private static final class Hub {
+        final RoaringBitmap neighbors;
+
+        /** Costs other than NO_COST, or null if there are none. */
+        IntIntHashMap costs;
+
+        Hub(int n) {
+            neighbors = new RoaringBitmap(n);
+        }
+
+        int cost(int w) {
+            if (costs == null)
+                return NO_COST;
+            int c = costs.get(w);
+            return c == IntIntHashMap.ABSENT ? NO_COST : c;
+        }
+
+        /** Returns the old cost of w. */
+        int setCost(int w, int c) {
+            if (c == NO_COST) {
+                if (costs == null)
+                    return NO_COST;
+                int old = costs.remove(w);
+                if (costs.size() == 0)
+                    costs = null;
+                return old == IntIntHashMap.ABSENT ? NO_COST : old;
+            }
+            if (costs == null)
+                costs = new IntIntHashMap(0, NO_COST);
+            int old = costs.put(w, c);
+            return old == IntIntHashMap.ABSENT ? NO_COST : old;
+        }
+    }
+
+    /**
+     * Constructs a HybridGraph with n vertices and no edges. Time complexity:
+     * O(n)
+     *
+     * @throws IllegalArgumentException
+     *             if n < 0
+     */
+    public HybridGraph(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n = " + n);
+        adj = new Object[n];
+        degree = new int[n];
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numVertices() {
+        return adj.length;
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * {@inheritDoc Versioned} Time complexity: O(1).
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int degree(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+        return degree[v];
+    }
+
+    /**
+     * {@inheritDoc Graph} Small and hub neighborhoods are returned in
+     * increasing order. Time complexity: O(1) to create the iterator; O(1)
+     * amortized per neighbor, plus O(HUB_MIN) for the empty part of a hash
+     * table.
+     */
+    @Override
+    public VertexIterator neighbors(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        Object a = adj[v];
+        if (a == null || a instanceof int[])
+            return new SmallIterator((int[]) a, degree[v]);
+        if (a instanceof IntIntHashMap)
+            return new OpenIterator((IntIntHashMap) a);
+        return ((Hub) a).neighbors.iterator();
+    }
+
+    private static final class SmallIterator implements VertexIterator {
+        private final int[] pairs;
+        private final int end;
+        private int pos;
+
+        SmallIterator(int[] pairs, int d) {
+            this.pairs = pairs;
+            this.end = 2 * d;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < end;
+        }
+
+        @Override
+        public int next() {
+            if (pos >= end)
+                throw new NoSuchElementException("No more elements in this iterator.");
+            int w = pairs[pos];
+            pos += 2;
+            return w;
+        }
+    }
+
+    private static final class OpenIterator implements VertexIterator {
+        private final IntIntHashMap map;
+        private int slot = -1;
+        private int left;
+
+        OpenIterator(IntIntHashMap map) {
+            this.map = map;
+            this.left = map.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return left > 0;
+        }
+
+        @Override
+        public int next() {
+            if (left == 0)
+                throw new NoSuchElementException("No more elements in this iterator.");
+            int w;
+            do {
+                w = map.keyAt(++slot);
+            } while (w == IntIntHashMap.FREE);
+            left--;
+            return w;
+        }
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(log SMALL_MAX) or expected O(1).
+     */
+    @Override
+    public boolean hasEdge(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        Object a = adj[from];
+        if (a == null)
+            return false;
+        if (a instanceof int[])
+            return findSmall((int[]) a, degree[from], to) >= 0;
+        if (a instanceof IntIntHashMap)
+            return ((IntIntHashMap) a).containsKey(to);
+        return ((Hub) a).neighbors.contains(to);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(log SMALL_MAX) or expected O(1).
+     */
+    @Override
+    public int cost(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        Object a = adj[from];
+        if (a == null)
+            return NO_COST;
+        if (a instanceof int[]) {
+            int[] pairs = (int[]) a;
+            int i = findSmall(pairs, degree[from], to);
+            return i >= 0 ? pairs[2 * i + 1] : NO_COST;
+        }
+        if (a instanceof IntIntHashMap) {
+            int c = ((IntIntHashMap) a).get(to);
+            return c == IntIntHashMap.ABSENT ? NO_COST : c;
+        }
+        Hub hub = (Hub) a;
+        return hub.neighbors.contains(to) ? hub.cost(to) : NO_COST;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(SMALL_MAX) or expected O(1),
+     * amortized over the container conversions.
+     */
+    @Override
+    public void add(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        addEdge(from, to, NO_COST);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(SMALL_MAX) or expected O(1),
+     * amortized over the container conversions.
+     */
+    @Override
+    public void add(int from, int to, int c) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        checkNonNegativeCost(c);
+        addEdge(from, to, c);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(SMALL_MAX) or expected O(1),
+     * amortized over the container conversions.
+     */
+    @Override
+    public void addBi(int v, int w) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        addEdge(v, w, NO_COST);
+        if (v != w)
+            addEdge(w, v, NO_COST);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(SMALL_MAX) or expected O(1),
+     * amortized over the container conversions.
+     */
+    @Override
+    public void addBi(int v, int w, int c) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        checkNonNegativeCost(c);
+        addEdge(v, w, c);
+        if (v != w)
+            addEdge(w, v, c);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(SMALL_MAX) or expected O(1),
+     * amortized over the container conversions.
+     */
+    @Override
+    public void remove(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        removeEdge(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(SMALL_MAX) or expected O(1),
+     * amortized over the container conversions.
+     */
+    @Override
+    public void removeBi(int v, int w) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        removeEdge(v, w);
+        if (v != w)
+            removeEdge(w, v);
+    }
+
+    /**
+     * Returns the approximate number of bytes used by this graph, counting
+     * the arrays and containers but not the object itself. Time complexity:
+     * O(n) plus the number of roaring chunks.
+     *
+     * @return the approximate footprint in bytes
+     */
+    public long bytes() {
+        long bytes = 2 * (16 + 4L * adj.length);
+        for (Object a : adj) {
+            if (a instanceof int[])
+                bytes += 16 + 4L * ((int[]) a).length;
+            else if (a instanceof IntIntHashMap)
+                bytes += ((IntIntHashMap) a).bytes();
+            else if (a instanceof Hub)
+                bytes += 16 + ((Hub) a).neighbors.bytes()
+                        + (((Hub) a).costs == null ? 0 : ((Hub) a).costs.bytes());
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns a string representation of this graph in the same format as
+     * HashGraph. Time complexity: O(n + m).
+     *
+     * @return a String representation of this graph
+     */
+    @Override
+    public String toString() {
+        return GraphWriter.toString(this);
+    }
+
+    /**
+     * Adds an edge without checking parameters, converting the container of
+     * from if it overflows.
+     */
+    private void addEdge(int from, int to, int c) {
+        Object a = adj[from];
+        int d = degree[from];
+        if (a == null) {
+            int[] pairs = new int[2 * INITIAL_PAIRS];
+            pairs[0] = to;
+            pairs[1] = c;
+            adj[from] = pairs;
+        } else if (a instanceof int[]) {
+            int[] pairs = (int[]) a;
+            int i = findSmall(pairs, d, to);
+            if (i >= 0) {
+                if (pairs[2 * i + 1] != c) {
+                    pairs[2 * i + 1] = c;
+                    version++;
+                }
+                return;
+            }
+            i = -i - 1;
+            if (d == SMALL_MAX) {
+                IntIntHashMap map = new IntIntHashMap(2 * SMALL_MAX, NO_COST);
+                for (int j = 0; j < d; j++)
+                    map.put(pairs[2 * j], pairs[2 * j + 1]);
+                map.put(to, c);
+                adj[from] = map;
+            } else {
+                if (2 * d == pairs.length) {
+                    int[] grown = new int[2 * pairs.length];
+                    System.arraycopy(pairs, 0, grown, 0, 2 * d);
+                    pairs = grown;
+                    adj[from] = pairs;
+                }
+                System.arraycopy(pairs, 2 * i, pairs, 2 * i + 2, 2 * (d - i));
+                pairs[2 * i] = to;
+                pairs[2 * i + 1] = c;
+            }
+        } else if (a instanceof IntIntHashMap) {
+            IntIntHashMap map = (IntIntHashMap) a;
+            int old = map.put(to, c);
+            if (old != IntIntHashMap.ABSENT) {
+                if (old != c)
+                    version++;
+                return;
+            }
+            if (map.size() >= HUB_MIN)
+                adj[from] = toHub(map);
+        } else {
+            Hub hub = (Hub) a;
+            if (!hub.neighbors.add(to)) {
+                if (hub.setCost(to, c) != c)
+                    version++;
+                return;
+            }
+            hub.setCost(to, c);
+        }
+        degree[from] = d + 1;
+        numEdges++;
+        version++;
+    }
+
+    /**
+     * Removes an edge without checking parameters, converting the container
+     * of from if it drops to half of its lower limit.
+     */
+    private void removeEdge(int from, int to) {
+        Object a = adj[from];
+        int d = degree[from];
+        if (a == null) {
+            return;
+        } else if (a instanceof int[]) {
+            int[] pairs = (int[]) a;
+            int i = findSmall(pairs, d, to);
+            if (i < 0)
+                return;
+            System.arraycopy(pairs, 2 * i + 2, pairs, 2 * i, 2 * (d - i - 1));
+            if (d == 1) {
+                adj[from] = null;
+            } else if (8 * (d - 1) <= pairs.length && pairs.length > 2 * INITIAL_PAIRS) {
+                int[] shrunk = new int[pairs.length / 2];
+                System.arraycopy(pairs, 0, shrunk, 0, 2 * (d - 1));
+                adj[from] = shrunk;
+            }
+        } else if (a instanceof IntIntHashMap) {
+            IntIntHashMap map = (IntIntHashMap) a;
+            if (map.remove(to) == IntIntHashMap.ABSENT)
+                return;
+            if (map.size() <= SMALL_MAX / 2)
+                adj[from] = toSmall(map);
+        } else {
+            Hub hub = (Hub) a;
+            if (!hub.neighbors.remove(to))
+                return;
+            hub.setCost(to, NO_COST);
+            if (hub.neighbors.size() <= HUB_MIN / 2)
+                adj[from] = toOpen(hub);
+        }
+        degree[from] = d - 1;
+        numEdges--;
+        version++;
+    }
+
+    /**
+     * Returns the index of the pair with vertex w among the first d pairs,
+     * or -(insertion point) - 1 if there is none.
+     */
+    private static int findSmall(int[] pairs, int d, int w) {
+        int low = 0;
+        int high = d - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int x = pairs[2 * mid];
+            if (x < w)
+                low = mid + 1;
+            else if (x > w)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    private static int[] toSmall(IntIntHashMap map) {
+        int d = map.size();
+        long[] packed = new long[d];
+        int k = 0;
+        for (int i = 0; i < map.slots(); i++) {
+            int w = map.keyAt(i);
+            if (w != IntIntHashMap.FREE)
+                packed[k++] = ((long) w << 32) | (map.valueAt(i) & 0xffffffffL);
+        }
+        Arrays.sort(packed);
+        int[] pairs = new int[2 * Math.max(INITIAL_PAIRS, Integer.highestOneBit(2 * d - 1))];
+        for (int j = 0; j < d; j++) {
+            pairs[2 * j] = (int) (packed[j] >>> 32);
+            pairs[2 * j + 1] = (int) packed[j];
+        }
+        return pairs;
+    }
+
+    private Hub toHub(IntIntHashMap map) {
+        Hub hub = new Hub(adj.length);
+        for (int i = 0; i < map.slots(); i++) {
+            int w = map.keyAt(i);
+            if (w != IntIntHashMap.FREE) {
+                hub.neighbors.add(w);
+                hub.setCost(w, map.valueAt(i));
+            }
+        }
+        return hub;
+    }
+
+    private static IntIntHashMap toOpen(Hub hub) {
+        IntIntHashMap map = new IntIntHashMap(hub.neighbors.size(), NO_COST);
+        for (VertexIterator it = hub.neighbors.iterator(); it.hasNext();) {
+            int w = it.next();
+            map.put(w, hub.cost(w));
+        }
+        return map;
+    }
+
+    /**
+     * Checks a single vertex parameter v.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= adj.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= adj.length || w < 0 || w >= adj.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+
+    /**
+     * Checks that the cost c is non-negative.
+     *
+     * @throws IllegalArgumentException
+     *             if c < 0
+     */
+    private void checkNonNegativeCost(int c) {
+        if (c < 0)
+            throw new IllegalArgumentException("Illegal cost: c = " + c + ".");
+    }
+}
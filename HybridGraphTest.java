@@ -0,0 +1,92 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.fail;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class HybridGraphTest extends GraphTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new HybridGraph(numVertices);
+    }
+
+    @Test
+    public void testConstructor() {
+        try {
+            new HybridGraph(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void hubKeepsNeighborsAndCostsWhenPromotedAndDemoted() {
+        // Arrange
+        int n = 3 * HybridGraph.HUB_MIN;
+        HybridGraph g = new HybridGraph(n);
+
+        // Act: grow vertex 0 through every container and back.
+        for (int w = 0; w < n; w++) {
+            if (w % 3 == 0)
+                g.add(0, w);
+            else
+                g.add(0, w, w);
+        }
+        for (int w = 1; w < n; w++) {
+            assertThat(g.cost(0, w), equalTo(w % 3 == 0 ? Graph.NO_COST : w));
+            g.remove(0, w);
+        }
+
+        // Assert
+        assertThat(g.degree(0), equalTo(1));
+        assertThat(g.numEdges(), equalTo(1));
+        assertThat(g.hasEdge(0, 0), equalTo(true));
+        assertThat(g.hasEdge(0, 1), equalTo(false));
+    }
+
+    @Test
+    public void randomOperationsGiveSameGraphAsHashGraph() {
+        // Arrange
+        int n = 2 * HybridGraph.HUB_MIN;
+        Random random = new Random(1);
+        HybridGraph g = new HybridGraph(n);
+        HashGraph expected = new HashGraph(n);
+
+        // Act: vertex v draws its neighbors from a range of size 4^v, so the
+        // degrees move around every container limit.
+        for (int i = 0; i < 200000; i++) {
+            int v = random.nextInt(7);
+            int w = random.nextInt(Math.min(n, 1 << (2 * v + 1)));
+            if (random.nextInt(3) == 0) {
+                g.remove(v, w);
+                expected.remove(v, w);
+            } else {
+                int c = random.nextInt(4) - 1;
+                if (c == Graph.NO_COST) {
+                    g.add(v, w);
+                    expected.add(v, w);
+                } else {
+                    g.add(v, w, c);
+                    expected.add(v, w, c);
+                }
+            }
+        }
+
+        // Assert
+        assertThat(g.numEdges(), equalTo(expected.numEdges()));
+        for (int v = 0; v < 7; v++) {
+            assertThat(g.degree(v), equalTo(expected.degree(v)));
+            int count = 0;
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                assertThat(g.cost(v, w), equalTo(expected.cost(v, w)));
+                assertThat(expected.hasEdge(v, w), equalTo(true));
+                count++;
+            }
+            assertThat(count, equalTo(expected.degree(v)));
+        }
+    }
+}
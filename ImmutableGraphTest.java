@@ -0,0 +1,268 @@
+package se.kth.graph;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.*;
+
+/**
+ * Abstract test class for immutable graphs, which are copies of another
+ * graph. Implementing test classes must override the copyOf method. Every
+ * query is compared with the graph that was copied.
+ */
+public abstract class ImmutableGraphTest {
+    private Graph g0;
+    private Graph g1;
+    private Graph g5;
+    private Graph threeBiEdgeGraph;
+    private final int numVertices = 5;
+    private final int cost = 42;
+    int[] oorVertices = {-1, -10, numVertices, 2 * numVertices};
+
+    /**
+     * @param g The graph to copy.
+     * @return An immutable copy of g.
+     */
+    protected abstract Graph copyOf(Graph g);
+
+    @Before
+    public void setUp() {
+        g0 = new HashGraph(0);
+        g1 = new HashGraph(1);
+        g5 = new HashGraph(numVertices);
+
+        g1.addBi(0, 0);
+        g5.addBi(0, 1);
+        g5.add(2, 3, 1);
+
+        threeBiEdgeGraph = new HashGraph(numVertices);
+        threeBiEdgeGraph.addBi(2, 4, cost);
+        threeBiEdgeGraph.addBi(1, 3, cost);
+        threeBiEdgeGraph.addBi(3, 2, cost);
+    }
+
+    @Test
+    public void smallGraphsAreCopied() {
+        assertSameGraph(g0, copyOf(g0));
+        assertSameGraph(g1, copyOf(g1));
+        assertSameGraph(g5, copyOf(g5));
+        assertSameGraph(threeBiEdgeGraph, copyOf(threeBiEdgeGraph));
+    }
+
+    @Test
+    public void randomGraphsAreCopied() {
+        Random random = new Random(44);
+        for (int round = 0; round < 50; round++) {
+            Graph g = randomGraph(random, random.nextInt(300));
+            assertSameGraph(g, copyOf(g));
+        }
+    }
+
+    @Test
+    public void graphsWithSimilarListsAreCopied() {
+        // Consecutive vertices share most of their neighbors, and some lists
+        // differ only in a few entries.
+        Random random = new Random(44);
+        int n = 1000;
+        Graph g = new HashGraph(n);
+        for (int v = 0; v < n; v++) {
+            for (int i = 1; i <= 8; i++) {
+                if (random.nextInt(10) > 0)
+                    g.add(v, (v / 4 * 4 + 4 * i) % n);
+            }
+            if (random.nextBoolean())
+                g.add(v, random.nextInt(n), random.nextInt(100));
+        }
+        assertSameGraph(g, copyOf(g));
+    }
+
+    @Test
+    public void copyIsNotChangedByTheSource() {
+        Graph copy = copyOf(g5);
+        g5.add(4, 4);
+        g5.remove(0, 1);
+        assertEquals(3, copy.numEdges());
+        assertTrue(copy.hasEdge(0, 1));
+        assertFalse(copy.hasEdge(4, 4));
+    }
+
+    @Test
+    public void neighborsThrowsAfterLastNeighbor() {
+        Graph copy = copyOf(threeBiEdgeGraph);
+        VertexIterator it = copy.neighbors(2);
+        assertEquals(3, it.next());
+        assertEquals(4, it.next());
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail("Expected NoSuchElementException after the last neighbor");
+        } catch (NoSuchElementException e) {
+            // pass
+        }
+    }
+
+    @Test
+    public void queriesThrowWhenVertexIsOutOfRange() {
+        Graph copy = copyOf(threeBiEdgeGraph);
+        for (int v : oorVertices) {
+            try {
+                copy.degree(v);
+                fail(String.format("Expected IllegalArgumentException on Graph.degree(%d)", v));
+            } catch (IllegalArgumentException e) {
+                // pass
+            }
+            try {
+                copy.neighbors(v);
+                fail(String.format("Expected IllegalArgumentException on Graph.neighbors(%d)", v));
+            } catch (IllegalArgumentException e) {
+                // pass
+            }
+            try {
+                copy.hasEdge(0, v);
+                fail(String.format("Expected IllegalArgumentException on Graph.hasEdge(0, %d)", v));
+            } catch (IllegalArgumentException e) {
+                // pass
+            }
+            try {
+                copy.cost(v, 0);
+                fail(String.format("Expected IllegalArgumentException on Graph.cost(%d, 0)", v));
+            } catch (IllegalArgumentException e) {
+                // pass
+            }
+        }
+    }
+
+    @Test
+    public void updatesAreNotSupported() {
+        Graph copy = copyOf(threeBiEdgeGraph);
+        Runnable[] updates = { new Runnable() {
+            @Override
+            public void run() {
+                copy.add(0, 1);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                copy.add(0, 1, cost);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                copy.addBi(0, 1);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                copy.addBi(0, 1, cost);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                copy.remove(2, 4);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                copy.removeBi(2, 4);
+            }
+        } };
+        for (Runnable update : updates) {
+            try {
+                update.run();
+                fail("Expected UnsupportedOperationException");
+            } catch (UnsupportedOperationException e) {
+                // pass
+            }
+        }
+        assertSameGraph(threeBiEdgeGraph, copy);
+    }
+
+    /**
+     * A random graph of n vertices with up to 6 n edges, mostly between
+     * nearby vertices, with and without costs, some in both directions.
+     */
+    static Graph randomGraph(Random random, int n) {
+        return randomGraph(random, n, 0);
+    }
+
+    /**
+     * A random graph as above, where one random vertex also gets hubDegree
+     * edges in both directions to random vertices.
+     */
+    static Graph randomGraph(Random random, int n, int hubDegree) {
+        Graph g = new HashGraph(n);
+        int edges = n == 0 ? 0 : random.nextInt(6 * n);
+        for (int i = 0; i < edges; i++) {
+            int v = random.nextInt(n);
+            // Mostly nearby vertices, as after a good VertexOrdering.
+            int w = random.nextInt(4) == 0 ? random.nextInt(n) : Math.floorMod(v + random.nextInt(21) - 10, n);
+            switch (random.nextInt(3)) {
+            case 0:
+                g.add(v, w);
+                break;
+            case 1:
+                g.add(v, w, random.nextInt(1000));
+                break;
+            default:
+                g.addBi(v, w, random.nextInt(3));
+                break;
+            }
+        }
+        if (n > 0) {
+            int hub = random.nextInt(n);
+            for (int i = 0; i < hubDegree; i++)
+                g.addBi(hub, random.nextInt(n));
+        }
+        return g;
+    }
+
+    /**
+     * A random graph as above, where every edge also has its reverse edge
+     * with the same cost.
+     */
+    static Graph randomUndirectedGraph(Random random, int n, int hubDegree) {
+        Graph g = randomGraph(random, n, hubDegree);
+        for (int v = 0; v < n; v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                int c = g.cost(v, w);
+                if (g.hasEdge(w, v))
+                    continue;
+                if (c == Graph.NO_COST)
+                    g.add(w, v);
+                else
+                    g.add(w, v, c);
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Compares every query of copy with g: the neighbors in ascending order,
+     * the degrees, and hasEdge and cost for every pair of vertices.
+     */
+    static void assertSameGraph(Graph g, Graph copy) {
+        int n = g.numVertices();
+        assertEquals(n, copy.numVertices());
+        assertEquals(g.numEdges(), copy.numEdges());
+        for (int v = 0; v < n; v++) {
+            assertEquals(g.degree(v), copy.degree(v));
+            int count = 0;
+            int prev = -1;
+            for (VertexIterator it = copy.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                assertTrue(w > prev);
+                assertTrue(g.hasEdge(v, w));
+                prev = w;
+                count++;
+            }
+            assertEquals(g.degree(v), count);
+            for (int w = 0; w < n; w++) {
+                assertEquals(g.hasEdge(v, w), copy.hasEdge(v, w));
+                assertEquals(g.cost(v, w), copy.cost(v, w));
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package se.kth.graph;
+
+import se.kth.graph.GraphMetrics.Operation;
+
+/**
+ * A Graph that forwards every call to another graph and records it in a
+ * GraphMetrics: all calls are counted, a sample of them is timed, and the
+ * vertices returned by the neighbor iterators are counted. Calls that throw
+ * are not recorded. The wrapper is independent of GraphMetrics.ENABLED;
+ * wrap a graph only where its operations should be measured.
+ */
+public final class InstrumentedGraph implements Graph {
+    private final Graph graph;
+    private final GraphMetrics metrics;
+
+    /**
+     * Constructs a wrapper around g that records into metrics.
+     *
+     * @param g
+     *            the graph to forward to
+     * @param metrics
+     *            the metrics to record into
+     */
+    public InstrumentedGraph(Graph g, GraphMetrics metrics) {
+        if (g == null || metrics == null)
+            throw new NullPointerException();
+        this.graph = g;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the wrapped graph.
+     *
+     * @return the wrapped graph
+     */
+    public Graph delegate() {
+        return graph;
+    }
+
+    /**
+     * Returns the metrics of this wrapper.
+     *
+     * @return the metrics
+     */
+    public GraphMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numVertices() {
+        return graph.numVertices();
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numEdges() {
+        return graph.numEdges();
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int degree(int v) throws IllegalArgumentException {
+        long t = metrics.start();
+        int d = graph.degree(v);
+        metrics.stop(Operation.DEGREE, t);
+        return d;
+    }
+
+    /**
+     * {@inheritDoc Graph} The time is that of creating the iterator; the
+     * iteration itself is counted by the returned iterator.
+     */
+    @Override
+    public VertexIterator neighbors(int v) throws IllegalArgumentException {
+        long t = metrics.start();
+        VertexIterator it = graph.neighbors(v);
+        metrics.stop(Operation.NEIGHBORS, t);
+        return new CountingIterator(it);
+    }
+
+    /**
+     * Counts the vertices returned by an iterator. The count is added to the
+     * metrics when the iterator runs out, so that next stays a plain
+     * increment.
+     */
+    private final class CountingIterator implements VertexIterator {
+        private final VertexIterator it;
+        private long visited;
+
+        CountingIterator(VertexIterator it) {
+            this.it = it;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = it.hasNext();
+            if (!hasNext && visited > 0) {
+                metrics.visited(visited);
+                visited = 0;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public int next() {
+            int w = it.next();
+            visited++;
+            return w;
+        }
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public boolean hasEdge(int from, int to) throws IllegalArgumentException {
+        long t = metrics.start();
+        boolean hasEdge = graph.hasEdge(from, to);
+        metrics.stop(Operation.HAS_EDGE, t);
+        return hasEdge;
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int cost(int from, int to) throws IllegalArgumentException {
+        long t = metrics.start();
+        int c = graph.cost(from, to);
+        metrics.stop(Operation.COST, t);
+        return c;
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void add(int from, int to) throws IllegalArgumentException {
+        long t = metrics.start();
+        graph.add(from, to);
+        metrics.stop(Operation.ADD, t);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void add(int from, int to, int c) throws IllegalArgumentException {
+        long t = metrics.start();
+        graph.add(from, to, c);
+        metrics.stop(Operation.ADD, t);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void addBi(int v, int w) throws IllegalArgumentException {
+        long t = metrics.start();
+        graph.addBi(v, w);
+        metrics.stop(Operation.ADD, t);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void addBi(int v, int w, int c) throws IllegalArgumentException {
+        long t = metrics.start();
+        graph.addBi(v, w, c);
+        metrics.stop(Operation.ADD, t);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void remove(int from, int to) throws IllegalArgumentException {
+        long t = metrics.start();
+        graph.remove(from, to);
+        metrics.stop(Operation.REMOVE, t);
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public void removeBi(int v, int w) throws IllegalArgumentException {
+        long t = metrics.start();
+        graph.removeBi(v, w);
+        metrics.stop(Operation.REMOVE, t);
+    }
+
+    /**
+     * Returns the string representation of the wrapped graph.
+     */
+    @Override
+    public String toString() {
+        return graph.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package se.kth.graph;
+
+import org.junit.Test;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class InstrumentedGraphTest extends GraphTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new InstrumentedGraph(new HashGraph(numVertices), new GraphMetrics());
+    }
+
+    @Test
+    public void operationsAreCounted() {
+        InstrumentedGraph g = (InstrumentedGraph) getEmptyGraph(3);
+        g.add(0, 1);
+        g.addBi(1, 2, 5);
+        g.hasEdge(0, 1);
+        g.cost(1, 2);
+        g.remove(0, 1);
+        for (VertexIterator it = g.neighbors(1); it.hasNext();)
+            it.next();
+
+        GraphMetrics m = g.metrics();
+        assertThat(m.getAddCount(), equalTo(2L));
+        assertThat(m.getHasEdgeCount(), equalTo(1L));
+        assertThat(m.getCostCount(), equalTo(1L));
+        assertThat(m.getRemoveCount(), equalTo(1L));
+        assertThat(m.getNeighborsCount(), equalTo(1L));
+        assertThat(m.getNeighborsVisited(), equalTo(1L));
+    }
+}
@@ -0,0 +1,208 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative int keys to int values, with open addressing and
+ * linear probing in one int array per field. There are no entry objects and
+ * no boxing, and a removal moves the following entries back instead of
+ * leaving a tombstone, so lookups stay short after many removals.
+ *
+ * Most maps in this package store the same value for almost every key, for
+ * example NO_COST. The value array is therefore only allocated when a value
+ * other than the default value is stored.
+ */
+final class IntIntHashMap {
+    /** Returned by get, put and remove for a missing key. */
+    final static int ABSENT = Integer.MIN_VALUE;
+
+    /** Marks a free slot; keys are non-negative. */
+    final static int FREE = -1;
+
+    private final static int MIN_CAPACITY = 8;
+
+    private final int defaultValue;
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructs an empty map with room for expected entries.
+     *
+     * @param expected
+     *            expected number of entries
+     * @param defaultValue
+     *            the value that is stored without a value array
+     */
+    IntIntHashMap(int expected, int defaultValue) {
+        this.defaultValue = defaultValue;
+        keys = new int[capacityFor(expected)];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Returns a power of two that holds entries keys at a load factor of at
+     * most 2/3.
+     */
+    private static int capacityFor(int entries) {
+        long c = MIN_CAPACITY;
+        while (c * 2 < 3L * entries)
+            c *= 2;
+        if (c > 1 << 30)
+            throw new IllegalStateException("Too many entries: " + entries + ".");
+        return (int) c;
+    }
+
+    /**
+     * Returns the home slot of key.
+     */
+    private int slot(int key) {
+        return (key * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(keys.length - 1));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of key, or -1 if key is missing.
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key);; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key)
+                return i;
+            if (k == FREE)
+                return -1;
+        }
+    }
+
+    boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Returns the value of key, or ABSENT.
+     */
+    int get(int key) {
+        int i = find(key);
+        if (i < 0)
+            return ABSENT;
+        return values == null ? defaultValue : values[i];
+    }
+
+    /**
+     * Maps key to value and returns the old value, or ABSENT if key was
+     * missing.
+     */
+    int put(int key, int value) {
+        if (values == null && value != defaultValue) {
+            values = new int[keys.length];
+            Arrays.fill(values, defaultValue);
+        }
+        int mask = keys.length - 1;
+        int i = slot(key);
+        for (;; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                if (values == null)
+                    return defaultValue;
+                int old = values[i];
+                values[i] = value;
+                return old;
+            }
+            if (k == FREE)
+                break;
+        }
+        keys[i] = key;
+        if (values != null)
+            values[i] = value;
+        size++;
+        if (2 * keys.length < 3 * size)
+            rehash(capacityFor(size));
+        return ABSENT;
+    }
+
+    /**
+     * Removes key and returns its value, or ABSENT if key was missing.
+     */
+    int remove(int key) {
+        int i = find(key);
+        if (i < 0)
+            return ABSENT;
+        int old = values == null ? defaultValue : values[i];
+        size--;
+
+        // Move back every following entry whose home slot is not between
+        // the hole and the entry, so that no probe sequence is broken.
+        int mask = keys.length - 1;
+        int hole = i;
+        for (int j = (i + 1) & mask;; j = (j + 1) & mask) {
+            int k = keys[j];
+            if (k == FREE)
+                break;
+            int home = slot(k);
+            boolean stays = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!stays) {
+                keys[hole] = k;
+                if (values != null)
+                    values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = FREE;
+
+        if (keys.length > MIN_CAPACITY && 8 * size < keys.length)
+            rehash(capacityFor(size));
+        return old;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        values = oldValues == null ? null : new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int k = oldKeys[j];
+            if (k == FREE)
+                continue;
+            int i = slot(k);
+            while (keys[i] != FREE)
+                i = (i + 1) & mask;
+            keys[i] = k;
+            if (values != null)
+                values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * Returns the number of slots; iterate over 0 ... slots()-1 with keyAt.
+     */
+    int slots() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key in slot i, or FREE.
+     */
+    int keyAt(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Returns the value in slot i, which must not be free.
+     */
+    int valueAt(int i) {
+        return values == null ? defaultValue : values[i];
+    }
+
+    /**
+     * Returns the approximate number of bytes used by this map.
+     */
+    long bytes() {
+        return 24 + 16 + 4L * keys.length + (values == null ? 0 : 16 + 4L * values.length);
+    }
+}
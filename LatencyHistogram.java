@@ -0,0 +1,147 @@
+package se.kth.graph;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of durations in nanoseconds with a fixed number of
+ * buckets. As in HdrHistogram, every power of two is divided into
+ * SUB_BUCKETS linear buckets, so a recorded value is known to within 1 /
+ * SUB_BUCKETS of its size, from 1 ns up to Long.MAX_VALUE.
+ *
+ * Recording a value never allocates and never blocks: it increments one
+ * counter in one of STRIPES copies of the buckets, chosen by the identity
+ * hash code of the recording thread, so threads on different stripes do not write to the same cache
+ * lines. Reading sums the stripes and is meant for monitoring, not for the
+ * hot path; a read that runs concurrently with recording may miss the newest
+ * values.
+ */
+public final class LatencyHistogram {
+    /** log2 of the number of linear buckets per power of two. */
+    private final static int SUB_BUCKET_BITS = 3;
+    final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Number of buckets needed for the values up to Long.MAX_VALUE. */
+    final static int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+    /** Number of copies of the buckets; a power of two. */
+    private final static int STRIPES = 8;
+
+    /** Distance between two stripes, rounded up to whole cache lines of longs. */
+    private final static int STRIPE_LENGTH = (BUCKETS + 7) & ~7;
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIPE_LENGTH);
+
+    /**
+     * Returns the bucket of a non-negative value.
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value in a bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS)
+            return bucket;
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long low = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return low + ((1L << shift) - 1);
+    }
+
+    /**
+     * Records a duration. Negative values, which can come from a clock that
+     * is not monotonic, are recorded as 0. Time complexity: O(1).
+     *
+     * @param nanos
+     *            a duration in nanoseconds
+     */
+    public void record(long nanos) {
+        int stripe = System.identityHashCode(Thread.currentThread()) & (STRIPES - 1);
+        counts.getAndIncrement(stripe * STRIPE_LENGTH + bucketOf(Math.max(0, nanos)));
+    }
+
+    /**
+     * Returns the number of recorded values. Time complexity: O(BUCKETS).
+     *
+     * @return the number of recorded values
+     */
+    public long count() {
+        long total = 0;
+        for (long c : snapshot())
+            total += c;
+        return total;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of the recorded
+     * values, or 0 if nothing has been recorded. The bound is the largest
+     * value of the bucket that contains the percentile. Time complexity:
+     * O(BUCKETS).
+     *
+     * @param percentile
+     *            a percentile, 0 <= percentile <= 100
+     * @return the percentile in nanoseconds
+     * @throws IllegalArgumentException
+     *             if percentile is out of range
+     */
+    public long percentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("Illegal percentile: " + percentile + ".");
+
+        long[] buckets = snapshot();
+        long total = 0;
+        for (long c : buckets)
+            total += c;
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets[b];
+            if (seen >= rank)
+                return highestValueOf(b);
+        }
+        return highestValueOf(BUCKETS - 1);
+    }
+
+    /**
+     * Returns an upper bound for the largest recorded value, or 0 if nothing
+     * has been recorded. Time complexity: O(BUCKETS).
+     *
+     * @return the maximum in nanoseconds
+     */
+    public long max() {
+        long[] buckets = snapshot();
+        for (int b = BUCKETS - 1; b >= 0; b--) {
+            if (buckets[b] != 0)
+                return highestValueOf(b);
+        }
+        return 0;
+    }
+
+    /**
+     * Removes all recorded values. Values recorded during the reset may or
+     * may not be kept.
+     */
+    public void reset() {
+        for (int i = counts.length() - 1; i >= 0; i--)
+            counts.set(i, 0);
+    }
+
+    /**
+     * Returns the counts of all buckets, summed over the stripes.
+     */
+    private long[] snapshot() {
+        long[] buckets = new long[BUCKETS];
+        for (int s = 0; s < STRIPES; s++) {
+            int base = s * STRIPE_LENGTH;
+            for (int b = 0; b < BUCKETS; b++)
+                buckets[b] += counts.get(base + b);
+        }
+        return buckets;
+    }
+}
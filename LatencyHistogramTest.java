@@ -0,0 +1,154 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bucket bounds of LatencyHistogram, and its percentiles against
+ * the exact percentiles of the sorted values, with one and with several
+ * recording threads.
+ */
+public class LatencyHistogramTest {
+    private static final double[] PERCENTILES = { 0, 1, 10, 50, 90, 95, 99, 99.9, 100 };
+
+    @Test
+    public void bucketsHoldTheirValuesWithinTheErrorBound() {
+        Random random = new Random(34);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            if (i < 1000)
+                values[i] = i;
+            else if (i < 1000 + 3 * 62)
+                values[i] = (1L << (1 + (i - 1000) / 3)) + (i - 1000) % 3 - 1; // 2^k - 1, 2^k, 2^k + 1
+            else
+                values[i] = random.nextLong() >>> 1 + random.nextInt(63);
+        }
+        for (long v : values)
+            assertBucket(v);
+        assertBucket(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        assertEquals(0, LatencyHistogram.highestValueOf(0));
+        for (int b = 1; b < LatencyHistogram.BUCKETS; b++) {
+            long low = LatencyHistogram.highestValueOf(b - 1) + 1;
+            assertEquals(b, LatencyHistogram.bucketOf(low));
+            assertEquals(b, LatencyHistogram.bucketOf(LatencyHistogram.highestValueOf(b)));
+        }
+    }
+
+    @Test
+    public void percentilesMatchTheSortedValues() {
+        Random random = new Random(34);
+        for (int round = 0; round < 20; round++) {
+            LatencyHistogram h = new LatencyHistogram();
+            long[] values = new long[1 + random.nextInt(5000)];
+            for (int i = 0; i < values.length; i++) {
+                // Roughly log-normal, as latencies are.
+                values[i] = (long) Math.exp(6 + 2 * random.nextGaussian());
+                h.record(values[i]);
+            }
+            assertPercentiles(values, h);
+        }
+    }
+
+    @Test
+    public void stripesOfConcurrentThreadsAreSummed() throws InterruptedException {
+        final LatencyHistogram h = new LatencyHistogram();
+        final int threads = 6;
+        final int perThread = 20000;
+        final long[] values = new long[threads * perThread];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int first = t * perThread;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(first);
+                    for (int i = first; i < first + perThread; i++) {
+                        values[i] = random.nextInt(1 << 20);
+                        h.record(values[i]);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread t : workers)
+            t.join();
+        assertPercentiles(values, h);
+    }
+
+    @Test
+    public void emptyAndResetHistogramsAreZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(50));
+        assertEquals(0, h.max());
+        for (int i = 0; i < 100; i++)
+            h.record(1000 + i);
+        assertEquals(100, h.count());
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(99));
+        assertEquals(0, h.max());
+        h.record(7);
+        assertEquals(7, h.max());
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        h.record(Long.MIN_VALUE);
+        assertEquals(2, h.count());
+        assertEquals(0, h.max());
+    }
+
+    @Test
+    public void percentileThrowsWhenOutOfRange() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (double p : new double[] { -1, 100.5, Double.NaN }) {
+            try {
+                h.percentile(p);
+                fail("Expected IllegalArgumentException on percentile(" + p + ")");
+            } catch (IllegalArgumentException e) {
+                // pass
+            }
+        }
+    }
+
+    /**
+     * Checks that v is in its bucket and that the largest value of the
+     * bucket is at most v / SUB_BUCKETS larger than v.
+     */
+    private static void assertBucket(long v) {
+        int b = LatencyHistogram.bucketOf(v);
+        long high = LatencyHistogram.highestValueOf(b);
+        assertTrue(b >= 0 && b < LatencyHistogram.BUCKETS);
+        assertTrue(v <= high);
+        assertTrue(b == 0 || v > LatencyHistogram.highestValueOf(b - 1));
+        assertTrue(high - v <= v / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    /**
+     * Checks every percentile of h against the value of that rank in the
+     * sorted values: h must report the largest value of its bucket.
+     */
+    private static void assertPercentiles(long[] values, LatencyHistogram h) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        assertEquals(sorted.length, h.count());
+        for (double p : PERCENTILES) {
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * sorted.length));
+            long exact = sorted[(int) rank - 1];
+            assertEquals(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(exact)), h.percentile(p));
+        }
+        long max = sorted[sorted.length - 1];
+        assertEquals(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(max)), h.max());
+    }
+}
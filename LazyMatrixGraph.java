@@ -0,0 +1,358 @@
+package se.kth.graph;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A graph with a fixed number of vertices implemented using an adjacency
+ * matrix whose rows are allocated on the first edge from a vertex. A cell
+ * holds 0 if there is no edge and the cost plus 2 otherwise, so NO_COST is
+ * stored as 1 and a freshly allocated row, which the JVM has already
+ * zeroed, needs no initialization. Constructing the graph takes O(n) time
+ * and space, and only the rows of vertices with outgoing edges cost
+ * &Theta;(n) space each, so the space complexity is O(n + rn), where r is
+ * the number of such vertices.
+ *
+ * The degree of every vertex is counted, so degree is O(1) and iterating
+ * over the neighbors stops at the last one instead of scanning the rest of
+ * the row. A row is kept when its last edge is removed.
+ */
+public class LazyMatrixGraph implements Graph, BulkInsertion, Versioned {
+    /** The value of a cell without an edge. */
+    private final static int EMPTY = 0;
+
+    /** The difference between a stored cell and the cost of its edge. */
+    private final static int OFFSET = 2;
+
+    /** Number of vertices in the graph. */
+    private final int numVertices;
+
+    /** Number of edges in the graph. */
+    private int numEdges;
+
+    /** Number of modifications, see Versioned. */
+    private long version;
+
+    /**
+     * Adjacency matrix: adj[v] is null if v has never had an edge, otherwise
+     * adj[v][w] is EMPTY if v is not adjacent to w and the cost of the edge
+     * plus OFFSET if it is.
+     */
+    private final int[][] adj;
+
+    /** degree[v] is the number of cells of adj[v] that are not EMPTY. */
+    private final int[] degree;
+
+    /**
+     * Constructs a LazyMatrixGraph with n vertices and no edges. Time
+     * complexity: O(n)
+     *
+     * @throws IllegalArgumentException
+     *             if n < 0
+     */
+    public LazyMatrixGraph(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n = " + n);
+
+        numVertices = n;
+        adj = new int[n][];
+        degree = new int[n];
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int numVertices() {
+        return numVertices;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * {@inheritDoc Versioned} Time complexity: O(1).
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the number of rows that have been allocated. Time complexity:
+     * O(n).
+     *
+     * @return the number of vertices that have had an outgoing edge
+     */
+    public int allocatedRows() {
+        int rows = 0;
+        for (int[] row : adj)
+            if (row != null)
+                rows++;
+        return rows;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int degree(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        return degree[v];
+    }
+
+    /**
+     * {@inheritDoc Graph} The row is scanned with RowKernels up to the last
+     * neighbor. Time complexity: O(n), where n is the number of vertices,
+     * and O(1) for a vertex without neighbors.
+     */
+    @Override
+    public VertexIterator neighbors(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        return new NeighborIterator(adj[v], degree[v]);
+    }
+
+    private static final class NeighborIterator implements VertexIterator {
+        private final int[] row;
+        private int remaining;
+        private int nextPos = -1;
+
+        NeighborIterator(int[] row, int degree) {
+            this.row = row;
+            this.remaining = degree;
+            if (remaining > 0)
+                findNext();
+        }
+
+        private void findNext() {
+            nextPos = RowKernels.INSTANCE.next(row, nextPos + 1, EMPTY);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public int next() {
+            if (remaining == 0)
+                throw new NoSuchElementException("This iterator has no more elements.");
+            int pos = nextPos;
+            if (--remaining > 0)
+                findNext();
+            return pos;
+        }
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public boolean hasEdge(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        int[] row = adj[from];
+        return row != null && row[to] != EMPTY;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int cost(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        int[] row = adj[from];
+        if (row == null || row[to] == EMPTY)
+            return NO_COST;
+        return row[to] - OFFSET;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1), and O(n) if from has never
+     * had an edge.
+     */
+    @Override
+    public void add(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        addEdge(from, to, NO_COST);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1), and O(n) if from has never
+     * had an edge.
+     */
+    @Override
+    public void add(int from, int to, int c) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        checkNonNegativeCost(c);
+
+        addEdge(from, to, c);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1), and O(n) if v or w has
+     * never had an edge.
+     */
+    @Override
+    public void addBi(int v, int w) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+
+        addEdge(v, w, NO_COST);
+        if (v == w)
+            return;
+        addEdge(w, v, NO_COST);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1), and O(n) if v or w has
+     * never had an edge.
+     */
+    @Override
+    public void addBi(int v, int w, int c) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        checkNonNegativeCost(c);
+
+        addEdge(v, w, c);
+        if (v == w)
+            return;
+        addEdge(w, v, c);
+    }
+
+    /**
+     * {@inheritDoc BulkInsertion} Time complexity: O(size + rn), where r is
+     * the number of rows allocated.
+     */
+    @Override
+    public void addAll(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException {
+        EdgeList.checkEdges(numVertices, from, to, cost, size);
+
+        for (int i = 0; i < size; i++)
+            addEdge(from[i], to[i], cost == null ? NO_COST : cost[i]);
+    }
+
+    /**
+     * {@inheritDoc BulkInsertion} Time complexity: O(size + rn), where r is
+     * the number of rows allocated.
+     */
+    @Override
+    public void addAllBi(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException {
+        EdgeList.checkEdges(numVertices, from, to, cost, size);
+
+        for (int i = 0; i < size; i++) {
+            int v = from[i];
+            int w = to[i];
+            int c = cost == null ? NO_COST : cost[i];
+            addEdge(v, w, c);
+            if (v != w)
+                addEdge(w, v, c);
+        }
+    }
+
+    /**
+     * Add an edge without checking parameters. The cost plus OFFSET may
+     * overflow for costs close to Integer.MAX_VALUE, but it is never EMPTY
+     * and subtracting OFFSET gives the cost back.
+     */
+    private void addEdge(int from, int to, int c) {
+        int[] row = adj[from];
+        if (row == null)
+            row = adj[from] = new int[numVertices];
+        int stored = c + OFFSET;
+        if (row[to] == EMPTY) {
+            numEdges++;
+            degree[from]++;
+        }
+        if (row[to] != stored)
+            version++;
+        row[to] = stored;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public void remove(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        removeEdge(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public void removeBi(int v, int w) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+
+        removeEdge(v, w);
+        if (v == w)
+            return;
+        removeEdge(w, v);
+    }
+
+    /**
+     * Remove an edge without checking parameters.
+     */
+    private void removeEdge(int from, int to) {
+        int[] row = adj[from];
+        if (row != null && row[to] != EMPTY) {
+            row[to] = EMPTY;
+            degree[from]--;
+            numEdges--;
+            version++;
+        }
+    }
+
+    /**
+     * Returns a string representation of this graph in the same format as
+     * HashGraph, built by GraphWriter. Time complexity: O(n + rn), where r is
+     * the number of rows allocated.
+     *
+     * @return a String representation of this graph
+     */
+    @Override
+    public String toString() {
+        return GraphWriter.toString(this);
+    }
+
+    /**
+     * Checks a single vertex parameter v.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= numVertices)
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= numVertices || w < 0 || w >= numVertices)
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+
+    /**
+     * Checks that the cost c is non-negative.
+     *
+     * @throws IllegalArgumentException
+     *             if c < 0
+     */
+    private void checkNonNegativeCost(int c) {
+        if (c < 0)
+            throw new IllegalArgumentException("Illegal cost: c = " + c + ".");
+    }
+}
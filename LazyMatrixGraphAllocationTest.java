@@ -0,0 +1,8 @@
+package se.kth.graph;
+
+public class LazyMatrixGraphAllocationTest extends GraphAllocationTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new LazyMatrixGraph(numVertices);
+    }
+}
@@ -0,0 +1,42 @@
+package se.kth.graph;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LazyMatrixGraphTest extends GraphTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new LazyMatrixGraph(numVertices);
+    }
+
+    @Test
+    public void testConstructor() {
+        try {
+            new LazyMatrixGraph(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testRowsAreAllocatedOnWrite() {
+        LazyMatrixGraph g = new LazyMatrixGraph(100);
+        assertEquals(0, g.allocatedRows());
+        g.hasEdge(1, 2);
+        g.remove(3, 4);
+        assertEquals(0, g.allocatedRows());
+        g.add(5, 6);
+        g.addBi(7, 8, 3);
+        assertEquals(3, g.allocatedRows());
+    }
+
+    @Test
+    public void testLargeCosts() {
+        LazyMatrixGraph g = new LazyMatrixGraph(2);
+        g.add(0, 1, Integer.MAX_VALUE);
+        g.add(1, 0, Integer.MAX_VALUE - 1);
+        assertEquals(Integer.MAX_VALUE, g.cost(0, 1));
+        assertEquals(Integer.MAX_VALUE - 1, g.cost(1, 0));
+        assertEquals(2, g.numEdges());
+    }
+}
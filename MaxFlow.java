@@ -0,0 +1,506 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+
+/**
+ * Maximum flow and minimum cut. The cost of an edge is used as its capacity;
+ * an edge with NO_COST has capacity 1. Self loops are ignored.
+ *
+ * Both algorithms run on a flat residual graph in compressed sparse row form,
+ * where every edge (v, w) gives an arc v -> w with the capacity of the edge
+ * and a reverse arc w -> v with capacity 0. A MaxFlow object keeps its
+ * buffers between calls and only grows them when a larger instance comes
+ * along, so solving many instances with the same object allocates little
+ * more than the result. A MaxFlow object is not thread safe.
+ */
+public final class MaxFlow {
+    /** Global relabeling is done after about this many arc scans per vertex. */
+    private final static int GLOBAL_RELABEL_FREQUENCY = 6;
+
+    /** The capacity of an edge with NO_COST. */
+    private final static int NO_COST_CAPACITY = 1;
+
+    /**
+     * The value of a maximum flow and the source side of a minimum cut.
+     */
+    public static final class Result {
+        private final long value;
+        private final boolean[] sourceSide;
+
+        Result(long value, boolean[] sourceSide) {
+            this.value = value;
+            this.sourceSide = sourceSide;
+        }
+
+        /**
+         * Returns the value of the maximum flow, which equals the capacity of
+         * the minimum cut.
+         *
+         * @return the flow value
+         */
+        public long value() {
+            return value;
+        }
+
+        /**
+         * Returns true if v is on the source side of the minimum cut.
+         *
+         * @param v
+         *            vertex
+         * @return true if v is on the source side of the cut
+         * @throws IllegalArgumentException
+         *             if v is out of range
+         */
+        public boolean isOnSourceSide(int v) {
+            if (v < 0 || v >= sourceSide.length)
+                throw new IllegalArgumentException("Out of range: v = " + v + ".");
+            return sourceSide[v];
+        }
+
+        /**
+         * Returns a copy of the cut partition: element v is true if v is on
+         * the source side and false if it is on the sink side.
+         *
+         * @return the cut partition
+         */
+        public boolean[] sourceSide() {
+            return sourceSide.clone();
+        }
+    }
+
+    /* Edge list collected from the graph. */
+    private int numEdges;
+    private int[] edgeFrom = new int[0];
+    private int[] edgeTo = new int[0];
+    private int[] edgeCap = new int[0];
+
+    /* Residual graph: the arcs of v are first[v] ... first[v + 1] - 1. */
+    private int n;
+    private int[] first = new int[1];
+    private int[] head = new int[0];
+    private int[] mate = new int[0];
+    private int[] cap = new int[0];
+
+    /* Per-vertex scratch space. */
+    private int[] label = new int[0];
+    private int[] current = new int[0];
+    private int[] queue = new int[0];
+    private long[] excess = new long[0];
+    private int[] activeHead = new int[0];
+    private int[] activeNext = new int[0];
+    private int[] bucketHead = new int[0];
+    private int[] bucketNext = new int[0];
+    private int[] bucketPrev = new int[0];
+
+    /**
+     * Computes a maximum flow from s to t in g with Dinic's algorithm.
+     * Time complexity: O(n<sup>2</sup> m), and O(m &radic;m) if all
+     * capacities are 1.
+     *
+     * @param g
+     *            a graph
+     * @param s
+     *            source vertex
+     * @param t
+     *            sink vertex
+     * @return the flow value and a minimum cut
+     * @throws IllegalArgumentException
+     *             if s or t is out of range or s == t
+     */
+    public Result dinic(Graph g, int s, int t) {
+        build(g, s, t);
+
+        long flow = 0;
+        while (levels(s, t))
+            flow += blockingFlow(s, t);
+
+        // After the last search label[v] >= 0 exactly for the vertices that
+        // are reachable from s in the residual graph.
+        boolean[] sourceSide = new boolean[n];
+        for (int v = 0; v < n; v++)
+            sourceSide[v] = label[v] >= 0;
+        return new Result(flow, sourceSide);
+    }
+
+    /**
+     * Computes a maximum flow from s to t in g with the highest-label
+     * push-relabel algorithm, using the global relabeling and gap heuristics.
+     * Only the first phase is run: it finds the flow value and a minimum cut
+     * but leaves a preflow, which is all the Result needs. Time complexity:
+     * O(n<sup>2</sup> &radic;m).
+     *
+     * @param g
+     *            a graph
+     * @param s
+     *            source vertex
+     * @param t
+     *            sink vertex
+     * @return the flow value and a minimum cut
+     * @throws IllegalArgumentException
+     *             if s or t is out of range or s == t
+     */
+    public Result pushRelabel(Graph g, int s, int t) {
+        build(g, s, t);
+        Arrays.fill(excess, 0, n, 0);
+
+        // Saturate all arcs out of the source.
+        for (int a = first[s]; a < first[s + 1]; a++) {
+            int c = cap[a];
+            if (c > 0) {
+                cap[a] = 0;
+                cap[mate[a]] += c;
+                excess[head[a]] += c;
+                excess[s] -= c;
+            }
+        }
+
+        long workLimit = (long) GLOBAL_RELABEL_FREQUENCY * n + first[n];
+        long work = 0;
+        int maxActive = globalRelabel(s, t);
+        while (maxActive >= 0) {
+            int v = activeHead[maxActive];
+            if (v < 0) {
+                maxActive--;
+                continue;
+            }
+            activeHead[maxActive] = activeNext[v];
+            if (label[v] != maxActive)
+                continue; // moved to the top by the gap heuristic
+
+            // Afterwards v is inactive; only the vertices it pushed to may be
+            // above the current maximum.
+            work += discharge(v, t);
+            maxActive = Math.max(maxActive, highestPushTarget);
+            if (work > workLimit) {
+                maxActive = globalRelabel(s, t);
+                work = 0;
+            }
+        }
+
+        // The vertices that can still reach t form the sink side. They are
+        // exactly the ones with a label below n after a final global relabel.
+        globalRelabel(s, t);
+        boolean[] sourceSide = new boolean[n];
+        for (int v = 0; v < n; v++)
+            sourceSide[v] = label[v] >= n;
+        return new Result(excess[t], sourceSide);
+    }
+
+    /**
+     * Copies g into the residual graph. Time complexity: O(n + m) plus one
+     * traversal of the neighbors of every vertex.
+     */
+    private void build(Graph g, int s, int t) {
+        n = g.numVertices();
+        if (s < 0 || s >= n || t < 0 || t >= n)
+            throw new IllegalArgumentException("Out of range: s = " + s + ", t = " + t + ".");
+        if (s == t)
+            throw new IllegalArgumentException("Source equals sink: s = t = " + s + ".");
+
+        collectEdges(g);
+        int arcs = 2 * numEdges;
+        ensureCapacity(n, arcs);
+
+        // Counting sort of the arcs by tail.
+        Arrays.fill(first, 0, n + 1, 0);
+        for (int e = 0; e < numEdges; e++) {
+            first[edgeFrom[e] + 1]++;
+            first[edgeTo[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++)
+            first[v + 1] += first[v];
+        System.arraycopy(first, 0, current, 0, n);
+        for (int e = 0; e < numEdges; e++) {
+            int v = edgeFrom[e];
+            int w = edgeTo[e];
+            int a = current[v]++;
+            int b = current[w]++;
+            head[a] = w;
+            cap[a] = edgeCap[e];
+            mate[a] = b;
+            head[b] = v;
+            cap[b] = 0;
+            mate[b] = a;
+        }
+    }
+
+    /**
+     * Stores the edges of g, without self loops, in edgeFrom, edgeTo and
+     * edgeCap.
+     */
+    private void collectEdges(Graph g) {
+        numEdges = 0;
+        if (g instanceof CsrGraph) {
+            CsrGraph c = (CsrGraph) g;
+            ensureEdgeCapacity(c.numEdges());
+            for (int v = 0; v < n; v++) {
+                for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                    int w = c.targets[i];
+                    if (w != v)
+                        addEdge(v, w, c.costs == null ? NO_COST_CAPACITY : capacity(c.costs[i]));
+                }
+            }
+            return;
+        }
+        ensureEdgeCapacity(g.numEdges());
+        for (int v = 0; v < n; v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                if (w != v)
+                    addEdge(v, w, capacity(g.cost(v, w)));
+            }
+        }
+    }
+
+    private static int capacity(int cost) {
+        return cost == Graph.NO_COST ? NO_COST_CAPACITY : cost;
+    }
+
+    private void addEdge(int v, int w, int c) {
+        if (numEdges == edgeFrom.length)
+            ensureEdgeCapacity(Math.max(16, 2 * numEdges));
+        edgeFrom[numEdges] = v;
+        edgeTo[numEdges] = w;
+        edgeCap[numEdges] = c;
+        numEdges++;
+    }
+
+    private void ensureEdgeCapacity(int m) {
+        if (edgeFrom.length < m) {
+            edgeFrom = Arrays.copyOf(edgeFrom, m);
+            edgeTo = Arrays.copyOf(edgeTo, m);
+            edgeCap = Arrays.copyOf(edgeCap, m);
+        }
+    }
+
+    private void ensureCapacity(int vertices, int arcs) {
+        if (first.length < vertices + 1) {
+            int size = Math.max(vertices, 2 * label.length);
+            first = new int[size + 1];
+            label = new int[size];
+            current = new int[size];
+            queue = new int[size];
+            excess = new long[size];
+            activeHead = new int[size + 1];
+            activeNext = new int[size];
+            bucketHead = new int[size + 1];
+            bucketNext = new int[size];
+            bucketPrev = new int[size];
+        }
+        if (head.length < arcs) {
+            int size = Math.max(arcs, 2 * head.length);
+            head = new int[size];
+            mate = new int[size];
+            cap = new int[size];
+        }
+    }
+
+    /**
+     * Breadth first search from s in the residual graph. Sets label[v] to the
+     * distance from s, or -1 if v is unreachable, and resets the current
+     * arcs. Returns true if t is reachable.
+     */
+    private boolean levels(int s, int t) {
+        Arrays.fill(label, 0, n, -1);
+        System.arraycopy(first, 0, current, 0, n);
+        int qHead = 0;
+        int qTail = 0;
+        label[s] = 0;
+        queue[qTail++] = s;
+        while (qHead < qTail) {
+            int v = queue[qHead++];
+            int next = label[v] + 1;
+            for (int a = first[v], end = first[v + 1]; a < end; a++) {
+                int w = head[a];
+                if (cap[a] > 0 && label[w] < 0) {
+                    label[w] = next;
+                    queue[qTail++] = w;
+                }
+            }
+        }
+        return label[t] >= 0;
+    }
+
+    /**
+     * Finds a blocking flow in the level graph with an iterative depth first
+     * search. The path is kept as a stack of arcs in queue[]. Returns the
+     * value of the blocking flow.
+     */
+    private long blockingFlow(int s, int t) {
+        int[] path = queue;
+        long flow = 0;
+        int depth = 0;
+        int v = s;
+        while (true) {
+            if (v == t) {
+                int bottleneck = Integer.MAX_VALUE;
+                int saturated = 0;
+                for (int i = 0; i < depth; i++) {
+                    if (cap[path[i]] < bottleneck) {
+                        bottleneck = cap[path[i]];
+                        saturated = i;
+                    }
+                }
+                for (int i = 0; i < depth; i++) {
+                    int a = path[i];
+                    cap[a] -= bottleneck;
+                    cap[mate[a]] += bottleneck;
+                }
+                flow += bottleneck;
+
+                // Retreat to the tail of the first saturated arc.
+                depth = saturated;
+                v = head[mate[path[saturated]]];
+                continue;
+            }
+
+            int end = first[v + 1];
+            int a = current[v];
+            int nextLabel = label[v] + 1;
+            while (a < end && (cap[a] == 0 || label[head[a]] != nextLabel))
+                a++;
+            current[v] = a;
+            if (a < end) {
+                path[depth++] = a;
+                v = head[a];
+            } else {
+                // Dead end: remove v from the level graph and retreat.
+                label[v] = -1;
+                if (depth == 0)
+                    return flow;
+                int back = path[--depth];
+                v = head[mate[back]];
+                current[v]++;
+            }
+        }
+    }
+
+    /* Set by discharge() to the highest label of a vertex that became active. */
+    private int highestPushTarget;
+
+    /**
+     * Pushes the excess of v to admissible arcs, relabeling v when none is
+     * left, until v has no excess or its label reaches n. Returns the number
+     * of arcs scanned.
+     */
+    private int discharge(int v, int t) {
+        int work = 0;
+        highestPushTarget = -1;
+        while (excess[v] > 0) {
+            int end = first[v + 1];
+            int a = current[v];
+            int h = label[v] - 1;
+            for (; a < end; a++) {
+                int w = head[a];
+                if (cap[a] == 0 || label[w] != h)
+                    continue;
+                long d = Math.min(excess[v], cap[a]);
+                cap[a] -= (int) d;
+                cap[mate[a]] += (int) d;
+                excess[v] -= d;
+                if (excess[w] == 0 && w != t) {
+                    activeNext[w] = activeHead[h];
+                    activeHead[h] = w;
+                    highestPushTarget = Math.max(highestPushTarget, h);
+                }
+                excess[w] += d;
+                if (excess[v] == 0)
+                    break;
+            }
+            work += a - current[v];
+            current[v] = a;
+            if (excess[v] == 0)
+                return work;
+
+            // Relabel v, or lift everything above an emptied label to n.
+            int old = label[v];
+            removeFromBucket(v);
+            if (bucketHead[old] < 0) {
+                label[v] = n;
+                gap(old);
+                return work;
+            }
+            int lowest = n;
+            for (int b = first[v]; b < end; b++) {
+                if (cap[b] > 0 && label[head[b]] + 1 < lowest)
+                    lowest = label[head[b]] + 1;
+            }
+            work += end - first[v];
+            current[v] = first[v];
+            label[v] = lowest;
+            if (lowest >= n)
+                return work;
+            addToBucket(v, lowest);
+        }
+        return work;
+    }
+
+    /**
+     * Moves every vertex with a label of at least h, and below n, to label n.
+     * None of them can reach the sink any more.
+     */
+    private void gap(int h) {
+        for (int l = h; l < n; l++) {
+            for (int v = bucketHead[l]; v >= 0; v = bucketNext[v])
+                label[v] = n;
+            bucketHead[l] = -1;
+        }
+    }
+
+    /**
+     * Sets label[v] to the distance from v to t in the residual graph, or n if
+     * t is unreachable, and rebuilds the buckets. Returns the highest label of
+     * an active vertex, or -1 if there is none.
+     */
+    private int globalRelabel(int s, int t) {
+        Arrays.fill(label, 0, n, n);
+        Arrays.fill(activeHead, 0, n, -1);
+        Arrays.fill(bucketHead, 0, n, -1);
+        System.arraycopy(first, 0, current, 0, n);
+
+        int maxActive = -1;
+        int qHead = 0;
+        int qTail = 0;
+        label[t] = 0;
+        queue[qTail++] = t;
+        while (qHead < qTail) {
+            int w = queue[qHead++];
+            int next = label[w] + 1;
+            for (int a = first[w], end = first[w + 1]; a < end; a++) {
+                int v = head[a];
+                // The arc v -> w is mate[a]; v is reached if it has capacity.
+                if (label[v] == n && v != s && cap[mate[a]] > 0) {
+                    label[v] = next;
+                    queue[qTail++] = v;
+                    addToBucket(v, next);
+                    if (excess[v] > 0) {
+                        activeNext[v] = activeHead[next];
+                        activeHead[next] = v;
+                        maxActive = next;
+                    }
+                }
+            }
+        }
+        return maxActive;
+    }
+
+    private void addToBucket(int v, int h) {
+        int u = bucketHead[h];
+        bucketNext[v] = u;
+        bucketPrev[v] = -1;
+        if (u >= 0)
+            bucketPrev[u] = v;
+        bucketHead[h] = v;
+    }
+
+    private void removeFromBucket(int v) {
+        int prev = bucketPrev[v];
+        int next = bucketNext[v];
+        if (prev >= 0)
+            bucketNext[prev] = next;
+        else
+            bucketHead[label[v]] = next;
+        if (next >= 0)
+            bucketPrev[next] = prev;
+    }
+}
@@ -0,0 +1,112 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that both MaxFlow algorithms find the capacity of a minimum cut, as
+ * found by enumerating every cut of small random graphs, and that the cut
+ * they return has that capacity.
+ */
+public class MaxFlowTest {
+    @Test
+    public void flowEqualsMinimumCutOnRandomGraphs() {
+        Random random = new Random(27);
+        MaxFlow flow = new MaxFlow();
+        for (int round = 0; round < 300; round++) {
+            int n = 2 + random.nextInt(7);
+            Graph g = round % 2 == 0 ? new HashGraph(n) : new MatrixGraph(n);
+            int edges = random.nextInt(3 * n);
+            for (int i = 0; i < edges; i++) {
+                int v = random.nextInt(n);
+                int w = random.nextInt(n);
+                if (random.nextInt(4) == 0)
+                    g.add(v, w);
+                else
+                    g.add(v, w, random.nextInt(10));
+            }
+            int s = random.nextInt(n);
+            int t = (s + 1 + random.nextInt(n - 1)) % n;
+            long minCut = minimumCut(g, s, t);
+
+            MaxFlow.Result dinic = flow.dinic(g, s, t);
+            assertEquals(minCut, dinic.value());
+            assertValidCut(g, s, t, dinic);
+
+            MaxFlow.Result pushRelabel = flow.pushRelabel(g, s, t);
+            assertEquals(minCut, pushRelabel.value());
+            assertValidCut(g, s, t, pushRelabel);
+        }
+    }
+
+    @Test
+    public void unitCapacitiesCountDisjointPaths() {
+        Graph g = new HashGraph(6);
+        g.add(0, 1);
+        g.add(0, 2);
+        g.add(0, 3);
+        g.add(1, 4);
+        g.add(2, 4);
+        g.add(3, 5);
+        g.add(4, 5);
+        g.add(5, 5);
+        assertEquals(2, new MaxFlow().dinic(g, 0, 5).value());
+        assertEquals(2, new MaxFlow().pushRelabel(g, 0, 5).value());
+    }
+
+    @Test
+    public void disconnectedSinkHasNoFlow() {
+        Graph g = new HashGraph(3);
+        g.add(0, 1, 5);
+        MaxFlow.Result r = new MaxFlow().dinic(g, 0, 2);
+        assertEquals(0, r.value());
+        assertTrue(r.isOnSourceSide(1));
+        assertFalse(r.isOnSourceSide(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sourceMustDifferFromSink() {
+        new MaxFlow().dinic(new HashGraph(2), 1, 1);
+    }
+
+    private static void assertValidCut(Graph g, int s, int t, MaxFlow.Result r) {
+        boolean[] side = r.sourceSide();
+        assertTrue(side[s]);
+        assertFalse(side[t]);
+        assertEquals(r.value(), capacity(g, side));
+    }
+
+    /** The smallest capacity of the 2<sup>n-2</sup> cuts between s and t. */
+    private static long minimumCut(Graph g, int s, int t) {
+        int n = g.numVertices();
+        long best = Long.MAX_VALUE;
+        boolean[] side = new boolean[n];
+        for (int subset = 0; subset < 1 << n; subset++) {
+            if ((subset >> s & 1) == 0 || (subset >> t & 1) != 0)
+                continue;
+            for (int v = 0; v < n; v++)
+                side[v] = (subset >> v & 1) != 0;
+            best = Math.min(best, capacity(g, side));
+        }
+        return best;
+    }
+
+    /** The total capacity of the edges from the source side to the sink side. */
+    private static long capacity(Graph g, boolean[] side) {
+        long c = 0;
+        for (int v = 0; v < g.numVertices(); v++) {
+            if (!side[v])
+                continue;
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                if (!side[w]) {
+                    int cost = g.cost(v, w);
+                    c += cost == Graph.NO_COST ? 1 : cost;
+                }
+            }
+        }
+        return c;
+    }
+}
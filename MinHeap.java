@@ -0,0 +1,85 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of (key, vertex) pairs for Dijkstra style searches. A
+ * vertex may be pushed several times; callers skip the stale entries when
+ * they are popped.
+ */
+final class MinHeap {
+    private long[] keys;
+    private int[] vertices;
+    private int size;
+
+    /**
+     * Constructs an empty heap with room for capacity entries.
+     */
+    MinHeap(int capacity) {
+        keys = new long[Math.max(1, capacity)];
+        vertices = new int[keys.length];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /** Returns the smallest key. The heap must not be empty. */
+    long minKey() {
+        return keys[0];
+    }
+
+    /** Returns the vertex with the smallest key. The heap must not be empty. */
+    int minVertex() {
+        return vertices[0];
+    }
+
+    /**
+     * Inserts a pair. Time complexity: O(log size).
+     */
+    void push(long key, int v) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            vertices = Arrays.copyOf(vertices, 2 * size);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key)
+                break;
+            keys[i] = keys[parent];
+            vertices[i] = vertices[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        vertices[i] = v;
+    }
+
+    /**
+     * Removes the pair with the smallest key. The heap must not be empty.
+     * Time complexity: O(log size).
+     */
+    void pop() {
+        size--;
+        long key = keys[size];
+        int v = vertices[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[child + 1] < keys[child])
+                child++;
+            if (key <= keys[child])
+                break;
+            keys[i] = keys[child];
+            vertices[i] = vertices[child];
+            i = child;
+        }
+        keys[i] = key;
+        vertices[i] = v;
+    }
+}
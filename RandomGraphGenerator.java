@@ -9,7 +9,6 @@ import java.util.ArrayList;
  */
 public class RandomGraphGenerator {
     static ArrayList<Integer> componentSizes = new ArrayList<>();
-    static int compontentSize;
 
     public static void main(String[] args) {
         // ALT+SHIFT+F10, Right, "Edit", Enter, Tab, enter your command line parameters, Press Enter.
@@ -52,13 +51,14 @@ public class RandomGraphGenerator {
                 System.out.println("No arguments have been provided. Provide <size> <graph_type>");
             }
 
-            // Assign n random edges to the n vertices.
-            for (int i = 0; i < size; i++) {
-                int randomInt = (int) (Math.random() * size);
-                int randomInt2 = (int) (Math.random() * size);
-                if (g != null) {
-                    g.addBi(randomInt, randomInt2);
-                }
+            // Assign n random edges to the n vertices. The repetition number
+            // is the seed, so every run generates the same graphs.
+            if (g != null) {
+                GraphEvents.GraphBuild build = new GraphEvents.GraphBuild();
+                build.begin();
+                RandomGraphs.uniformEdges(size, size, n, Runtime.getRuntime().availableProcessors()).addBiTo(g);
+                build.set(g, "uniformEdges");
+                build.commit();
             }
 
             // %s is a command for toString() method on a given vertex "v" in graph "g".
@@ -89,52 +89,18 @@ public class RandomGraphGenerator {
 
 
     /**
-     * Prints the components of g to stdout. Each component is written on a
-     * separate line.
+     * Counts the components of g and stores their sizes in componentSizes.
+     * Every repetition has a new graph, so the search runs every time.
      */
     private static int printComponents(Graph g) {
-        VertexAction printVertex = new VertexAction() {
-            @Override
-            public void act(Graph g, int v) {
-                //System.out.print(v + " ");
-                compontentSize++;
-            }
-        };
-        int componentCount = 0;
-        int n = g.numVertices();
-        boolean[] visited = new boolean[n];
-
-        for (int v = 0; v < n; v++) {
-            if (!visited[v]) {
-                dfs(g, v, visited, printVertex);
-                componentSizes.add(compontentSize);
-                compontentSize = 0;
-                componentCount++;
-            }
-        }
+        int[] ids = GraphAlgorithms.componentIds(g);
+        int componentCount = GraphAlgorithms.countComponents(ids);
+        int[] sizes = new int[componentCount];
+        for (int id : ids)
+            sizes[id]++;
+        componentSizes.clear();
+        for (int size : sizes)
+            componentSizes.add(size);
         return componentCount;
     }
-
-    /**
-     * Traverses the nodes of g that have not yet been visited. The nodes are
-     * visited in depth-first order starting at v. The act() method in the
-     * VertexAction object is called once for each node.
-     *
-     * @param g
-     *            an undirected graph
-     * @param v
-     *            start vertex
-     * @param visited
-     *            visited[i] is true if node i has been visited
-     */
-    private static void dfs(Graph g, int v, boolean[] visited, VertexAction action) {
-        if (visited[v])
-            return;
-        visited[v] = true;
-        action.act(g, v);
-        for (VertexIterator it = g.neighbors(v); it.hasNext();) {
-            dfs(g, it.next(), visited, action);
-        }
-    }
-
 }
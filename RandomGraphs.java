@@ -0,0 +1,452 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Random graph generators. Every generator returns an EdgeList, which can be
+ * added to any Graph with addTo or addBiTo, or turned into a compact
+ * CsrGraph with toCsrGraph.
+ *
+ * The work is divided into fixed-size chunks and every chunk draws from its
+ * own SplittableRandom, split off a generator seeded with the given seed
+ * before any work starts. The chunks do not depend on the number of
+ * threads, so the same seed always gives the same edges in the same order,
+ * whether the chunks are generated by one thread or by many.
+ */
+public final class RandomGraphs {
+    /** Number of edges in a chunk of gnm and rmat. */
+    private final static int EDGES_PER_CHUNK = 1 << 16;
+
+    /** Number of start vertices in a chunk of gnp. */
+    private final static int VERTICES_PER_CHUNK = 1 << 10;
+
+    private RandomGraphs() {
+    }
+
+    /**
+     * Returns the edges of an Erd&#337;s-R&eacute;nyi G(n, m) graph: m
+     * distinct pairs (v, w) with w &lt; v, chosen uniformly at random among
+     * all n (n - 1) / 2 pairs. There are no self loops or duplicates, and the
+     * result is meant to be added with addBiTo. Candidate pairs are drawn in
+     * parallel and the duplicates among them are replaced by drawing again
+     * on one thread; if m is more than half of all pairs, the pairs to leave
+     * out are drawn instead. Time complexity: O(m) expected, and
+     * O(n<sup>2</sup>) if m is more than half of all pairs.
+     *
+     * @param n
+     *            number of vertices
+     * @param m
+     *            number of edges, at most n (n - 1) / 2
+     * @param seed
+     *            random seed
+     * @param threads
+     *            number of worker threads
+     * @return the generated edges
+     * @throws IllegalArgumentException
+     *             if n, m or threads is out of range
+     */
+    public static EdgeList gnm(int n, int m, long seed, int threads) {
+        checkVertices(n);
+        long pairs = (long) n * (n - 1) / 2;
+        if (m < 0 || m > pairs)
+            throw new IllegalArgumentException("Illegal edge count: m = " + m + ".");
+        Workers.checkThreads(threads);
+
+        long[] keys;
+        if (m <= pairs / 2) {
+            keys = distinctPairs(pairs, m, seed, threads);
+        } else {
+            long[] excluded = distinctPairs(pairs, (int) (pairs - m), seed, threads);
+            Arrays.sort(excluded);
+            keys = new long[m];
+            int k = 0;
+            int e = 0;
+            for (long key = 0; key < pairs; key++) {
+                if (e < excluded.length && excluded[e] == key)
+                    e++;
+                else
+                    keys[k++] = key;
+            }
+        }
+
+        int[] from = new int[m];
+        int[] to = new int[m];
+        for (int i = 0; i < m; i++) {
+            // Pair key k is (v, w) with k = v (v - 1) / 2 + w and w < v.
+            long key = keys[i];
+            long v = (long) ((1 + Math.sqrt(1 + 8.0 * key)) / 2);
+            while (v * (v - 1) / 2 > key)
+                v--;
+            while ((v + 1) * v / 2 <= key)
+                v++;
+            from[i] = (int) v;
+            to[i] = (int) (key - v * (v - 1) / 2);
+        }
+        return new EdgeList(n, from, to, null, m);
+    }
+
+    /**
+     * Returns count distinct numbers drawn uniformly from 0 ... bound-1,
+     * in the order they were first drawn. The first count draws are made in
+     * parallel chunks; replacements for duplicates come from one generator
+     * seeded with a scrambled seed, so that they do not repeat a chunk.
+     */
+    private static long[] distinctPairs(final long bound, int count, long seed, int threads) {
+        final long[] keys = new long[count];
+        runChunks(count, seed, threads, new ChunkBody() {
+            @Override
+            public void run(int start, int end, SplittableRandom random) {
+                for (int i = start; i < end; i++)
+                    keys[i] = random.nextLong(bound);
+            }
+        });
+        LongSet seen = new LongSet(count);
+        int k = 0;
+        for (int i = 0; i < count; i++) {
+            if (seen.add(keys[i]))
+                keys[k++] = keys[i];
+        }
+        SplittableRandom extra = new SplittableRandom(seed ^ 0x9e3779b97f4a7c15L);
+        while (k < count) {
+            long key = extra.nextLong(bound);
+            if (seen.add(key))
+                keys[k++] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns m edges whose endpoints are chosen uniformly at random among n
+     * vertices. The edges are drawn independently, so unlike gnm the list
+     * may contain self loops and duplicates, exactly like the edges that
+     * RandomGraphGenerator assigns. Time complexity: O(m).
+     *
+     * @param n
+     *            number of vertices
+     * @param m
+     *            number of edges
+     * @param seed
+     *            random seed
+     * @param threads
+     *            number of worker threads
+     * @return the generated edges
+     * @throws IllegalArgumentException
+     *             if n, m or threads is out of range
+     */
+    public static EdgeList uniformEdges(final int n, int m, long seed, int threads) {
+        checkVertices(n);
+        if (m < 0 || (m > 0 && n == 0))
+            throw new IllegalArgumentException("Illegal edge count: m = " + m + ".");
+        Workers.checkThreads(threads);
+
+        final int[] from = new int[m];
+        final int[] to = new int[m];
+        runChunks(m, seed, threads, new ChunkBody() {
+            @Override
+            public void run(int start, int end, SplittableRandom random) {
+                for (int i = start; i < end; i++) {
+                    from[i] = random.nextInt(n);
+                    to[i] = random.nextInt(n);
+                }
+            }
+        });
+        return new EdgeList(n, from, to, null, m);
+    }
+
+    /**
+     * Returns the edges of an Erd&#337;s-R&eacute;nyi G(n, p) graph, where
+     * every possible edge is present independently with probability p. If
+     * directed is false only the pairs (v, w) with w &lt; v are considered,
+     * and the result is meant to be added with addBiTo. There are no self
+     * loops. Instead of drawing one number per pair, the generator draws
+     * the geometric gap to the next edge (Batagelj and Brandes), so the time
+     * complexity is O(n + m) for m generated edges.
+     *
+     * @param n
+     *            number of vertices
+     * @param p
+     *            edge probability, 0 <= p <= 1
+     * @param directed
+     *            if true, consider every ordered pair of distinct vertices
+     * @param seed
+     *            random seed
+     * @param threads
+     *            number of worker threads
+     * @return the generated edges
+     * @throws IllegalArgumentException
+     *             if n, p or threads is out of range
+     */
+    public static EdgeList gnp(final int n, final double p, final boolean directed, long seed, int threads) {
+        checkVertices(n);
+        if (!(p >= 0 && p <= 1))
+            throw new IllegalArgumentException("Illegal probability: p = " + p + ".");
+        Workers.checkThreads(threads);
+
+        int numChunks = (n + VERTICES_PER_CHUNK - 1) / VERTICES_PER_CHUNK;
+        final int[][] chunkFrom = new int[numChunks][];
+        final int[][] chunkTo = new int[numChunks][];
+        final int[] chunkSize = new int[numChunks];
+        final double logQ = Math.log1p(-p);
+        runChunks(n, VERTICES_PER_CHUNK, seed, threads, new ChunkBody() {
+            @Override
+            public void run(int start, int end, SplittableRandom random) {
+                int chunk = start / VERTICES_PER_CHUNK;
+                int[] from = new int[16];
+                int[] to = new int[16];
+                int size = 0;
+                if (p > 0) {
+                    // Walk the candidates of rows start ... end-1 as one
+                    // sequence; w is the candidate index within row v.
+                    int v = start;
+                    long w = -1;
+                    while (v < end) {
+                        w += 1 + skip(random, logQ);
+                        long rowLength = directed ? n - 1 : v;
+                        while (w >= rowLength && v < end) {
+                            w -= rowLength;
+                            v++;
+                            rowLength = directed ? n - 1 : v;
+                        }
+                        if (v < end) {
+                            if (size == from.length) {
+                                from = Arrays.copyOf(from, 2 * size);
+                                to = Arrays.copyOf(to, 2 * size);
+                            }
+                            from[size] = v;
+                            // A directed row skips the self loop v -> v.
+                            to[size] = (int) (directed && w >= v ? w + 1 : w);
+                            size++;
+                        }
+                    }
+                }
+                chunkFrom[chunk] = from;
+                chunkTo[chunk] = to;
+                chunkSize[chunk] = size;
+            }
+        });
+
+        long m = 0;
+        for (int s : chunkSize)
+            m += s;
+        if (m > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many edges: " + m + ".");
+        int[] from = new int[(int) m];
+        int[] to = new int[(int) m];
+        int pos = 0;
+        for (int c = 0; c < numChunks; c++) {
+            System.arraycopy(chunkFrom[c], 0, from, pos, chunkSize[c]);
+            System.arraycopy(chunkTo[c], 0, to, pos, chunkSize[c]);
+            pos += chunkSize[c];
+            chunkFrom[c] = null;
+            chunkTo[c] = null;
+        }
+        return new EdgeList(n, from, to, null, pos);
+    }
+
+    /**
+     * Returns the number of failures before the next success in a sequence
+     * of Bernoulli trials, where logQ is the log of the failure probability.
+     */
+    private static long skip(SplittableRandom random, double logQ) {
+        if (logQ == Double.NEGATIVE_INFINITY)
+            return 0; // p == 1
+        double r = 1 - random.nextDouble(); // in (0, 1]
+        double k = Math.floor(Math.log(r) / logQ);
+        return k < Long.MAX_VALUE / 2 ? (long) k : Long.MAX_VALUE / 2;
+    }
+
+    /**
+     * Returns m edges of an R-MAT graph with 2<sup>scale</sup> vertices
+     * (Chakrabarti, Zhan and Faloutsos). Each edge is placed by descending
+     * scale times into one of the four quadrants of the adjacency matrix,
+     * with probabilities a, b, c and 1 - a - b - c. This is the Kronecker
+     * generator used by Graph500 and gives a skewed, power-law like degree
+     * distribution. The list may contain self loops and duplicates. Time
+     * complexity: O(m scale).
+     *
+     * @param scale
+     *            log2 of the number of vertices, 0 <= scale <= 30
+     * @param m
+     *            number of edges
+     * @param a
+     *            probability of the top left quadrant
+     * @param b
+     *            probability of the top right quadrant
+     * @param c
+     *            probability of the bottom left quadrant
+     * @param seed
+     *            random seed
+     * @param threads
+     *            number of worker threads
+     * @return the generated edges
+     * @throws IllegalArgumentException
+     *             if a parameter is out of range
+     */
+    public static EdgeList rmat(final int scale, int m, final double a, final double b, final double c,
+            long seed, int threads) {
+        if (scale < 0 || scale > 30)
+            throw new IllegalArgumentException("Illegal scale: scale = " + scale + ".");
+        if (m < 0)
+            throw new IllegalArgumentException("Illegal edge count: m = " + m + ".");
+        if (!(a >= 0 && b >= 0 && c >= 0 && a + b + c <= 1))
+            throw new IllegalArgumentException("Illegal probabilities: a = " + a + ", b = " + b + ", c = " + c + ".");
+        Workers.checkThreads(threads);
+
+        final int[] from = new int[m];
+        final int[] to = new int[m];
+        final double ab = a + b;
+        final double abc = a + b + c;
+        runChunks(m, seed, threads, new ChunkBody() {
+            @Override
+            public void run(int start, int end, SplittableRandom random) {
+                for (int i = start; i < end; i++) {
+                    int v = 0;
+                    int w = 0;
+                    for (int bit = scale - 1; bit >= 0; bit--) {
+                        double r = random.nextDouble();
+                        if (r >= abc) {
+                            v |= 1 << bit;
+                            w |= 1 << bit;
+                        } else if (r >= ab) {
+                            v |= 1 << bit;
+                        } else if (r >= a) {
+                            w |= 1 << bit;
+                        }
+                    }
+                    from[i] = v;
+                    to[i] = w;
+                }
+            }
+        });
+        return new EdgeList(1 << scale, from, to, null, m);
+    }
+
+    /**
+     * Returns the edges of a Barab&aacute;si-Albert preferential attachment
+     * graph: the vertices arrive one at a time and each attaches k edges to
+     * earlier vertices, chosen with probability proportional to their
+     * degree. The endpoints already drawn for the current vertex count
+     * too, so any vertex may attach to itself, the first one always does,
+     * and the list may contain duplicates, as in the linear time algorithm
+     * of Batagelj and Brandes used here. The result is meant to be added with addBiTo. Every step
+     * depends on all earlier ones, so this generator runs on one thread.
+     * Time complexity: O(n k).
+     *
+     * @param n
+     *            number of vertices
+     * @param k
+     *            number of edges per vertex, k >= 1
+     * @param seed
+     *            random seed
+     * @return the generated edges
+     * @throws IllegalArgumentException
+     *             if n or k is out of range
+     */
+    public static EdgeList barabasiAlbert(int n, int k, long seed) {
+        checkVertices(n);
+        if (k < 1 || (long) n * k > Integer.MAX_VALUE / 2 - 4)
+            throw new IllegalArgumentException("Illegal edges per vertex: k = " + k + ".");
+
+        // ends[2i] and ends[2i + 1] are the endpoints of edge i. Choosing a
+        // uniformly random earlier endpoint chooses a vertex with probability
+        // proportional to its degree.
+        int m = n * k;
+        int[] ends = new int[2 * m];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int v = 0, i = 0; v < n; v++) {
+            for (int j = 0; j < k; j++, i++) {
+                ends[2 * i] = v;
+                ends[2 * i + 1] = ends[random.nextInt(2 * i + 1)];
+            }
+        }
+
+        int[] from = new int[m];
+        int[] to = new int[m];
+        for (int i = 0; i < m; i++) {
+            from[i] = ends[2 * i];
+            to[i] = ends[2 * i + 1];
+        }
+        return new EdgeList(n, from, to, null, m);
+    }
+
+    /**
+     * Generates the part of a result between start and end.
+     */
+    private interface ChunkBody {
+        void run(int start, int end, SplittableRandom random);
+    }
+
+    private static void runChunks(int total, long seed, int threads, ChunkBody body) {
+        runChunks(total, EDGES_PER_CHUNK, seed, threads, body);
+    }
+
+    /**
+     * Divides 0 ... total-1 into chunks of chunkSize and runs body on every
+     * chunk, each with its own generator.
+     */
+    private static void runChunks(final int total, final int chunkSize, long seed, int threads,
+            final ChunkBody body) {
+        final int numChunks = (int) (((long) total + chunkSize - 1) / chunkSize);
+        final SplittableRandom[] randoms = new SplittableRandom[numChunks];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int i = 0; i < numChunks; i++)
+            randoms[i] = root.split();
+
+        final AtomicInteger next = new AtomicInteger();
+        Runnable[] workers = new Runnable[Math.max(1, Math.min(threads, numChunks))];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Runnable() {
+                @Override
+                public void run() {
+                    int chunk;
+                    while ((chunk = next.getAndIncrement()) < numChunks) {
+                        int start = chunk * chunkSize;
+                        int end = (int) Math.min(total, (long) start + chunkSize);
+                        body.run(start, end, randoms[chunk]);
+                        randoms[chunk] = null;
+                    }
+                }
+            };
+        }
+        Workers.runAll("generator", workers);
+    }
+
+    /**
+     * A set of non-negative longs with open addressing and linear probing.
+     * A slot holds the key plus one, so that 0 marks an empty slot.
+     */
+    private static final class LongSet {
+        private final long[] slots;
+        private final int mask;
+        private final int shift;
+
+        LongSet(int expected) {
+            long capacity = Long.highestOneBit(Math.max(4, 2L * expected - 1)) << 1;
+            if (capacity > 1 << 30)
+                throw new IllegalArgumentException("Too many edges: " + expected + ".");
+            slots = new long[(int) capacity];
+            mask = (int) capacity - 1;
+            shift = Long.numberOfLeadingZeros(capacity) + 1;
+        }
+
+        /** Adds key and returns true if it was not in the set. */
+        boolean add(long key) {
+            long stored = key + 1;
+            int i = (int) ((stored * 0x9e3779b97f4a7c15L) >>> shift);
+            while (slots[i] != 0) {
+                if (slots[i] == stored)
+                    return false;
+                i = (i + 1) & mask;
+            }
+            slots[i] = stored;
+            return true;
+        }
+    }
+
+    private static void checkVertices(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n = " + n);
+    }
+}
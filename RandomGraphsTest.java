@@ -0,0 +1,109 @@
+package se.kth.graph;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the shape of the generated graphs and that the same seed gives the
+ * same edges for any number of threads.
+ */
+public class RandomGraphsTest {
+    @Test
+    public void gnmHasDistinctPairsWithoutSelfLoops() {
+        int[][] sizes = { { 0, 0 }, { 1, 0 }, { 2, 1 }, { 50, 10 }, { 50, 600 }, { 50, 1200 }, { 50, 1225 },
+                { 3000, 200000 } };
+        for (int[] size : sizes) {
+            int n = size[0];
+            int m = size[1];
+            EdgeList edges = RandomGraphs.gnm(n, m, 7, 3);
+            assertEquals(n, edges.numVertices());
+            assertEquals(m, edges.size());
+            Set<Long> pairs = new HashSet<Long>();
+            for (int i = 0; i < m; i++) {
+                int v = edges.from(i);
+                int w = edges.to(i);
+                assertTrue(0 <= w && w < v && v < n);
+                assertTrue(pairs.add((long) v * n + w));
+            }
+        }
+    }
+
+    @Test
+    public void gnmCoversEveryPair() {
+        // Every pair should be drawn about equally often.
+        int n = 6;
+        int[] count = new int[n * n];
+        for (int seed = 0; seed < 3000; seed++) {
+            EdgeList edges = RandomGraphs.gnm(n, 4, seed, 1);
+            for (int i = 0; i < edges.size(); i++)
+                count[edges.from(i) * n + edges.to(i)]++;
+        }
+        // 15 pairs, 4 of them per graph: each is expected 800 times.
+        for (int v = 0; v < n; v++)
+            for (int w = 0; w < v; w++)
+                assertTrue(count[v * n + w] > 650 && count[v * n + w] < 950);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void gnmRejectsTooManyEdges() {
+        RandomGraphs.gnm(4, 7, 1, 1);
+    }
+
+    @Test
+    public void sameSeedGivesSameEdgesForAnyThreads() {
+        assertSameEdges(RandomGraphs.gnm(1000, 150000, 3, 1), RandomGraphs.gnm(1000, 150000, 3, 4));
+        assertSameEdges(RandomGraphs.gnm(1000, 400000, 3, 1), RandomGraphs.gnm(1000, 400000, 3, 4));
+        assertSameEdges(RandomGraphs.uniformEdges(1000, 150000, 3, 1), RandomGraphs.uniformEdges(1000, 150000, 3, 4));
+        assertSameEdges(RandomGraphs.gnp(5000, 0.01, true, 3, 1), RandomGraphs.gnp(5000, 0.01, true, 3, 4));
+        assertSameEdges(RandomGraphs.rmat(12, 100000, 0.57, 0.19, 0.19, 3, 1),
+                RandomGraphs.rmat(12, 100000, 0.57, 0.19, 0.19, 3, 4));
+    }
+
+    @Test
+    public void gnpHasNoSelfLoops() {
+        for (boolean directed : new boolean[] { false, true }) {
+            EdgeList edges = RandomGraphs.gnp(300, 0.1, directed, 5, 2);
+            for (int i = 0; i < edges.size(); i++) {
+                assertNotEquals(edges.from(i), edges.to(i));
+                if (!directed)
+                    assertTrue(edges.to(i) < edges.from(i));
+            }
+        }
+        assertEquals(300 * 299, RandomGraphs.gnp(300, 1, true, 5, 2).size());
+        assertEquals(0, RandomGraphs.gnp(300, 0, true, 5, 2).size());
+    }
+
+    @Test
+    public void gnpIsAccurateForSmallProbabilities() {
+        // 10^10 candidate pairs at p = 10^-6: 10^4 edges expected, with a
+        // standard deviation of 100.
+        int n = 100000;
+        double p = 1e-6;
+        EdgeList edges = RandomGraphs.gnp(n, p, true, 11, 2);
+        double expected = (double) n * (n - 1) * p;
+        assertEquals(expected, edges.size(), 6 * Math.sqrt(expected));
+    }
+
+    @Test
+    public void barabasiAlbertAttachesToEarlierVertices() {
+        int n = 2000;
+        int k = 3;
+        EdgeList edges = RandomGraphs.barabasiAlbert(n, k, 9);
+        assertEquals(n * k, edges.size());
+        for (int i = 0; i < edges.size(); i++) {
+            assertEquals(i / k, edges.from(i));
+            assertTrue(edges.to(i) <= edges.from(i));
+        }
+    }
+
+    private static void assertSameEdges(EdgeList a, EdgeList b) {
+        assertEquals(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.from(i), b.from(i));
+            assertEquals(a.to(i), b.to(i));
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A precomputed transitive closure that answers "is there a path from u to
+ * v" in constant time. Every vertex reaches itself.
+ *
+ * The closure is stored as one bitset row of longs per strongly connected
+ * component: all vertices of a component reach the same vertices, so bit d
+ * of row c is set if component c reaches component d. Space complexity is
+ * &Theta;(k<sup>2</sup> / 64) longs, where k is the number of components, so
+ * for graphs with few cycles the index needs about n<sup>2</sup> / 8 bytes.
+ */
+public final class ReachabilityIndex {
+    /** Minimum number of rows per worker thread. */
+    private final static int COMPONENTS_PER_WORKER = 64;
+
+    /** component[v] is the strongly connected component of v. */
+    private final int[] component;
+
+    /** rows[c] is the set of components reachable from component c. */
+    private final long[][] rows;
+
+    private ReachabilityIndex(int[] component, long[][] rows) {
+        this.component = component;
+        this.rows = rows;
+    }
+
+    /**
+     * Builds the index with one thread per available processor.
+     *
+     * @param g
+     *            a graph
+     * @return a reachability index for g
+     */
+    public static ReachabilityIndex build(Graph g) {
+        return build(g, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds the index by condensing g into its strongly connected components
+     * and merging the rows in reverse topological order: the row of a
+     * component is its own bit or-ed with the rows of its successors. The
+     * components are grouped by their height in the condensation, and the
+     * components of one height are merged in parallel. Time complexity:
+     * O(n + m + k m' / 64), where k is the number of components and m' the
+     * number of edges between them.
+     *
+     * @param g
+     *            a graph
+     * @param threads
+     *            number of worker threads
+     * @return a reachability index for g
+     * @throws IllegalArgumentException
+     *             if threads < 1
+     */
+    public static ReachabilityIndex build(Graph g, int threads) {
+        Workers.checkThreads(threads);
+
+        GraphEvents.AlgorithmPhase condense = new GraphEvents.AlgorithmPhase("reachability", "condense", g);
+        condense.begin();
+        CsrGraph c = CsrGraph.of(g);
+        int n = c.numVertices();
+        int[] component = new int[n];
+        final int k = strongComponents(c, component);
+
+        // The edges between components, grouped by source component.
+        final int[] first = new int[k + 1];
+        for (int v = 0; v < n; v++) {
+            for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                if (component[c.targets[i]] != component[v])
+                    first[component[v] + 1]++;
+            }
+        }
+        for (int i = 0; i < k; i++)
+            first[i + 1] += first[i];
+        final int[] succ = new int[first[k]];
+        int[] pos = Arrays.copyOf(first, k);
+        for (int v = 0; v < n; v++) {
+            for (int i = c.offsets[v]; i < c.offsets[v + 1]; i++) {
+                int d = component[c.targets[i]];
+                if (d != component[v])
+                    succ[pos[component[v]]++] = d;
+            }
+        }
+
+        // Tarjan numbers the components in reverse topological order, so a
+        // successor always has a smaller number and its height is known.
+        int[] height = new int[k];
+        int maxHeight = 0;
+        for (int d = 0; d < k; d++) {
+            int h = 0;
+            for (int i = first[d]; i < first[d + 1]; i++)
+                h = Math.max(h, height[succ[i]] + 1);
+            height[d] = h;
+            maxHeight = Math.max(maxHeight, h);
+        }
+        int[] byHeight = new int[k];
+        int[] heightStart = new int[maxHeight + 2];
+        for (int d = 0; d < k; d++)
+            heightStart[height[d] + 1]++;
+        for (int h = 0; h <= maxHeight; h++)
+            heightStart[h + 1] += heightStart[h];
+        int[] next = Arrays.copyOf(heightStart, maxHeight + 1);
+        for (int d = 0; d < k; d++)
+            byHeight[next[height[d]]++] = d;
+
+        condense.commit();
+
+        GraphEvents.AlgorithmPhase merge = new GraphEvents.AlgorithmPhase("reachability", "merge", g);
+        merge.begin();
+        final int words = (k + 63) >>> 6;
+        final long[][] rows = new long[k][];
+        final int[] order = byHeight;
+        for (int h = 0; h <= maxHeight; h++) {
+            final int start = heightStart[h];
+            final int end = heightStart[h + 1];
+            final AtomicInteger nextComponent = new AtomicInteger(start);
+            int numWorkers = Math.max(1, Math.min(threads, (end - start) / COMPONENTS_PER_WORKER));
+            Runnable[] workers = new Runnable[numWorkers];
+            for (int i = 0; i < numWorkers; i++) {
+                workers[i] = new Runnable() {
+                    @Override
+                    public void run() {
+                        int j;
+                        while ((j = nextComponent.getAndIncrement()) < end) {
+                            int d = order[j];
+                            long[] row = new long[words];
+                            row[d >>> 6] |= 1L << d;
+                            for (int s = first[d]; s < first[d + 1]; s++)
+                                or(row, rows[succ[s]]);
+                            rows[d] = row;
+                        }
+                    }
+                };
+            }
+            Workers.runAll("reachability", workers);
+        }
+        merge.commit();
+        return new ReachabilityIndex(component, rows);
+    }
+
+    /**
+     * Builds the index with the bit-parallel Warshall algorithm: for every
+     * vertex k, each row that contains k is or-ed with row k, one 64-bit word
+     * at a time. The rows are divided among the threads, which wait for each
+     * other after every k. This suits small dense graphs, such as a
+     * MatrixGraph with many edges. Time complexity: O(n<sup>3</sup> / 64).
+     *
+     * @param g
+     *            a graph
+     * @param threads
+     *            number of worker threads
+     * @return a reachability index for g
+     * @throws IllegalArgumentException
+     *             if threads < 1
+     */
+    public static ReachabilityIndex warshall(Graph g, int threads) {
+        Workers.checkThreads(threads);
+
+        final int n = g.numVertices();
+        final int words = (n + 63) >>> 6;
+        final long[][] rows = new long[n][words];
+        int[] component = new int[n];
+        for (int v = 0; v < n; v++) {
+            component[v] = v;
+            long[] row = rows[v];
+            row[v >>> 6] |= 1L << v;
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                row[w >>> 6] |= 1L << w;
+            }
+        }
+
+        final int numWorkers = Math.max(1, Math.min(threads, n / COMPONENTS_PER_WORKER));
+        final CyclicBarrier barrier = new CyclicBarrier(numWorkers);
+        Runnable[] workers = new Runnable[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            final int from = (int) ((long) n * i / numWorkers);
+            final int to = (int) ((long) n * (i + 1) / numWorkers);
+            workers[i] = new Runnable() {
+                @Override
+                public void run() {
+                    for (int k = 0; k < n; k++) {
+                        // Row k does not change in round k, since it
+                        // already contains itself.
+                        long[] rowK = rows[k];
+                        int word = k >>> 6;
+                        long bit = 1L << k;
+                        for (int v = from; v < to; v++) {
+                            if ((rows[v][word] & bit) != 0)
+                                or(rows[v], rowK);
+                        }
+                        await(barrier);
+                    }
+                }
+            };
+        }
+        Workers.runAll("warshall", workers);
+        return new ReachabilityIndex(component, rows);
+    }
+
+    /**
+     * Returns true if there is a path from u to v. Time complexity: O(1).
+     *
+     * @param u
+     *            vertex
+     * @param v
+     *            vertex
+     * @return true if v is reachable from u
+     * @throws IllegalArgumentException
+     *             if u or v is out of range
+     */
+    public boolean reaches(int u, int v) {
+        checkVertexParameters(u, v);
+
+        int d = component[v];
+        return (rows[component[u]][d >>> 6] & (1L << d)) != 0;
+    }
+
+    /**
+     * Returns the number of vertices reachable from u, including u.
+     * Time complexity: O(n).
+     *
+     * @param u
+     *            vertex
+     * @return the number of vertices reachable from u
+     * @throws IllegalArgumentException
+     *             if u is out of range
+     */
+    public int countReachable(int u) {
+        checkVertexParameters(u, u);
+
+        long[] row = rows[component[u]];
+        int count = 0;
+        for (int v = 0; v < component.length; v++) {
+            int d = component[v];
+            if ((row[d >>> 6] & (1L << d)) != 0)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of strongly connected components, which is the
+     * number of rows in the index. Time complexity: O(1).
+     *
+     * @return the number of strongly connected components
+     */
+    public int numComponents() {
+        return rows.length;
+    }
+
+    /**
+     * Computes the strongly connected components of g with an iterative
+     * version of Tarjan's algorithm and returns their number. The components
+     * are numbered in reverse topological order: an edge between two
+     * components always goes to the one with the smaller number.
+     */
+    private static int strongComponents(CsrGraph g, int[] component) {
+        int n = g.numVertices();
+        int[] off = g.offsets;
+        int[] adj = g.targets;
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] current = new int[n];
+        int[] callStack = new int[n];
+        int[] sccStack = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+
+        int nextIndex = 0;
+        int numComponents = 0;
+        int sccTop = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0)
+                continue;
+            int depth = 0;
+            callStack[0] = root;
+            index[root] = low[root] = nextIndex++;
+            current[root] = off[root];
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int v = callStack[depth];
+                if (current[v] < off[v + 1]) {
+                    int w = adj[current[v]++];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = nextIndex++;
+                        current[w] = off[w];
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[++depth] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+
+                // All edges of v are done: v may be the root of a component.
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = sccStack[--sccTop];
+                        onStack[w] = false;
+                        component[w] = numComponents;
+                    } while (w != v);
+                    numComponents++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callStack[depth];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return numComponents;
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int i = target.length - 1; i >= 0; i--)
+            target[i] |= source[i];
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (BrokenBarrierException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= component.length || w < 0 || w >= component.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+}
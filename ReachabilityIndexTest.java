@@ -0,0 +1,94 @@
+package se.kth.graph;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the answers of both ways of building a ReachabilityIndex with
+ * breadth first search on random small DAGs and cyclic graphs.
+ */
+public class ReachabilityIndexTest {
+    @Test
+    public void matchesBreadthFirstSearchOnDags() {
+        Random random = new Random(32);
+        for (int round = 0; round < 100; round++) {
+            int n = 1 + random.nextInt(150);
+            Graph g = new HashGraph(n);
+            for (int i = 0; i < 2 * n; i++) {
+                int v = random.nextInt(n);
+                int w = random.nextInt(n);
+                if (v < w)
+                    g.add(v, w);
+            }
+            ReachabilityIndex index = ReachabilityIndex.build(g, 1 + round % 3);
+            assertEquals(n, index.numComponents());
+            assertMatches(g, index);
+            assertMatches(g, ReachabilityIndex.warshall(g, 1 + round % 3));
+        }
+    }
+
+    @Test
+    public void matchesBreadthFirstSearchOnCyclicGraphs() {
+        Random random = new Random(32);
+        for (int round = 0; round < 100; round++) {
+            int n = 1 + random.nextInt(150);
+            Graph g = round % 2 == 0 ? new HashGraph(n) : new MatrixGraph(n);
+            int edges = random.nextInt(3 * n);
+            for (int i = 0; i < edges; i++)
+                g.add(random.nextInt(n), random.nextInt(n));
+            assertMatches(g, ReachabilityIndex.build(g, 1 + round % 3));
+            assertMatches(g, ReachabilityIndex.warshall(g, 1 + round % 3));
+        }
+    }
+
+    @Test
+    public void cycleIsOneComponent() {
+        int n = 100;
+        Graph g = new HashGraph(n);
+        for (int v = 0; v < n; v++)
+            g.add(v, (v + 1) % n);
+        ReachabilityIndex index = ReachabilityIndex.build(g);
+        assertEquals(1, index.numComponents());
+        assertEquals(n, index.countReachable(42));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reachesRejectsVertexOutOfRange() {
+        ReachabilityIndex.build(new HashGraph(3)).reaches(0, 3);
+    }
+
+    private static void assertMatches(Graph g, ReachabilityIndex index) {
+        int n = g.numVertices();
+        for (int u = 0; u < n; u++) {
+            boolean[] reached = reachable(g, u);
+            int count = 0;
+            for (int v = 0; v < n; v++) {
+                assertEquals(reached[v], index.reaches(u, v));
+                if (reached[v])
+                    count++;
+            }
+            assertEquals(count, index.countReachable(u));
+        }
+    }
+
+    private static boolean[] reachable(Graph g, int s) {
+        boolean[] reached = new boolean[g.numVertices()];
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        reached[s] = true;
+        queue.add(s);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                if (!reached[w]) {
+                    reached[w] = true;
+                    queue.add(w);
+                }
+            }
+        }
+        return reached;
+    }
+}
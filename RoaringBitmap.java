@@ -0,0 +1,237 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed set of non-negative ints in the style of Roaring bitmaps
+ * (Chambi, Lemire, Kaser and Godin). The values are divided into chunks of
+ * 2<sup>16</sup> by their high 16 bits. A chunk with few values is a sorted
+ * array of their low 16 bits, two bytes per value; a chunk with many values
+ * is a bitmap of 2<sup>16</sup> bits, 8 KB whatever the number of values.
+ *
+ * Roaring switches at 4096 values, where the two take the same space. Here
+ * an array becomes a bitmap above ARRAY_MAX values, but a bitmap becomes an
+ * array only below ARRAY_MAX / 2, so that adding and removing around the
+ * limit does not convert the chunk every time.
+ */
+final class RoaringBitmap {
+    final static int ARRAY_MAX = 4096;
+    private final static int BITMAP_WORDS = (1 << 16) / 64;
+
+    /** arrays[h] holds the sorted low bits of chunk h, or null. */
+    private final char[][] arrays;
+
+    /** bitmaps[h] is the bitmap of chunk h, or null. */
+    private final long[][] bitmaps;
+
+    /** Number of values in each chunk. */
+    private final int[] cardinality;
+
+    private int size;
+
+    /**
+     * Constructs an empty set for the values 0 ... bound-1.
+     *
+     * @param bound
+     *            upper bound of the values
+     */
+    RoaringBitmap(int bound) {
+        int chunks = (int) (((long) bound + 0xffff) >>> 16);
+        arrays = new char[chunks][];
+        bitmaps = new long[chunks][];
+        cardinality = new int[chunks];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int x) {
+        int h = x >>> 16;
+        char low = (char) x;
+        long[] bitmap = bitmaps[h];
+        if (bitmap != null)
+            return (bitmap[low >>> 6] & (1L << low)) != 0;
+        char[] array = arrays[h];
+        return array != null && Arrays.binarySearch(array, 0, cardinality[h], low) >= 0;
+    }
+
+    /**
+     * Adds x and returns true if it was not in the set.
+     */
+    boolean add(int x) {
+        int h = x >>> 16;
+        char low = (char) x;
+        long[] bitmap = bitmaps[h];
+        if (bitmap != null) {
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0)
+                return false;
+            bitmap[low >>> 6] |= bit;
+        } else {
+            char[] array = arrays[h];
+            int c = cardinality[h];
+            int i = array == null ? -1 : Arrays.binarySearch(array, 0, c, low);
+            if (i >= 0)
+                return false;
+            i = -i - 1;
+            if (c == ARRAY_MAX) {
+                toBitmap(h);
+                bitmaps[h][low >>> 6] |= 1L << low;
+            } else {
+                if (array == null)
+                    array = arrays[h] = new char[4];
+                else if (c == array.length)
+                    array = arrays[h] = Arrays.copyOf(array, Math.min(ARRAY_MAX, 2 * c));
+                System.arraycopy(array, i, array, i + 1, c - i);
+                array[i] = low;
+            }
+        }
+        cardinality[h]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes x and returns true if it was in the set.
+     */
+    boolean remove(int x) {
+        int h = x >>> 16;
+        char low = (char) x;
+        long[] bitmap = bitmaps[h];
+        if (bitmap != null) {
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) == 0)
+                return false;
+            bitmap[low >>> 6] &= ~bit;
+            if (--cardinality[h] < ARRAY_MAX / 2)
+                toArray(h);
+        } else {
+            char[] array = arrays[h];
+            int c = cardinality[h];
+            int i = array == null ? -1 : Arrays.binarySearch(array, 0, c, low);
+            if (i < 0)
+                return false;
+            System.arraycopy(array, i + 1, array, i, c - i - 1);
+            c = --cardinality[h];
+            if (c == 0)
+                arrays[h] = null;
+            else if (4 * c <= array.length && array.length > 4)
+                arrays[h] = Arrays.copyOf(array, 2 * c);
+        }
+        size--;
+        return true;
+    }
+
+    private void toBitmap(int h) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        char[] array = arrays[h];
+        for (int i = 0; i < cardinality[h]; i++)
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        bitmaps[h] = bitmap;
+        arrays[h] = null;
+    }
+
+    private void toArray(int h) {
+        long[] bitmap = bitmaps[h];
+        char[] array = new char[Math.max(4, cardinality[h])];
+        int k = 0;
+        for (int word = 0; word < BITMAP_WORDS; word++) {
+            for (long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+                array[k++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+        }
+        arrays[h] = array;
+        bitmaps[h] = null;
+    }
+
+    /**
+     * Returns the approximate number of bytes used by this set.
+     */
+    long bytes() {
+        long bytes = 24 + 3 * (16 + 4L * arrays.length);
+        for (int h = 0; h < arrays.length; h++) {
+            if (arrays[h] != null)
+                bytes += 16 + 2L * arrays[h].length;
+            if (bitmaps[h] != null)
+                bytes += 16 + 8L * BITMAP_WORDS;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns an iterator over the values in increasing order. The set must
+     * not be changed during the iteration.
+     */
+    VertexIterator iterator() {
+        return new Iterator();
+    }
+
+    private final class Iterator implements VertexIterator {
+        /** Chunk of the next value. */
+        private int h = -1;
+
+        /** Position of the next value in an array chunk. */
+        private int pos;
+
+        /** Word of the next value in a bitmap chunk, and its unread bits. */
+        private int word;
+        private long bits;
+
+        /** Values left in the whole set. */
+        private int left = size;
+
+        Iterator() {
+            if (left > 0)
+                nextChunk();
+        }
+
+        /**
+         * Moves to the first value of the next non-empty chunk.
+         */
+        private void nextChunk() {
+            do {
+                h++;
+            } while (cardinality[h] == 0);
+            pos = 0;
+            word = -1;
+            bits = 0;
+            if (bitmaps[h] != null)
+                nextWord();
+        }
+
+        /**
+         * Moves to the next non-zero word of a bitmap chunk, if any.
+         */
+        private void nextWord() {
+            long[] bitmap = bitmaps[h];
+            while (bits == 0 && word < BITMAP_WORDS - 1)
+                bits = bitmap[++word];
+        }
+
+        @Override
+        public boolean hasNext() {
+            return left > 0;
+        }
+
+        @Override
+        public int next() {
+            if (left == 0)
+                throw new NoSuchElementException("No more elements in this iterator.");
+            left--;
+            int x;
+            if (bitmaps[h] == null) {
+                x = (h << 16) | arrays[h][pos++];
+                if (pos == cardinality[h] && left > 0)
+                    nextChunk();
+            } else {
+                x = (h << 16) | (word << 6) | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                nextWord();
+                if (bits == 0 && left > 0)
+                    nextChunk();
+            }
+            return x;
+        }
+    }
+}
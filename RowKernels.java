@@ -0,0 +1,93 @@
+package se.kth.graph;
+
+/**
+ * Loops over the rows of an adjacency matrix, where a cell holds the cost of
+ * an edge or a marker value for no edge. INSTANCE is chosen when the class
+ * is loaded: VectorRowKernels, which compares whole SIMD registers at a
+ * time, if the jdk.incubator.vector module is present (run with
+ * --add-modules jdk.incubator.vector) and the hardware has vectors of more
+ * than one int, and the scalar loops of this class otherwise. Setting the
+ * system property se.kth.graph.vector to false forces the scalar loops.
+ *
+ * All implementations give the same results.
+ */
+class RowKernels {
+    /** The kernels to use. */
+    static final RowKernels INSTANCE = select();
+
+    private static RowKernels select() {
+        if (!Boolean.parseBoolean(System.getProperty("se.kth.graph.vector", "true")))
+            return new RowKernels();
+        try {
+            RowKernels vector = (RowKernels) Class.forName("se.kth.graph.VectorRowKernels")
+                    .getDeclaredConstructor().newInstance();
+            if (vector.lanes() > 1)
+                return vector;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not compiled, or the module is not present; use the scalar loops.
+        }
+        return new RowKernels();
+    }
+
+    /** Returns the number of ints compared at a time. */
+    int lanes() {
+        return 1;
+    }
+
+    /** Returns the number of cells of row that are not empty. */
+    int count(int[] row, int empty) {
+        int d = 0;
+        for (int x : row)
+            if (x != empty)
+                d++;
+        return d;
+    }
+
+    /**
+     * Returns the index of the first cell at or after from that is not
+     * empty, or row.length if there is none.
+     */
+    int next(int[] row, int from, int empty) {
+        int i = from;
+        while (i < row.length && row[i] == empty)
+            i++;
+        return i;
+    }
+
+    /**
+     * Writes the indices of the cells of row that are not empty into out, in
+     * ascending order, and returns their number. out must have room for all
+     * of them.
+     */
+    int indices(int[] row, int empty, int[] out) {
+        int k = 0;
+        for (int i = 0; i < row.length; i++)
+            if (row[i] != empty)
+                out[k++] = i;
+        return k;
+    }
+
+    /**
+     * Relaxes the edges of the row of u, whose distance is du: for every cell
+     * j that is not empty, dist[j] becomes du plus the length of the edge if
+     * that is smaller, and then parent[j] becomes u. A cell of noCost has
+     * length 1. dist uses Long.MAX_VALUE for vertices not reached yet.
+     */
+    void relax(int[] row, int empty, int noCost, long du, int u, long[] dist, int[] parent) {
+        relax(row, 0, empty, noCost, du, u, dist, parent);
+    }
+
+    /** Relaxes the cells of row from index from on. */
+    static void relax(int[] row, int from, int empty, int noCost, long du, int u, long[] dist, int[] parent) {
+        for (int j = from; j < row.length; j++) {
+            int c = row[j];
+            if (c == empty)
+                continue;
+            long dj = du + (c == noCost ? 1 : c);
+            if (dj < dist[j]) {
+                dist[j] = dj;
+                parent[j] = u;
+            }
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package se.kth.graph;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import se.kth.graph.GraphFactory.Representation;
+
+/**
+ * Measures how the time of a component search grows with the size of the
+ * graph, for the Task 3 table of the README and beyond. For every size n,
+ * density d and representation, a random graph with round(d n) undirected
+ * edges is generated as in RandomGraphGenerator, outside the timed region.
+ * The search is then run a number of times to warm up, and a number of
+ * times to measure; the median and 95th percentile of the times and the
+ * median number of bytes allocated per run are reported.
+ *
+ * For every representation and density the exponent k of time ~ n^k is
+ * fitted to the medians by least squares on a log-log scale, so that the
+ * O(n + m) and O(n<sup>2</sup>) claims can be checked on new hardware.
+ * Graphs whose estimated size, see GraphFactory, exceeds half the maximum
+ * heap are skipped.
+ *
+ * Usage, all arguments optional:
+ *
+ * <pre>
+ * java se.kth.graph.ScalingExperiment --sizes=100,400,1600,6400 --densities=1
+ *         --representations=MATRIX,HASH --warmup=10 --repetitions=100
+ *         --seed=0 --format=csv
+ * </pre>
+ */
+public final class ScalingExperiment {
+    private ScalingExperiment() {
+    }
+
+    /**
+     * The result of one size, density and representation.
+     */
+    public static final class Measurement {
+        private final Representation representation;
+        private final int n;
+        private final int m;
+        private final double density;
+        private final long medianNanos;
+        private final long p95Nanos;
+        private final long allocatedBytes;
+        private final int components;
+
+        Measurement(Representation representation, int n, int m, double density, long medianNanos, long p95Nanos,
+                long allocatedBytes, int components) {
+            this.representation = representation;
+            this.n = n;
+            this.m = m;
+            this.density = density;
+            this.medianNanos = medianNanos;
+            this.p95Nanos = p95Nanos;
+            this.allocatedBytes = allocatedBytes;
+            this.components = components;
+        }
+
+        /** Returns the representation. */
+        public Representation representation() {
+            return representation;
+        }
+
+        /** Returns the number of vertices. */
+        public int n() {
+            return n;
+        }
+
+        /** Returns the number of generated undirected edges. */
+        public int m() {
+            return m;
+        }
+
+        /** Returns the density, m / n. */
+        public double density() {
+            return density;
+        }
+
+        /** Returns the median time of a run in nanoseconds. */
+        public long medianNanos() {
+            return medianNanos;
+        }
+
+        /** Returns the 95th percentile of the times in nanoseconds. */
+        public long p95Nanos() {
+            return p95Nanos;
+        }
+
+        /**
+         * Returns the median number of bytes allocated by a run, or -1 if the
+         * JVM does not measure allocation.
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /** Returns the number of components found. */
+        public int components() {
+            return components;
+        }
+
+        @Override
+        public String toString() {
+            return representation + "{n=" + n + ", m=" + m + ", median=" + medianNanos + ", p95=" + p95Nanos
+                    + ", allocated=" + allocatedBytes + "}";
+        }
+    }
+
+    /**
+     * A fitted exponent: the median time grows as n<sup>exponent</sup> for
+     * one representation and density.
+     */
+    public static final class Fit {
+        private final Representation representation;
+        private final double density;
+        private final double exponent;
+
+        Fit(Representation representation, double density, double exponent) {
+            this.representation = representation;
+            this.density = density;
+            this.exponent = exponent;
+        }
+
+        /** Returns the representation. */
+        public Representation representation() {
+            return representation;
+        }
+
+        /** Returns the density. */
+        public double density() {
+            return density;
+        }
+
+        /** Returns the fitted exponent. */
+        public double exponent() {
+            return exponent;
+        }
+
+        @Override
+        public String toString() {
+            return representation + "{density=" + density + ", exponent=" + exponent + "}";
+        }
+    }
+
+    /**
+     * Runs the experiment for every combination of size, density and
+     * representation, in that nesting order, largest loop first.
+     * Combinations that do not fit in the heap are left out.
+     *
+     * @param sizes
+     *            numbers of vertices
+     * @param densities
+     *            numbers of undirected edges per vertex
+     * @param representations
+     *            the representations to measure
+     * @param warmup
+     *            number of runs before the measured ones
+     * @param repetitions
+     *            number of measured runs
+     * @param seed
+     *            random seed of the graphs; every representation of a size
+     *            and density gets the same graph
+     * @return the measurements
+     * @throws IllegalArgumentException
+     *             if a size or density is negative, warmup < 0 or
+     *             repetitions < 1
+     */
+    public static List<Measurement> run(int[] sizes, double[] densities, Representation[] representations,
+            int warmup, int repetitions, long seed) {
+        if (warmup < 0 || repetitions < 1)
+            throw new IllegalArgumentException("Illegal runs: warmup = " + warmup + ", repetitions = " + repetitions
+                    + ".");
+        List<Measurement> result = new ArrayList<Measurement>();
+        long maxBytes = Runtime.getRuntime().maxMemory() / 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int n : sizes) {
+            for (double density : densities) {
+                long m = Math.round(density * n);
+                if (n < 0 || density < 0 || m > Integer.MAX_VALUE / 2)
+                    throw new IllegalArgumentException("Illegal size: n = " + n + ", density = " + density + ".");
+                EdgeList edges = null;
+                for (Representation r : representations) {
+                    if (r.estimateBytes(n, 2 * m, false) > maxBytes)
+                        continue;
+                    if (edges == null)
+                        edges = RandomGraphs.uniformEdges(n, (int) m, seed, threads);
+                    result.add(measure(r, edges, density, warmup, repetitions));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the graph of r and times the component search on it.
+     */
+    private static Measurement measure(Representation r, EdgeList edges, double density, int warmup,
+            int repetitions) {
+        Graph g;
+        if (r.isMutable()) {
+            g = r.create(edges.numVertices());
+            edges.addBiTo(g);
+        } else {
+            g = r.copy(edges.toCsrGraph(true));
+        }
+        // Collect the garbage of building g now rather than during the runs.
+        System.gc();
+
+        int components = 0;
+        for (int i = 0; i < warmup; i++)
+            components = GraphAlgorithms.countComponents(GraphAlgorithms.componentIds(g));
+
+        long[] times = new long[repetitions];
+        long[] allocated = new long[repetitions];
+        for (int i = 0; i < repetitions; i++) {
+            long a0 = GraphMetrics.allocatedBytes();
+            long t0 = System.nanoTime();
+            components = GraphAlgorithms.countComponents(GraphAlgorithms.componentIds(g));
+            long t1 = System.nanoTime();
+            long a1 = GraphMetrics.allocatedBytes();
+            times[i] = t1 - t0;
+            allocated[i] = a0 < 0 ? -1 : a1 - a0;
+        }
+        Arrays.sort(times);
+        Arrays.sort(allocated);
+        return new Measurement(r, edges.numVertices(), edges.size(), density, times[repetitions / 2],
+                times[p95Index(repetitions)], allocated[repetitions / 2], components);
+    }
+
+    /**
+     * Returns the index of the 95th percentile in a sorted array of
+     * repetitions values: the smallest value that is at least as large as
+     * 95 percent of them.
+     */
+    static int p95Index(int repetitions) {
+        return (int) Math.ceil(0.95 * repetitions) - 1;
+    }
+
+    /**
+     * Fits the exponent of time ~ n<sup>k</sup> for every representation and
+     * density with at least two sizes above 0.
+     *
+     * @param measurements
+     *            the result of run
+     * @return one fit per representation and density
+     */
+    public static List<Fit> fit(List<Measurement> measurements) {
+        List<Fit> fits = new ArrayList<Fit>();
+        for (Representation r : Representation.values()) {
+            List<Double> densities = new ArrayList<Double>();
+            for (Measurement x : measurements) {
+                if (x.representation == r && !densities.contains(x.density))
+                    densities.add(x.density);
+            }
+            for (double density : densities) {
+                // Least squares slope of log(time) against log(n).
+                int k = 0;
+                double sx = 0, sy = 0, sxx = 0, sxy = 0;
+                for (Measurement x : measurements) {
+                    if (x.representation != r || x.density != density || x.n == 0 || x.medianNanos <= 0)
+                        continue;
+                    double lx = Math.log(x.n);
+                    double ly = Math.log(x.medianNanos);
+                    k++;
+                    sx += lx;
+                    sy += ly;
+                    sxx += lx * lx;
+                    sxy += lx * ly;
+                }
+                double denominator = k * sxx - sx * sx;
+                if (k >= 2 && denominator > 0)
+                    fits.add(new Fit(r, density, (k * sxy - sx * sy) / denominator));
+            }
+        }
+        return fits;
+    }
+
+    /**
+     * Writes the measurements as CSV, one line per measurement after a
+     * header line, followed by a blank line and the fits.
+     *
+     * @param measurements
+     *            the measurements
+     * @param fits
+     *            the fits
+     * @param out
+     *            where to write
+     * @throws IOException
+     *             if out throws
+     */
+    public static void writeCsv(List<Measurement> measurements, List<Fit> fits, Appendable out) throws IOException {
+        out.append("representation,n,m,density,median_ns,p95_ns,allocated_bytes,components\n");
+        for (Measurement x : measurements) {
+            out.append(x.representation.name()).append(',').append(String.valueOf(x.n)).append(',')
+                    .append(String.valueOf(x.m)).append(',').append(format(x.density)).append(',')
+                    .append(String.valueOf(x.medianNanos)).append(',').append(String.valueOf(x.p95Nanos))
+                    .append(',').append(String.valueOf(x.allocatedBytes)).append(',')
+                    .append(String.valueOf(x.components)).append('\n');
+        }
+        out.append("\nrepresentation,density,exponent\n");
+        for (Fit f : fits) {
+            out.append(f.representation.name()).append(',').append(format(f.density)).append(',')
+                    .append(format(f.exponent)).append('\n');
+        }
+    }
+
+    /**
+     * Writes the measurements and fits as one JSON object.
+     *
+     * @param measurements
+     *            the measurements
+     * @param fits
+     *            the fits
+     * @param out
+     *            where to write
+     * @throws IOException
+     *             if out throws
+     */
+    public static void writeJson(List<Measurement> measurements, List<Fit> fits, Appendable out) throws IOException {
+        out.append("{\n  \"measurements\": [");
+        for (int i = 0; i < measurements.size(); i++) {
+            Measurement x = measurements.get(i);
+            out.append(i == 0 ? "\n" : ",\n");
+            out.append("    {\"representation\": \"").append(x.representation.name())
+                    .append("\", \"n\": ").append(String.valueOf(x.n))
+                    .append(", \"m\": ").append(String.valueOf(x.m))
+                    .append(", \"density\": ").append(format(x.density))
+                    .append(", \"medianNanos\": ").append(String.valueOf(x.medianNanos))
+                    .append(", \"p95Nanos\": ").append(String.valueOf(x.p95Nanos))
+                    .append(", \"allocatedBytes\": ").append(String.valueOf(x.allocatedBytes))
+                    .append(", \"components\": ").append(String.valueOf(x.components)).append('}');
+        }
+        out.append("\n  ],\n  \"fits\": [");
+        for (int i = 0; i < fits.size(); i++) {
+            Fit f = fits.get(i);
+            out.append(i == 0 ? "\n" : ",\n");
+            out.append("    {\"representation\": \"").append(f.representation.name())
+                    .append("\", \"density\": ").append(format(f.density))
+                    .append(", \"exponent\": ").append(format(f.exponent)).append('}');
+        }
+        out.append("\n  ]\n}\n");
+    }
+
+    private static String format(double x) {
+        return String.format(Locale.ROOT, "%.3f", x);
+    }
+
+    /**
+     * Runs the experiment and prints the result to stdout. An illegal
+     * argument, unknown option or unknown format is reported with the usage
+     * on stderr, and the JVM exits with status 2.
+     *
+     * @param args
+     *            options of the form --name=value, see the class comment
+     * @throws IOException
+     *             if writing to stdout fails
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 100, 400, 1600, 6400 };
+        double[] densities = { 1 };
+        Representation[] representations = { Representation.MATRIX, Representation.HASH };
+        int warmup = 10;
+        int repetitions = 100;
+        long seed = 0;
+        boolean json = false;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0)
+                usage("Illegal argument: " + arg + ".");
+            String name = arg.substring(2, eq);
+            String[] values = arg.substring(eq + 1).split(",");
+            try {
+                switch (name) {
+                    case "sizes":
+                        sizes = new int[values.length];
+                        for (int i = 0; i < values.length; i++)
+                            sizes[i] = (int) Double.parseDouble(values[i]); // allows 1e7
+                        break;
+                    case "densities":
+                        densities = new double[values.length];
+                        for (int i = 0; i < values.length; i++)
+                            densities[i] = Double.parseDouble(values[i]);
+                        break;
+                    case "representations":
+                        representations = new Representation[values.length];
+                        for (int i = 0; i < values.length; i++)
+                            representations[i] = Representation.valueOf(values[i].toUpperCase(Locale.ROOT));
+                        break;
+                    case "warmup":
+                        warmup = Integer.parseInt(values[0]);
+                        break;
+                    case "repetitions":
+                        repetitions = Integer.parseInt(values[0]);
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(values[0]);
+                        break;
+                    case "format":
+                        if (!values[0].equals("csv") && !values[0].equals("json"))
+                            usage("Unknown format: " + values[0] + ".");
+                        json = values[0].equals("json");
+                        break;
+                    default:
+                        usage("Unknown option: " + name + ".");
+                }
+            } catch (IllegalArgumentException e) {
+                // Also a NumberFormatException or an unknown representation.
+                usage("Illegal argument: " + arg + ".");
+            }
+        }
+
+        List<Measurement> measurements = null;
+        try {
+            measurements = run(sizes, densities, representations, warmup, repetitions, seed);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+        }
+        List<Fit> fits = fit(measurements);
+        PrintWriter out = new PrintWriter(System.out);
+        if (json)
+            writeJson(measurements, fits, out);
+        else
+            writeCsv(measurements, fits, out);
+        out.flush();
+    }
+
+    /**
+     * Prints problem and the options to stderr and exits with status 2.
+     */
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: java se.kth.graph.ScalingExperiment [--sizes=n,...] [--densities=d,...]");
+        System.err.println("        [--representations=r,...] [--warmup=k] [--repetitions=k] [--seed=s]");
+        System.err.println("        [--format=csv|json]");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,177 @@
+package se.kth.graph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import se.kth.graph.GraphFactory.Representation;
+
+/**
+ * Checks the exponents fitted by ScalingExperiment on synthetic medians,
+ * the index of the 95th percentile, and the shape of the CSV and JSON
+ * output. The measurements themselves depend on the machine and are not
+ * checked.
+ */
+public class ScalingExperimentTest {
+    private static final int[] SIZES = { 100, 400, 1600, 6400 };
+
+    @Test
+    public void fitFindsTheExponentOfTheMedians() {
+        List<ScalingExperiment.Measurement> measurements = new ArrayList<ScalingExperiment.Measurement>();
+        for (int n : SIZES) {
+            long square = (long) n * n;
+            measurements.add(measurement(Representation.MATRIX, n, 1, 3 * square));
+            measurements.add(measurement(Representation.HASH, n, 1, 50L * n));
+            measurements.add(measurement(Representation.HASH, n, 4, 20 * square * n));
+        }
+        List<ScalingExperiment.Fit> fits = ScalingExperiment.fit(measurements);
+        assertEquals(3, fits.size());
+        assertFit(fits.get(0), Representation.MATRIX, 1, 2);
+        assertFit(fits.get(1), Representation.HASH, 1, 1);
+        assertFit(fits.get(2), Representation.HASH, 4, 3);
+    }
+
+    @Test
+    public void fitSkipsEmptyGraphsAndSingleSizes() {
+        List<ScalingExperiment.Measurement> measurements = new ArrayList<ScalingExperiment.Measurement>();
+        measurements.add(measurement(Representation.MATRIX, 0, 1, 10));
+        measurements.add(measurement(Representation.MATRIX, 100, 1, 10000));
+        measurements.add(measurement(Representation.MATRIX, 200, 1, 40000));
+        measurements.add(measurement(Representation.HASH, 100, 1, 500));
+        measurements.add(measurement(Representation.HASH, 200, 1, 0));
+        List<ScalingExperiment.Fit> fits = ScalingExperiment.fit(measurements);
+        assertEquals(1, fits.size());
+        assertFit(fits.get(0), Representation.MATRIX, 1, 2);
+    }
+
+    @Test
+    public void p95IndexIsTheRankOf95Percent() {
+        assertEquals(0, ScalingExperiment.p95Index(1));
+        assertEquals(1, ScalingExperiment.p95Index(2));
+        assertEquals(18, ScalingExperiment.p95Index(20));
+        assertEquals(19, ScalingExperiment.p95Index(21));
+        assertEquals(94, ScalingExperiment.p95Index(100));
+        assertEquals(95, ScalingExperiment.p95Index(101));
+        for (int repetitions = 1; repetitions <= 1000; repetitions++) {
+            int i = ScalingExperiment.p95Index(repetitions);
+            // At least 95 percent of the values are at most the one at i,
+            // and fewer are at most the one before it.
+            assertTrue(100L * (i + 1) >= 95L * repetitions);
+            assertTrue(100L * i < 95L * repetitions);
+        }
+    }
+
+    @Test
+    public void csvHasOneLinePerMeasurementAndFit() throws IOException {
+        List<ScalingExperiment.Measurement> measurements = measurements();
+        List<ScalingExperiment.Fit> fits = ScalingExperiment.fit(measurements);
+        StringBuilder sb = new StringBuilder();
+        ScalingExperiment.writeCsv(measurements, fits, sb);
+        String[] lines = sb.toString().split("\n", -1);
+
+        assertEquals(1 + SIZES.length + 1 + 1 + fits.size() + 1, lines.length);
+        assertEquals("representation,n,m,density,median_ns,p95_ns,allocated_bytes,components", lines[0]);
+        assertEquals("MATRIX,100,150,1.500,30000,45000,-1,7", lines[1]);
+        for (int i = 1; i <= SIZES.length; i++)
+            assertEquals(8, lines[i].split(",", -1).length);
+        assertEquals("", lines[SIZES.length + 1]);
+        assertEquals("representation,density,exponent", lines[SIZES.length + 2]);
+        assertEquals("MATRIX,1.500,2.000", lines[SIZES.length + 3]);
+        assertEquals("", lines[lines.length - 1]);
+    }
+
+    @Test
+    public void jsonHasTheMeasurementsAndFits() throws IOException {
+        List<ScalingExperiment.Measurement> measurements = measurements();
+        List<ScalingExperiment.Fit> fits = ScalingExperiment.fit(measurements);
+        StringBuilder sb = new StringBuilder();
+        ScalingExperiment.writeJson(measurements, fits, sb);
+        String json = sb.toString();
+
+        assertTrue(json.startsWith("{\n  \"measurements\": [\n"));
+        assertTrue(json.endsWith("\n  ]\n}\n"));
+        assertEquals(SIZES.length + fits.size(), count(json, "{\"representation\": "));
+        assertTrue(json.contains("    {\"representation\": \"MATRIX\", \"n\": 100, \"m\": 150, \"density\": 1.500, "
+                + "\"medianNanos\": 30000, \"p95Nanos\": 45000, \"allocatedBytes\": -1, \"components\": 7},\n"));
+        assertTrue(json.contains("\n  ],\n  \"fits\": [\n    {\"representation\": \"MATRIX\", \"density\": 1.500, "
+                + "\"exponent\": 2.000}\n  ]"));
+        assertEquals(count(json, "{"), count(json, "}"));
+        assertEquals(count(json, "["), count(json, "]"));
+    }
+
+    @Test
+    public void emptyResultsHaveOnlyTheHeaders() throws IOException {
+        List<ScalingExperiment.Measurement> none = new ArrayList<ScalingExperiment.Measurement>();
+        List<ScalingExperiment.Fit> noFits = new ArrayList<ScalingExperiment.Fit>();
+        StringBuilder csv = new StringBuilder();
+        ScalingExperiment.writeCsv(none, noFits, csv);
+        assertEquals("representation,n,m,density,median_ns,p95_ns,allocated_bytes,components\n"
+                + "\nrepresentation,density,exponent\n", csv.toString());
+        StringBuilder json = new StringBuilder();
+        ScalingExperiment.writeJson(none, noFits, json);
+        assertEquals("{\n  \"measurements\": [\n  ],\n  \"fits\": [\n  ]\n}\n", json.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void runThrowsWithoutRepetitions() {
+        ScalingExperiment.run(new int[] { 10 }, new double[] { 1 }, new Representation[] { Representation.HASH }, 0,
+                0, 0);
+    }
+
+    @Test
+    public void runMeasuresEveryCombination() {
+        Representation[] representations = { Representation.MATRIX, Representation.HASH };
+        List<ScalingExperiment.Measurement> measurements = ScalingExperiment.run(new int[] { 50, 100 },
+                new double[] { 0.5, 2 }, representations, 1, 3, 46);
+        assertEquals(8, measurements.size());
+        int i = 0;
+        for (int n : new int[] { 50, 100 }) {
+            for (double density : new double[] { 0.5, 2 }) {
+                int components = measurements.get(i).components();
+                for (Representation r : representations) {
+                    ScalingExperiment.Measurement x = measurements.get(i++);
+                    assertEquals(r, x.representation());
+                    assertEquals(n, x.n());
+                    assertEquals(Math.round(density * n), x.m());
+                    assertTrue(x.medianNanos() <= x.p95Nanos());
+                    // Every representation of a size and density gets the
+                    // same graph.
+                    assertEquals(components, x.components());
+                }
+            }
+        }
+    }
+
+    /**
+     * MATRIX measurements with medians 3 n<sup>2</sup> at density 1.5.
+     */
+    private static List<ScalingExperiment.Measurement> measurements() {
+        List<ScalingExperiment.Measurement> measurements = new ArrayList<ScalingExperiment.Measurement>();
+        for (int n : SIZES) {
+            long median = 3L * n * n;
+            measurements.add(new ScalingExperiment.Measurement(Representation.MATRIX, n, 3 * n / 2, 1.5, median,
+                    median * 3 / 2, -1, 7));
+        }
+        return measurements;
+    }
+
+    private static ScalingExperiment.Measurement measurement(Representation r, int n, double density, long median) {
+        return new ScalingExperiment.Measurement(r, n, (int) Math.round(density * n), density, median, median, 0, 1);
+    }
+
+    private static void assertFit(ScalingExperiment.Fit fit, Representation r, double density, double exponent) {
+        assertEquals(r, fit.representation());
+        assertEquals(density, fit.density(), 0);
+        assertEquals(exponent, fit.exponent(), 1e-9);
+    }
+
+    private static int count(String s, String part) {
+        int k = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1))
+            k++;
+        return k;
+    }
+}
@@ -0,0 +1,264 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+
+/**
+ * The shortest paths from one source vertex to every other vertex. Edge
+ * costs are the lengths of the edges and an edge with NO_COST has length 1,
+ * so in a graph without costs the tree is a breadth first search tree.
+ */
+public final class ShortestPathTree {
+    /** Distance of a vertex that cannot be reached from the source. */
+    public final static long UNREACHABLE = -1;
+
+    /** Parent of the source and of the unreachable vertices. */
+    public final static int NO_PARENT = -1;
+
+    private final int source;
+    private final long[] dist;
+    private final int[] parent;
+
+    private ShortestPathTree(int source, long[] dist, int[] parent) {
+        this.source = source;
+        this.dist = dist;
+        this.parent = parent;
+    }
+
+    /**
+     * Computes the shortest paths from source with breadth first search if no
+     * edge of g has a cost, and with Dijkstra's algorithm otherwise. Time
+     * complexity: O(n + m) or O(n + m log m). A MatrixGraph is searched in
+     * place, a row at a time, in O(n<sup>2</sup>).
+     *
+     * @param g
+     *            a graph
+     * @param source
+     *            start vertex
+     * @return the shortest path tree of source
+     * @throws IllegalArgumentException
+     *             if source is out of range
+     */
+    public static ShortestPathTree compute(Graph g, int source) {
+        int n = g.numVertices();
+        if (source < 0 || source >= n)
+            throw new IllegalArgumentException("Out of range: v = " + source + ".");
+
+        long[] dist = new long[n];
+        int[] parent = new int[n];
+        Arrays.fill(parent, NO_PARENT);
+        if (g instanceof MatrixGraph) {
+            dense((MatrixGraph) g, source, dist, parent);
+            return new ShortestPathTree(source, dist, parent);
+        }
+
+        CsrGraph c = CsrGraph.of(g);
+        Arrays.fill(dist, UNREACHABLE);
+        dist[source] = 0;
+        if (c.costs == null)
+            bfs(c, source, dist, parent);
+        else
+            dijkstra(c, source, dist, parent);
+        return new ShortestPathTree(source, dist, parent);
+    }
+
+    private static void bfs(CsrGraph g, int s, long[] dist, int[] parent) {
+        int[] off = g.offsets;
+        int[] adj = g.targets;
+        int[] queue = new int[g.numVertices()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = s;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int i = off[v], end = off[v + 1]; i < end; i++) {
+                int w = adj[i];
+                if (dist[w] == UNREACHABLE) {
+                    dist[w] = dist[v] + 1;
+                    parent[w] = v;
+                    queue[tail++] = w;
+                }
+            }
+        }
+    }
+
+    private static void dijkstra(CsrGraph g, int s, long[] dist, int[] parent) {
+        int[] off = g.offsets;
+        int[] adj = g.targets;
+        int[] cost = g.costs;
+        boolean[] settled = new boolean[g.numVertices()];
+        MinHeap heap = new MinHeap(g.numVertices());
+        heap.push(0, s);
+        while (!heap.isEmpty()) {
+            int v = heap.minVertex();
+            long dv = heap.minKey();
+            heap.pop();
+            if (settled[v])
+                continue; // stale entry
+            settled[v] = true;
+            for (int i = off[v], end = off[v + 1]; i < end; i++) {
+                int w = adj[i];
+                long dw = dv + length(cost[i]);
+                if (dist[w] == UNREACHABLE || dw < dist[w]) {
+                    dist[w] = dw;
+                    parent[w] = v;
+                    heap.push(dw, w);
+                }
+            }
+        }
+    }
+
+    /**
+     * Dijkstra's algorithm on the rows of a MatrixGraph, without a heap: the
+     * closest vertex is found by a scan and its whole row is relaxed at once
+     * by RowKernels. Time complexity: O(n<sup>2</sup>), which is what
+     * copying the matrix to a CsrGraph would cost anyway.
+     */
+    private static void dense(MatrixGraph g, int s, long[] dist, int[] parent) {
+        int n = dist.length;
+        boolean[] settled = new boolean[n];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        dist[s] = 0;
+        for (;;) {
+            int u = -1;
+            long du = Long.MAX_VALUE;
+            for (int v = 0; v < n; v++) {
+                if (!settled[v] && dist[v] < du) {
+                    u = v;
+                    du = dist[v];
+                }
+            }
+            if (u < 0)
+                break;
+            settled[u] = true;
+            g.relax(u, du, dist, parent);
+        }
+        for (int v = 0; v < n; v++)
+            if (dist[v] == Long.MAX_VALUE)
+                dist[v] = UNREACHABLE;
+    }
+
+    private static long length(int c) {
+        return c == Graph.NO_COST ? 1 : c;
+    }
+
+    /**
+     * Returns true if this tree is still a shortest path tree of g: every
+     * tree edge is still in g with the same length, and no edge of g gives a
+     * shorter path to any vertex or reaches an unreachable vertex. Time
+     * complexity: O(n + m) for a graph with O(1) neighbor iteration.
+     *
+     * @param g
+     *            a graph
+     * @return true if this tree is still valid for g
+     */
+    public boolean isValidFor(Graph g) {
+        int n = g.numVertices();
+        if (n != dist.length)
+            return false;
+        for (int v = 0; v < n; v++) {
+            int p = parent[v];
+            if (p != NO_PARENT && (!g.hasEdge(p, v) || dist[p] + length(g.cost(p, v)) != dist[v]))
+                return false;
+            if (dist[v] == UNREACHABLE)
+                continue;
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                long dw = dist[v] + length(g.cost(v, w));
+                if (dist[w] == UNREACHABLE || dw < dist[w])
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the source vertex.
+     *
+     * @return the source vertex
+     */
+    public int source() {
+        return source;
+    }
+
+    /**
+     * Returns the length of a shortest path from the source to v, or
+     * UNREACHABLE.
+     *
+     * @param v
+     *            vertex
+     * @return the distance to v, or UNREACHABLE
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public long distance(int v) {
+        checkVertexParameter(v);
+        return dist[v];
+    }
+
+    /**
+     * Returns the vertex before v on a shortest path from the source, or
+     * NO_PARENT if v is the source or unreachable.
+     *
+     * @param v
+     *            vertex
+     * @return the parent of v, or NO_PARENT
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public int parent(int v) {
+        checkVertexParameter(v);
+        return parent[v];
+    }
+
+    /**
+     * Returns true if there is a path from the source to v.
+     *
+     * @param v
+     *            vertex
+     * @return true if v is reachable
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public boolean isReachable(int v) {
+        checkVertexParameter(v);
+        return dist[v] != UNREACHABLE;
+    }
+
+    /**
+     * Returns the vertices of a shortest path from the source to v, starting
+     * with the source and ending with v, or an empty array if v cannot be
+     * reached. Time complexity: O(length of the path).
+     *
+     * @param v
+     *            vertex
+     * @return a shortest path to v
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public int[] pathTo(int v) {
+        checkVertexParameter(v);
+        if (dist[v] == UNREACHABLE)
+            return new int[0];
+        int length = 1;
+        for (int w = v; parent[w] != NO_PARENT; w = parent[w])
+            length++;
+        int[] path = new int[length];
+        for (int w = v, i = length - 1; i >= 0; w = parent[w], i--)
+            path[i] = w;
+        return path;
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return the number of vertices
+     */
+    public int numVertices() {
+        return dist.length;
+    }
+
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= dist.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+}
@@ -0,0 +1,152 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares ShortestPathTree with Bellman-Ford distances on small random
+ * graphs, with and without edge costs, and checks that the paths are made
+ * of edges of the graph and have the reported length.
+ */
+public class ShortestPathTreeTest {
+    @Test
+    public void unweightedTreeMatchesBellmanFord() {
+        assertMatchesOnRandomGraphs(false);
+    }
+
+    @Test
+    public void weightedTreeMatchesBellmanFord() {
+        assertMatchesOnRandomGraphs(true);
+    }
+
+    @Test
+    public void unreachableVerticesHaveNoPath() {
+        Graph g = new HashGraph(4);
+        g.add(0, 1, 3);
+        ShortestPathTree t = ShortestPathTree.compute(g, 0);
+        assertEquals(0, t.source());
+        assertEquals(3, t.distance(1));
+        assertEquals(ShortestPathTree.UNREACHABLE, t.distance(2));
+        assertFalse(t.isReachable(3));
+        assertEquals(ShortestPathTree.NO_PARENT, t.parent(2));
+        assertEquals(0, t.pathTo(2).length);
+        assertArrayEquals(new int[] { 0 }, t.pathTo(0));
+    }
+
+    @Test
+    public void treeIsInvalidAfterShortcut() {
+        Graph g = new HashGraph(3);
+        g.add(0, 1, 5);
+        g.add(1, 2, 5);
+        ShortestPathTree t = ShortestPathTree.compute(g, 0);
+        assertTrue(t.isValidFor(g));
+        g.add(2, 0, 1);
+        assertTrue(t.isValidFor(g));
+        g.add(0, 2, 1);
+        assertFalse(t.isValidFor(g));
+    }
+
+    @Test
+    public void denseMatrixTreeMatchesCsrTree() {
+        // MatrixGraph takes the dense path, which relaxes whole rows with
+        // RowKernels; sizes that are not a multiple of the vector length
+        // also cover the scalar tail.
+        Random random = new Random(49);
+        for (int round = 0; round < 100; round++) {
+            int n = 1 + random.nextInt(150);
+            Graph g = new MatrixGraph(n);
+            int edges = random.nextInt(4 * n);
+            for (int i = 0; i < edges; i++) {
+                int v = random.nextInt(n);
+                int w = random.nextInt(n);
+                if (random.nextInt(4) != 0)
+                    g.add(v, w, random.nextInt(10));
+                else
+                    g.add(v, w);
+            }
+            int s = random.nextInt(n);
+            ShortestPathTree csr = ShortestPathTree.compute(CsrGraph.copyOf(g), s);
+            long[] expected = new long[n];
+            for (int v = 0; v < n; v++)
+                expected[v] = csr.distance(v);
+            assertTree(g, ShortestPathTree.compute(g, s), expected);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sourceMustBeInRange() {
+        ShortestPathTree.compute(new HashGraph(2), 2);
+    }
+
+    private static void assertMatchesOnRandomGraphs(boolean weighted) {
+        Random random = new Random(weighted ? 33 : 34);
+        for (int round = 0; round < 200; round++) {
+            int n = 1 + random.nextInt(40);
+            Graph g = new HashGraph(n);
+            int edges = random.nextInt(3 * n);
+            for (int i = 0; i < edges; i++) {
+                int v = random.nextInt(n);
+                int w = random.nextInt(n);
+                if (weighted && random.nextInt(4) != 0)
+                    g.add(v, w, random.nextInt(10));
+                else
+                    g.add(v, w);
+            }
+            int s = random.nextInt(n);
+            assertTree(g, ShortestPathTree.compute(g, s), bellmanFord(g, s));
+        }
+    }
+
+    /**
+     * Checks the distances of t against expected, and that every path is a
+     * path of g from the source with the length of its distance.
+     */
+    static void assertTree(Graph g, ShortestPathTree t, long[] expected) {
+        assertTrue(t.isValidFor(g));
+        for (int v = 0; v < g.numVertices(); v++) {
+            assertEquals(expected[v], t.distance(v));
+            int[] path = t.pathTo(v);
+            if (expected[v] == ShortestPathTree.UNREACHABLE) {
+                assertEquals(0, path.length);
+                continue;
+            }
+            assertEquals(t.source(), path[0]);
+            assertEquals(v, path[path.length - 1]);
+            long length = 0;
+            for (int i = 1; i < path.length; i++) {
+                assertTrue(g.hasEdge(path[i - 1], path[i]));
+                length += length(g.cost(path[i - 1], path[i]));
+            }
+            assertEquals(expected[v], length);
+        }
+    }
+
+    /** Distances from s by Bellman-Ford, with UNREACHABLE for unreached vertices. */
+    static long[] bellmanFord(Graph g, int s) {
+        int n = g.numVertices();
+        long[] dist = new long[n];
+        Arrays.fill(dist, Long.MAX_VALUE);
+        dist[s] = 0;
+        for (int round = 0; round < n; round++) {
+            for (int v = 0; v < n; v++) {
+                if (dist[v] == Long.MAX_VALUE)
+                    continue;
+                for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                    int w = it.next();
+                    dist[w] = Math.min(dist[w], dist[v] + length(g.cost(v, w)));
+                }
+            }
+        }
+        for (int v = 0; v < n; v++)
+            if (dist[v] == Long.MAX_VALUE)
+                dist[v] = ShortestPathTree.UNREACHABLE;
+        return dist;
+    }
+
+    private static long length(int c) {
+        return c == Graph.NO_COST ? 1 : c;
+    }
+}
@@ -0,0 +1,516 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A graph with a fixed number of vertices where the neighbors of each vertex
+ * are kept in a sorted int array. Lookups are binary searches, neighbors
+ * are returned in increasing order, and the neighborhoods of two vertices
+ * can be intersected by merging, which is what similarity measures and
+ * triangle or motif counts need. The costs are kept in a parallel array
+ * that is only allocated for a vertex with an edge cost.
+ *
+ * Inserting or removing a single edge shifts the rest of the row, so it
+ * takes O(d) time for a vertex of degree d; bulk insertion sorts each
+ * affected row once instead.
+ */
+public class SortedGraph implements Graph, BulkInsertion, Versioned {
+    private final static int[] EMPTY_ROW = new int[0];
+
+    /** Number of slots in a new row. */
+    private final static int INITIAL_ROW_SIZE = 4;
+
+    /** targets[v][0 ... degree[v]-1] are the neighbors of v, in increasing order. */
+    private final int[][] targets;
+
+    /** costs[v][i] is the cost of the edge to targets[v][i], or costs[v] is null if all are NO_COST. */
+    private final int[][] costs;
+
+    private final int[] degree;
+
+    /** Number of edges in the graph. */
+    private int numEdges;
+
+    /** Number of modifications, see Versioned. */
+    private long version;
+
+    /**
+     * Constructs a SortedGraph with n vertices and no edges. Time complexity:
+     * O(n)
+     *
+     * @throws IllegalArgumentException
+     *             if n < 0
+     */
+    public SortedGraph(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n = " + n);
+        targets = new int[n][];
+        Arrays.fill(targets, EMPTY_ROW);
+        costs = new int[n][];
+        degree = new int[n];
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numVertices() {
+        return targets.length;
+    }
+
+    /**
+     * {@inheritDoc Graph}
+     */
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * {@inheritDoc Versioned} Time complexity: O(1).
+     */
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(1).
+     */
+    @Override
+    public int degree(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+        return degree[v];
+    }
+
+    /**
+     * {@inheritDoc Graph} The neighbors are returned in increasing order.
+     * Time complexity: O(1).
+     */
+    @Override
+    public VertexIterator neighbors(int v) throws IllegalArgumentException {
+        checkVertexParameter(v);
+        return new NeighborIterator(targets[v], degree[v]);
+    }
+
+    private static final class NeighborIterator implements VertexIterator {
+        private final int[] row;
+        private final int end;
+        private int nextPos;
+
+        NeighborIterator(int[] row, int end) {
+            this.row = row;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextPos < end;
+        }
+
+        @Override
+        public int next() {
+            if (nextPos < end)
+                return row[nextPos++];
+            throw new NoSuchElementException("This iterator has no more elements.");
+        }
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(log d), where d is the degree of
+     * from.
+     */
+    @Override
+    public boolean hasEdge(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        return Arrays.binarySearch(targets[from], 0, degree[from], to) >= 0;
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(log d), where d is the degree of
+     * from.
+     */
+    @Override
+    public int cost(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+
+        int[] c = costs[from];
+        if (c == null)
+            return NO_COST;
+        int i = Arrays.binarySearch(targets[from], 0, degree[from], to);
+        return i >= 0 ? c[i] : NO_COST;
+    }
+
+    /**
+     * Returns the number of common neighbors of v and w, by merging their
+     * rows or, if one is much longer, by galloping through the longer one.
+     * Time complexity: O(min(d, d' log(d / d'))), where d and d' are the
+     * larger and smaller degree.
+     *
+     * @param v
+     *            vertex
+     * @param w
+     *            vertex
+     * @return the number of vertices adjacent to both v and w
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    public int intersectionCount(int v, int w) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        return SortedIntSets.intersectionCount(targets[v], 0, degree[v], targets[w], 0, degree[w]);
+    }
+
+    /**
+     * Returns the number of vertices adjacent to v or w. Time complexity: as
+     * for intersectionCount.
+     *
+     * @param v
+     *            vertex
+     * @param w
+     *            vertex
+     * @return the number of vertices adjacent to v or w
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    public int unionCount(int v, int w) throws IllegalArgumentException {
+        return degree(v) + degree(w) - intersectionCount(v, w);
+    }
+
+    /**
+     * Writes the common neighbors of v and w to out in increasing order.
+     * Time complexity: as for intersectionCount.
+     *
+     * @param v
+     *            vertex
+     * @param w
+     *            vertex
+     * @param out
+     *            an array with room for min(degree(v), degree(w)) vertices
+     * @return the number of common neighbors
+     * @throws IllegalArgumentException
+     *             if v or w is out of range, or out is too short
+     */
+    public int commonNeighbors(int v, int w, int[] out) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        if (out.length < Math.min(degree[v], degree[w]))
+            throw new IllegalArgumentException("Output too short: " + out.length + ".");
+        return SortedIntSets.intersect(targets[v], 0, degree[v], targets[w], 0, degree[w], out);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the degree of
+     * from.
+     */
+    @Override
+    public void add(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        addEdge(from, to, NO_COST);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the degree of
+     * from.
+     */
+    @Override
+    public void add(int from, int to, int c) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        checkNonNegativeCost(c);
+        addEdge(from, to, c);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the larger
+     * degree.
+     */
+    @Override
+    public void addBi(int v, int w) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        addEdge(v, w, NO_COST);
+        if (v != w)
+            addEdge(w, v, NO_COST);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the larger
+     * degree.
+     */
+    @Override
+    public void addBi(int v, int w, int c) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        checkNonNegativeCost(c);
+        addEdge(v, w, c);
+        if (v != w)
+            addEdge(w, v, c);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the degree of
+     * from.
+     */
+    @Override
+    public void remove(int from, int to) throws IllegalArgumentException {
+        checkVertexParameters(from, to);
+        removeEdge(from, to);
+    }
+
+    /**
+     * {@inheritDoc Graph} Time complexity: O(d), where d is the larger
+     * degree.
+     */
+    @Override
+    public void removeBi(int v, int w) throws IllegalArgumentException {
+        checkVertexParameters(v, w);
+        removeEdge(v, w);
+        if (v != w)
+            removeEdge(w, v);
+    }
+
+    /**
+     * {@inheritDoc BulkInsertion} The new edges of each vertex are sorted
+     * together with its old ones, instead of being inserted one at a time.
+     * Time complexity: O(n + k log k), where k is the batch size plus the
+     * old degrees of the affected vertices.
+     */
+    @Override
+    public void addAll(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException {
+        EdgeList.checkEdges(numVertices(), from, to, cost, size);
+        insertAll(from, to, cost, size, false);
+    }
+
+    /**
+     * {@inheritDoc BulkInsertion} The new edges of each vertex are sorted
+     * together with its old ones, instead of being inserted one at a time.
+     * Time complexity: O(n + k log k), where k is twice the batch size plus
+     * the old degrees of the affected vertices.
+     */
+    @Override
+    public void addAllBi(int[] from, int[] to, int[] cost, int size) throws IllegalArgumentException {
+        EdgeList.checkEdges(numVertices(), from, to, cost, size);
+        insertAll(from, to, cost, size, true);
+    }
+
+    /**
+     * Returns a string representation of this graph in the same format as
+     * HashGraph. Time complexity: O(n + m log d), where d is the largest
+     * degree.
+     *
+     * @return a String representation of this graph
+     */
+    @Override
+    public String toString() {
+        return GraphWriter.toString(this);
+    }
+
+    /**
+     * Adds an edge without checking parameters.
+     */
+    private void addEdge(int from, int to, int c) {
+        int[] row = targets[from];
+        int d = degree[from];
+        int i = Arrays.binarySearch(row, 0, d, to);
+        if (i >= 0) {
+            if (costAt(from, i) != c) {
+                setCost(from, i, c);
+                version++;
+            }
+            return;
+        }
+        i = -i - 1;
+        if (d == row.length)
+            grow(from, Math.max(INITIAL_ROW_SIZE, 2 * d));
+        row = targets[from];
+        System.arraycopy(row, i, row, i + 1, d - i);
+        row[i] = to;
+        int[] rowCosts = costs[from];
+        if (rowCosts != null)
+            System.arraycopy(rowCosts, i, rowCosts, i + 1, d - i);
+        degree[from] = d + 1;
+        setCost(from, i, c);
+        numEdges++;
+        version++;
+    }
+
+    /**
+     * Removes an edge without checking parameters.
+     */
+    private void removeEdge(int from, int to) {
+        int[] row = targets[from];
+        int d = degree[from];
+        int i = Arrays.binarySearch(row, 0, d, to);
+        if (i < 0)
+            return;
+        System.arraycopy(row, i + 1, row, i, d - i - 1);
+        int[] rowCosts = costs[from];
+        if (rowCosts != null)
+            System.arraycopy(rowCosts, i + 1, rowCosts, i, d - i - 1);
+        degree[from] = d - 1;
+        numEdges--;
+        version++;
+        if (d == 1) {
+            targets[from] = EMPTY_ROW;
+            costs[from] = null;
+        } else if (4 * (d - 1) < row.length && row.length > INITIAL_ROW_SIZE) {
+            grow(from, row.length / 2);
+        }
+    }
+
+    /**
+     * Returns the cost at index i of the row of v.
+     */
+    private int costAt(int v, int i) {
+        int[] c = costs[v];
+        return c == null ? NO_COST : c[i];
+    }
+
+    /**
+     * Sets the cost at index i of the row of v, allocating the cost array
+     * of v if needed.
+     */
+    private void setCost(int v, int i, int c) {
+        int[] rowCosts = costs[v];
+        if (rowCosts == null) {
+            if (c == NO_COST)
+                return;
+            rowCosts = new int[targets[v].length];
+            Arrays.fill(rowCosts, NO_COST);
+            costs[v] = rowCosts;
+        }
+        rowCosts[i] = c;
+    }
+
+    /**
+     * Moves the row of v to arrays of the given capacity.
+     */
+    private void grow(int v, int capacity) {
+        targets[v] = Arrays.copyOf(targets[v], capacity);
+        if (costs[v] != null) {
+            int d = degree[v];
+            int[] c = Arrays.copyOf(costs[v], capacity);
+            Arrays.fill(c, d, capacity, NO_COST);
+            costs[v] = c;
+        }
+    }
+
+    /**
+     * Inserts a checked batch: the edges are grouped by start vertex with a
+     * counting sort, and each affected row is rebuilt from its old entries
+     * followed by its new ones. Sorting by (target, position) and keeping the
+     * last entry of each target gives the same result as adding the edges
+     * one at a time.
+     */
+    private void insertAll(int[] from, int[] to, int[] cost, int size, boolean bidirectional) {
+        int n = numVertices();
+        int[] start = new int[n + 1];
+        for (int i = 0; i < size; i++) {
+            start[from[i] + 1]++;
+            if (bidirectional && from[i] != to[i])
+                start[to[i] + 1]++;
+        }
+        for (int v = 0; v < n; v++)
+            start[v + 1] += start[v];
+        int total = start[n];
+        int[] newTargets = new int[total];
+        int[] newCosts = new int[total];
+        int[] next = Arrays.copyOf(start, n);
+        for (int i = 0; i < size; i++) {
+            int v = from[i];
+            int w = to[i];
+            int c = cost == null ? NO_COST : cost[i];
+            int a = next[v]++;
+            newTargets[a] = w;
+            newCosts[a] = c;
+            if (bidirectional && v != w) {
+                int b = next[w]++;
+                newTargets[b] = v;
+                newCosts[b] = c;
+            }
+        }
+
+        long[] packed = new long[0];
+        boolean changed = false;
+        for (int v = 0; v < n; v++) {
+            int k = start[v + 1] - start[v];
+            if (k == 0)
+                continue;
+            int d = degree[v];
+            if (packed.length < d + k)
+                packed = new long[Math.max(d + k, 2 * packed.length)];
+            int[] row = targets[v];
+            for (int i = 0; i < d; i++)
+                packed[i] = ((long) row[i] << 32) | i;
+            for (int j = 0; j < k; j++)
+                packed[d + j] = ((long) newTargets[start[v] + j] << 32) | (d + j);
+            Arrays.sort(packed, 0, d + k);
+
+            int[] oldCosts = costs[v];
+            int unique = 0;
+            for (int i = 0; i < d + k; i++) {
+                if (i + 1 < d + k && (packed[i + 1] >>> 32) == (packed[i] >>> 32))
+                    continue;
+                unique++;
+            }
+            int[] mergedTargets = new int[Math.max(INITIAL_ROW_SIZE, unique)];
+            int[] mergedCosts = new int[mergedTargets.length];
+            Arrays.fill(mergedCosts, NO_COST);
+            boolean weighted = false;
+            int u = 0;
+            int first = 0;
+            for (int i = 0; i < d + k; i++) {
+                if (i > 0 && (packed[i - 1] >>> 32) != (packed[i] >>> 32))
+                    first = i;
+                if (i + 1 < d + k && (packed[i + 1] >>> 32) == (packed[i] >>> 32))
+                    continue; // a later occurrence of the target follows
+                int pos = (int) packed[i];
+                int c = pos < d ? (oldCosts == null ? NO_COST : oldCosts[pos]) : newCosts[start[v] + pos - d];
+                // An old entry comes first among its equal targets.
+                int oldPos = (int) packed[first];
+                if (oldPos >= d || (oldCosts == null ? NO_COST : oldCosts[oldPos]) != c)
+                    changed = true;
+                mergedTargets[u] = (int) (packed[i] >>> 32);
+                mergedCosts[u] = c;
+                weighted |= c != NO_COST;
+                u++;
+            }
+            numEdges += unique - d;
+            targets[v] = mergedTargets;
+            costs[v] = weighted ? mergedCosts : null;
+            degree[v] = unique;
+        }
+        if (changed)
+            version++;
+    }
+
+    /**
+     * Checks a single vertex parameter v.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= targets.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+
+    /**
+     * Checks two vertex parameters v and w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     */
+    private void checkVertexParameters(int v, int w) {
+        if (v < 0 || v >= targets.length || w < 0 || w >= targets.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ", w = " + w + ".");
+    }
+
+    /**
+     * Checks that the cost c is non-negative.
+     *
+     * @throws IllegalArgumentException
+     *             if c < 0
+     */
+    private void checkNonNegativeCost(int c) {
+        if (c < 0)
+            throw new IllegalArgumentException("Illegal cost: c = " + c + ".");
+    }
+}
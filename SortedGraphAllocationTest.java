@@ -0,0 +1,8 @@
+package se.kth.graph;
+
+public class SortedGraphAllocationTest extends GraphAllocationTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new SortedGraph(numVertices);
+    }
+}
@@ -0,0 +1,75 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.fail;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.*;
+
+public class SortedGraphTest extends GraphTest {
+    @Override
+    protected Graph getEmptyGraph(int numVertices) {
+        return new SortedGraph(numVertices);
+    }
+
+    @Test
+    public void testConstructor() {
+        try {
+            new SortedGraph(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void neighborsAreInIncreasingOrder() {
+        // Arrange
+        SortedGraph g = new SortedGraph(10);
+        int[] added = {7, 2, 9, 0, 5, 2};
+
+        // Act
+        for (int w : added)
+            g.add(3, w);
+
+        // Assert
+        int last = -1;
+        for (VertexIterator it = g.neighbors(3); it.hasNext();) {
+            int w = it.next();
+            assertThat(w > last, equalTo(true));
+            last = w;
+        }
+        assertThat(g.degree(3), equalTo(5));
+    }
+
+    @Test
+    public void intersectionAndUnionCountsMatchHasEdge() {
+        // Arrange: vertex 0 is a hub, so that the counts both merge and gallop.
+        int n = 2000;
+        Random random = new Random(1);
+        SortedGraph g = new SortedGraph(n);
+        for (int i = 0; i < 20000; i++) {
+            int v = random.nextInt(4) == 0 ? 0 : random.nextInt(50);
+            g.add(v, random.nextInt(n));
+        }
+        int[] common = new int[n];
+
+        for (int v = 0; v < 50; v++) {
+            for (int w = 0; w < 50; w++) {
+                // Act
+                int count = g.intersectionCount(v, w);
+                int written = g.commonNeighbors(v, w, common);
+
+                // Assert
+                int expected = 0;
+                for (int x = 0; x < n; x++) {
+                    if (g.hasEdge(v, x) && g.hasEdge(w, x))
+                        assertThat(common[expected++], equalTo(x));
+                }
+                assertThat(count, equalTo(expected));
+                assertThat(written, equalTo(expected));
+                assertThat(g.unionCount(v, w), equalTo(g.degree(v) + g.degree(w) - expected));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package se.kth.graph;
+
+/**
+ * Set operations on sorted ranges of int arrays without duplicates, such as
+ * the rows of a CsrGraph or a SortedGraph. Two ranges of similar length are
+ * merged in one linear pass. If one range is much shorter, each of its
+ * values is looked up in the longer one with a galloping search that starts
+ * where the previous lookup ended. That takes O(k log(l / k)) time for
+ * ranges of lengths k and l.
+ */
+final class SortedIntSets {
+    /** Gallop when one range is at least this many times longer. */
+    private final static int GALLOP_RATIO = 32;
+
+    private SortedIntSets() {
+    }
+
+    /**
+     * Returns the first index i in from ... to-1 with a[i] >= key, or to if
+     * there is none. The search probes from, from+1, from+2, from+4, ...
+     * and then searches the last step with binary search, so it is fast when
+     * the answer is close to from.
+     */
+    static int gallop(int[] a, int from, int to, int key) {
+        int low = from;
+        int step = 1;
+        int high = from;
+        while (high < to && a[high] < key) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        if (high > to)
+            high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of values in both a[aFrom ... aTo-1] and
+     * b[bFrom ... bTo-1].
+     */
+    static int intersectionCount(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        return intersect(a, aFrom, aTo, b, bFrom, bTo, null);
+    }
+
+    /**
+     * Writes the values in both ranges to out, in increasing order, and
+     * returns their number. If out is null the values are only counted;
+     * otherwise it must have room for the shorter range.
+     */
+    static int intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out) {
+        int la = aTo - aFrom;
+        int lb = bTo - bFrom;
+        if (la > lb)
+            return intersect(b, bFrom, bTo, a, aFrom, aTo, out);
+        if (la == 0)
+            return 0;
+
+        int count = 0;
+        if ((long) la * GALLOP_RATIO <= lb) {
+            int j = bFrom;
+            for (int i = aFrom; i < aTo && j < bTo; i++) {
+                int x = a[i];
+                j = gallop(b, j, bTo, x);
+                if (j < bTo && b[j] == x) {
+                    if (out != null)
+                        out[count] = x;
+                    count++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        int i = aFrom;
+        int j = bFrom;
+        while (i < aTo && j < bTo) {
+            int x = a[i];
+            int y = b[j];
+            if (x == y) {
+                if (out != null)
+                    out[count] = x;
+                count++;
+            }
+            // Advance the smaller side, or both if they are equal.
+            i += x <= y ? 1 : 0;
+            j += y <= x ? 1 : 0;
+        }
+        return count;
+    }
+}
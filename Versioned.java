@@ -0,0 +1,18 @@
+package se.kth.graph;
+
+/**
+ * A graph that counts its modifications. The version starts at 0 and grows
+ * every time an edge is inserted, removed or gets a new cost. Operations
+ * that leave the graph unchanged, such as removing a missing edge, do not
+ * change the version. Two calls that return the same version therefore
+ * see the same edges and costs, which lets callers cache results computed
+ * from the graph.
+ */
+public interface Versioned {
+    /**
+     * Returns the number of modifications made to this graph.
+     *
+     * @return the version of this graph
+     */
+    long version();
+}
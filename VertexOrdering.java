@@ -0,0 +1,550 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+
+/**
+ * A permutation of the vertices of a graph, used to give neighboring
+ * vertices nearby ids. Vertex v of the original graph is vertex newId(v) of
+ * the relabeled graph, and vertex u of the relabeled graph is vertex
+ * oldId(u) of the original. Results computed on the relabeled graph, such
+ * as one value per vertex, can be translated back with toOriginal.
+ *
+ * The orderings are computed on the out-edges of the graph. For an
+ * undirected graph, one added with addBi, they are the usual ones.
+ */
+public final class VertexOrdering {
+    /** Default window size of gorder, as in the paper. */
+    public final static int DEFAULT_WINDOW = 5;
+
+    /** Smallest out-degree above which gorder ignores a vertex as a hub. */
+    public final static int MIN_HUB_DEGREE = 16;
+
+    /** newId[v] is the new id of original vertex v. */
+    private final int[] newId;
+
+    /** oldId[u] is the original id of new vertex u. */
+    private final int[] oldId;
+
+    private VertexOrdering(int[] oldId) {
+        this.oldId = oldId;
+        this.newId = new int[oldId.length];
+        for (int u = 0; u < oldId.length; u++)
+            newId[oldId[u]] = u;
+    }
+
+    /**
+     * Returns the ordering that places original vertex order[u] at position
+     * u.
+     *
+     * @param order
+     *            the original vertices in their new order; copied
+     * @return the ordering
+     * @throws IllegalArgumentException
+     *             if order is not a permutation of 0 ... order.length-1
+     */
+    public static VertexOrdering of(int[] order) {
+        boolean[] seen = new boolean[order.length];
+        for (int v : order) {
+            if (v < 0 || v >= order.length || seen[v])
+                throw new IllegalArgumentException("Not a permutation: " + v + ".");
+            seen[v] = true;
+        }
+        return new VertexOrdering(order.clone());
+    }
+
+    /**
+     * Returns the ordering that keeps every vertex in place.
+     *
+     * @param n
+     *            number of vertices
+     * @return the identity ordering
+     */
+    public static VertexOrdering identity(int n) {
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++)
+            order[v] = v;
+        return new VertexOrdering(order);
+    }
+
+    /**
+     * Returns the vertices in order of decreasing degree, ties broken by
+     * id. The high degree vertices, which most traversals touch, end up
+     * together at the start. Time complexity: O(n).
+     *
+     * @param g
+     *            a graph
+     * @return the degree ordering
+     */
+    public static VertexOrdering degreeDescending(Graph g) {
+        int n = g.numVertices();
+        int[] degree = new int[n];
+        int max = 0;
+        for (int v = 0; v < n; v++) {
+            degree[v] = g.degree(v);
+            max = Math.max(max, degree[v]);
+        }
+        // Counting sort; bucket d holds the vertices of degree max - d.
+        int[] start = new int[max + 2];
+        for (int v = 0; v < n; v++)
+            start[max - degree[v] + 1]++;
+        for (int d = 0; d <= max; d++)
+            start[d + 1] += start[d];
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++)
+            order[start[max - degree[v]]++] = v;
+        return new VertexOrdering(order);
+    }
+
+    /**
+     * Returns the reverse Cuthill-McKee ordering. Each component is
+     * traversed breadth first from a pseudo-peripheral vertex, visiting the
+     * neighbors of a vertex in order of increasing degree, and the whole
+     * order is reversed. This keeps the edges close to the diagonal of the
+     * adjacency matrix, so that a vertex and its neighbors have close ids.
+     * Time complexity: O(n + m log d), where d is the maximum degree.
+     *
+     * @param g
+     *            a graph
+     * @return the RCM ordering
+     */
+    public static VertexOrdering reverseCuthillMcKee(Graph g) {
+        CsrGraph c = CsrGraph.of(g);
+        int n = c.numVertices();
+        int[] off = c.offsets;
+        int[] adj = c.targets;
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int[] queue = new int[n];
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        long[] byDegree = new long[0];
+
+        // The roots are tried in order of increasing degree.
+        int[] roots = degreeDescending(c).oldId;
+        int tail = 0;
+        for (int r = n - 1; r >= 0;) {
+            int root = roots[r];
+            if (visited[root]) {
+                r--;
+                continue;
+            }
+            // In a directed graph the search may start at a vertex that
+            // does not reach roots[r], which is then tried again.
+            root = peripheralVertex(c, root, visited, queue, dist);
+
+            int head = tail;
+            order[tail++] = root;
+            visited[root] = true;
+            while (head < tail) {
+                int v = order[head++];
+                int d = 0;
+                if (byDegree.length < off[v + 1] - off[v])
+                    byDegree = new long[Math.max(off[v + 1] - off[v], 2 * byDegree.length)];
+                for (int i = off[v]; i < off[v + 1]; i++) {
+                    int w = adj[i];
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        byDegree[d++] = ((long) (off[w + 1] - off[w]) << 32) | w;
+                    }
+                }
+                Arrays.sort(byDegree, 0, d);
+                for (int i = 0; i < d; i++)
+                    order[tail++] = (int) byDegree[i];
+            }
+        }
+
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return new VertexOrdering(order);
+    }
+
+    /**
+     * Returns a vertex of the component of start that is far from the rest,
+     * with the heuristic of George and Liu: repeatedly move to a vertex of
+     * minimum degree in the last BFS level, as long as that makes the BFS
+     * deeper. Only unvisited vertices are searched, since in a directed
+     * graph the out-edges may lead back into earlier components. The
+     * entries of dist must be -1, and are -1 again on return.
+     */
+    private static int peripheralVertex(CsrGraph c, int start, boolean[] visited, int[] queue, int[] dist) {
+        int[] off = c.offsets;
+        int[] adj = c.targets;
+        int previous = start;
+        int v = start;
+        int depth = -1;
+        for (;;) {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = v;
+            dist[v] = 0;
+            while (head < tail) {
+                int x = queue[head++];
+                for (int i = off[x]; i < off[x + 1]; i++) {
+                    int w = adj[i];
+                    if (dist[w] < 0 && !visited[w]) {
+                        dist[w] = dist[x] + 1;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            int newDepth = dist[queue[tail - 1]];
+            int best = queue[tail - 1];
+            for (int i = tail - 1; i >= 0 && dist[queue[i]] == newDepth; i--) {
+                int x = queue[i];
+                if (off[x + 1] - off[x] < off[best + 1] - off[best])
+                    best = x;
+            }
+            for (int i = 0; i < tail; i++)
+                dist[queue[i]] = -1;
+            if (newDepth <= depth)
+                return previous;
+            depth = newDepth;
+            previous = v;
+            v = best;
+        }
+    }
+
+    /**
+     * Returns a Gorder ordering with DEFAULT_WINDOW.
+     *
+     * @param g
+     *            a graph
+     * @return the Gorder ordering
+     */
+    public static VertexOrdering gorder(Graph g) {
+        return gorder(g, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Returns an ordering in the style of Gorder (Wei, Yu, Lu and Lin). The
+     * vertices are placed one at a time, and the next vertex is the one
+     * with the highest score with respect to the last window placed
+     * vertices. The score counts the edges between the vertex and the
+     * window, plus the in-neighbors the vertex shares with each vertex in
+     * the window. A unit heap finds the next vertex in O(1). As in the
+     * paper, in-neighbors whose out-degree is above the square root of n
+     * are not counted, because they would touch most of the graph; the
+     * cutoff is at least MIN_HUB_DEGREE, so that ordinary vertices of small
+     * graphs are not taken for hubs. Time
+     * complexity: O(sum of d<sub>in</sub>(u) d<sub>out</sub>(p)) over the
+     * edges (p, u) that are counted.
+     *
+     * @param g
+     *            a graph
+     * @param window
+     *            number of recently placed vertices that score, window >= 1
+     * @return the Gorder ordering
+     * @throws IllegalArgumentException
+     *             if window < 1
+     */
+    public static VertexOrdering gorder(Graph g, int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("Illegal window: " + window + ".");
+
+        CsrGraph out = CsrGraph.of(g);
+        int n = out.numVertices();
+        if (n == 0)
+            return identity(0);
+        int m = out.numEdges();
+        int[] from = new int[m];
+        for (int v = 0; v < n; v++)
+            Arrays.fill(from, out.offsets[v], out.offsets[v + 1], v);
+        CsrGraph in = CsrGraph.fromEdges(n, out.targets, from, null, m, false, 1);
+        int hub = Math.max(MIN_HUB_DEGREE, (int) Math.sqrt(n));
+
+        UnitHeap heap = new UnitHeap(n);
+        int[] order = new int[n];
+
+        // Start with the vertex of highest in-degree.
+        int first = 0;
+        for (int v = 1; v < n; v++) {
+            if (in.degree(v) > in.degree(first))
+                first = v;
+        }
+        heap.remove(first);
+        order[0] = first;
+        update(out, in, first, hub, heap, 1);
+        for (int i = 1; i < n; i++) {
+            if (i > window)
+                update(out, in, order[i - window - 1], hub, heap, -1);
+            int v = heap.removeMax();
+            order[i] = v;
+            update(out, in, v, hub, heap, 1);
+        }
+        return new VertexOrdering(order);
+    }
+
+    /**
+     * Adds delta to the scores of the vertices related to u, which has
+     * entered (delta = 1) or left (delta = -1) the window.
+     */
+    private static void update(CsrGraph out, CsrGraph in, int u, int hub, UnitHeap heap, int delta) {
+        for (int i = out.offsets[u]; i < out.offsets[u + 1]; i++)
+            heap.add(out.targets[i], delta);
+        for (int i = in.offsets[u]; i < in.offsets[u + 1]; i++) {
+            int p = in.targets[i];
+            heap.add(p, delta);
+            if (out.offsets[p + 1] - out.offsets[p] > hub)
+                continue;
+            for (int j = out.offsets[p]; j < out.offsets[p + 1]; j++) {
+                int x = out.targets[j];
+                if (x != u)
+                    heap.add(x, delta);
+            }
+        }
+    }
+
+    /**
+     * A max-priority queue of vertices whose keys change by one at a time.
+     * The vertices are kept in one doubly linked list per key, so every
+     * operation except a long walk down to the next non-empty key takes
+     * O(1) time. Removed vertices ignore key changes.
+     */
+    private static final class UnitHeap {
+        private final int[] key;
+        private final int[] prev;
+        private final int[] next;
+        private final boolean[] removed;
+        private int[] head;
+        private int max;
+
+        UnitHeap(int n) {
+            key = new int[n];
+            prev = new int[n];
+            next = new int[n];
+            removed = new boolean[n];
+            head = new int[16];
+            Arrays.fill(head, -1);
+            for (int v = n - 1; v >= 0; v--)
+                link(v);
+        }
+
+        private void link(int v) {
+            int k = key[v];
+            if (k >= head.length) {
+                int old = head.length;
+                head = Arrays.copyOf(head, Math.max(k + 1, 2 * old));
+                Arrays.fill(head, old, head.length, -1);
+            }
+            prev[v] = -1;
+            next[v] = head[k];
+            if (head[k] >= 0)
+                prev[head[k]] = v;
+            head[k] = v;
+            max = Math.max(max, k);
+        }
+
+        private void unlink(int v) {
+            if (prev[v] >= 0)
+                next[prev[v]] = next[v];
+            else
+                head[key[v]] = next[v];
+            if (next[v] >= 0)
+                prev[next[v]] = prev[v];
+        }
+
+        void add(int v, int delta) {
+            if (removed[v] || key[v] + delta < 0)
+                return;
+            unlink(v);
+            key[v] += delta;
+            link(v);
+        }
+
+        void remove(int v) {
+            unlink(v);
+            removed[v] = true;
+        }
+
+        int removeMax() {
+            while (head[max] < 0)
+                max--;
+            int v = head[max];
+            remove(v);
+            return v;
+        }
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return the number of vertices
+     */
+    public int size() {
+        return oldId.length;
+    }
+
+    /**
+     * Returns the new id of original vertex v.
+     *
+     * @param v
+     *            original vertex
+     * @return the new id of v
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     */
+    public int newId(int v) {
+        checkVertexParameter(v);
+        return newId[v];
+    }
+
+    /**
+     * Returns the original id of new vertex u.
+     *
+     * @param u
+     *            new vertex
+     * @return the original id of u
+     * @throws IllegalArgumentException
+     *             if u is out of range
+     */
+    public int oldId(int u) {
+        checkVertexParameter(u);
+        return oldId[u];
+    }
+
+    /**
+     * Returns the inverse ordering, which maps the relabeled graph back to
+     * the original.
+     *
+     * @return the inverse ordering
+     */
+    public VertexOrdering inverse() {
+        return new VertexOrdering(newId.clone());
+    }
+
+    /**
+     * Returns a CsrGraph where original edge (v, w) is edge (newId(v),
+     * newId(w)), with the same cost. Time complexity: O(n + m log d).
+     *
+     * @param g
+     *            a graph with size() vertices
+     * @return the relabeled graph
+     * @throws IllegalArgumentException
+     *             if g has the wrong number of vertices
+     */
+    public CsrGraph relabel(Graph g) {
+        EdgeList edges = relabeledEdges(g);
+        return CsrGraph.fromEdges(edges.numVertices(), edges.from, edges.to, edges.cost, edges.size, false,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns a relabeled copy of g in the given representation.
+     *
+     * @param g
+     *            a graph with size() vertices
+     * @param representation
+     *            the representation of the copy
+     * @return the relabeled graph
+     * @throws IllegalArgumentException
+     *             if g has the wrong number of vertices
+     */
+    public Graph relabel(Graph g, GraphFactory.Representation representation) {
+        if (representation == GraphFactory.Representation.CSR)
+            return relabel(g);
+        Graph copy = representation.create(size());
+        relabeledEdges(g).addTo(copy);
+        return copy;
+    }
+
+    private EdgeList relabeledEdges(Graph g) {
+        if (g.numVertices() != size())
+            throw new IllegalArgumentException("Wrong number of vertices: " + g.numVertices() + ".");
+        EdgeList edges = EdgeList.of(g);
+        for (int i = 0; i < edges.size; i++) {
+            edges.from[i] = newId[edges.from[i]];
+            edges.to[i] = newId[edges.to[i]];
+        }
+        return edges;
+    }
+
+    /**
+     * Translates per-vertex values of the relabeled graph to the original
+     * vertices: the result holds at index v the value of vertex newId(v).
+     *
+     * @param values
+     *            values indexed by new id
+     * @return the values indexed by original id
+     * @throws IllegalArgumentException
+     *             if values has the wrong length
+     */
+    public int[] toOriginal(int[] values) {
+        checkLength(values.length);
+        int[] result = new int[values.length];
+        for (int v = 0; v < result.length; v++)
+            result[v] = values[newId[v]];
+        return result;
+    }
+
+    /**
+     * Translates per-vertex values of the relabeled graph to the original
+     * vertices, as toOriginal(int[]).
+     *
+     * @param values
+     *            values indexed by new id
+     * @return the values indexed by original id
+     * @throws IllegalArgumentException
+     *             if values has the wrong length
+     */
+    public double[] toOriginal(double[] values) {
+        checkLength(values.length);
+        double[] result = new double[values.length];
+        for (int v = 0; v < result.length; v++)
+            result[v] = values[newId[v]];
+        return result;
+    }
+
+    /**
+     * Translates per-vertex values of the original graph to the relabeled
+     * vertices: the result holds at index u the value of vertex oldId(u).
+     *
+     * @param values
+     *            values indexed by original id
+     * @return the values indexed by new id
+     * @throws IllegalArgumentException
+     *             if values has the wrong length
+     */
+    public int[] toRelabeled(int[] values) {
+        checkLength(values.length);
+        int[] result = new int[values.length];
+        for (int u = 0; u < result.length; u++)
+            result[u] = values[oldId[u]];
+        return result;
+    }
+
+    /**
+     * Returns the average distance |newId(v) - newId(w)| over the edges of
+     * g, a simple measure of how local the ordering is. Time complexity:
+     * O(n + m).
+     *
+     * @param g
+     *            a graph with size() vertices
+     * @return the average edge span
+     */
+    public double averageEdgeSpan(Graph g) {
+        if (g.numVertices() != size())
+            throw new IllegalArgumentException("Wrong number of vertices: " + g.numVertices() + ".");
+        long sum = 0;
+        long m = 0;
+        for (int v = 0; v < size(); v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                sum += Math.abs(newId[v] - newId[it.next()]);
+                m++;
+            }
+        }
+        return m == 0 ? 0 : (double) sum / m;
+    }
+
+    private void checkLength(int length) {
+        if (length != oldId.length)
+            throw new IllegalArgumentException("Wrong length: " + length + ".");
+    }
+
+    private void checkVertexParameter(int v) {
+        if (v < 0 || v >= oldId.length)
+            throw new IllegalArgumentException("Out of range: v = " + v + ".");
+    }
+}
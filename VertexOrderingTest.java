@@ -0,0 +1,90 @@
+package se.kth.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that every ordering is a permutation and that relabeling keeps
+ * the edges and their costs.
+ */
+public class VertexOrderingTest {
+    @Test
+    public void orderingsArePermutations() {
+        Random random = new Random(39);
+        for (int round = 0; round < 40; round++) {
+            Graph g = ImmutableGraphTest.randomGraph(random, random.nextInt(300), 2 * VertexOrdering.MIN_HUB_DEGREE);
+            assertPermutation(VertexOrdering.degreeDescending(g));
+            assertPermutation(VertexOrdering.reverseCuthillMcKee(g));
+            assertPermutation(VertexOrdering.gorder(g));
+            assertPermutation(VertexOrdering.gorder(g, 1));
+        }
+    }
+
+    @Test
+    public void relabelingPreservesEdges() {
+        Random random = new Random(39);
+        for (int round = 0; round < 40; round++) {
+            Graph g = ImmutableGraphTest.randomGraph(random, random.nextInt(300), 2 * VertexOrdering.MIN_HUB_DEGREE);
+            VertexOrdering[] orderings = { VertexOrdering.degreeDescending(g),
+                    VertexOrdering.reverseCuthillMcKee(g), VertexOrdering.gorder(g) };
+            for (VertexOrdering o : orderings) {
+                assertRelabeled(g, o, o.relabel(g));
+                assertRelabeled(g, o, o.relabel(g, GraphFactory.Representation.HASH));
+                Graph back = o.inverse().relabel(o.relabel(g));
+                assertRelabeled(g, VertexOrdering.identity(g.numVertices()), back);
+            }
+        }
+    }
+
+    @Test
+    public void valuesTranslateBothWays() {
+        VertexOrdering o = VertexOrdering.of(new int[] { 2, 0, 1 });
+        assertEquals(1, o.newId(0));
+        assertEquals(2, o.oldId(0));
+        int[] relabeled = o.toRelabeled(new int[] { 10, 11, 12 });
+        assertArrayEquals(new int[] { 12, 10, 11 }, relabeled);
+        assertArrayEquals(new int[] { 10, 11, 12 }, o.toOriginal(relabeled));
+    }
+
+    @Test
+    public void reverseCuthillMcKeeShortensPathSpan() {
+        // A path with scrambled ids becomes a path of consecutive ids.
+        int n = 200;
+        int[] scramble = new int[n];
+        for (int i = 0; i < n; i++)
+            scramble[i] = (int) ((i * 37L) % n);
+        Graph g = new HashGraph(n);
+        for (int i = 0; i + 1 < n; i++)
+            g.addBi(scramble[i], scramble[i + 1]);
+        assertEquals(1.0, VertexOrdering.reverseCuthillMcKee(g).averageEdgeSpan(g), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ofRejectsNonPermutations() {
+        VertexOrdering.of(new int[] { 0, 0, 1 });
+    }
+
+    private static void assertPermutation(VertexOrdering o) {
+        boolean[] seen = new boolean[o.size()];
+        for (int u = 0; u < o.size(); u++) {
+            int v = o.oldId(u);
+            assertFalse(seen[v]);
+            seen[v] = true;
+            assertEquals(u, o.newId(v));
+        }
+    }
+
+    private static void assertRelabeled(Graph g, VertexOrdering o, Graph relabeled) {
+        assertEquals(g.numVertices(), relabeled.numVertices());
+        assertEquals(g.numEdges(), relabeled.numEdges());
+        for (int v = 0; v < g.numVertices(); v++) {
+            for (VertexIterator it = g.neighbors(v); it.hasNext();) {
+                int w = it.next();
+                assertTrue(relabeled.hasEdge(o.newId(v), o.newId(w)));
+                assertEquals(g.cost(v, w), relabeled.cost(o.newId(v), o.newId(w)));
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package se.kth.graph;
+
+import java.io.Serializable;
+
+/**
+ * A vertex-centric program for BspEngine, in the style of Pregel
+ * (Malewicz et al.). The computation proceeds in supersteps. In every
+ * superstep compute is called once for each active vertex, and for each
+ * vertex that has received messages, with the messages sent to it in the
+ * previous superstep. A vertex can change its value, send messages to any
+ * vertex, contribute to the aggregators and vote to halt. A halted vertex
+ * is woken up by the next message it receives. The computation ends when
+ * every vertex has halted and no messages are in transit.
+ *
+ * Where a VertexAction visits vertices one at a time during a sequential
+ * search, the vertices of a VertexProgram are computed in parallel, in
+ * several threads or in several worker processes, each owning one part of
+ * the graph. A program is therefore serialized and sent to every worker,
+ * and compute may be called from several threads at once: all state that
+ * changes should be kept in the vertex values.
+ */
+public interface VertexProgram extends Serializable {
+    /**
+     * Returns the value of vertex v before the first superstep.
+     *
+     * @param v
+     *            vertex
+     * @param numVertices
+     *            number of vertices of the graph
+     * @return the initial value of v
+     */
+    long initialValue(int v, int numVertices);
+
+    /**
+     * Computes one vertex in one superstep.
+     *
+     * @param ctx
+     *            the vertex, its value, edges and messages
+     */
+    void compute(Context ctx);
+
+    /**
+     * Returns the combiner of this program, or null if messages must be
+     * delivered one by one. With a combiner the engine may combine messages
+     * to the same vertex before they are sent, so that a vertex receives
+     * fewer messages, in any order and grouping.
+     *
+     * @return the combiner, or null if there is none
+     */
+    default Combiner combiner() {
+        return null;
+    }
+
+    /**
+     * Returns the aggregators of this program. The values given to
+     * aggregator i in one superstep are reduced to one value, which is
+     * available to every vertex in the next superstep.
+     *
+     * @return the aggregators, possibly none
+     */
+    default Aggregator[] aggregators() {
+        return new Aggregator[0];
+    }
+
+    /**
+     * A global reduction over the values given by the vertices in one
+     * superstep.
+     */
+    enum Aggregator {
+        /** The sum of the values, 0 if there are none. */
+        SUM(0) {
+            @Override
+            public long combine(long a, long b) {
+                return a + b;
+            }
+        },
+
+        /** The smallest value, Long.MAX_VALUE if there are none. */
+        MIN(Long.MAX_VALUE) {
+            @Override
+            public long combine(long a, long b) {
+                return Math.min(a, b);
+            }
+        },
+
+        /** The largest value, Long.MIN_VALUE if there are none. */
+        MAX(Long.MIN_VALUE) {
+            @Override
+            public long combine(long a, long b) {
+                return Math.max(a, b);
+            }
+        };
+
+        private final long identity;
+
+        Aggregator(long identity) {
+            this.identity = identity;
+        }
+
+        /**
+         * Returns the value of the aggregator before any value is given.
+         *
+         * @return the identity of combine
+         */
+        public long identity() {
+            return identity;
+        }
+
+        /**
+         * Combines two aggregated values.
+         *
+         * @param a
+         *            value
+         * @param b
+         *            value
+         * @return the combined value
+         */
+        public abstract long combine(long a, long b);
+    }
+
+    /**
+     * Combines two messages to the same vertex into one.
+     */
+    interface Combiner extends Serializable {
+        /**
+         * Combines two messages to the same vertex into one. Must be
+         * associative and commutative.
+         *
+         * @param a
+         *            message
+         * @param b
+         *            message
+         * @return the combined message
+         */
+        long combine(long a, long b);
+    }
+
+    /**
+     * The view of one vertex in one superstep. A Context is only valid
+     * during the call to compute it is passed to.
+     */
+    interface Context {
+        /**
+         * Returns the number of the current superstep, starting at 0.
+         *
+         * @return the current superstep
+         */
+        int superstep();
+
+        /**
+         * Returns the number of vertices of the graph.
+         *
+         * @return the number of vertices
+         */
+        int numVertices();
+
+        /**
+         * Returns the vertex being computed.
+         *
+         * @return the vertex
+         */
+        int vertex();
+
+        /**
+         * Returns the value of the vertex.
+         *
+         * @return the value of the vertex
+         */
+        long value();
+
+        /**
+         * Sets the value of the vertex.
+         *
+         * @param value
+         *            the new value
+         */
+        void setValue(long value);
+
+        /**
+         * Returns the number of edges from the vertex.
+         *
+         * @return the out-degree of the vertex
+         */
+        int degree();
+
+        /**
+         * Returns the end vertex of edge i of the vertex, in increasing
+         * order of end vertex.
+         *
+         * @param i
+         *            edge index, 0 <= i < degree()
+         * @return the end vertex of edge i
+         */
+        int target(int i);
+
+        /**
+         * Returns the cost of edge i of the vertex, or NO_COST.
+         *
+         * @param i
+         *            edge index, 0 <= i < degree()
+         * @return the cost of edge i
+         */
+        int cost(int i);
+
+        /**
+         * Returns the number of messages received by the vertex.
+         *
+         * @return the number of messages
+         */
+        int numMessages();
+
+        /**
+         * Returns message i received by the vertex.
+         *
+         * @param i
+         *            message index, 0 <= i < numMessages()
+         * @return message i
+         */
+        long message(int i);
+
+        /**
+         * Sends a message to vertex w, to be received in the next
+         * superstep.
+         *
+         * @param w
+         *            vertex
+         * @param message
+         *            the message
+         * @throws IllegalArgumentException
+         *             if w is out of range
+         */
+        void send(int w, long message);
+
+        /**
+         * Sends a message along every edge of the vertex.
+         *
+         * @param message
+         *            the message
+         */
+        void sendToNeighbors(long message);
+
+        /**
+         * Halts the vertex until it receives a message.
+         */
+        void voteToHalt();
+
+        /**
+         * Gives a value to aggregator a in this superstep.
+         *
+         * @param a
+         *            aggregator index
+         * @param value
+         *            the value
+         */
+        void aggregate(int a, long value);
+
+        /**
+         * Returns the value of aggregator a in the previous superstep, or
+         * its identity in superstep 0.
+         *
+         * @param a
+         *            aggregator index
+         * @return the aggregated value
+         */
+        long aggregated(int a);
+    }
+}
@@ -0,0 +1,77 @@
+package se.kth.graph;
+
+/**
+ * Runs tasks on short-lived worker threads. Used by the parallel algorithms in
+ * this package, which split their work into one task per thread and need all
+ * of them to finish before the next step.
+ */
+final class Workers {
+    private Workers() {
+    }
+
+    /**
+     * Runs all tasks in parallel and returns when every task has finished. A
+     * single task is run on the calling thread. If a task throws, the first
+     * exception is rethrown after all threads have been joined.
+     *
+     * @param name
+     *            prefix of the thread names
+     * @param tasks
+     *            the tasks to run
+     */
+    static void runAll(String name, Runnable... tasks) {
+        if (tasks.length == 1) {
+            tasks[0].run();
+            return;
+        }
+
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            threads[i] = new Thread(tasks[i], name + "-" + i);
+            threads[i].setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread t, Throwable e) {
+                    synchronized (failure) {
+                        if (failure[0] == null)
+                            failure[0] = e;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        boolean interrupted = false;
+        for (Thread t : threads) {
+            while (true) {
+                try {
+                    t.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        Throwable e = failure[0];
+        if (e instanceof RuntimeException)
+            throw (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        if (e != null)
+            throw new IllegalStateException(e);
+    }
+
+    /**
+     * Checks a thread count parameter.
+     *
+     * @throws IllegalArgumentException
+     *             if threads < 1
+     */
+    static void checkThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Illegal thread count: threads = " + threads + ".");
+    }
+}
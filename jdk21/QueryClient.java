@@ -0,0 +1,492 @@
+package se.kth.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A client of a QueryServer. The single query methods send one request and
+ * wait for the answer. For throughput, requests are collected in a Batch,
+ * which is sent as one frame; several batches may be sent before their
+ * responses are received, in the same order.
+ *
+ * A client is not thread-safe; use one per thread. The main method is a
+ * load generator that reports throughput and latency percentiles. Like
+ * QueryServer, it runs on virtual threads and needs Java 21 or later.
+ */
+public final class QueryClient implements AutoCloseable {
+    private final static int BUFFER_SIZE = 1 << 16;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Batch single = new Batch();
+    private int nextId;
+
+    /**
+     * Connects to a server on the loopback address.
+     *
+     * @param port
+     *            port of the server
+     * @throws IOException
+     *             if the connection fails
+     */
+    public QueryClient(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress().getHostAddress(), port);
+    }
+
+    /**
+     * Connects to a server.
+     *
+     * @param host
+     *            host of the server
+     * @param port
+     *            port of the server
+     * @throws IOException
+     *             if the connection fails
+     */
+    public QueryClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+    }
+
+    /**
+     * Requests that are sent as one frame, and their responses.
+     */
+    public static final class Batch {
+        private int size;
+        private int firstId;
+        private byte[] ops = new byte[16];
+        private int[] a = new int[16];
+        private int[] b = new int[16];
+        private byte[] status = new byte[16];
+        private long[] values = new long[16];
+        private int[][] lists = new int[16][];
+
+        /**
+         * Adds a request and returns its index in the batch.
+         *
+         * @param op
+         *            one of the operations of QueryServer
+         * @param a
+         *            first vertex
+         * @param b
+         *            second vertex, ignored by operations on one vertex
+         * @return the index of the request
+         */
+        public int add(byte op, int a, int b) {
+            if (size == ops.length) {
+                int capacity = 2 * size;
+                ops = Arrays.copyOf(ops, capacity);
+                this.a = Arrays.copyOf(this.a, capacity);
+                this.b = Arrays.copyOf(this.b, capacity);
+                status = Arrays.copyOf(status, capacity);
+                values = Arrays.copyOf(values, capacity);
+                lists = Arrays.copyOf(lists, capacity);
+            }
+            ops[size] = op;
+            this.a[size] = a;
+            this.b[size] = b;
+            return size++;
+        }
+
+        /** Returns the number of requests. */
+        public int size() {
+            return size;
+        }
+
+        /** Removes all requests. */
+        public void clear() {
+            Arrays.fill(lists, 0, size, null);
+            size = 0;
+        }
+
+        /** Returns the status of the response to request i. */
+        public byte status(int i) {
+            return status[i];
+        }
+
+        /**
+         * Returns the value of the response to request i: 1 or 0 for
+         * HAS_EDGE, the cost, degree or component id, or the distance of a
+         * SHORTEST_PATH.
+         */
+        public long value(int i) {
+            return values[i];
+        }
+
+        /**
+         * Returns the neighbors or the path of the response to request i, or
+         * null for the other operations.
+         */
+        public int[] list(int i) {
+            return lists[i];
+        }
+    }
+
+    /**
+     * Sends the requests of batch as one frame, without waiting for the
+     * responses. The responses of the batches in flight should fit in the
+     * socket buffers, since the server stops reading while its output is
+     * blocked.
+     *
+     * @param batch
+     *            the requests
+     * @throws IOException
+     *             if the connection fails
+     */
+    public void send(Batch batch) throws IOException {
+        batch.firstId = nextId;
+        nextId += batch.size;
+        out.writeInt(4 + batch.size * QueryServer.REQUEST_BYTES);
+        out.writeInt(batch.size);
+        for (int i = 0; i < batch.size; i++) {
+            out.writeInt(batch.firstId + i);
+            out.writeByte(batch.ops[i]);
+            out.writeInt(batch.a[i]);
+            out.writeInt(batch.b[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Receives the responses to batch, which must be the oldest batch sent
+     * and not yet received.
+     *
+     * @param batch
+     *            the requests
+     * @throws IOException
+     *             if the connection fails or the response does not match
+     */
+    public void receive(Batch batch) throws IOException {
+        in.readInt(); // length
+        int count = in.readInt();
+        if (count != batch.size)
+            throw new IOException("Expected " + batch.size + " responses, got " + count + ".");
+        for (int i = 0; i < count; i++) {
+            if (in.readInt() != batch.firstId + i)
+                throw new IOException("Response out of order.");
+            byte status = in.readByte();
+            batch.status[i] = status;
+            batch.lists[i] = null;
+            if (status != QueryServer.OK)
+                continue;
+            switch (batch.ops[i]) {
+                case QueryServer.NEIGHBORS:
+                    batch.lists[i] = readInts(in.readInt());
+                    batch.values[i] = batch.lists[i].length;
+                    break;
+                case QueryServer.SHORTEST_PATH:
+                    batch.values[i] = in.readLong();
+                    batch.lists[i] = readInts(in.readInt());
+                    break;
+                default:
+                    batch.values[i] = in.readInt();
+            }
+        }
+    }
+
+    private int[] readInts(int length) throws IOException {
+        int[] a = new int[length];
+        for (int i = 0; i < length; i++)
+            a[i] = in.readInt();
+        return a;
+    }
+
+    /** Sends one request; the response is the first of single. */
+    private void query(byte op, int a, int b) throws IOException {
+        single.clear();
+        single.add(op, a, b);
+        send(single);
+        receive(single);
+        if (single.status[0] == QueryServer.ILLEGAL_ARGUMENT)
+            throw new IllegalArgumentException("Out of range: v = " + a + ", w = " + b + ".");
+        if (single.status[0] == QueryServer.TOO_LARGE)
+            throw new IOException("Response too large.");
+        if (single.status[0] != QueryServer.OK)
+            throw new IOException("Status " + single.status[0] + ".");
+    }
+
+    /**
+     * Returns true if there is an edge from v to w.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     * @throws IOException
+     *             if the connection fails
+     */
+    public boolean hasEdge(int v, int w) throws IOException {
+        query(QueryServer.HAS_EDGE, v, w);
+        return single.value(0) != 0;
+    }
+
+    /**
+     * Returns the cost of the edge from v to w, or NO_COST.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     * @throws IOException
+     *             if the connection fails
+     */
+    public int cost(int v, int w) throws IOException {
+        query(QueryServer.COST, v, w);
+        return (int) single.value(0);
+    }
+
+    /**
+     * Returns the degree of v.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     * @throws IOException
+     *             if the connection fails
+     */
+    public int degree(int v) throws IOException {
+        query(QueryServer.DEGREE, v, 0);
+        return (int) single.value(0);
+    }
+
+    /**
+     * Returns the neighbors of v in ascending order.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     * @throws IOException
+     *             if the connection fails
+     */
+    public int[] neighbors(int v) throws IOException {
+        query(QueryServer.NEIGHBORS, v, 0);
+        return single.list(0);
+    }
+
+    /**
+     * Returns the vertices of a shortest path from v to w, or an empty array
+     * if w cannot be reached from v.
+     *
+     * @throws IllegalArgumentException
+     *             if v or w is out of range
+     * @throws IOException
+     *             if the connection fails
+     */
+    public int[] shortestPath(int v, int w) throws IOException {
+        query(QueryServer.SHORTEST_PATH, v, w);
+        return single.list(0);
+    }
+
+    /**
+     * Returns the number of vertices of the graph.
+     *
+     * @throws IOException
+     *             if the connection fails
+     */
+    public int numVertices() throws IOException {
+        query(QueryServer.NUM_VERTICES, 0, 0);
+        return (int) single.value(0);
+    }
+
+    /**
+     * Returns the component id of v.
+     *
+     * @throws IllegalArgumentException
+     *             if v is out of range
+     * @throws IOException
+     *             if the connection fails
+     */
+    public int componentId(int v) throws IOException {
+        query(QueryServer.COMPONENT, v, 0);
+        return (int) single.value(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Generates load on a server and prints the throughput and the latency
+     * percentiles of the batches. Without --port, a server for a random graph
+     * is started in this JVM. Options, all optional:
+     *
+     * <pre>
+     * --port=P          port of a running server
+     * --vertices=N      vertices of the local graph (default 1000000)
+     * --edges=M         undirected edges of the local graph (default 4000000)
+     * --connections=C   client connections, each on a virtual thread (default 16)
+     * --seconds=S       duration of the measurement (default 10)
+     * --batch=B         requests per frame (default 16)
+     * --pipeline=D      frames in flight per connection (default 4)
+     * --paths=F         fraction of SHORTEST_PATH requests (default 0)
+     * </pre>
+     *
+     * @param args
+     *            options of the form --name=value
+     * @throws Exception
+     *             if a connection fails; the results of the other
+     *             connections are printed first
+     */
+    public static void main(String[] args) throws Exception {
+        int port = -1;
+        int vertices = 1000000;
+        int edges = 4000000;
+        int connections = 16;
+        int seconds = 10;
+        int batchSize = 16;
+        int pipeline = 4;
+        double paths = 0;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0)
+                throw new IllegalArgumentException("Illegal argument: " + arg + ".");
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "vertices":
+                    vertices = Integer.parseInt(value);
+                    break;
+                case "edges":
+                    edges = Integer.parseInt(value);
+                    break;
+                case "connections":
+                    connections = Integer.parseInt(value);
+                    break;
+                case "seconds":
+                    seconds = Integer.parseInt(value);
+                    break;
+                case "batch":
+                    batchSize = Integer.parseInt(value);
+                    break;
+                case "pipeline":
+                    pipeline = Integer.parseInt(value);
+                    break;
+                case "paths":
+                    paths = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg + ".");
+            }
+        }
+
+        QueryServer server = null;
+        if (port < 0) {
+            EdgeList list = RandomGraphs.gnm(vertices, edges, 1, Runtime.getRuntime().availableProcessors());
+            server = new QueryServer(list.toCsrGraph(true), 0);
+            port = server.port();
+        }
+        final int serverPort = port;
+        final int numVertices;
+        try (QueryClient probe = new QueryClient(serverPort)) {
+            numVertices = probe.numVertices();
+        }
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+        final long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        final int b = batchSize;
+        final int d = pipeline;
+        final double pathFraction = paths;
+        Thread[] threads = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            final long seed = c;
+            threads[c] = Thread.ofVirtual().start(new Runnable() {
+                @Override
+                public void run() {
+                    try (QueryClient client = new QueryClient(serverPort)) {
+                        generate(client, numVertices, b, d, pathFraction, seed, deadline, latency, requests);
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread t : threads)
+            t.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (server != null)
+            server.close();
+
+        System.out.printf(Locale.ROOT, "requests: %d in %.1f s, %.0f requests/s, %.0f batches/s%n",
+                requests.get(), elapsed, requests.get() / elapsed, latency.count() / elapsed);
+        System.out.printf(Locale.ROOT, "batch latency: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                latency.percentile(50) / 1e3, latency.percentile(99) / 1e3, latency.percentile(99.9) / 1e3,
+                latency.max() / 1e3);
+        if (failure.get() != null)
+            throw new IOException(failures.get() + " of " + connections + " connections failed.", failure.get());
+    }
+
+    /**
+     * Keeps pipeline batches of random requests in flight until the
+     * deadline, recording the time from sending each batch to receiving its
+     * responses.
+     */
+    private static void generate(QueryClient client, int n, int batchSize, int pipeline, double paths, long seed,
+            long deadline, LatencyHistogram latency, AtomicLong requests) throws IOException {
+        if (n == 0)
+            return;
+        Random random = new Random(seed);
+        ArrayDeque<Batch> inFlight = new ArrayDeque<Batch>();
+        long[] sent = new long[pipeline];
+        int head = 0;
+        for (int i = 0; i < pipeline; i++) {
+            Batch batch = fill(new Batch(), random, n, batchSize, paths);
+            sent[i] = System.nanoTime();
+            client.send(batch);
+            inFlight.add(batch);
+        }
+        while (!inFlight.isEmpty()) {
+            Batch batch = inFlight.poll();
+            client.receive(batch);
+            long now = System.nanoTime();
+            latency.record(now - sent[head]);
+            requests.addAndGet(batch.size());
+            if (now < deadline) {
+                fill(batch, random, n, batchSize, paths);
+                sent[head] = System.nanoTime();
+                client.send(batch);
+                inFlight.add(batch);
+            }
+            head = (head + 1) % pipeline;
+        }
+    }
+
+    private static Batch fill(Batch batch, Random random, int n, int batchSize, double paths) {
+        batch.clear();
+        for (int i = 0; i < batchSize; i++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            double x = random.nextDouble();
+            byte op;
+            if (x < paths)
+                op = QueryServer.SHORTEST_PATH;
+            else if (x < 0.4)
+                op = QueryServer.HAS_EDGE;
+            else if (x < 0.6)
+                op = QueryServer.DEGREE;
+            else if (x < 0.8)
+                op = QueryServer.NEIGHBORS;
+            else if (x < 0.9)
+                op = QueryServer.COST;
+            else
+                op = QueryServer.COMPONENT;
+            batch.add(op, a, b);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,400 @@
+package se.kth.graph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Answers queries about a graph over a local socket. The server keeps an
+ * immutable CsrGraph snapshot of the graph, so the graph may change after
+ * the server has been started without affecting the answers, and the
+ * connections never need to lock. Every connection is served by its own
+ * virtual thread.
+ *
+ * The protocol is binary and big-endian. A client sends frames of requests
+ * and gets one frame of responses back per frame, in order, so a client may
+ * send any number of frames before it reads the answers (pipelining), and
+ * each frame may hold any number of requests (batching). The server flushes
+ * its output only when no more input is buffered, so the responses of
+ * pipelined frames are also written together.
+ *
+ * <pre>
+ * request frame:  int length, int count, count * (int id, byte op, int a, int b)
+ * response frame: int length, int count, count * (int id, byte status, payload)
+ * </pre>
+ *
+ * length counts the bytes after it. The payload is empty unless the status
+ * is OK, and depends on the operation:
+ *
+ * <pre>
+ * HAS_EDGE      a, b   int 1 or 0
+ * COST          a, b   int cost or NO_COST
+ * DEGREE        a      int degree
+ * NEIGHBORS     a      int d, d * int neighbor, in ascending order
+ * SHORTEST_PATH a, b   long distance or UNREACHABLE, int k, k * int vertex
+ * COMPONENT     a      int id, as by GraphAlgorithms.componentIds
+ * NUM_VERTICES         int n
+ * </pre>
+ *
+ * A frame that is longer than MAX_FRAME or does not match its count closes
+ * the connection. A response frame is at most MAX_RESPONSE bytes long: a
+ * request whose payload does not fit gets the status TOO_LARGE instead,
+ * and the rest of the frame is still answered. The component ids are
+ * computed on the first COMPONENT request, and each connection keeps its
+ * last shortest path tree, so that paths from the same source are answered
+ * without a new search.
+ *
+ * The server runs on virtual threads, and needs Java 21 or later.
+ */
+public final class QueryServer implements AutoCloseable {
+    /** Is there an edge from a to b. */
+    public final static byte HAS_EDGE = 1;
+
+    /** The cost of the edge from a to b. */
+    public final static byte COST = 2;
+
+    /** The degree of a. */
+    public final static byte DEGREE = 3;
+
+    /** The neighbors of a. */
+    public final static byte NEIGHBORS = 4;
+
+    /** A shortest path from a to b. */
+    public final static byte SHORTEST_PATH = 5;
+
+    /** The component of a. */
+    public final static byte COMPONENT = 6;
+
+    /** The number of vertices; a and b are ignored. */
+    public final static byte NUM_VERTICES = 7;
+
+    /** The request was answered. */
+    public final static byte OK = 0;
+
+    /** A vertex of the request is out of range. */
+    public final static byte ILLEGAL_ARGUMENT = 1;
+
+    /** The operation is not known. */
+    public final static byte UNKNOWN_OPERATION = 2;
+
+    /** The payload would make the response frame longer than MAX_RESPONSE. */
+    public final static byte TOO_LARGE = 3;
+
+    /** Number of bytes of one request in a frame. */
+    public final static int REQUEST_BYTES = 13;
+
+    /** Maximum length of a request frame in bytes. */
+    public final static int MAX_FRAME = 1 << 24;
+
+    /**
+     * Maximum length of a response frame in bytes, with room for a status
+     * for every request of a MAX_FRAME request frame.
+     */
+    public final static int MAX_RESPONSE = 1 << 26;
+
+    private final static int BUFFER_SIZE = 1 << 16;
+
+    private final CsrGraph graph;
+    private final ServerSocket server;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder requests = new LongAdder();
+    private final Thread acceptor;
+    private final ReentrantLock componentLock = new ReentrantLock();
+    private volatile int[] componentIds;
+
+    /**
+     * Starts a server for a snapshot of g on the loopback address.
+     *
+     * @param g
+     *            the graph to answer queries about
+     * @param port
+     *            port to listen on, or 0 for any free port
+     * @throws IOException
+     *             if the port cannot be bound
+     */
+    public QueryServer(Graph g, int port) throws IOException {
+        this.graph = g instanceof CsrGraph ? (CsrGraph) g : CsrGraph.copyOf(g);
+        this.server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.acceptor = Thread.ofVirtual().name("query-accept-" + server.getLocalPort()).start(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns the number of requests answered so far.
+     *
+     * @return the number of requests
+     */
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * Returns the graph that the queries are answered from.
+     *
+     * @return the snapshot
+     */
+    public CsrGraph snapshot() {
+        return graph;
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Socket s : connections)
+            s.close();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        String name = "query-" + server.getLocalPort() + "-";
+        long count = 0;
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                return; // closed
+            }
+            connections.add(socket);
+            Thread.ofVirtual().name(name + count++).start(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException e) {
+                        // The client went away or broke the protocol.
+                    } finally {
+                        connections.remove(socket);
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /** Answers the frames of one connection until it is closed. */
+    private void serve(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        InputStream input = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        DataInputStream in = new DataInputStream(input);
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        byte[] frame = new byte[BUFFER_SIZE];
+        Response response = new Response();
+        ShortestPathTree tree = null;
+        for (;;) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (length < 4 || length > MAX_FRAME)
+                return;
+            if (frame.length < length)
+                frame = new byte[Math.max(length, 2 * frame.length)];
+            in.readFully(frame, 0, length);
+            ByteBuffer request = ByteBuffer.wrap(frame, 0, length);
+            int count = request.getInt();
+            if (count < 0 || (long) count * REQUEST_BYTES != length - 4)
+                return;
+
+            response.begin(count);
+            for (int i = 0; i < count; i++) {
+                int id = request.getInt();
+                byte op = request.get();
+                int a = request.getInt();
+                int b = request.getInt();
+                tree = answer(response, id, op, a, b, tree);
+            }
+            response.end();
+            out.write(response.buf.array(), 0, response.buf.position());
+            requests.add(count);
+            if (input.available() == 0)
+                out.flush();
+        }
+    }
+
+    /**
+     * Writes the response to one request. Returns the shortest path tree to
+     * keep for the next request.
+     */
+    private ShortestPathTree answer(Response r, int id, byte op, int a, int b, ShortestPathTree tree) {
+        int n = graph.numVertices();
+        boolean oneVertex = op == DEGREE || op == NEIGHBORS || op == COMPONENT;
+        if (op < HAS_EDGE || op > NUM_VERTICES) {
+            r.status(id, UNKNOWN_OPERATION);
+            return tree;
+        }
+        if (op == NUM_VERTICES) {
+            r.status(id, OK);
+            r.putInt(n);
+            return tree;
+        }
+        if (a < 0 || a >= n || (!oneVertex && (b < 0 || b >= n))) {
+            r.status(id, ILLEGAL_ARGUMENT);
+            return tree;
+        }
+        r.status(id, OK);
+        switch (op) {
+            case HAS_EDGE:
+                r.putInt(graph.hasEdge(a, b) ? 1 : 0);
+                break;
+            case COST:
+                r.putInt(graph.cost(a, b));
+                break;
+            case DEGREE:
+                r.putInt(graph.offsets[a + 1] - graph.offsets[a]);
+                break;
+            case NEIGHBORS: {
+                int start = graph.offsets[a];
+                int d = graph.offsets[a + 1] - start;
+                if (!r.fits(4 + 4L * d)) {
+                    r.tooLarge();
+                    break;
+                }
+                r.ensure(4 + 4 * d);
+                r.buf.putInt(d);
+                for (int i = 0; i < d; i++)
+                    r.buf.putInt(graph.targets[start + i]);
+                break;
+            }
+            case SHORTEST_PATH: {
+                if (tree == null || tree.source() != a)
+                    tree = ShortestPathTree.compute(graph, a);
+                int[] path = tree.pathTo(b);
+                if (!r.fits(12 + 4L * path.length)) {
+                    r.tooLarge();
+                    break;
+                }
+                r.ensure(12 + 4 * path.length);
+                r.buf.putLong(tree.distance(b));
+                r.buf.putInt(path.length);
+                for (int w : path)
+                    r.buf.putInt(w);
+                break;
+            }
+            case COMPONENT:
+                r.putInt(componentIds()[a]);
+                break;
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the component ids, computing them on the first call. A
+     * ReentrantLock rather than a monitor guards the search, so that the
+     * virtual threads waiting for it do not pin their carrier threads.
+     */
+    private int[] componentIds() {
+        int[] ids = componentIds;
+        if (ids == null) {
+            componentLock.lock();
+            try {
+                ids = componentIds;
+                if (ids == null)
+                    ids = componentIds = GraphAlgorithms.componentIds(graph);
+            } finally {
+                componentLock.unlock();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * A response frame that grows as needed, up to MAX_RESPONSE bytes. The
+     * bytes for the statuses of the requests not yet answered are kept
+     * free, so that every request gets at least a status.
+     */
+    private static final class Response {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /** Number of requests of the frame without a status. */
+        private int unanswered;
+
+        void begin(int count) {
+            buf.clear();
+            buf.putInt(0); // length, set by end
+            buf.putInt(count);
+            unanswered = count;
+        }
+
+        void end() {
+            buf.putInt(0, buf.position() - 4);
+        }
+
+        void status(int id, byte status) {
+            ensure(5);
+            buf.putInt(id);
+            buf.put(status);
+            unanswered--;
+        }
+
+        /**
+         * Returns true if a payload of the given size fits after the status
+         * just written.
+         */
+        boolean fits(long bytes) {
+            return buf.position() + bytes + 5L * unanswered <= MAX_RESPONSE;
+        }
+
+        /** Replaces the status just written with TOO_LARGE. */
+        void tooLarge() {
+            buf.put(buf.position() - 1, TOO_LARGE);
+        }
+
+        /** Writes a payload of one int, or TOO_LARGE if it does not fit. */
+        void putInt(int x) {
+            if (!fits(4)) {
+                tooLarge();
+                return;
+            }
+            ensure(4);
+            buf.putInt(x);
+        }
+
+        void ensure(int bytes) {
+            if (buf.remaining() < bytes) {
+                int capacity = (int) Math.min(2L * buf.capacity(), MAX_RESPONSE);
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(capacity, buf.position() + bytes));
+                buf.flip();
+                larger.put(buf);
+                buf = larger;
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package se.kth.graph;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Sends every operation of the protocol to a server for a random graph, one
+ * at a time, in batches and pipelined, and checks the answers against the
+ * graph. Also checks that a broken frame closes the connection and that a
+ * response that would be too large gets the TOO_LARGE status.
+ */
+public class QueryServerTest {
+    private Graph graph;
+    private QueryServer server;
+    private QueryClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        Random random = new Random(48);
+        int n = 300;
+        graph = new HashGraph(n);
+        for (int i = 0; i < 600; i++) {
+            int v = random.nextInt(n);
+            int w = random.nextInt(n);
+            if (random.nextBoolean())
+                graph.add(v, w, random.nextInt(10));
+            else
+                graph.addBi(v, w);
+        }
+        server = new QueryServer(graph, 0);
+        client = new QueryClient(server.port());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void everyOperationRoundTrips() throws IOException {
+        int n = graph.numVertices();
+        int[] ids = GraphAlgorithms.componentIds(server.snapshot());
+        assertEquals(n, client.numVertices());
+        for (int v = 0; v < n; v++) {
+            assertEquals(graph.degree(v), client.degree(v));
+            assertArrayEquals(sortedNeighbors(graph, v), client.neighbors(v));
+            assertEquals(ids[v], client.componentId(v));
+            for (int w = v % 7; w < n; w += 7) {
+                assertEquals(graph.hasEdge(v, w), client.hasEdge(v, w));
+                assertEquals(graph.cost(v, w), client.cost(v, w));
+            }
+        }
+        for (int s = 0; s < n; s += 29) {
+            ShortestPathTree tree = ShortestPathTree.compute(server.snapshot(), s);
+            for (int t = 0; t < n; t++)
+                assertArrayEquals(tree.pathTo(t), client.shortestPath(s, t));
+        }
+        assertTrue(server.requests() > 0);
+    }
+
+    @Test
+    public void batchesArePipelined() throws IOException {
+        Random random = new Random(48);
+        int n = graph.numVertices();
+        int size = 500;
+        QueryClient.Batch[] batches = new QueryClient.Batch[8];
+        byte[][] ops = new byte[batches.length][size];
+        int[][] a = new int[batches.length][size];
+        int[][] b = new int[batches.length][size];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = new QueryClient.Batch();
+            for (int j = 0; j < size; j++) {
+                ops[i][j] = (byte) (1 + random.nextInt(QueryServer.NUM_VERTICES));
+                a[i][j] = random.nextInt(n);
+                b[i][j] = random.nextInt(n);
+                assertEquals(j, batches[i].add(ops[i][j], a[i][j], b[i][j]));
+            }
+            client.send(batches[i]);
+        }
+        for (int i = 0; i < batches.length; i++) {
+            client.receive(batches[i]);
+            assertEquals(size, batches[i].size());
+            for (int j = 0; j < size; j++)
+                assertAnswer(batches[i], j, ops[i][j], a[i][j], b[i][j]);
+        }
+    }
+
+    @Test
+    public void badRequestsGetAStatus() throws IOException {
+        QueryClient.Batch batch = new QueryClient.Batch();
+        batch.add(QueryServer.DEGREE, -1, 0);
+        batch.add(QueryServer.HAS_EDGE, 0, graph.numVertices());
+        batch.add((byte) 99, 0, 0);
+        batch.add(QueryServer.DEGREE, 0, -1);
+        client.send(batch);
+        client.receive(batch);
+        assertEquals(QueryServer.ILLEGAL_ARGUMENT, batch.status(0));
+        assertEquals(QueryServer.ILLEGAL_ARGUMENT, batch.status(1));
+        assertEquals(QueryServer.UNKNOWN_OPERATION, batch.status(2));
+        // DEGREE ignores b.
+        assertEquals(QueryServer.OK, batch.status(3));
+        assertEquals(graph.degree(0), batch.value(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void queryThrowsWhenVertexIsOutOfRange() throws IOException {
+        client.cost(0, graph.numVertices());
+    }
+
+    @Test
+    public void frameNotMatchingItsCountClosesTheConnection() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(4 + QueryServer.REQUEST_BYTES);
+            out.writeInt(2);
+            out.write(new byte[QueryServer.REQUEST_BYTES]);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void frameLongerThanTheMaximumClosesTheConnection() throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(QueryServer.MAX_FRAME + 1);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        // The server still answers other connections.
+        assertEquals(graph.numVertices(), client.numVertices());
+    }
+
+    @Test
+    public void oversizedResponseGetsTooLarge() throws IOException {
+        // Every NEIGHBORS response of the hub takes 4 d + 9 bytes, so only
+        // seven fit in one response frame.
+        int d = 1 << 21;
+        int[] from = new int[d];
+        int[] to = new int[d];
+        for (int i = 0; i < d; i++)
+            to[i] = i + 1;
+        CsrGraph star = EdgeList.of(d + 1, from, to, null, d).toCsrGraph(false);
+        try (QueryServer big = new QueryServer(star, 0); QueryClient c = new QueryClient(big.port())) {
+            QueryClient.Batch batch = new QueryClient.Batch();
+            for (int i = 0; i < 8; i++)
+                batch.add(QueryServer.NEIGHBORS, 0, 0);
+            batch.add(QueryServer.DEGREE, 0, 0);
+            c.send(batch);
+            c.receive(batch);
+            for (int i = 0; i < 7; i++) {
+                assertEquals(QueryServer.OK, batch.status(i));
+                assertEquals(d, batch.list(i).length);
+            }
+            assertEquals(QueryServer.TOO_LARGE, batch.status(7));
+            assertNull(batch.list(7));
+            assertEquals(QueryServer.OK, batch.status(8));
+            assertEquals(d, batch.value(8));
+            // The connection is still usable.
+            assertEquals(d + 1, c.numVertices());
+        }
+    }
+
+    @Test
+    public void closeClosesTheConnections() throws IOException {
+        assertEquals(graph.numVertices(), client.numVertices());
+        server.close();
+        try {
+            client.numVertices();
+            fail("Expected IOException after the server was closed");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    private void assertAnswer(QueryClient.Batch batch, int j, byte op, int a, int b) {
+        assertEquals(QueryServer.OK, batch.status(j));
+        switch (op) {
+            case QueryServer.HAS_EDGE:
+                assertEquals(graph.hasEdge(a, b) ? 1 : 0, batch.value(j));
+                break;
+            case QueryServer.COST:
+                assertEquals(graph.cost(a, b), batch.value(j));
+                break;
+            case QueryServer.DEGREE:
+                assertEquals(graph.degree(a), batch.value(j));
+                break;
+            case QueryServer.NEIGHBORS:
+                assertArrayEquals(sortedNeighbors(graph, a), batch.list(j));
+                break;
+            case QueryServer.SHORTEST_PATH: {
+                ShortestPathTree tree = ShortestPathTree.compute(server.snapshot(), a);
+                assertEquals(tree.distance(b), batch.value(j));
+                assertArrayEquals(tree.pathTo(b), batch.list(j));
+                break;
+            }
+            case QueryServer.COMPONENT:
+                assertEquals(GraphAlgorithms.componentIds(server.snapshot())[a], batch.value(j));
+                break;
+            default:
+                assertEquals(graph.numVertices(), batch.value(j));
+                break;
+        }
+    }
+
+    private static int[] sortedNeighbors(Graph g, int v) {
+        int[] list = new int[g.degree(v)];
+        int i = 0;
+        for (VertexIterator it = g.neighbors(v); it.hasNext();)
+            list[i++] = it.next();
+        Arrays.sort(list);
+        return list;
+    }
+}
@@ -0,0 +1,93 @@
+package se.kth.graph;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * RowKernels that compare a whole vector of cells with one instruction,
+ * using the preferred vector size of the hardware: 8 ints with AVX2 and 16
+ * with AVX-512. The cells after the last full vector are handled by the
+ * scalar loops. Loaded by name by RowKernels, and only works if the
+ * jdk.incubator.vector module is present.
+ */
+final class VectorRowKernels extends RowKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    /** Longs for relax, and ints with the same number of lanes. */
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> HALF_INTS = VectorSpecies.of(int.class,
+            VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    /** 0, 1, 2, ... */
+    private static final IntVector IOTA = IntVector.zero(INTS).addIndex(1);
+
+    @Override
+    int lanes() {
+        return INTS.length();
+    }
+
+    @Override
+    int count(int[] row, int empty) {
+        int d = 0;
+        int i = 0;
+        for (int bound = INTS.loopBound(row.length); i < bound; i += INTS.length())
+            d += IntVector.fromArray(INTS, row, i).compare(VectorOperators.NE, empty).trueCount();
+        for (; i < row.length; i++)
+            if (row[i] != empty)
+                d++;
+        return d;
+    }
+
+    @Override
+    int next(int[] row, int from, int empty) {
+        int i = from;
+        for (int bound = row.length - INTS.length(); i <= bound; i += INTS.length()) {
+            VectorMask<Integer> present = IntVector.fromArray(INTS, row, i).compare(VectorOperators.NE, empty);
+            if (present.anyTrue())
+                return i + present.firstTrue();
+        }
+        return super.next(row, i, empty);
+    }
+
+    @Override
+    int indices(int[] row, int empty, int[] out) {
+        int k = 0;
+        int i = 0;
+        for (int bound = INTS.loopBound(row.length); i < bound; i += INTS.length()) {
+            VectorMask<Integer> present = IntVector.fromArray(INTS, row, i).compare(VectorOperators.NE, empty);
+            int found = present.trueCount();
+            if (found == 0)
+                continue;
+            IOTA.add(i).compress(present).intoArray(out, k, INTS.indexInRange(0, found));
+            k += found;
+        }
+        for (; i < row.length; i++)
+            if (row[i] != empty)
+                out[k++] = i;
+        return k;
+    }
+
+    @Override
+    void relax(int[] row, int empty, int noCost, long du, int u, long[] dist, int[] parent) {
+        int j = 0;
+        for (int bound = LONGS.loopBound(row.length); j < bound; j += LONGS.length()) {
+            IntVector cells = IntVector.fromArray(HALF_INTS, row, j);
+            VectorMask<Integer> present = cells.compare(VectorOperators.NE, empty);
+            if (!present.anyTrue())
+                continue;
+            IntVector length = cells.blend(1, cells.compare(VectorOperators.EQ, noCost));
+            LongVector candidate = ((LongVector) length.convertShape(VectorOperators.I2L, LONGS, 0)).add(du);
+            VectorMask<Long> better = candidate.compare(VectorOperators.LT, LongVector.fromArray(LONGS, dist, j))
+                    .and(present.cast(LONGS));
+            if (!better.anyTrue())
+                continue;
+            candidate.intoArray(dist, j, better);
+            IntVector.broadcast(HALF_INTS, u).intoArray(parent, j, better.cast(HALF_INTS));
+        }
+        relax(row, j, empty, noCost, du, u, dist, parent);
+    }
+}
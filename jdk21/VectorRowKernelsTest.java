@@ -0,0 +1,99 @@
+package se.kth.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares VectorRowKernels with the scalar loops of RowKernels on random
+ * rows, of lengths that are and are not a multiple of the number of lanes,
+ * and with few and many empty cells.
+ */
+public class VectorRowKernelsTest {
+    /** The marker of MatrixGraph. */
+    private static final int EMPTY = -2;
+    private static final int NO_COST = Graph.NO_COST;
+
+    private final RowKernels scalar = new RowKernels();
+    private final RowKernels vector = new VectorRowKernels();
+
+    @Test
+    public void countMatchesScalar() {
+        Random random = new Random(49);
+        for (int round = 0; round < 500; round++) {
+            int[] row = randomRow(random);
+            assertEquals(scalar.count(row, EMPTY), vector.count(row, EMPTY));
+        }
+    }
+
+    @Test
+    public void nextMatchesScalar() {
+        Random random = new Random(49);
+        for (int round = 0; round < 500; round++) {
+            int[] row = randomRow(random);
+            for (int from = 0; from <= row.length; from++)
+                assertEquals(scalar.next(row, from, EMPTY), vector.next(row, from, EMPTY));
+        }
+    }
+
+    @Test
+    public void indicesMatchesScalar() {
+        Random random = new Random(49);
+        for (int round = 0; round < 500; round++) {
+            int[] row = randomRow(random);
+            int[] expected = new int[row.length];
+            int[] actual = new int[row.length];
+            int k = scalar.indices(row, EMPTY, expected);
+            assertEquals(k, vector.indices(row, EMPTY, actual));
+            assertArrayEquals(Arrays.copyOf(expected, k), Arrays.copyOf(actual, k));
+        }
+    }
+
+    @Test
+    public void relaxMatchesScalar() {
+        Random random = new Random(49);
+        for (int round = 0; round < 500; round++) {
+            int[] row = randomRow(random);
+            long[] dist = new long[row.length];
+            for (int j = 0; j < row.length; j++)
+                dist[j] = random.nextInt(3) == 0 ? Long.MAX_VALUE : random.nextInt(40);
+            int[] parent = new int[row.length];
+            Arrays.fill(parent, -1);
+            long du = random.nextInt(20);
+            int u = random.nextInt(1000);
+
+            long[] expectedDist = dist.clone();
+            int[] expectedParent = parent.clone();
+            scalar.relax(row, EMPTY, NO_COST, du, u, expectedDist, expectedParent);
+            vector.relax(row, EMPTY, NO_COST, du, u, dist, parent);
+            assertArrayEquals(expectedDist, dist);
+            assertArrayEquals(expectedParent, parent);
+        }
+    }
+
+    @Test
+    public void vectorsHaveMoreThanOneLane() {
+        // RowKernels.INSTANCE only uses the vectors in that case.
+        assertEquals(vector.lanes() > 1, RowKernels.INSTANCE instanceof VectorRowKernels);
+    }
+
+    /**
+     * A row of random length, where a random fraction of the cells is
+     * empty and the rest holds a cost or NO_COST.
+     */
+    private static int[] randomRow(Random random) {
+        int[] row = new int[random.nextInt(100)];
+        int present = random.nextInt(11);
+        for (int j = 0; j < row.length; j++) {
+            if (random.nextInt(10) >= present)
+                row[j] = EMPTY;
+            else if (random.nextInt(4) == 0)
+                row[j] = NO_COST;
+            else
+                row[j] = random.nextInt(20);
+        }
+        return row;
+    }
+}